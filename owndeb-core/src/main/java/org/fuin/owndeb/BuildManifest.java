@@ -0,0 +1,329 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.owndeb;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.validation.constraints.NotNull;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.fuin.objects4j.common.Contract;
+import org.fuin.owndeb.commons.DebPackage;
+import org.fuin.owndeb.commons.DebUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fingerprints of the inputs of the packages created in a target directory.
+ * The fingerprint of a package covers it's configuration (the XML of the
+ * package element), all resolved variables visible to the package, the
+ * classes and resources of the package type (the JAR files or class
+ * directories of the class and it's super classes) and the content of all
+ * files referenced by a variable value. A package is up to date if the
+ * fingerprint did not change since it was created and all it's Debian files
+ * still exist.<br>
+ * <br>
+ * The manifest is a properties file inside the target directory that is
+ * replaced atomically. Methods may be called concurrently from the threads
+ * that create the packages.
+ */
+public final class BuildManifest {
+
+    /** Name of the manifest file inside the target directory. */
+    public static final String FILENAME = "owndeb-manifest.properties";
+
+    private static final Logger LOG = LoggerFactory
+            .getLogger(BuildManifest.class);
+
+    private static final Charset UTF8 = Charset.forName("utf-8");
+
+    private final File targetDir;
+
+    private final File file;
+
+    private final Map<String, String> fingerprints;
+
+    private final ConcurrentMap<String, String> codeSources;
+
+    /**
+     * Constructor with target directory. An existing manifest is loaded.
+     * 
+     * @param targetDir
+     *            Directory with the created packages and the manifest.
+     */
+    public BuildManifest(@NotNull final File targetDir) {
+        super();
+        Contract.requireArgNotNull("targetDir", targetDir);
+        this.targetDir = targetDir;
+        this.file = new File(targetDir, FILENAME);
+        this.fingerprints = new TreeMap<>();
+        this.codeSources = new ConcurrentHashMap<>();
+        load();
+    }
+
+    /**
+     * Computes the current fingerprint of an initialized package.
+     * 
+     * @param pkg
+     *            Package with resolved variables.
+     * 
+     * @return SHA-256 as HEX string.
+     */
+    @NotNull
+    public final String fingerprint(@NotNull final DebPackage pkg) {
+        Contract.requireArgNotNull("pkg", pkg);
+        final MessageDigest digest = DigestUtils.getSha256Digest();
+        update(digest, "class", pkg.getClass().getName());
+        update(digest, "xml", marshal(pkg));
+        final Map<String, String> vars = new TreeMap<>(pkg
+                .getVariableGraph().getResolved());
+        for (final Map.Entry<String, String> var : vars.entrySet()) {
+            update(digest, "var:" + var.getKey(), var.getValue());
+        }
+        for (final String value : new TreeSet<>(vars.values())) {
+            final File referenced = referencedFile(value);
+            if (referenced != null) {
+                update(digest, "file:" + value, sha256(referenced));
+            }
+        }
+        Class<?> clasz = pkg.getClass();
+        while (clasz != null) {
+            final String location = codeSourceLocation(clasz);
+            if (location != null) {
+                update(digest, "code:" + location, codeSourceHash(location));
+            }
+            clasz = clasz.getSuperclass();
+        }
+        return Hex.encodeHexString(digest.digest());
+    }
+
+    /**
+     * Returns if a package was already created with the same fingerprint and
+     * all it's Debian files and their contents files exist.
+     * 
+     * @param pkg
+     *            Package to check.
+     * @param fingerprint
+     *            Current fingerprint of the package.
+     * 
+     * @return TRUE if the package does not need to be created again.
+     */
+    public final boolean isUpToDate(@NotNull final DebPackage pkg,
+            @NotNull final String fingerprint) {
+        Contract.requireArgNotNull("pkg", pkg);
+        Contract.requireArgNotNull("fingerprint", fingerprint);
+        final String last;
+        synchronized (fingerprints) {
+            last = fingerprints.get(key(pkg));
+        }
+        if (!fingerprint.equals(last)) {
+            return false;
+        }
+        for (final String filename : pkg.getDebFilenames()) {
+            final File debFile = new File(targetDir, filename);
+            if (!debFile.isFile() || !DebUtils.contentsFile(debFile).isFile()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Records the fingerprint of a created package. The change is only
+     * persisted by {@link #write()}.
+     * 
+     * @param pkg
+     *            Package that was created.
+     * @param fingerprint
+     *            Fingerprint the package was created with.
+     */
+    public final void put(@NotNull final DebPackage pkg,
+            @NotNull final String fingerprint) {
+        Contract.requireArgNotNull("pkg", pkg);
+        Contract.requireArgNotNull("fingerprint", fingerprint);
+        synchronized (fingerprints) {
+            fingerprints.put(key(pkg), fingerprint);
+        }
+    }
+
+    /**
+     * Writes the manifest into the target directory.
+     */
+    public final void write() {
+        final Properties props = new Properties();
+        synchronized (fingerprints) {
+            props.putAll(fingerprints);
+        }
+        try {
+            DebUtils.mkdirs(targetDir);
+            final File tmpFile = File.createTempFile(FILENAME, ".tmp",
+                    targetDir);
+            final OutputStream out = new FileOutputStream(tmpFile);
+            try {
+                props.store(out, "Fingerprints of the package inputs");
+            } finally {
+                out.close();
+            }
+            Files.move(tmpFile.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (final IOException ex) {
+            throw new RuntimeException("Error writing build manifest: " + file,
+                    ex);
+        }
+    }
+
+    private void load() {
+        if (!file.exists()) {
+            return;
+        }
+        final Properties props = new Properties();
+        try {
+            final InputStream in = new FileInputStream(file);
+            try {
+                props.load(in);
+            } finally {
+                in.close();
+            }
+        } catch (final IOException ex) {
+            LOG.warn("Ignoring unreadable build manifest: " + file, ex);
+            return;
+        }
+        for (final String name : props.stringPropertyNames()) {
+            fingerprints.put(name, props.getProperty(name));
+        }
+    }
+
+    private String codeSourceHash(final String location) {
+        final String hash = codeSources.get(location);
+        if (hash != null) {
+            return hash;
+        }
+        final File codeFile = new File(location);
+        final String newHash;
+        if (codeFile.isDirectory()) {
+            final MessageDigest digest = DigestUtils.getSha256Digest();
+            final List<File> files = new ArrayList<>(FileUtils.listFiles(
+                    codeFile, null, true));
+            Collections.sort(files);
+            for (final File child : files) {
+                update(digest, child.getPath(), sha256(child));
+            }
+            newHash = Hex.encodeHexString(digest.digest());
+        } else {
+            newHash = sha256(codeFile);
+        }
+        codeSources.putIfAbsent(location, newHash);
+        return newHash;
+    }
+
+    private static String codeSourceLocation(final Class<?> clasz) {
+        final CodeSource codeSource = clasz.getProtectionDomain()
+                .getCodeSource();
+        if (codeSource == null) {
+            // Bootstrap classes
+            return null;
+        }
+        final URL url = codeSource.getLocation();
+        if (url == null || !"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            return new File(url.toURI()).getAbsolutePath();
+        } catch (final URISyntaxException ex) {
+            throw new RuntimeException("Invalid code source: " + url, ex);
+        }
+    }
+
+    private static File referencedFile(final String value) {
+        if (value == null || value.length() == 0 || value.indexOf('\n') > -1) {
+            return null;
+        }
+        final File referenced = new File(value);
+        if (referenced.isFile()) {
+            return referenced;
+        }
+        return null;
+    }
+
+    private static String marshal(final DebPackage pkg) {
+        try {
+            final Marshaller marshaller = JaxbCache.getContext(pkg.getClass())
+                    .createMarshaller();
+            final StringWriter writer = new StringWriter();
+            marshaller.marshal(pkg, writer);
+            return writer.toString();
+        } catch (final JAXBException ex) {
+            throw new RuntimeException("Error marshalling package: "
+                    + pkg.getName(), ex);
+        }
+    }
+
+    private static String sha256(final File file) {
+        try {
+            final InputStream in = new FileInputStream(file);
+            try {
+                return DigestUtils.sha256Hex(in);
+            } finally {
+                in.close();
+            }
+        } catch (final IOException ex) {
+            throw new RuntimeException("Error reading: " + file, ex);
+        }
+    }
+
+    private static void update(final MessageDigest digest, final String name,
+            final String value) {
+        digest.update(name.getBytes(UTF8));
+        digest.update((byte) 0);
+        if (value != null) {
+            digest.update(value.getBytes(UTF8));
+        }
+        digest.update((byte) 0);
+    }
+
+    private static String key(final DebPackage pkg) {
+        return pkg.getName() + "_" + pkg.getArch();
+    }
+
+}
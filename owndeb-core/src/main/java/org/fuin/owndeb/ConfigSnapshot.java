@@ -0,0 +1,448 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.owndeb;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import javax.validation.constraints.NotNull;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.fuin.objects4j.common.Contract;
+import org.fuin.owndeb.commons.DebConfig;
+import org.fuin.owndeb.commons.DebUtils;
+import org.fuin.owndeb.commons.Include;
+import org.fuin.owndeb.commons.Variable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Binary snapshot of a fully initialized configuration. Reading a snapshot
+ * skips parsing the XML, binding JAXB, resolving the variables and wiring the
+ * dependencies. A snapshot is only used if the configuration file and all
+ * included files are unchanged (same SHA-1 of the content) and no include
+ * pattern matches a different set of files. Snapshots of configurations with
+ * URL variables expire with the shortest time to live of these variables, so
+ * configurations with URL variables without a time to live are never
+ * written.<br>
+ * <br>
+ * Snapshots contain the Java serialized configuration before it is wired:
+ * References to parents, variable graphs and resolved dependencies are not
+ * part of a snapshot and are restored after reading it. The directory must not
+ * be writeable by untrusted users. Every snapshot records the version of this
+ * library and a fingerprint of the serialized fields of all model classes. A
+ * snapshot written by another version or with different model classes is
+ * ignored and replaced, as is a snapshot that can't be read.
+ */
+public final class ConfigSnapshot {
+
+    private static final Logger LOG = LoggerFactory
+            .getLogger(ConfigSnapshot.class);
+
+    private static final int MAGIC = 0x4F444232;
+
+    private static final String POM_PROPERTIES = "/META-INF/maven/org.fuin.owndeb/owndeb-core/pom.properties";
+
+    private static final String VERSION = libraryVersion();
+
+    private static final String EXTENSION = ".snapshot";
+
+    private final File dir;
+
+    /**
+     * Constructor with directory.
+     * 
+     * @param dir
+     *            Directory for the snapshots. Will be created if it does not
+     *            exist.
+     */
+    public ConfigSnapshot(@NotNull final File dir) {
+        super();
+        Contract.requireArgNotNull("dir", dir);
+        this.dir = dir;
+    }
+
+    /**
+     * Returns the configuration from an up to date snapshot or reads the
+     * configuration file and writes a new snapshot.
+     * 
+     * @param configFile
+     *            XML file.
+     * @param jaxbClasses
+     *            Classes to bind to the JAXB context in addition to the
+     *            built-in package types.
+     * 
+     * @return Initialized configuration.
+     */
+    @NotNull
+    public final DebConfig load(@NotNull final File configFile,
+            final Class<?>... jaxbClasses) {
+        Contract.requireArgNotNull("configFile", configFile);
+        final File file = snapshotFile(configFile, jaxbClasses);
+        if (file.exists()) {
+            final DebConfig config = read(file, configFile, jaxbClasses);
+            if (config != null) {
+                LOG.info("Use snapshot of configuration: {}", file);
+                return config;
+            }
+        }
+        final DebConfig config = OwnDeb.unmarshal(configFile, jaxbClasses);
+        write(file, configFile, config, jaxbClasses);
+        return config;
+    }
+
+    /**
+     * Returns the snapshot file for a configuration file.
+     * 
+     * @param configFile
+     *            XML file.
+     * @param jaxbClasses
+     *            Additional JAXB classes.
+     * 
+     * @return File that may not exist.
+     */
+    final File snapshotFile(final File configFile,
+            final Class<?>... jaxbClasses) {
+        final StringBuilder sb = new StringBuilder(configFile
+                .getAbsolutePath());
+        for (final String name : classNames(jaxbClasses)) {
+            sb.append('\n').append(name);
+        }
+        return new File(dir, DigestUtils.sha1Hex(sb.toString()) + EXTENSION);
+    }
+
+    private DebConfig read(final File file, final File configFile,
+            final Class<?>[] jaxbClasses) {
+        try {
+            final DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(file)));
+            try {
+                if (in.readInt() != MAGIC) {
+                    LOG.warn("Ignoring unknown snapshot format: {}", file);
+                    return null;
+                }
+                if (!VERSION.equals(in.readUTF())
+                        || !schema(jaxbClasses).equals(in.readUTF())) {
+                    LOG.info("Snapshot written by another version: {}", file);
+                    return null;
+                }
+                if (in.readLong() < System.currentTimeMillis()) {
+                    LOG.info("Snapshot expired: {}", file);
+                    return null;
+                }
+                if (!inputsUnchanged(in, configFile)) {
+                    LOG.info("Configuration changed since snapshot: {}", file);
+                    return null;
+                }
+                final ObjectInputStream oin = new SnapshotInputStream(in,
+                        jaxbClasses);
+                return (DebConfig) oin.readObject();
+            } finally {
+                in.close();
+            }
+        } catch (final IOException | ClassNotFoundException
+                | RuntimeException ex) {
+            LOG.warn("Ignoring unreadable snapshot: " + file, ex);
+            return null;
+        }
+    }
+
+    private static boolean inputsUnchanged(final DataInputStream in,
+            final File configFile) throws IOException {
+        final File baseDir = configFile.getAbsoluteFile().getParentFile();
+        final int patternCount = in.readInt();
+        final Set<File> files = new LinkedHashSet<>();
+        files.add(configFile.getAbsoluteFile());
+        for (int i = 0; i < patternCount; i++) {
+            final String pattern = in.readUTF();
+            try {
+                files.addAll(new Include(pattern).resolve(baseDir));
+            } catch (final IllegalArgumentException ex) {
+                return false;
+            }
+        }
+        final int fileCount = in.readInt();
+        if (fileCount != files.size()) {
+            return false;
+        }
+        for (final File file : files) {
+            final String path = in.readUTF();
+            final String hash = in.readUTF();
+            if (!path.equals(file.getAbsolutePath())
+                    || !hash.equals(hash(file))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void write(final File file, final File configFile,
+            final DebConfig config, final Class<?>[] jaxbClasses) {
+        final long expires = expires(config);
+        if (expires <= System.currentTimeMillis()) {
+            LOG.info("No snapshot written because of URL variables without"
+                    + " time to live: {}", configFile);
+            return;
+        }
+        final File baseDir = configFile.getAbsoluteFile().getParentFile();
+        final Map<String, String> hashes = new LinkedHashMap<>();
+        hashes.put(configFile.getAbsolutePath(), hash(configFile));
+        final List<String> patterns = new ArrayList<>();
+        if (config.getIncludes() != null) {
+            for (final Include include : config.getIncludes()) {
+                patterns.add(include.getFile());
+                for (final File included : include.resolve(baseDir)) {
+                    hashes.put(included.getAbsolutePath(), hash(included));
+                }
+            }
+        }
+        try {
+            DebUtils.mkdirs(dir);
+            final File tmpFile = File.createTempFile(file.getName(), ".tmp",
+                    dir);
+            final DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            try {
+                out.writeInt(MAGIC);
+                out.writeUTF(VERSION);
+                out.writeUTF(schema(jaxbClasses));
+                out.writeLong(expires);
+                out.writeInt(patterns.size());
+                for (final String pattern : patterns) {
+                    out.writeUTF(pattern);
+                }
+                out.writeInt(hashes.size());
+                for (final Map.Entry<String, String> entry : hashes.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeUTF(entry.getValue());
+                }
+                final ObjectOutputStream oout = new ObjectOutputStream(out);
+                oout.writeObject(config);
+                oout.flush();
+            } finally {
+                out.close();
+            }
+            Files.move(tmpFile.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+            LOG.info("Wrote snapshot of configuration: {}", file);
+        } catch (final IOException | RuntimeException ex) {
+            LOG.warn("Failed to write snapshot: " + file, ex);
+        }
+    }
+
+    private static long expires(final DebConfig config) {
+        long expires = Long.MAX_VALUE;
+        for (final Variable var : config.getUrlVariables()) {
+            expires = Math.min(expires, System.currentTimeMillis() + 1000L
+                    * var.getTtlOrDefault());
+        }
+        return expires;
+    }
+
+    /**
+     * Returns the sorted names of the additional JAXB classes.
+     * 
+     * @param jaxbClasses
+     *            Classes or <code>null</code>.
+     * 
+     * @return Names without duplicates.
+     */
+    private static Set<String> classNames(final Class<?>[] jaxbClasses) {
+        final Set<String> names = new TreeSet<>();
+        if (jaxbClasses != null) {
+            for (final Class<?> clasz : jaxbClasses) {
+                names.add(clasz.getName());
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Creates a fingerprint of the serialized fields of all model classes
+     * reachable from the configuration, the built-in package types and the
+     * additional JAXB classes. Classes of the JDK are not inspected.
+     * 
+     * @param jaxbClasses
+     *            Additional JAXB classes.
+     * 
+     * @return SHA-1 of the field names and types.
+     */
+    static String schema(final Class<?>... jaxbClasses) {
+        final Map<String, Class<?>> classes = new TreeMap<>();
+        final Deque<Class<?>> work = new ArrayDeque<>();
+        work.add(DebConfig.class);
+        work.addAll(JaxbCache.getBuiltIn());
+        if (jaxbClasses != null) {
+            work.addAll(Arrays.asList(jaxbClasses));
+        }
+        while (!work.isEmpty()) {
+            final Class<?> clasz = work.removeFirst();
+            if (clasz.getClassLoader() == null
+                    || classes.containsKey(clasz.getName())) {
+                continue;
+            }
+            classes.put(clasz.getName(), clasz);
+            if (clasz.getSuperclass() != null) {
+                work.add(clasz.getSuperclass());
+            }
+            for (final Field field : clasz.getDeclaredFields()) {
+                if (serialized(field)) {
+                    addTypes(work, field.getGenericType());
+                }
+            }
+        }
+        final StringBuilder sb = new StringBuilder();
+        for (final Class<?> clasz : classes.values()) {
+            sb.append(clasz.getName()).append('\n');
+            final Set<String> fields = new TreeSet<>();
+            for (final Field field : clasz.getDeclaredFields()) {
+                if (serialized(field)) {
+                    fields.add(field.getName() + ":"
+                            + field.getGenericType().getTypeName());
+                }
+            }
+            for (final String field : fields) {
+                sb.append(' ').append(field).append('\n');
+            }
+        }
+        return DigestUtils.sha1Hex(sb.toString());
+    }
+
+    private static boolean serialized(final Field field) {
+        final int modifiers = field.getModifiers();
+        return !Modifier.isStatic(modifiers)
+                && !Modifier.isTransient(modifiers);
+    }
+
+    private static void addTypes(final Deque<Class<?>> work, final Type type) {
+        if (type instanceof Class) {
+            final Class<?> clasz = (Class<?>) type;
+            if (clasz.isArray()) {
+                addTypes(work, clasz.getComponentType());
+            } else if (!clasz.isPrimitive()) {
+                work.add(clasz);
+            }
+        } else if (type instanceof ParameterizedType) {
+            final ParameterizedType pt = (ParameterizedType) type;
+            addTypes(work, pt.getRawType());
+            for (final Type arg : pt.getActualTypeArguments()) {
+                addTypes(work, arg);
+            }
+        }
+    }
+
+    private static String libraryVersion() {
+        final InputStream in = ConfigSnapshot.class
+                .getResourceAsStream(POM_PROPERTIES);
+        if (in == null) {
+            return "unknown";
+        }
+        try {
+            try {
+                final Properties props = new Properties();
+                props.load(in);
+                return props.getProperty("version", "unknown");
+            } finally {
+                in.close();
+            }
+        } catch (final IOException ex) {
+            LOG.warn("Failed to read library version: " + POM_PROPERTIES, ex);
+            return "unknown";
+        }
+    }
+
+    private static String hash(final File file) {
+        try {
+            final InputStream in = new FileInputStream(file);
+            try {
+                return DigestUtils.sha1Hex(in);
+            } finally {
+                in.close();
+            }
+        } catch (final IOException ex) {
+            throw new RuntimeException("Error reading: " + file, ex);
+        }
+    }
+
+    /**
+     * Resolves classes also with the class loaders of the additional package
+     * types, as they may not be visible to the class loader of this library.
+     */
+    private static final class SnapshotInputStream extends ObjectInputStream {
+
+        private final Class<?>[] classes;
+
+        public SnapshotInputStream(final InputStream in,
+                final Class<?>[] classes) throws IOException {
+            super(in);
+            if (classes == null) {
+                this.classes = new Class<?>[0];
+            } else {
+                this.classes = classes;
+            }
+        }
+
+        @Override
+        protected final Class<?> resolveClass(final ObjectStreamClass desc)
+                throws IOException, ClassNotFoundException {
+            try {
+                return super.resolveClass(desc);
+            } catch (final ClassNotFoundException ex) {
+                for (final Class<?> clasz : classes) {
+                    try {
+                        return Class.forName(desc.getName(), false,
+                                clasz.getClassLoader());
+                    } catch (final ClassNotFoundException ex2) {
+                        // Try next
+                    }
+                }
+                throw ex;
+            }
+        }
+
+    }
+
+}
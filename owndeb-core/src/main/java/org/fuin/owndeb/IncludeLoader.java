@@ -0,0 +1,246 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.owndeb;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.validation.constraints.NotNull;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.fuin.objects4j.common.Contract;
+import org.fuin.owndeb.commons.DebConfig;
+import org.fuin.owndeb.commons.DebPackage;
+import org.fuin.owndeb.commons.DebPackages;
+import org.fuin.owndeb.commons.Include;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the files included by a configuration in parallel and adds their
+ * packages to it. The root element of an included file is a "packages"
+ * element. Only the packages inside it are used: They inherit the defaults
+ * and variables of the including configuration, so a package behaves the same
+ * no matter in which file it is defined.<br>
+ * <br>
+ * Parsed files are kept per process and identified by the hash of their
+ * content, so an unchanged file is not parsed again by later builds in the
+ * same JVM (for example a Maven daemon or an IDE). Only the
+ * {@link #MAX_CACHED} most recently used files are kept.
+ */
+public final class IncludeLoader {
+
+    private static final Logger LOG = LoggerFactory
+            .getLogger(IncludeLoader.class);
+
+    /** Maximum number of parsed files kept in memory. */
+    public static final int MAX_CACHED = 64;
+
+    private static final Map<String, Parsed> CACHE = Collections
+            .synchronizedMap(new LruMap(MAX_CACHED));
+
+    private final int threads;
+
+    private final Class<?>[] jaxbClasses;
+
+    /**
+     * Constructor with number of threads and JAXB classes.
+     * 
+     * @param threads
+     *            Maximum number of files parsed in parallel.
+     * @param jaxbClasses
+     *            Classes to bind to the JAXB context in addition to the
+     *            built-in package types.
+     */
+    public IncludeLoader(final int threads, final Class<?>... jaxbClasses) {
+        super();
+        Contract.requireArgMin("threads", threads, 1);
+        this.threads = threads;
+        if (jaxbClasses == null) {
+            this.jaxbClasses = new Class<?>[0];
+        } else {
+            this.jaxbClasses = jaxbClasses.clone();
+        }
+    }
+
+    /**
+     * Reads all files included by the configuration and initializes it. Does
+     * nothing if the configuration has no includes.
+     * 
+     * @param config
+     *            Unmarshalled, but not yet initialized configuration.
+     * @param baseDir
+     *            Directory relative file names are resolved against.
+     */
+    public final void load(@NotNull final DebConfig config,
+            @NotNull final File baseDir) {
+        Contract.requireArgNotNull("config", config);
+        Contract.requireArgNotNull("baseDir", baseDir);
+        if (config.getIncludes() == null) {
+            return;
+        }
+        final Set<File> files = new LinkedHashSet<>();
+        for (final Include include : config.getIncludes()) {
+            files.addAll(include.resolve(baseDir));
+        }
+        final List<DebPackage> included = new ArrayList<>();
+        if (!files.isEmpty()) {
+            LOG.info("Read {} included file(s) using {} thread(s)",
+                    files.size(), Math.min(threads, files.size()));
+            final ExecutorService executor = Executors.newFixedThreadPool(Math
+                    .min(threads, files.size()));
+            try {
+                final List<Future<DebPackages>> futures = new ArrayList<>();
+                for (final File file : files) {
+                    futures.add(executor.submit(new Callable<DebPackages>() {
+                        @Override
+                        public DebPackages call() {
+                            return parse(file);
+                        }
+                    }));
+                }
+                for (final Future<DebPackages> future : futures) {
+                    for (final DebPackage pkg : waitFor(future).getPackages()) {
+                        included.add(pkg.copy());
+                    }
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+        config.initIncluded(included);
+    }
+
+    /**
+     * Returns the packages of a file. The file is only parsed if it was not
+     * read before or if it's content changed. The result must not be
+     * modified.
+     */
+    private DebPackages parse(final File file) {
+        final String path = file.getAbsolutePath();
+        final String hash = hash(file) + Arrays.toString(jaxbClasses);
+        final Parsed parsed = CACHE.get(path);
+        if (parsed != null && parsed.hash.equals(hash)) {
+            LOG.debug("Use already parsed include: {}", file);
+            return parsed.packages;
+        }
+        final Object obj = JaxbCache.unmarshal(file, jaxbClasses);
+        if (!(obj instanceof DebPackages)) {
+            throw new IllegalStateException(
+                    "Root element of an included file must be 'packages': "
+                            + file);
+        }
+        final DebPackages packages = (DebPackages) obj;
+        CACHE.put(path, new Parsed(hash, packages));
+        return packages;
+    }
+
+    /**
+     * Returns the number of parsed files kept in memory.
+     * 
+     * @return Number of cached files.
+     */
+    static int cacheSize() {
+        return CACHE.size();
+    }
+
+    private static String hash(final File file) {
+        try {
+            final InputStream in = new FileInputStream(file);
+            try {
+                return DigestUtils.sha1Hex(in);
+            } finally {
+                in.close();
+            }
+        } catch (final IOException ex) {
+            throw new RuntimeException("Error reading included file: " + file,
+                    ex);
+        }
+    }
+
+    private static DebPackages waitFor(final Future<DebPackages> future) {
+        try {
+            return future.get();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted reading included files",
+                    ex);
+        } catch (final ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException("Error reading included files", cause);
+        }
+    }
+
+    /**
+     * Map that removes the least recently used entry if it grows too big.
+     */
+    private static final class LruMap extends LinkedHashMap<String, Parsed> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int maxEntries;
+
+        public LruMap(final int maxEntries) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected final boolean removeEldestEntry(
+                final Map.Entry<String, Parsed> eldest) {
+            return size() > maxEntries;
+        }
+
+    }
+
+    /**
+     * Packages parsed from a file with the hash of the content.
+     */
+    private static final class Parsed {
+
+        private final String hash;
+
+        private final DebPackages packages;
+
+        public Parsed(final String hash, final DebPackages packages) {
+            super();
+            this.hash = hash;
+            this.packages = packages;
+        }
+
+    }
+
+}
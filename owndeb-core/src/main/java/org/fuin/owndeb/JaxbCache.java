@@ -0,0 +1,242 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.owndeb;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.validation.constraints.NotNull;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.bind.ValidationEvent;
+import javax.xml.bind.ValidationEventHandler;
+import javax.xml.stream.XMLStreamReader;
+
+import org.fuin.objects4j.common.Contract;
+import org.fuin.owndeb.commons.DebConfig;
+import org.fuin.owndeb.commons.DebPackages;
+import org.fuin.owndeb.pkg.eclipse.EclipsePackage;
+import org.fuin.owndeb.pkg.eclipseplugin.EclipsePluginPackage;
+import org.fuin.owndeb.pkg.example.ExamplePackage;
+import org.fuin.owndeb.pkg.jdk.JdkPackage;
+import org.fuin.owndeb.pkg.split.SplitPackage;
+
+/**
+ * Process wide cache for JAXB contexts and their unmarshallers. Creating a
+ * context is expensive, so every set of classes is bound only once per class
+ * loader. The built-in package types are always part of the context: All
+ * configurations that only use them share a single context, no matter which
+ * classes are requested. Unmarshallers are not thread safe and are therefore
+ * pooled per context.
+ */
+public final class JaxbCache {
+
+    private static final Set<Class<?>> BUILT_IN = Collections
+            .unmodifiableSet(new HashSet<Class<?>>(Arrays.<Class<?>> asList(
+                    DebConfig.class, DebPackages.class, JdkPackage.class,
+                    EclipsePackage.class, EclipsePluginPackage.class,
+                    SplitPackage.class, ExamplePackage.class)));
+
+    private static final ConcurrentMap<Set<Class<?>>, Entry> ENTRIES = new ConcurrentHashMap<>();
+
+    private JaxbCache() {
+        throw new UnsupportedOperationException(
+                "Cannot create an instance of a utility class");
+    }
+
+    /**
+     * Returns the context for a set of classes. The built-in package types are
+     * always added.
+     *
+     * @param classes
+     *            Classes to bind in addition to the built-in ones.
+     *
+     * @return Shared context.
+     */
+    @NotNull
+    public static JAXBContext getContext(final Class<?>... classes) {
+        return entry(classes).ctx;
+    }
+
+    /**
+     * Unmarshals a file using a pooled unmarshaller. Validation errors fail
+     * with a {@link RuntimeException}.
+     *
+     * @param file
+     *            XML file to read.
+     * @param classes
+     *            Classes to bind in addition to the built-in ones.
+     *
+     * @return Data.
+     *
+     * @param <T>
+     *            Type of the expected data.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T unmarshal(@NotNull final File file,
+            final Class<?>... classes) {
+        Contract.requireArgNotNull("file", file);
+        final Entry entry = entry(classes);
+        try {
+            Unmarshaller unmarshaller = entry.pool.poll();
+            if (unmarshaller == null) {
+                unmarshaller = createUnmarshaller(entry.ctx);
+            }
+            try {
+                return (T) unmarshaller.unmarshal(file);
+            } finally {
+                entry.pool.offer(unmarshaller);
+            }
+        } catch (final JAXBException ex) {
+            throw new RuntimeException("Error unmarshalling: " + file, ex);
+        }
+    }
+
+    /**
+     * Unmarshals the element the reader is positioned on using a pooled
+     * unmarshaller. Afterwards the reader is positioned on the event that
+     * follows the end of the element.
+     *
+     * @param reader
+     *            Reader positioned on a start element.
+     * @param type
+     *            Expected type of the element.
+     * @param classes
+     *            Classes to bind in addition to the built-in ones.
+     *
+     * @return Data.
+     *
+     * @param <T>
+     *            Type of the expected data.
+     */
+    public static <T> T unmarshal(@NotNull final XMLStreamReader reader,
+            @NotNull final Class<T> type, final Class<?>... classes) {
+        Contract.requireArgNotNull("reader", reader);
+        Contract.requireArgNotNull("type", type);
+        final Entry entry = entry(classes);
+        try {
+            Unmarshaller unmarshaller = entry.pool.poll();
+            if (unmarshaller == null) {
+                unmarshaller = createUnmarshaller(entry.ctx);
+            }
+            try {
+                return unmarshaller.unmarshal(reader, type).getValue();
+            } finally {
+                entry.pool.offer(unmarshaller);
+            }
+        } catch (final JAXBException ex) {
+            throw new RuntimeException("Error unmarshalling element of type: "
+                    + type.getName(), ex);
+        }
+    }
+
+    /**
+     * Returns the package types that are always bound.
+     * 
+     * @return Immutable set of classes.
+     */
+    static Set<Class<?>> getBuiltIn() {
+        return BUILT_IN;
+    }
+
+    /**
+     * Returns the number of cached contexts.
+     *
+     * @return Number of different class sets bound so far.
+     */
+    static int size() {
+        return ENTRIES.size();
+    }
+
+    private static Entry entry(final Class<?>... classes) {
+        final Set<Class<?>> key = new HashSet<>();
+        if (classes != null) {
+            for (final Class<?> clasz : classes) {
+                if (!BUILT_IN.contains(clasz)) {
+                    key.add(clasz);
+                }
+            }
+        }
+        final Entry entry = ENTRIES.get(key);
+        if (entry != null) {
+            return entry;
+        }
+        final Set<Class<?>> all = new HashSet<>(BUILT_IN);
+        all.addAll(key);
+        try {
+            final Entry newEntry = new Entry(JAXBContext.newInstance(all
+                    .toArray(new Class<?>[all.size()])));
+            final Entry existing = ENTRIES.putIfAbsent(
+                    Collections.unmodifiableSet(key), newEntry);
+            if (existing == null) {
+                return newEntry;
+            }
+            return existing;
+        } catch (final JAXBException ex) {
+            throw new RuntimeException("Error creating JAXB context for: "
+                    + all, ex);
+        }
+    }
+
+    private static Unmarshaller createUnmarshaller(final JAXBContext ctx)
+            throws JAXBException {
+        final Unmarshaller unmarshaller = ctx.createUnmarshaller();
+        unmarshaller.setEventHandler(new ValidationEventHandler() {
+            @Override
+            public boolean handleEvent(final ValidationEvent event) {
+                if (event.getSeverity() > 0) {
+                    if (event.getLinkedException() == null) {
+                        throw new RuntimeException(
+                                "Error unmarshalling the data: "
+                                        + event.getMessage());
+                    }
+                    throw new RuntimeException("Error unmarshalling the data",
+                            event.getLinkedException());
+                }
+                return true;
+            }
+        });
+        return unmarshaller;
+    }
+
+    /**
+     * Context with it's pool of unmarshallers.
+     */
+    private static final class Entry {
+
+        private final JAXBContext ctx;
+
+        private final Queue<Unmarshaller> pool;
+
+        public Entry(final JAXBContext ctx) {
+            super();
+            this.ctx = ctx;
+            this.pool = new ConcurrentLinkedQueue<>();
+        }
+
+    }
+
+}
@@ -18,19 +18,26 @@
 package org.fuin.owndeb;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.validation.constraints.NotNull;
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.JAXBException;
-import javax.xml.bind.Unmarshaller;
-import javax.xml.bind.ValidationEvent;
-import javax.xml.bind.ValidationEventHandler;
 
 import org.fuin.objects4j.common.Contract;
+import org.fuin.owndeb.commons.AptRepository;
 import org.fuin.owndeb.commons.DebConfig;
 import org.fuin.owndeb.commons.DebPackage;
 import org.fuin.owndeb.commons.DebPackages;
+import org.fuin.owndeb.commons.DebUtils;
+import org.fuin.owndeb.commons.PathRegistry;
+import org.fuin.owndeb.commons.StageLimits;
+import org.fuin.owndeb.pkg.eclipseplugin.EclipsePluginPackage;
+import org.fuin.owndeb.pkg.eclipseplugin.P2Mirror;
 import org.fuin.owndeb.pkg.jdk.JdkPackage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -43,12 +50,31 @@ public final class OwnDeb {
 
     private static final Logger LOG = LoggerFactory.getLogger(OwnDeb.class);
 
-    private final DebConfig config;
+    private DebConfig config;
+
+    private final File configFile;
+
+    private final StreamingConfigLoader loader;
 
     private final File targetDir;
 
+    private final int threads;
+
+    private final boolean failOnConflict;
+
+    private AptRepository repository;
+
+    private P2Mirror p2Mirror;
+
+    private BuildManifest manifest;
+
+    private PackageSelector selector;
+
+    private StageLimits stageLimits;
+
     /**
-     * Constructor with configuration.
+     * Constructor with configuration. The number of threads is the number of
+     * available processors.
      * 
      * @param config
      *            Configuration.
@@ -56,11 +82,92 @@ public final class OwnDeb {
      *            Directory to create the packages inside.
      */
     public OwnDeb(@NotNull final DebConfig config, @NotNull final File targetDir) {
+        this(config, targetDir, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor with configuration and number of threads.
+     * 
+     * @param config
+     *            Configuration.
+     * @param targetDir
+     *            Directory to create the packages inside.
+     * @param threads
+     *            Maximum number of packages to create in parallel.
+     */
+    public OwnDeb(@NotNull final DebConfig config,
+            @NotNull final File targetDir, final int threads) {
+        this(config, targetDir, threads, true);
+    }
+
+    /**
+     * Constructor with all data.
+     * 
+     * @param config
+     *            Configuration.
+     * @param targetDir
+     *            Directory to create the packages inside.
+     * @param threads
+     *            Maximum number of packages to create in parallel.
+     * @param failOnConflict
+     *            TRUE if the build fails as soon as two packages install the
+     *            same path or FALSE if such conflicts are only reported.
+     */
+    public OwnDeb(@NotNull final DebConfig config,
+            @NotNull final File targetDir, final int threads,
+            final boolean failOnConflict) {
         super();
         Contract.requireArgNotNull("config", config);
         Contract.requireArgNotNull("targetDir", targetDir);
+        if (threads < 1) {
+            throw new IllegalArgumentException(
+                    "The argument 'threads' must be greater than zero, but was: "
+                            + threads);
+        }
         this.config = config;
+        this.configFile = null;
+        this.loader = null;
         this.targetDir = targetDir;
+        this.threads = threads;
+        this.failOnConflict = failOnConflict;
+    }
+
+    /**
+     * Constructor for streaming a large configuration file. The file is read
+     * by {@link #execute()} and packages are created as soon as they were read
+     * and their dependencies are known.
+     * 
+     * @param configFile
+     *            XML file.
+     * @param targetDir
+     *            Directory to create the packages inside.
+     * @param threads
+     *            Maximum number of packages to create in parallel.
+     * @param failOnConflict
+     *            TRUE if the build fails as soon as two packages install the
+     *            same path or FALSE if such conflicts are only reported.
+     * @param types
+     *            Known package types.
+     */
+    public OwnDeb(@NotNull final File configFile,
+            @NotNull final File targetDir, final int threads,
+            final boolean failOnConflict,
+            @NotNull final PackageTypeRegistry types) {
+        super();
+        Contract.requireArgNotNull("configFile", configFile);
+        Contract.requireArgNotNull("targetDir", targetDir);
+        Contract.requireArgNotNull("types", types);
+        if (threads < 1) {
+            throw new IllegalArgumentException(
+                    "The argument 'threads' must be greater than zero, but was: "
+                            + threads);
+        }
+        this.config = null;
+        this.configFile = configFile;
+        this.loader = new StreamingConfigLoader(types);
+        this.targetDir = targetDir;
+        this.threads = threads;
+        this.failOnConflict = failOnConflict;
     }
 
     /**
@@ -71,7 +178,8 @@ public final class OwnDeb {
      * @param targetDir
      *            Directory to create the packages inside.
      * @param jaxbClasses
-     *            Classes to bind to the JAXB context.
+     *            Classes to bind to the JAXB context in addition to the
+     *            built-in package types.
      */
     public OwnDeb(@NotNull final File configFile,
             @NotNull final File targetDir, final Class<?>...jaxbClasses) {
@@ -79,58 +187,346 @@ public final class OwnDeb {
     }
 
     /**
-     * Creates the packages defined in the configuration.
+     * Constructor with configuration file that uses a snapshot of the
+     * configuration if the file and it's includes did not change since the
+     * last run.
+     * 
+     * @param configFile
+     *            XML file.
+     * @param targetDir
+     *            Directory to create the packages inside.
+     * @param snapshot
+     *            Snapshots of already read configurations.
+     * @param jaxbClasses
+     *            Classes to bind to the JAXB context in addition to the
+     *            built-in package types.
+     */
+    public OwnDeb(@NotNull final File configFile,
+            @NotNull final File targetDir,
+            @NotNull final ConfigSnapshot snapshot,
+            final Class<?>... jaxbClasses) {
+        this(snapshot(snapshot, configFile, jaxbClasses), targetDir);
+    }
+
+    /**
+     * Creates the packages defined in the configuration. All packages
+     * (including the copies for different architectures) share one pool of
+     * worker threads. Paths installed by more than one package are detected
+     * while the packages are written. If the instance was created with a
+     * configuration file and a package type registry, the file is streamed and
+     * every package is submitted as soon as it's dependencies are known. If a
+     * package selector is set, only the selected packages are created (a
+     * streamed file is then read completely before the first package is
+     * submitted). If a
+     * build manifest is set, packages that are up to date are not created
+     * again and the repository is only updated if at least one package was
+     * created. The paths of skipped packages are registered from their
+     * contents files, so conflicts with them are still detected.
      */
     public final void execute() {
         LOG.info("Started creating packages");
-        final List<DebPackage> packages = config.getPackages().getPackages();
-        for (final DebPackage pkg : packages) {
-            LOG.info("Creating package: {}", pkg.getPackageName());
-            pkg.create(targetDir);
+        final PathRegistry registry = new PathRegistry(failOnConflict);
+        final AtomicInteger upToDate = new AtomicInteger();
+        final ExecutorService executor;
+        final List<Future<?>> futures = new ArrayList<>();
+        final List<DebPackage> selected = new ArrayList<>();
+        if (loader == null) {
+            selected.addAll(select(config.getPackages().getPackages()));
+            executor = Executors.newFixedThreadPool(Math.min(threads,
+                    Math.max(1, selected.size())));
+        } else {
+            executor = Executors.newFixedThreadPool(threads);
+        }
+        try {
+            if (loader == null) {
+                for (final DebPackage pkg : selected) {
+                    futures.add(submit(executor, registry, upToDate, pkg));
+                }
+            } else if (selector == null) {
+                config = loader.load(configFile,
+                        new StreamingConfigLoader.Listener() {
+                            @Override
+                            public void onPackage(final DebPackage pkg) {
+                                selected.add(pkg);
+                                futures.add(submit(executor, registry,
+                                        upToDate, pkg));
+                            }
+                        });
+            } else {
+                // Dependencies of a selected package may be read before it
+                final List<DebPackage> loaded = new ArrayList<>();
+                config = loader.load(configFile,
+                        new StreamingConfigLoader.Listener() {
+                            @Override
+                            public void onPackage(final DebPackage pkg) {
+                                loaded.add(pkg);
+                            }
+                        });
+                selected.addAll(selector.select(loaded));
+                for (final DebPackage pkg : selected) {
+                    futures.add(submit(executor, registry, upToDate, pkg));
+                }
+            }
+            for (final Future<?> future : futures) {
+                waitFor(future);
+            }
+        } finally {
+            executor.shutdownNow();
+            if (manifest != null) {
+                manifest.write();
+            }
+        }
+        final int created = futures.size() - upToDate.get();
+        if (manifest != null) {
+            LOG.info("{} package(s) created, {} package(s) up to date",
+                    created, upToDate.get());
+        }
+        if (created == 0 && manifest != null) {
+            LOG.info("All packages are up to date - Repository unchanged");
+            repository = new AptRepository(targetDir);
+        } else {
+            updateRepository(selected);
+        }
+        if (!registry.getConflicts().isEmpty()) {
+            LOG.warn("Found {} path(s) installed by more than one package",
+                    registry.getConflicts().size());
         }
         LOG.info("Finished creating packages");
     }
 
     /**
-     * Unmarshals the given file.
+     * Returns the configuration.
      * 
-     * @param configFile
-     *            XML file to read.
-     * @param jaxbClasses
-     *            Classes to add to the context.
+     * @return Configuration or <code>null</code> if a streamed configuration
+     *         file was not read yet.
+     */
+    public final DebConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Returns the local mirror for the P2 repositories of Eclipse plugin
+     * packages.
      * 
-     * @return Data.
+     * @return Mirror or <code>null</code> if the repositories are used
+     *         directly.
+     */
+    public final P2Mirror getP2Mirror() {
+        return p2Mirror;
+    }
+
+    /**
+     * Sets a local mirror for the P2 repositories of Eclipse plugin packages.
+     * The repositories are mirrored before a package is created and the
+     * package uses the "file:" URL of the mirror instead of the original
+     * repository.
      * 
-     * @param <T>
-     *            Type of the expected data.
+     * @param p2Mirror
+     *            Mirror or <code>null</code> if the repositories should be
+     *            used directly.
      */
-    @SuppressWarnings("unchecked")
-    private static <T> T unmarshal(final File configFile,
-            final Class<?>... jaxbClasses) {
-        Contract.requireArgNotNull("configFile", configFile);
-        try {
-            final JAXBContext ctx = JAXBContext.newInstance(jaxbClasses);
-            final Unmarshaller unmarshaller = ctx.createUnmarshaller();
-            unmarshaller.setEventHandler(new ValidationEventHandler() {
-                @Override
-                public boolean handleEvent(final ValidationEvent event) {
-                    if (event.getSeverity() > 0) {
-                        if (event.getLinkedException() == null) {
-                            throw new RuntimeException(
-                                    "Error unmarshalling the data: "
-                                            + event.getMessage());
-                        }
-                        throw new RuntimeException(
-                                "Error unmarshalling the data", event
-                                        .getLinkedException());
+    public final void setP2Mirror(final P2Mirror p2Mirror) {
+        this.p2Mirror = p2Mirror;
+    }
+
+    /**
+     * Returns the limits for parallel downloads and compressions.
+     * 
+     * @return Limits or <code>null</code> if only the number of packages
+     *         created in parallel is limited.
+     */
+    public final StageLimits getStageLimits() {
+        return stageLimits;
+    }
+
+    /**
+     * Sets the limits for parallel downloads and compressions. The limits are
+     * shared by all packages of this instance.
+     * 
+     * @param stageLimits
+     *            Limits or <code>null</code> if only the number of packages
+     *            created in parallel should be limited.
+     */
+    public final void setStageLimits(final StageLimits stageLimits) {
+        this.stageLimits = stageLimits;
+    }
+
+    /**
+     * Returns the selector for the packages to create.
+     * 
+     * @return Selector or <code>null</code> if all packages are created.
+     */
+    public final PackageSelector getSelector() {
+        return selector;
+    }
+
+    /**
+     * Sets a selector for the packages to create. Packages that are not
+     * selected are not created and not added to the repository.
+     * 
+     * @param selector
+     *            Selector or <code>null</code> if all packages should be
+     *            created.
+     */
+    public final void setSelector(final PackageSelector selector) {
+        this.selector = selector;
+    }
+
+    /**
+     * Returns the manifest used to skip packages that are up to date.
+     * 
+     * @return Manifest or <code>null</code> if all packages are always
+     *         created.
+     */
+    public final BuildManifest getManifest() {
+        return manifest;
+    }
+
+    /**
+     * Sets a manifest with the fingerprints of the package inputs. A package
+     * is only created if it's fingerprint changed since the last run or one
+     * of it's Debian files is missing. Packages that are not created are not
+     * checked for conflicting paths.
+     * 
+     * @param manifest
+     *            Manifest or <code>null</code> if all packages should always
+     *            be created.
+     */
+    public final void setManifest(final BuildManifest manifest) {
+        this.manifest = manifest;
+    }
+
+    /**
+     * Returns the repository inside the target directory that was updated by
+     * the last call to {@link #execute()}. It allows querying which package
+     * contains a file using {@link AptRepository#getPathIndex(String)}.
+     * 
+     * @return Repository or <code>null</code> if no packages were created
+     *         yet.
+     */
+    public final AptRepository getRepository() {
+        return repository;
+    }
+
+    /**
+     * Merges the index entries of the created packages into the flat apt
+     * repository inside the target directory.
+     * 
+     * @param packages
+     *            Packages created in this run.
+     */
+    private void updateRepository(final List<DebPackage> packages) {
+        repository = new AptRepository(targetDir);
+        for (final DebPackage pkg : packages) {
+            for (final String filename : pkg.getDebFilenames()) {
+                final File debFile = new File(targetDir, filename);
+                if (debFile.exists()) {
+                    repository.add(debFile);
+                } else {
+                    LOG.warn("Package was not created: {}", debFile);
+                }
+            }
+        }
+        repository.write();
+    }
+
+    private List<DebPackage> select(final List<DebPackage> packages) {
+        if (selector == null) {
+            return packages;
+        }
+        return selector.select(packages);
+    }
+
+    private Future<?> submit(final ExecutorService executor,
+            final PathRegistry registry, final AtomicInteger upToDate,
+            final DebPackage pkg) {
+        pkg.setPathRegistry(registry);
+        pkg.setStageLimits(stageLimits);
+        return executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                String fingerprint = null;
+                if (manifest != null) {
+                    fingerprint = manifest.fingerprint(pkg);
+                    if (manifest.isUpToDate(pkg, fingerprint)) {
+                        LOG.info("Package is up to date: {} ({})",
+                                pkg.getName(), pkg.getArch());
+                        registerContents(registry, pkg);
+                        upToDate.incrementAndGet();
+                        return;
                     }
-                    return true;
+                    LOG.info("Package is outdated: {} ({})", pkg.getName(),
+                            pkg.getArch());
+                }
+                LOG.info("Creating package: {} ({})", pkg.getPackageName(),
+                        pkg.getArch());
+                if (p2Mirror != null && pkg instanceof EclipsePluginPackage) {
+                    ((EclipsePluginPackage) pkg).useMirror(p2Mirror);
                 }
-            });
-            return (T) unmarshaller.unmarshal(configFile);
-        } catch (final JAXBException ex) {
-            throw new RuntimeException("Error unmarshalling test data", ex);
+                pkg.create(targetDir);
+                if (fingerprint != null) {
+                    manifest.put(pkg, fingerprint);
+                }
+            }
+        });
+    }
+
+    private void registerContents(final PathRegistry registry,
+            final DebPackage pkg) {
+        for (final String filename : pkg.getDebFilenames()) {
+            final List<String> paths = DebUtils.readContents(new File(
+                    targetDir, filename));
+            // Debian package names cannot contain an underscore
+            final String owner = filename.substring(0, filename.indexOf('_'));
+            for (final String path : paths) {
+                registry.register(pkg.getArch(), path, owner);
+            }
+        }
+    }
+
+    private static void waitFor(final Future<?> future) {
+        try {
+            future.get();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted creating packages", ex);
+        } catch (final ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException("Error creating packages", cause);
         }
     }
 
+    private static DebConfig snapshot(final ConfigSnapshot snapshot,
+            final File configFile, final Class<?>... jaxbClasses) {
+        Contract.requireArgNotNull("snapshot", snapshot);
+        return snapshot.load(configFile, jaxbClasses);
+    }
+
+    /**
+     * Reads a configuration file including all files it includes.
+     * 
+     * @param configFile
+     *            XML file.
+     * @param jaxbClasses
+     *            Classes to bind to the JAXB context in addition to the
+     *            built-in package types.
+     * 
+     * @return Initialized configuration.
+     */
+    public static DebConfig unmarshal(@NotNull final File configFile,
+            final Class<?>... jaxbClasses) {
+        Contract.requireArgNotNull("configFile", configFile);
+        final DebConfig config = JaxbCache.unmarshal(configFile, jaxbClasses);
+        new IncludeLoader(Runtime.getRuntime().availableProcessors(),
+                jaxbClasses).load(config, configFile.getAbsoluteFile()
+                .getParentFile());
+        return config;
+    }
+
 }
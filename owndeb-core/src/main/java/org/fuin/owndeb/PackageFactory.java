@@ -0,0 +1,48 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.owndeb;
+
+import javax.validation.constraints.NotNull;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.fuin.owndeb.commons.DebPackage;
+
+/**
+ * Creates a package from the XML element of a package type.
+ */
+public interface PackageFactory {
+
+    /**
+     * Reads a package. The reader is positioned on the start element of the
+     * package. Afterwards it has to be positioned on the event that follows
+     * the end element.
+     * 
+     * @param reader
+     *            Reader to use.
+     * 
+     * @return New, not yet initialized package.
+     * 
+     * @throws XMLStreamException
+     *             Error reading the element.
+     */
+    @NotNull
+    public DebPackage create(@NotNull XMLStreamReader reader)
+            throws XMLStreamException;
+
+}
@@ -0,0 +1,176 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.owndeb;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.StringTokenizer;
+
+import javax.validation.constraints.NotNull;
+
+import org.apache.tools.ant.types.selectors.SelectorUtils;
+import org.fuin.objects4j.common.Contract;
+import org.fuin.objects4j.common.Nullable;
+import org.fuin.owndeb.commons.DebDependency;
+import org.fuin.owndeb.commons.DebPackage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Selects packages by name. Includes and excludes are comma or space
+ * separated lists of names that may contain the wildcards '*' and '?'. A
+ * package is also selected if one of the Debian packages it creates matches
+ * (for example a split of a split package). All
+ * packages the selected ones depend on (directly or indirectly) are selected
+ * as well, even if they are excluded.
+ */
+public final class PackageSelector {
+
+    private static final Logger LOG = LoggerFactory
+            .getLogger(PackageSelector.class);
+
+    private final List<String> includes;
+
+    private final List<String> excludes;
+
+    /**
+     * Constructor with all data.
+     * 
+     * @param includes
+     *            Names of the packages to select or <code>null</code> to
+     *            select all packages.
+     * @param excludes
+     *            Names of the packages not to select or <code>null</code> to
+     *            exclude nothing.
+     */
+    public PackageSelector(@Nullable final String includes,
+            @Nullable final String excludes) {
+        super();
+        this.includes = patterns(includes);
+        this.excludes = patterns(excludes);
+    }
+
+    /**
+     * Returns if a package name is selected by the includes and excludes.
+     * Dependencies are not taken into account.
+     * 
+     * @param name
+     *            Package name.
+     * 
+     * @return TRUE if the name is included and not excluded.
+     */
+    public final boolean matches(@NotNull final String name) {
+        Contract.requireArgNotNull("name", name);
+        return (includes.isEmpty() || matchesAny(includes, name))
+                && !matchesAny(excludes, name);
+    }
+
+    /**
+     * Selects packages and the packages they depend on. The dependencies of
+     * the packages must already be resolved.
+     * 
+     * @param packages
+     *            Packages to select from.
+     * 
+     * @return Selected packages in the original order.
+     * 
+     * @throws IllegalArgumentException
+     *             Includes are defined but no package matches them.
+     */
+    @NotNull
+    public final List<DebPackage> select(
+            @NotNull final List<DebPackage> packages) {
+        Contract.requireArgNotNull("packages", packages);
+
+        final Set<String> names = new HashSet<>();
+        final Deque<DebPackage> work = new ArrayDeque<>();
+        for (final DebPackage pkg : packages) {
+            if (matches(pkg)) {
+                names.add(pkg.getName());
+                work.add(pkg);
+            }
+        }
+        if (names.isEmpty() && !includes.isEmpty()) {
+            throw new IllegalArgumentException("No package matches: "
+                    + includes);
+        }
+        final Set<String> selected = new HashSet<>(names);
+        while (!work.isEmpty()) {
+            final List<DebDependency> dependencies = work.removeFirst()
+                    .getDependencies();
+            if (dependencies != null) {
+                for (final DebDependency dependency : dependencies) {
+                    final DebPackage resolved = dependency
+                            .getResolvedDependency();
+                    if (resolved != null && names.add(resolved.getName())) {
+                        work.add(resolved);
+                    }
+                }
+            }
+        }
+
+        final List<DebPackage> result = new ArrayList<>();
+        for (final DebPackage pkg : packages) {
+            if (names.contains(pkg.getName())) {
+                result.add(pkg);
+            }
+        }
+        names.removeAll(selected);
+        LOG.info("Selected {} of {} package(s) - Added dependencies: {}",
+                result.size(), packages.size(), names);
+        return result;
+    }
+
+    private boolean matches(final DebPackage pkg) {
+        if (matches(pkg.getName())) {
+            return true;
+        }
+        for (final String debName : pkg.getDebNames()) {
+            if (matches(debName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matchesAny(final List<String> patterns,
+            final String name) {
+        for (final String pattern : patterns) {
+            if (SelectorUtils.match(pattern, name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<String> patterns(final String str) {
+        final List<String> list = new ArrayList<>();
+        if (str != null) {
+            final StringTokenizer tok = new StringTokenizer(str, ", ");
+            while (tok.hasMoreTokens()) {
+                list.add(tok.nextToken());
+            }
+        }
+        return list;
+    }
+
+}
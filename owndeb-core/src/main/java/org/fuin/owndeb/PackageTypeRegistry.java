@@ -0,0 +1,126 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.owndeb;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.validation.constraints.NotNull;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.stream.XMLStreamReader;
+
+import org.fuin.objects4j.common.Contract;
+import org.fuin.objects4j.common.NotEmpty;
+import org.fuin.objects4j.common.Nullable;
+import org.fuin.owndeb.commons.DebPackage;
+import org.fuin.owndeb.pkg.eclipse.EclipsePackage;
+import org.fuin.owndeb.pkg.eclipseplugin.EclipsePluginPackage;
+import org.fuin.owndeb.pkg.example.ExamplePackage;
+import org.fuin.owndeb.pkg.jdk.JdkPackage;
+import org.fuin.owndeb.pkg.split.SplitPackage;
+
+/**
+ * Maps the XML element names of package types to the factories that create
+ * them. Thread safe.
+ */
+public final class PackageTypeRegistry {
+
+    private final Map<String, PackageFactory> factories;
+
+    /**
+     * Default constructor that registers the built-in package types.
+     */
+    public PackageTypeRegistry() {
+        super();
+        factories = new ConcurrentHashMap<>();
+        register(JdkPackage.class);
+        register(EclipsePackage.class);
+        register(EclipsePluginPackage.class);
+        register(SplitPackage.class);
+        register(ExamplePackage.class);
+    }
+
+    /**
+     * Registers a factory for an element name. An existing factory for the
+     * same name is replaced.
+     * 
+     * @param elementName
+     *            Name of the XML element like "jdk-package".
+     * @param factory
+     *            Factory to use.
+     */
+    public final void register(@NotEmpty final String elementName,
+            @NotNull final PackageFactory factory) {
+        Contract.requireArgNotEmpty("elementName", elementName);
+        Contract.requireArgNotNull("factory", factory);
+        factories.put(elementName, factory);
+    }
+
+    /**
+     * Registers a package class that is read with JAXB. The element name is
+     * taken from the {@link XmlRootElement} annotation.
+     * 
+     * @param clasz
+     *            Package class to register.
+     */
+    public final void register(
+            @NotNull final Class<? extends DebPackage> clasz) {
+        Contract.requireArgNotNull("clasz", clasz);
+        final XmlRootElement root = clasz.getAnnotation(XmlRootElement.class);
+        if (root == null) {
+            throw new IllegalArgumentException("Class has no @"
+                    + XmlRootElement.class.getSimpleName() + " annotation: "
+                    + clasz.getName());
+        }
+        register(root.name(), new JaxbPackageFactory(clasz));
+    }
+
+    /**
+     * Returns the factory for an element name.
+     * 
+     * @param elementName
+     *            Name of the XML element like "jdk-package".
+     * 
+     * @return Factory or <code>null</code> if the name is unknown.
+     */
+    @Nullable
+    public final PackageFactory get(@NotNull final String elementName) {
+        Contract.requireArgNotNull("elementName", elementName);
+        return factories.get(elementName);
+    }
+
+    /**
+     * Reads a package element with JAXB.
+     */
+    private static final class JaxbPackageFactory implements PackageFactory {
+
+        private final Class<? extends DebPackage> clasz;
+
+        public JaxbPackageFactory(final Class<? extends DebPackage> clasz) {
+            super();
+            this.clasz = clasz;
+        }
+
+        @Override
+        public final DebPackage create(final XMLStreamReader reader) {
+            return JaxbCache.unmarshal(reader, clasz, clasz);
+        }
+
+    }
+
+}
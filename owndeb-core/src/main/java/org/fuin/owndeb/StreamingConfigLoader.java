@@ -0,0 +1,370 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.owndeb;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.validation.constraints.NotNull;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.fuin.objects4j.common.Contract;
+import org.fuin.owndeb.commons.DebConfig;
+import org.fuin.owndeb.commons.DebDependency;
+import org.fuin.owndeb.commons.DebPackage;
+import org.fuin.owndeb.commons.DebPackages;
+import org.fuin.owndeb.commons.PackageIndex;
+import org.fuin.owndeb.commons.Variable;
+import org.fuin.owndeb.commons.VariableLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads a configuration in a single forward pass using StAX instead of
+ * unmarshalling the whole document at once. Package elements are created by
+ * the factories of a {@link PackageTypeRegistry}, so new package types don't
+ * have to be bound to a JAXB context. Every package is handed to a listener as
+ * soon as all packages it depends on were read. This allows creating the
+ * first packages while the rest of the configuration is still parsed.<br>
+ * <br>
+ * Restrictions compared to reading with JAXB: The global "variables" have to
+ * be defined before the "packages" element and the variables of the
+ * "packages" element have to be defined before the first package.
+ */
+public final class StreamingConfigLoader {
+
+    private static final Logger LOG = LoggerFactory
+            .getLogger(StreamingConfigLoader.class);
+
+    private static final String ROOT = "owndeb-config";
+
+    private static final String VARIABLES = "variables";
+
+    private static final String VARIABLE = "variable";
+
+    private static final String PACKAGES = "packages";
+
+    private final PackageTypeRegistry registry;
+
+    /**
+     * Constructor with the built-in package types.
+     */
+    public StreamingConfigLoader() {
+        this(new PackageTypeRegistry());
+    }
+
+    /**
+     * Constructor with registry.
+     * 
+     * @param registry
+     *            Known package types.
+     */
+    public StreamingConfigLoader(@NotNull final PackageTypeRegistry registry) {
+        super();
+        Contract.requireArgNotNull("registry", registry);
+        this.registry = registry;
+    }
+
+    /**
+     * Reads a configuration file.
+     * 
+     * @param file
+     *            XML file to read.
+     * @param listener
+     *            Receives every package (including the copies for different
+     *            architectures) as soon as it's initialized and it's
+     *            dependencies are resolved. Called in the thread that reads
+     *            the file.
+     * 
+     * @return Configuration with all packages.
+     * 
+     * @throws IllegalStateException
+     *             The file contains unknown elements or a dependency could
+     *             not be resolved.
+     */
+    @NotNull
+    public final DebConfig load(@NotNull final File file,
+            @NotNull final Listener listener) {
+        Contract.requireArgNotNull("file", file);
+        Contract.requireArgNotNull("listener", listener);
+        try {
+            final InputStream in = new BufferedInputStream(new FileInputStream(
+                    file));
+            try {
+                final XMLInputFactory factory = XMLInputFactory.newInstance();
+                factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+                factory.setProperty(
+                        XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+                final XMLStreamReader reader = factory
+                        .createXMLStreamReader(in);
+                try {
+                    return new Run(listener).read(reader);
+                } finally {
+                    reader.close();
+                }
+            } finally {
+                in.close();
+            }
+        } catch (final IOException | XMLStreamException ex) {
+            throw new RuntimeException("Error reading configuration: " + file,
+                    ex);
+        }
+    }
+
+    /**
+     * Moves the reader to the next start or end element.
+     */
+    private static int nextTag(final XMLStreamReader reader)
+            throws XMLStreamException {
+        int event = reader.getEventType();
+        while (event != XMLStreamConstants.START_ELEMENT
+                && event != XMLStreamConstants.END_ELEMENT
+                && event != XMLStreamConstants.END_DOCUMENT) {
+            event = reader.next();
+        }
+        return event;
+    }
+
+    private static String attr(final XMLStreamReader reader, final String name) {
+        return reader.getAttributeValue(null, name);
+    }
+
+    /**
+     * Receives the packages while the configuration is read.
+     */
+    public static interface Listener {
+
+        /**
+         * Called for every package that is ready to be created.
+         * 
+         * @param pkg
+         *            Initialized package with resolved dependencies.
+         */
+        public void onPackage(@NotNull DebPackage pkg);
+
+    }
+
+    /**
+     * State of reading one file.
+     */
+    private final class Run {
+
+        private final Listener listener;
+
+        private final List<Variable> variables;
+
+        private final PackageIndex ready;
+
+        private final Map<String, List<DebPackage>> waiting;
+
+        private DebConfig config;
+
+        private DebPackages packages;
+
+        private boolean packageRead;
+
+        public Run(final Listener listener) {
+            super();
+            this.listener = listener;
+            this.variables = new ArrayList<>();
+            this.ready = new PackageIndex();
+            this.waiting = new HashMap<>();
+        }
+
+        public DebConfig read(final XMLStreamReader reader)
+                throws XMLStreamException {
+            if (nextTag(reader) != XMLStreamConstants.START_ELEMENT
+                    || !ROOT.equals(reader.getLocalName())) {
+                throw new IllegalStateException("Expected root element '"
+                        + ROOT + "'");
+            }
+            reader.next();
+            while (nextTag(reader) == XMLStreamConstants.START_ELEMENT) {
+                final String element = reader.getLocalName();
+                if (VARIABLES.equals(element) && packages == null) {
+                    readVariables(reader);
+                } else if (PACKAGES.equals(element) && packages == null) {
+                    readPackages(reader);
+                } else {
+                    throw new IllegalStateException("Unexpected element '"
+                            + element + "' inside '" + ROOT + "'");
+                }
+            }
+            if (packages == null) {
+                throw new IllegalStateException("Missing element '" + PACKAGES
+                        + "'");
+            }
+            failOnWaiting();
+            return config;
+        }
+
+        private void readVariables(final XMLStreamReader reader)
+                throws XMLStreamException {
+            reader.next();
+            while (nextTag(reader) == XMLStreamConstants.START_ELEMENT) {
+                variables.add(readVariable(reader));
+            }
+            reader.next();
+        }
+
+        private Variable readVariable(final XMLStreamReader reader) {
+            if (!VARIABLE.equals(reader.getLocalName())) {
+                throw new IllegalStateException("Expected element '" + VARIABLE
+                        + "', but was: '" + reader.getLocalName() + "'");
+            }
+            return JaxbCache.unmarshal(reader, Variable.class);
+        }
+
+        private void readPackages(final XMLStreamReader reader)
+                throws XMLStreamException {
+            packages = new DebPackages(attr(reader, "version"), attr(reader,
+                    "description"), attr(reader, "maintainer"), attr(reader,
+                    "arch"), attr(reader, "installation-path"), attr(reader,
+                    "section"), attr(reader, "priority"));
+            final List<Variable> packagesVariables = new ArrayList<>();
+            reader.next();
+            while (nextTag(reader) == XMLStreamConstants.START_ELEMENT) {
+                final String element = reader.getLocalName();
+                if (VARIABLE.equals(element)) {
+                    if (packageRead) {
+                        throw new IllegalStateException("Element '" + VARIABLE
+                                + "' inside '" + PACKAGES
+                                + "' must be defined before the first package");
+                    }
+                    final Variable var = readVariable(reader);
+                    packages.addConfiguredVariable(var);
+                    packagesVariables.add(var);
+                } else {
+                    if (!packageRead) {
+                        start(packagesVariables);
+                    }
+                    readPackage(reader, element);
+                }
+            }
+            if (!packageRead) {
+                start(packagesVariables);
+            }
+            reader.next();
+        }
+
+        private void start(final List<Variable> packagesVariables) {
+            packageRead = true;
+            final List<Variable> all = new ArrayList<>(variables);
+            all.addAll(packagesVariables);
+            new VariableLoader().load(all);
+            config = new DebConfig(packages, variables);
+            packages.init(config);
+        }
+
+        private void readPackage(final XMLStreamReader reader,
+                final String element) throws XMLStreamException {
+            final PackageFactory factory = registry.get(element);
+            if (factory == null) {
+                throw new IllegalStateException("Unknown package type: '"
+                        + element + "'");
+            }
+            final DebPackage pkg = factory.create(reader);
+            offer(packages.addPackage(pkg));
+        }
+
+        /**
+         * Hands all packages to the listener whose dependencies are known.
+         * The others have to wait. Copies of a package for different
+         * architectures are all indexed before any waiting package is
+         * resolved, so the copy with the same architecture can be chosen.
+         */
+        private void offer(final List<DebPackage> candidates) {
+            final List<DebPackage> added = new ArrayList<>();
+            for (final DebPackage pkg : candidates) {
+                final String missing = missingDependency(pkg);
+                if (missing == null) {
+                    ready.add(pkg);
+                    added.add(pkg);
+                } else {
+                    List<DebPackage> list = waiting.get(missing);
+                    if (list == null) {
+                        list = new ArrayList<>();
+                        waiting.put(missing, list);
+                    }
+                    list.add(pkg);
+                }
+            }
+            final List<DebPackage> released = new ArrayList<>();
+            for (final DebPackage pkg : added) {
+                pkg.resolveDependencies(ready);
+                LOG.debug("Package ready: {} ({})", pkg.getName(),
+                        pkg.getArch());
+                listener.onPackage(pkg);
+                for (final String name : pkg.getDebNames()) {
+                    release(name, released);
+                }
+                for (final String alias : pkg.getAliases()) {
+                    release(alias, released);
+                }
+                for (final String virtualName : pkg.getDebProvides()) {
+                    release(virtualName, released);
+                }
+            }
+            if (!released.isEmpty()) {
+                offer(released);
+            }
+        }
+
+        private String missingDependency(final DebPackage pkg) {
+            final List<DebDependency> dependencies = pkg.getDependencies();
+            if (dependencies != null) {
+                for (final DebDependency dependency : dependencies) {
+                    if (ready.findDebPackage(dependency.getName()) == null) {
+                        return dependency.getName();
+                    }
+                }
+            }
+            return null;
+        }
+
+        private void release(final String name, final List<DebPackage> released) {
+            final List<DebPackage> list = waiting.remove(name);
+            if (list != null) {
+                released.addAll(list);
+            }
+        }
+
+        private void failOnWaiting() {
+            if (!waiting.isEmpty()) {
+                final Map.Entry<String, List<DebPackage>> entry = waiting
+                        .entrySet().iterator().next();
+                throw new IllegalStateException(
+                        "Unresolved dependency from package '"
+                                + entry.getValue().get(0).getName() + "' to '"
+                                + entry.getKey() + "'");
+            }
+        }
+
+    }
+
+}
@@ -17,9 +17,11 @@
  */
 package org.fuin.owndeb.commons;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import javax.validation.constraints.NotNull;
 import javax.xml.bind.annotation.XmlAttribute;
@@ -29,9 +31,14 @@ import org.fuin.objects4j.common.Contract;
 import org.fuin.objects4j.common.Nullable;
 
 /**
- * Provides default configuration for sub classes.
+ * Provides default configuration for sub classes. Every instance is a
+ * variable scope that only holds it's own variables and delegates lookups of
+ * all others to the parent scope (config, packages, package).
  */
-public abstract class AbstractBase implements VariablesContainer {
+public abstract class AbstractBase implements VariablesContainer, Cloneable,
+        Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private static final String PRIORITY = "priority";
 
@@ -63,6 +70,8 @@ public abstract class AbstractBase implements VariablesContainer {
 
     private transient VariablesContainer parent;
 
+    private transient VariableGraph graph;
+
     /**
      * Default constructor.
      */
@@ -158,22 +167,54 @@ public abstract class AbstractBase implements VariablesContainer {
 
     @Override
     public final List<Variable> getVariables() {
-        if (variables == null) {
+        final Map<String, String> visible = graph().getResolved();
+        if (visible.isEmpty()) {
             return null;
         }
-        return Collections.unmodifiableList(variables);
+        final List<Variable> list = new ArrayList<>(visible.size());
+        for (final Map.Entry<String, String> entry : visible.entrySet()) {
+            list.add(new Variable(entry.getKey(), entry.getValue()));
+        }
+        return Collections.unmodifiableList(list);
     }
 
     @Override
     public final String variableValue(final String name) {
+        return graph().get(name);
+    }
+
+    @Override
+    public final VariableGraph getVariableGraph() {
+        return graph();
+    }
+
+    /**
+     * Adds a variable to the configuration of this scope. This is only useful
+     * before the instance is initialized, for example when the configuration
+     * is not read with JAXB.
+     * 
+     * @param var
+     *            Variable to add.
+     */
+    public final void addConfiguredVariable(@NotNull final Variable var) {
+        Contract.requireArgNotNull("var", var);
         if (variables == null) {
-            return null;
+            variables = new ArrayList<>();
         }
-        final int idx = variables.indexOf(new Variable(name, ""));
-        if (idx < 0) {
-            return null;
+        variables.add(var);
+        if (graph != null) {
+            graph.put(var);
         }
-        return variables.get(idx).getValue();
+    }
+
+    /**
+     * Returns the variables defined in the configuration of this scope.
+     * 
+     * @return Configured variables or <code>null</code>.
+     */
+    @Nullable
+    final List<Variable> getConfiguredVariables() {
+        return variables;
     }
 
     /**
@@ -187,8 +228,11 @@ public abstract class AbstractBase implements VariablesContainer {
     }
 
     /**
-     * Adds a variable if the given value is not <code>null</code>. Any existing
-     * variable with the same name will be replaced.
+     * Adds a variable to this scope if the given value is not
+     * <code>null</code>. Any existing variable with the same name in this
+     * scope will be replaced and variables with the same name in the parent
+     * scopes are hidden. Only the variables that depend on the given one will
+     * be resolved again.
      * 
      * @param name
      *            Name of the variable to add.
@@ -199,50 +243,87 @@ public abstract class AbstractBase implements VariablesContainer {
             @Nullable final String value) {
         Contract.requireArgNotNull("name", name);
         if (value != null) {
-            if (variables == null) {
-                variables = new ArrayList<>();
-            }
-            final Variable var = new Variable(name, value);
-            final int idx = variables.indexOf(var);
-            if (idx < 0) {
-                variables.add(var);
-            } else {
-                variables.set(idx, var);
-            }
+            graph().put(new Variable(name, value));
         }
     }
 
     /**
-     * Add some variables and ignores duplicates.
+     * Creates a shallow copy of the not yet initialized instance that uses a
+     * different architecture. The variables are copied, so the copy can be
+     * initialized independently from the original.
      * 
-     * @param container
-     *            Container with variables that will only be added if they are
-     *            not in the list yet.
+     * @param arch
+     *            Architecture identifier like "amd64".
+     * 
+     * @return New instance.
      */
-    protected final void addNonExistingVariables(
-            @Nullable final VariablesContainer container) {
-        if (container == null) {
-            return;
-        }
-        final List<Variable> varsToAdd = container.getVariables();
-        if (varsToAdd == null) {
-            return;
-        }
-        if (variables == null) {
-            variables = new ArrayList<>();
-        }
-        for (final Variable var : varsToAdd) {
-            if (!variables.contains(var)) {
-                variables.add(var);
+    protected final AbstractBase copyWithArch(@NotNull final String arch) {
+        Contract.requireArgNotNull("arch", arch);
+        final AbstractBase copy = copyBase();
+        copy.arch = arch;
+        return copy;
+    }
+
+    /**
+     * Creates a shallow copy of the not yet initialized instance. The
+     * variables are copied, so the copy can be initialized independently from
+     * the original.
+     * 
+     * @return New instance.
+     */
+    protected final AbstractBase copyBase() {
+        try {
+            final AbstractBase copy = (AbstractBase) super.clone();
+            if (variables != null) {
+                copy.variables = new ArrayList<>(variables);
+            }
+            if (graph != null) {
+                copy.graph = graph.copy();
             }
+            return copy;
+        } catch (final CloneNotSupportedException ex) {
+            throw new IllegalStateException("Failed to copy: " + this, ex);
         }
     }
 
     /**
-     * Resolves all variable references in the variable values.
+     * Resolves all variable references in the variables of this scope that are
+     * not yet up to date. Variables of the parent scopes are only resolved
+     * again in this scope if they reference a variable defined here. As
+     * unchanged variables are never resolved twice, it's cheap to call this
+     * method multiple times.
+     * 
+     * @throws IllegalStateException
+     *             A variable references itself directly or indirectly.
      */
     protected final void resolveVariables() {
-        variables = DebUtils.resolve(variables);
+        graph().resolve();
+    }
+
+    /**
+     * Returns the variable graph of this scope. It is created from the
+     * configured variables on first access.
+     * 
+     * @return Variable graph.
+     */
+    private VariableGraph graph() {
+        if (graph == null) {
+            final VariableGraph newGraph = new VariableGraph(parentGraph());
+            if (variables != null) {
+                for (final Variable var : variables) {
+                    newGraph.put(var);
+                }
+            }
+            graph = newGraph;
+        }
+        return graph;
+    }
+
+    private VariableGraph parentGraph() {
+        if (parent == null) {
+            return null;
+        }
+        return parent.getVariableGraph();
     }
 
     /**
@@ -253,6 +334,7 @@ public abstract class AbstractBase implements VariablesContainer {
      */
     public final void initBase(@Nullable final VariablesContainer parent) {
         this.parent = parent;
+        graph().setParent(parentGraph());
         addOrReplaceVariable(MAINTAINER, maintainer);
         addOrReplaceVariable(ARCH, arch);
         addOrReplaceVariable(INSTALLATION_PATH, installationPath);
@@ -26,6 +26,8 @@ import org.fuin.objects4j.common.Nullable;
  */
 public abstract class AbstractPackage extends AbstractBase {
 
+    private static final long serialVersionUID = 1L;
+
     private static final String DESCRIPTION = "description";
 
     private static final String VERSION = "version";
@@ -0,0 +1,691 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.owndeb.commons;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import javax.validation.constraints.NotNull;
+
+import org.apache.commons.compress.archivers.ar.ArArchiveEntry;
+import org.apache.commons.compress.archivers.ar.ArArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.fuin.objects4j.common.Contract;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Flat apt repository inside a directory that contains binary Debian packages.
+ * The existing 'Packages' index is loaded and only the stanzas of added
+ * packages are replaced. The checksums of a package are taken from the
+ * '.changes' file that was written together with the package, and the control
+ * fields are read from the small control member at the start of the package.
+ * The (possibly large) data member of a package is never read. Stanzas of
+ * packages that no longer exist in the directory are dropped. A
+ * 'Contents-&lt;arch&gt;.gz' file and a {@link PathIndex} per architecture are
+ * created from the path lists recorded while the packages were written. Both
+ * are only rebuilt for architectures with added packages since the last
+ * write.
+ */
+public final class AptRepository {
+
+    private static final Logger LOG = LoggerFactory
+            .getLogger(AptRepository.class);
+
+    /** Name of the uncompressed package index. */
+    public static final String PACKAGES = "Packages";
+
+    /** Name of the compressed package index. */
+    public static final String PACKAGES_GZ = "Packages.gz";
+
+    /** Prefix of the contents files (followed by "-" and the architecture). */
+    public static final String CONTENTS = "Contents";
+
+    /** Name of the release file. */
+    public static final String RELEASE = "Release";
+
+    private static final Charset UTF8 = Charset.forName("utf-8");
+
+    private static final String FILENAME = "Filename";
+
+    private static final String ARCHITECTURE = "Architecture";
+
+    private static final String MD5 = "MD5";
+
+    private static final String SHA1 = "SHA-1";
+
+    private static final String SHA256 = "SHA-256";
+
+    private final File dir;
+
+    private final Map<String, Map<String, String>> stanzas;
+
+    private final Map<String, PathIndex> pathIndexes;
+
+    private final Map<String, Checksums> contentsChecksums;
+
+    private final Set<String> changedArchs;
+
+    /**
+     * Constructor with repository directory. An existing 'Packages' file is
+     * loaded.
+     *
+     * @param dir
+     *            Directory with the Debian packages and the index files.
+     */
+    public AptRepository(@NotNull final File dir) {
+        super();
+        Contract.requireArgNotNull("dir", dir);
+        this.dir = dir;
+        this.stanzas = new TreeMap<>();
+        this.pathIndexes = new TreeMap<>();
+        this.contentsChecksums = new HashMap<>();
+        this.changedArchs = new HashSet<>();
+        load();
+    }
+
+    /**
+     * Adds a Debian package or replaces the existing entry with the same file
+     * name. The package must be located inside the repository directory.
+     *
+     * @param debFile
+     *            Debian package to add.
+     */
+    public final synchronized void add(@NotNull final File debFile) {
+        Contract.requireArgNotNull("debFile", debFile);
+        if (!debFile.getParentFile().getAbsoluteFile().toURI()
+                .equals(dir.getAbsoluteFile().toURI())) {
+            throw new IllegalArgumentException("Package '" + debFile
+                    + "' is not inside the repository directory: " + dir);
+        }
+        final Map<String, String> stanza = readControl(debFile);
+        stanza.put(FILENAME, debFile.getName());
+        addChecksums(debFile, stanza);
+        final Map<String, String> replaced = stanzas.put(debFile.getName(),
+                stanza);
+        changedArchs.add(stanza.get(ARCHITECTURE));
+        if (replaced != null) {
+            changedArchs.add(replaced.get(ARCHITECTURE));
+        }
+        LOG.debug("Added to repository: {}", debFile.getName());
+    }
+
+    /**
+     * Returns the file names of all packages in the index.
+     *
+     * @return Sorted file names.
+     */
+    public final synchronized Set<String> getFilenames() {
+        return new TreeSet<>(stanzas.keySet());
+    }
+
+    /**
+     * Returns the index entry for a package.
+     *
+     * @param filename
+     *            File name of the package.
+     *
+     * @return Copy of the fields or <code>null</code> if the package is
+     *         unknown.
+     */
+    public final synchronized Map<String, String> getStanza(
+            @NotNull final String filename) {
+        final Map<String, String> stanza = stanzas.get(filename);
+        if (stanza == null) {
+            return null;
+        }
+        return new LinkedHashMap<>(stanza);
+    }
+
+    /**
+     * Returns the path index for an architecture created by the last call to
+     * {@link #write()}.
+     *
+     * @param arch
+     *            Architecture like "amd64".
+     *
+     * @return Index with "section/name" of the packages or <code>null</code>
+     *         if there is no package for the architecture.
+     */
+    public final synchronized PathIndex getPathIndex(
+            @NotNull final String arch) {
+        return pathIndexes.get(arch);
+    }
+
+    /**
+     * Writes the 'Packages', 'Packages.gz', 'Contents-&lt;arch&gt;.gz' and
+     * 'Release' files. The checksums for the release file are calculated
+     * while writing the index files.
+     */
+    public final synchronized void write() {
+        final byte[] packages = asString(stanzas.values()).getBytes(UTF8);
+        final Map<String, String> release = new LinkedHashMap<>();
+        release.put("Origin", "owndeb");
+        release.put("Label", "owndeb");
+        final SimpleDateFormat format = new SimpleDateFormat(
+                "EEE, dd MMM yyyy HH:mm:ss 'UTC'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        release.put("Date", format.format(new Date()));
+        release.put("Architectures", architectures());
+        final List<Checksums> checksums = new ArrayList<>();
+        checksums.add(writeFile(PACKAGES, packages, false));
+        checksums.add(writeFile(PACKAGES_GZ, packages, true));
+        buildPathIndexes();
+        for (final Map.Entry<String, PathIndex> entry : pathIndexes
+                .entrySet()) {
+            final String arch = entry.getKey();
+            Checksums contents = contentsChecksums.get(arch);
+            if (contents == null) {
+                final PathIndex index = entry.getValue();
+                contents = writeFile(CONTENTS + "-" + arch + ".gz",
+                        new Content() {
+                            @Override
+                            public void write(final OutputStream out)
+                                    throws IOException {
+                                final Writer writer = new OutputStreamWriter(
+                                        out, UTF8);
+                                index.writeContents(writer);
+                                writer.flush();
+                            }
+                        }, true);
+                contentsChecksums.put(arch, contents);
+            }
+            checksums.add(contents);
+        }
+        release.put("MD5Sum", checksumLines(checksums, 0));
+        release.put("SHA1", checksumLines(checksums, 1));
+        release.put("SHA256", checksumLines(checksums, 2));
+        writeFile(RELEASE, asString(release).getBytes(UTF8), false);
+        LOG.info("Wrote repository index with {} package(s): {}",
+                stanzas.size(), dir);
+    }
+
+    private void load() {
+        final File file = new File(dir, PACKAGES);
+        if (!file.exists()) {
+            return;
+        }
+        try {
+            final Reader reader = new InputStreamReader(new FileInputStream(
+                    file), UTF8);
+            try {
+                for (final Map<String, String> stanza : parse(reader)) {
+                    final String filename = stanza.get(FILENAME);
+                    if (filename != null
+                            && new File(dir, filename).exists()) {
+                        stanzas.put(filename, stanza);
+                    } else {
+                        LOG.info("Dropped missing package from index: {}",
+                                filename);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (final IOException ex) {
+            throw new RuntimeException("Error reading: " + file, ex);
+        }
+    }
+
+    /**
+     * Rebuilds the path indexes of all architectures with changed packages
+     * and removes those of architectures without packages. The '.contents'
+     * files of the packages of other architectures are not read again.
+     */
+    private void buildPathIndexes() {
+        pathIndexes.keySet().removeAll(changedArchs);
+        contentsChecksums.keySet().removeAll(changedArchs);
+        changedArchs.clear();
+        final Set<String> archs = new HashSet<>();
+        final Map<String, PathIndex.Builder> builders = new TreeMap<>();
+        for (final Map<String, String> stanza : stanzas.values()) {
+            final String arch = stanza.get(ARCHITECTURE);
+            archs.add(arch);
+            if (pathIndexes.containsKey(arch)) {
+                continue;
+            }
+            final List<String> paths = DebUtils.readContents(new File(dir,
+                    stanza.get(FILENAME)));
+            if (paths == null) {
+                LOG.warn("No contents file found for: {}",
+                        stanza.get(FILENAME));
+                continue;
+            }
+            PathIndex.Builder builder = builders.get(arch);
+            if (builder == null) {
+                builder = new PathIndex.Builder();
+                builders.put(arch, builder);
+            }
+            final String section = stanza.get("Section");
+            final String name;
+            if (section == null) {
+                name = stanza.get("Package");
+            } else {
+                name = section + "/" + stanza.get("Package");
+            }
+            for (final String path : paths) {
+                builder.add(path, name);
+            }
+        }
+        pathIndexes.keySet().retainAll(archs);
+        contentsChecksums.keySet().retainAll(archs);
+        for (final Map.Entry<String, PathIndex.Builder> entry : builders
+                .entrySet()) {
+            pathIndexes.put(entry.getKey(), entry.getValue().build());
+        }
+    }
+
+    private String architectures() {
+        final Set<String> archs = new TreeSet<>();
+        for (final Map<String, String> stanza : stanzas.values()) {
+            final String arch = stanza.get(ARCHITECTURE);
+            if (arch != null) {
+                archs.add(arch);
+            }
+        }
+        final StringBuilder sb = new StringBuilder();
+        for (final String arch : archs) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append(arch);
+        }
+        return sb.toString();
+    }
+
+    private Checksums writeFile(final String name, final byte[] content,
+            final boolean gzip) {
+        return writeFile(name, new Content() {
+            @Override
+            public void write(final OutputStream out) throws IOException {
+                out.write(content);
+            }
+        }, gzip);
+    }
+
+    /**
+     * Writes a file with a temporary name and moves it in place afterwards.
+     * The checksums are calculated from the bytes on the way to the disk.
+     */
+    private Checksums writeFile(final String name, final Content content,
+            final boolean gzip) {
+        final File file = new File(dir, name);
+        final File tmpFile = new File(dir, "." + name + ".tmp");
+        final MessageDigest[] digests = new MessageDigest[] { digest(MD5),
+                digest(SHA1), digest(SHA256) };
+        try {
+            OutputStream out = new BufferedOutputStream(new FileOutputStream(
+                    tmpFile));
+            for (final MessageDigest digest : digests) {
+                out = new DigestOutputStream(out, digest);
+            }
+            if (gzip) {
+                out = new GzipCompressorOutputStream(out);
+            }
+            try {
+                content.write(out);
+            } finally {
+                out.close();
+            }
+            Files.move(tmpFile.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+            return new Checksums(name, file.length(),
+                    hex(digests[0].digest()), hex(digests[1].digest()),
+                    hex(digests[2].digest()));
+        } catch (final IOException ex) {
+            throw new RuntimeException("Error writing: " + file, ex);
+        }
+    }
+
+    private static Map<String, String> readControl(final File debFile) {
+        try {
+            final ArArchiveInputStream arIn = new ArArchiveInputStream(
+                    new BufferedInputStream(new FileInputStream(debFile)));
+            try {
+                ArArchiveEntry arEntry;
+                while ((arEntry = arIn.getNextArEntry()) != null) {
+                    final String name = arEntry.getName();
+                    if (name.startsWith("control.tar")) {
+                        final InputStream in;
+                        if (name.endsWith(".gz")) {
+                            in = new GzipCompressorInputStream(arIn);
+                        } else {
+                            in = arIn;
+                        }
+                        return readControlFromTar(debFile, in);
+                    }
+                }
+            } finally {
+                arIn.close();
+            }
+        } catch (final IOException ex) {
+            throw new RuntimeException("Error reading control from: "
+                    + debFile, ex);
+        }
+        throw new IllegalArgumentException("No control member found in: "
+                + debFile);
+    }
+
+    private static Map<String, String> readControlFromTar(final File debFile,
+            final InputStream in) throws IOException {
+        final TarArchiveInputStream tarIn = new TarArchiveInputStream(in);
+        TarArchiveEntry entry;
+        while ((entry = tarIn.getNextTarEntry()) != null) {
+            final String name = entry.getName();
+            if (name.equals("control") || name.equals("./control")) {
+                final List<Map<String, String>> list = parse(new InputStreamReader(
+                        tarIn, UTF8));
+                if (list.isEmpty()) {
+                    break;
+                }
+                return list.get(0);
+            }
+        }
+        throw new IllegalArgumentException("No control file found in: "
+                + debFile);
+    }
+
+    private void addChecksums(final File debFile,
+            final Map<String, String> stanza) {
+        final String filename = debFile.getName();
+        final File changesFile = new File(dir, filename.substring(0,
+                filename.length() - ".deb".length())
+                + ".changes");
+        if (changesFile.exists()) {
+            final Map<String, String> changes = readChanges(changesFile);
+            final String[] md5 = findLine(changes.get("Files"), filename);
+            final String[] sha1 = findLine(changes.get("Checksums-Sha1"),
+                    filename);
+            final String[] sha256 = findLine(changes.get("Checksums-Sha256"),
+                    filename);
+            if (md5 != null && sha1 != null && sha256 != null
+                    && Long.parseLong(md5[1]) == debFile.length()) {
+                stanza.put("Size", md5[1]);
+                stanza.put("MD5sum", md5[0]);
+                stanza.put("SHA1", sha1[0]);
+                stanza.put("SHA256", sha256[0]);
+                return;
+            }
+        }
+        LOG.warn("No matching '.changes' file - Calculating checksums for: {}",
+                debFile);
+        final MessageDigest[] digests = new MessageDigest[] { digest(MD5),
+                digest(SHA1), digest(SHA256) };
+        try {
+            InputStream in = new BufferedInputStream(new FileInputStream(
+                    debFile));
+            for (final MessageDigest digest : digests) {
+                in = new DigestInputStream(in, digest);
+            }
+            try {
+                final byte[] buf = new byte[8192];
+                while (in.read(buf) > -1) {
+                    // Only digest
+                }
+            } finally {
+                in.close();
+            }
+        } catch (final IOException ex) {
+            throw new RuntimeException("Error reading: " + debFile, ex);
+        }
+        stanza.put("Size", String.valueOf(debFile.length()));
+        stanza.put("MD5sum", hex(digests[0].digest()));
+        stanza.put("SHA1", hex(digests[1].digest()));
+        stanza.put("SHA256", hex(digests[2].digest()));
+    }
+
+    private static Map<String, String> readChanges(final File changesFile) {
+        try {
+            final Reader reader = new InputStreamReader(new FileInputStream(
+                    changesFile), UTF8);
+            try {
+                final List<Map<String, String>> list = parse(reader);
+                if (list.isEmpty()) {
+                    return new LinkedHashMap<>();
+                }
+                return list.get(0);
+            } finally {
+                reader.close();
+            }
+        } catch (final IOException ex) {
+            throw new RuntimeException("Error reading: " + changesFile, ex);
+        }
+    }
+
+    /**
+     * Finds a line of a checksum field that ends with the given file name.
+     *
+     * @param value
+     *            Multi line value like " checksum size [section priority]
+     *            filename".
+     * @param filename
+     *            File name to find.
+     *
+     * @return Checksum and size or <code>null</code> if no line was found.
+     */
+    private static String[] findLine(final String value, final String filename) {
+        if (value == null) {
+            return null;
+        }
+        for (final String line : value.split("\n")) {
+            final String[] parts = line.trim().split("\\s+");
+            if (parts.length >= 3 && parts[parts.length - 1].equals(filename)) {
+                return new String[] { parts[0], parts[1] };
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parses Debian control data. Continuation lines are appended to the
+     * previous value separated by a new line (without the leading space).
+     *
+     * @param reader
+     *            Reader to parse. Will not be closed.
+     *
+     * @return List of stanzas with fields in the original order.
+     *
+     * @throws IOException
+     *             Error reading.
+     */
+    static List<Map<String, String>> parse(final Reader reader)
+            throws IOException {
+        final List<Map<String, String>> list = new ArrayList<>();
+        final BufferedReader in = new BufferedReader(reader);
+        Map<String, String> stanza = null;
+        String key = null;
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.trim().length() == 0) {
+                stanza = null;
+                key = null;
+            } else if (line.startsWith(" ") || line.startsWith("\t")) {
+                if (key != null) {
+                    stanza.put(key, stanza.get(key) + "\n" + line.substring(1));
+                }
+            } else {
+                final int p = line.indexOf(':');
+                if (p > 0) {
+                    if (stanza == null) {
+                        stanza = new LinkedHashMap<>();
+                        list.add(stanza);
+                    }
+                    key = line.substring(0, p);
+                    stanza.put(key, line.substring(p + 1).trim());
+                }
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Parses Debian control data from a string.
+     *
+     * @param str
+     *            String to parse.
+     *
+     * @return List of stanzas with fields in the original order.
+     */
+    static List<Map<String, String>> parse(final String str) {
+        try {
+            return parse(new StringReader(str));
+        } catch (final IOException ex) {
+            throw new RuntimeException("Error parsing string", ex);
+        }
+    }
+
+    private static String asString(final Iterable<Map<String, String>> list) {
+        final StringBuilder sb = new StringBuilder();
+        final Iterator<Map<String, String>> it = list.iterator();
+        while (it.hasNext()) {
+            sb.append(asString(it.next()));
+            if (it.hasNext()) {
+                sb.append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String asString(final Map<String, String> stanza) {
+        final StringBuilder sb = new StringBuilder();
+        for (final Map.Entry<String, String> field : stanza.entrySet()) {
+            sb.append(field.getKey());
+            sb.append(':');
+            final String[] lines = field.getValue().split("\n", -1);
+            if (lines[0].length() > 0) {
+                sb.append(' ');
+                sb.append(lines[0]);
+            }
+            sb.append('\n');
+            for (int i = 1; i < lines.length; i++) {
+                sb.append(' ');
+                sb.append(lines[i]);
+                sb.append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String checksumLines(final List<Checksums> list,
+            final int idx) {
+        final StringBuilder sb = new StringBuilder();
+        for (final Checksums checksums : list) {
+            sb.append('\n');
+            sb.append(checksums.hashes[idx]);
+            sb.append(' ');
+            sb.append(checksums.size);
+            sb.append(' ');
+            sb.append(checksums.name);
+        }
+        return sb.toString();
+    }
+
+    private static MessageDigest digest(final String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (final NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("Unknown algorithm: " + algorithm,
+                    ex);
+        }
+    }
+
+    private static String hex(final byte[] bytes) {
+        final StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (final byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Content of an index file.
+     */
+    private interface Content {
+
+        /**
+         * Writes the content.
+         *
+         * @param out
+         *            Stream to write to. Will be closed by the caller.
+         *
+         * @throws IOException
+         *             Error writing.
+         */
+        void write(OutputStream out) throws IOException;
+
+    }
+
+    /**
+     * Size and checksums of a written index file.
+     */
+    private static final class Checksums {
+
+        private final String name;
+
+        private final long size;
+
+        private final String[] hashes;
+
+        public Checksums(final String name, final long size,
+                final String... hashes) {
+            super();
+            this.name = name;
+            this.size = size;
+            this.hashes = hashes;
+        }
+
+    }
+
+}
@@ -17,6 +17,9 @@
  */
 package org.fuin.owndeb.commons;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -35,7 +38,9 @@ import org.fuin.objects4j.common.Nullable;
  * Configuration for OwnDeb.
  */
 @XmlRootElement(name = "owndeb-config")
-public final class DebConfig implements VariablesContainer {
+public final class DebConfig implements VariablesContainer, Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     @XmlElementWrapper(name = "variables")
     @XmlElement(name = "variable")
@@ -44,6 +49,13 @@ public final class DebConfig implements VariablesContainer {
     @XmlElement
     private DebPackages packages;
 
+    @XmlElement(name = "include")
+    private List<Include> includes;
+
+    private transient VariableGraph graph;
+
+    private transient boolean initialized;
+
     /**
      * Default constructor for JAXB.
      */
@@ -106,6 +118,47 @@ public final class DebConfig implements VariablesContainer {
         return packages;
     }
 
+    /**
+     * Returns the references to files with additional packages.
+     * 
+     * @return Immutable include list or <code>null</code>.
+     */
+    @Nullable
+    public final List<Include> getIncludes() {
+        if (includes == null) {
+            return null;
+        }
+        return Collections.unmodifiableList(includes);
+    }
+
+    /**
+     * Adds the packages read from the included files to the configured ones
+     * and initializes the configuration. Included packages inherit the
+     * defaults and variables of the "packages" element of this configuration
+     * exactly like the packages defined inline. This method has to be called
+     * once if the configuration has includes - Otherwise the configuration is
+     * already initialized after unmarshalling.
+     * 
+     * @param included
+     *            Not yet initialized packages from the included files.
+     * 
+     * @throws IllegalStateException
+     *             The configuration is already initialized.
+     */
+    public final void initIncluded(@NotNull final List<DebPackage> included) {
+        Contract.requireArgNotNull("included", included);
+        if (initialized) {
+            throw new IllegalStateException(
+                    "The configuration is already initialized");
+        }
+        if (packages == null) {
+            packages = new DebPackages(null, null, null, null, null, null,
+                    null);
+        }
+        packages.addUninitialized(included);
+        init();
+    }
+
     @Override
     public final List<Variable> getVariables() {
         if (variables == null) {
@@ -116,14 +169,53 @@ public final class DebConfig implements VariablesContainer {
 
     @Override
     public final String variableValue(final String name) {
-        if (variables == null) {
-            return null;
+        return getVariableGraph().get(name);
+    }
+
+    @Override
+    public final synchronized VariableGraph getVariableGraph() {
+        if (graph == null) {
+            final VariableGraph newGraph = new VariableGraph(null);
+            if (variables != null) {
+                for (final Variable var : variables) {
+                    newGraph.put(var);
+                }
+            }
+            graph = newGraph;
         }
-        final int idx = variables.indexOf(new Variable(name, ""));
-        if (idx < 0) {
-            return null;
+        return graph;
+    }
+
+    /**
+     * Returns all variables of the configuration and it's packages that
+     * reference an URL.
+     * 
+     * @return URL variables.
+     */
+    @NotNull
+    public final List<Variable> getUrlVariables() {
+        final List<Variable> all = new ArrayList<>();
+        if (variables != null) {
+            all.addAll(variables);
+        }
+        if (packages != null) {
+            packages.collectConfiguredVariables(all);
         }
-        return variables.get(idx).getValue();
+        final List<Variable> result = new ArrayList<>();
+        for (final Variable var : all) {
+            if (var.hasUrl()) {
+                result.add(var);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Loads the values of all configured variables that reference an URL in
+     * parallel, so they are already known when the packages are initialized.
+     */
+    private void loadUrlVariables() {
+        new VariableLoader().load(getUrlVariables());
     }
 
     /**
@@ -136,10 +228,36 @@ public final class DebConfig implements VariablesContainer {
      */
     public final void afterUnmarshal(final Unmarshaller unmarshaller,
             final Object parent) {
+        if (packages != null && includes == null) {
+            init();
+        }
+    }
+
+    /**
+     * Wires a deserialized configuration again. References to parents and
+     * resolved dependencies are not serialized.
+     * 
+     * @param in
+     *            Stream to read from.
+     * 
+     * @throws IOException
+     *             Error reading.
+     * @throws ClassNotFoundException
+     *             Class of a serialized object not found.
+     */
+    private void readObject(final ObjectInputStream in) throws IOException,
+            ClassNotFoundException {
+        in.defaultReadObject();
         if (packages != null) {
-            packages.init(this);
-            packages.resolveDependencies();
+            init();
         }
     }
 
+    private void init() {
+        loadUrlVariables();
+        packages.init(this);
+        packages.resolveDependencies();
+        initialized = true;
+    }
+
 }
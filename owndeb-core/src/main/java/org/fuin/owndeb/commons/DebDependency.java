@@ -17,6 +17,8 @@
  */
 package org.fuin.owndeb.commons;
 
+import java.io.Serializable;
+
 import javax.validation.constraints.NotNull;
 import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlRootElement;
@@ -30,7 +32,9 @@ import org.fuin.utils4j.Utils4J;
  * Dependency to a package. Redefines equals and hash code based on the name.
  */
 @XmlRootElement(name = "dependency")
-public final class DebDependency {
+public final class DebDependency implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     @XmlAttribute(name = "name")
     private String name;
@@ -80,7 +84,8 @@ public final class DebDependency {
     /**
      * Tries to resolve the package the is referenced by the name. After this
      * method was called the {@link #resolvedDependency} is set if a package with
-     * that name was found.
+     * that name was found. A package built for the same architecture as the
+     * parent is preferred.
      * 
      * @param resolver
      *            Contains all known packages.
@@ -89,7 +94,12 @@ public final class DebDependency {
      */
     public final boolean resolve(@NotNull final DebPackageResolver resolver) {
         Contract.requireArgNotNull("resolver", resolver);
-        resolvedDependency = resolver.findDebPackage(name);
+        if (parent == null) {
+            resolvedDependency = resolver.findDebPackage(name);
+        } else {
+            resolvedDependency = resolver.findDebPackage(name,
+                    parent.getArch());
+        }
         return resolvedDependency != null;
     }
 
@@ -17,14 +17,19 @@
  */
 package org.fuin.owndeb.commons;
 
+import static org.fuin.owndeb.commons.DebUtils.names;
+
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.StringTokenizer;
 
 import javax.validation.constraints.NotNull;
 import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlTransient;
 
 import org.fuin.objects4j.common.Contract;
 import org.fuin.objects4j.common.NotEmpty;
@@ -35,15 +40,36 @@ import org.fuin.objects4j.common.Nullable;
  */
 public abstract class DebPackage extends AbstractPackage {
 
+    private static final long serialVersionUID = 1L;
+
     private static final String DEPENDS = "depends";
 
     private static final String FULL_INSTALLATION_PATH = "fullInstallationPath";
 
     private static final String NAME = "name";
 
+    private static final String ARCHS = "archs";
+
+    private static final String ALIASES = "aliases";
+
+    private static final String PROVIDES = "provides";
+
     @XmlAttribute(name = NAME)
     private String name;
 
+    @XmlAttribute(name = ARCHS)
+    private String archs;
+
+    @XmlAttribute(name = ALIASES)
+    private String aliases;
+
+    @XmlAttribute(name = PROVIDES)
+    private String provides;
+
+    private transient PathRegistry pathRegistry;
+
+    private transient StageLimits stageLimits;
+
     @XmlElement(name = "dependency")
     private List<DebDependency> dependencies;
 
@@ -159,6 +185,194 @@ public abstract class DebPackage extends AbstractPackage {
         return getName() + "_" + getVersion() + "_" + getArch() + ".deb";
     }
 
+    /**
+     * Returns the registry used to detect paths installed by more than one
+     * package.
+     * 
+     * @return Registry or <code>null</code> if no conflict detection is done.
+     */
+    @Nullable
+    @XmlTransient
+    public final PathRegistry getPathRegistry() {
+        return pathRegistry;
+    }
+
+    /**
+     * Sets the registry used to detect paths installed by more than one
+     * package.
+     * 
+     * @param pathRegistry
+     *            Registry or <code>null</code> if no conflict detection should
+     *            be done.
+     */
+    public final void setPathRegistry(@Nullable final PathRegistry pathRegistry) {
+        this.pathRegistry = pathRegistry;
+    }
+
+    /**
+     * Returns the limits for parallel downloads and compressions of the build
+     * that creates the package.
+     * 
+     * @return Limits or <code>null</code> if nothing is limited.
+     */
+    @Nullable
+    @XmlTransient
+    public final StageLimits getStageLimits() {
+        return stageLimits;
+    }
+
+    /**
+     * Sets the limits for parallel downloads and compressions of the build
+     * that creates the package.
+     * 
+     * @param stageLimits
+     *            Limits or <code>null</code> if nothing should be limited.
+     */
+    public final void setStageLimits(@Nullable final StageLimits stageLimits) {
+        this.stageLimits = stageLimits;
+    }
+
+    /**
+     * Returns the names of all Debian files created by this package. The
+     * default implementation returns only the {@link #getDebFilename()}.
+     * 
+     * @return Filenames of the packages.
+     */
+    public List<String> getDebFilenames() {
+        return Collections.singletonList(getDebFilename());
+    }
+
+    /**
+     * Returns the names of all Debian packages created by this package. Other
+     * packages can depend on each of them. The default implementation returns
+     * only the {@link #getName()}.
+     * 
+     * @return Names of the created packages.
+     */
+    public List<String> getDebNames() {
+        return Collections.singletonList(getName());
+    }
+
+    /**
+     * Returns the virtual packages provided by the Debian packages created by
+     * this package. The default implementation returns the
+     * {@link #getProvides()}.
+     * 
+     * @return Virtual package names - Never <code>null</code>.
+     */
+    public List<String> getDebProvides() {
+        return getProvides();
+    }
+
+    /**
+     * Returns the architectures to create the package for.
+     * 
+     * @return Comma or space separated list of architectures or
+     *         <code>null</code> if only the single 'arch' is used.
+     */
+    @Nullable
+    public final String getArchs() {
+        return archs;
+    }
+
+    /**
+     * Returns additional names that can be used to reference this package
+     * from dependencies inside the configuration. Dependencies on an alias
+     * are written with the real package name to the control file.
+     * 
+     * @return Alias names - Never <code>null</code>.
+     */
+    @NotNull
+    public final List<String> getAliases() {
+        return names(variableValue(ALIASES));
+    }
+
+    /**
+     * Returns the virtual packages provided by this package ("Provides"
+     * field). Dependencies inside the configuration can reference a virtual
+     * name instead of the package name.
+     * 
+     * @return Virtual package names - Never <code>null</code>.
+     */
+    @NotNull
+    public final List<String> getProvides() {
+        return names(variableValue(PROVIDES));
+    }
+
+    /**
+     * Returns a directory for intermediate files that is unique for the
+     * package name, version and architecture. This allows building several
+     * packages in parallel inside the same build directory.
+     * 
+     * @param buildDirectory
+     *            Directory to create the packages inside.
+     * 
+     * @return Work directory (not created yet).
+     */
+    public final File getWorkDir(@NotNull final File buildDirectory) {
+        Contract.requireArgNotNull("buildDirectory", buildDirectory);
+        return new File(buildDirectory, getName() + "_" + getVersion() + "_"
+                + getArch());
+    }
+
+    /**
+     * Returns one copy of this not yet initialized package for each
+     * architecture defined in the 'archs' attribute. Variables like "${arch}"
+     * in other attributes (for example the download URL) are resolved per
+     * copy later on when the copy is initialized.
+     * 
+     * @return List with copies or a list only containing this instance if no
+     *         'archs' are defined.
+     */
+    @NotNull
+    public final List<DebPackage> expandArchs() {
+        final List<DebPackage> list = new ArrayList<>();
+        if (archs == null) {
+            list.add(this);
+            return list;
+        }
+        final StringTokenizer tok = new StringTokenizer(archs, ", ");
+        while (tok.hasMoreTokens()) {
+            final DebPackage copy = (DebPackage) copyWithArch(tok.nextToken());
+            copy.archs = null;
+            copyMembers(copy);
+            list.add(copy);
+        }
+        return list;
+    }
+
+    /**
+     * Creates a copy of the not yet initialized package that can be
+     * initialized independently from the original.
+     * 
+     * @return New instance.
+     */
+    @NotNull
+    public final DebPackage copy() {
+        final DebPackage copy = (DebPackage) copyBase();
+        copyMembers(copy);
+        return copy;
+    }
+
+    private void copyMembers(final DebPackage copy) {
+        if (dependencies != null) {
+            copy.dependencies = new ArrayList<>();
+            for (final DebDependency dependency : dependencies) {
+                copy.dependencies.add(new DebDependency(dependency.getName()));
+            }
+        }
+        copy.afterArchCopy();
+    }
+
+    /**
+     * Called on a new copy created by {@link #expandArchs()} or
+     * {@link #copy()} before it is initialized. Sub classes with mutable members must replace them with
+     * copies of their own. The default implementation does nothing.
+     */
+    protected void afterArchCopy() {
+        // Nothing to copy by default
+    }
+
     /**
      * Returns the list of dependencies.
      * 
@@ -173,7 +387,10 @@ public abstract class DebPackage extends AbstractPackage {
     }
 
     /**
-     * Returns the list of dependencies as comma separated string.
+     * Returns the list of dependencies as comma separated string. Names are
+     * written as declared, so a dependency on a virtual package can be
+     * satisfied by any package that provides it. Only aliases are replaced by
+     * the real package name, as they are unknown outside the configuration.
      * 
      * @return All dependency names.
      */
@@ -191,7 +408,11 @@ public abstract class DebPackage extends AbstractPackage {
                     throw new IllegalStateException("Unresolved dependency: "
                             + dependency.getName());
                 }
-                sb.append(debPackage.getName());
+                if (debPackage.getAliases().contains(dependency.getName())) {
+                    sb.append(debPackage.getName());
+                } else {
+                    sb.append(dependency.getName());
+                }
             }
         }
         return sb.toString();
@@ -232,11 +453,13 @@ public abstract class DebPackage extends AbstractPackage {
      *            Parent to set.
      */
     public final void initPackage(final DebPackages parent) {
-        addNonExistingVariables(parent);
         initAbstractPackage(parent);
         addOrReplaceVariable(NAME, name);
-        addOrReplaceVariable(FULL_INSTALLATION_PATH,
-                getInstallationPathIntern() + "/" + getNameIntern());
+        addOrReplaceVariable(ALIASES, emptyIfNull(aliases));
+        addOrReplaceVariable(PROVIDES, String.join(", ", names(provides)));
+        // References, so an inherited installation path is used as well
+        addOrReplaceVariable(FULL_INSTALLATION_PATH, "${installation-path}/${"
+                + NAME + "}");
         resolveVariables();
         if (dependencies != null) {
             for (final DebDependency dependency : dependencies) {
@@ -245,6 +468,13 @@ public abstract class DebPackage extends AbstractPackage {
         }
     }
 
+    private static String emptyIfNull(final String value) {
+        if (value == null) {
+            return "";
+        }
+        return value;
+    }
+
     /**
      * Returns the unique name of the package.
      * 
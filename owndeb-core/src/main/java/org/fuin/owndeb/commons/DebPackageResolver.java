@@ -38,4 +38,23 @@ public interface DebPackageResolver {
     @Nullable
     public DebPackage findDebPackage(@NotNull String packageName);
 
+    /**
+     * Returns a package by it's unique name. If there are several packages
+     * with the name, the one built for the given architecture is preferred.
+     * The default implementation ignores the architecture.
+     * 
+     * @param packageName
+     *            Unique package name.
+     * @param arch
+     *            Preferred architecture or <code>null</code>.
+     * 
+     * @return Package or <code>null</code> if no package with the given name
+     *         exists.
+     */
+    @Nullable
+    public default DebPackage findDebPackage(@NotNull final String packageName,
+            @Nullable final String arch) {
+        return findDebPackage(packageName);
+    }
+
 }
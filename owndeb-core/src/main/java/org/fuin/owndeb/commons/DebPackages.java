@@ -17,6 +17,7 @@
  */
 package org.fuin.owndeb.commons;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -36,9 +37,15 @@ import org.fuin.objects4j.common.Nullable;
 public final class DebPackages extends AbstractPackage implements
         DebPackageResolver {
 
+    private static final long serialVersionUID = 1L;
+
     @XmlAnyElement(lax = true)
     private List<DebPackage> packages;
 
+    private transient PackageIndex index;
+
+    private transient VariableLoader loader;
+
     /**
      * Default constructor.
      */
@@ -46,6 +53,35 @@ public final class DebPackages extends AbstractPackage implements
         super();
     }
 
+    /**
+     * Constructor without packages. They are added one by one later using
+     * {@link #addPackage(DebPackage)}.
+     * 
+     * @param version
+     *            Package version.
+     * @param description
+     *            Package description.
+     * @param maintainer
+     *            Maintainer of the package.
+     * @param arch
+     *            Architecture identifier like "amd64".
+     * @param installationPath
+     *            Installation path like "/opt".
+     * @param section
+     *            Section like "devel".
+     * @param priority
+     *            Priority like "low".
+     */
+    public DebPackages(@Nullable final String version,
+            @Nullable final String description,
+            @Nullable final String maintainer, @Nullable final String arch,
+            @Nullable final String installationPath,
+            @Nullable final String section, @Nullable final String priority) {
+        super(version, description, maintainer, arch, installationPath,
+                section, priority);
+        this.packages = new ArrayList<>();
+    }
+
     /**
      * Constructor with package array.
      * 
@@ -113,33 +149,139 @@ public final class DebPackages extends AbstractPackage implements
     }
 
     /**
-     * Returns the list of packages to create.
+     * Returns the list of packages to create. As packages may be added while
+     * others are already created, the list is a copy of the current state.
      * 
      * @return Immutable packages list.
      */
-    public final List<DebPackage> getPackages() {
-        return Collections.unmodifiableList(packages);
+    public final synchronized List<DebPackage> getPackages() {
+        if (packages == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(new ArrayList<>(packages));
+    }
+
+    @Override
+    public final synchronized DebPackage findDebPackage(
+            final String packageName) {
+        return index().findDebPackage(packageName);
     }
 
     @Override
-    public final DebPackage findDebPackage(final String packageName) {
+    public final synchronized DebPackage findDebPackage(
+            final String packageName, final String arch) {
+        return index().findDebPackage(packageName, arch);
+    }
+
+    /**
+     * Updates the package references for all dependencies and verifies that
+     * there are no duplicate packages and no cycles.
+     * 
+     * @throws IllegalStateException
+     *             A dependency could not be resolved, two packages have the
+     *             same name and architecture or a package depends directly or
+     *             indirectly on itself.
+     */
+    public final synchronized void resolveDependencies() {
         if (packages != null) {
+            final PackageIndex packageIndex = index();
             for (final DebPackage pkg : packages) {
-                if (pkg.getName() != packageName) {
-                    return pkg;
+                pkg.resolveDependencies(packageIndex);
+            }
+            PackageIndex.checkCycles(packages);
+        }
+    }
+
+    /**
+     * Returns the index of the initialized packages. It's created on first
+     * access.
+     * 
+     * @return Index.
+     */
+    private synchronized PackageIndex index() {
+        if (index == null) {
+            if (packages == null) {
+                index = new PackageIndex();
+            } else {
+                index = new PackageIndex(packages);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Adds a package to the already initialized instance. The package is
+     * copied for every architecture it's built for and all copies are
+     * initialized. Variables of the package that reference an URL are loaded
+     * before. Dependencies are not resolved. Packages may be added while
+     * other threads look up packages.
+     * 
+     * @param pkg
+     *            Package to add.
+     * 
+     * @return Initialized copies of the package that were added.
+     */
+    public final List<DebPackage> addPackage(@NotNull final DebPackage pkg) {
+        Contract.requireArgNotNull("pkg", pkg);
+        if (pkg.getConfiguredVariables() != null) {
+            // Outside the lock, as loading may take some time
+            loader().load(pkg.getConfiguredVariables());
+        }
+        final List<DebPackage> expanded = pkg.expandArchs();
+        synchronized (this) {
+            if (packages == null) {
+                packages = new ArrayList<>();
+            }
+            for (final DebPackage copy : expanded) {
+                copy.init(this);
+                packages.add(copy);
+                if (index != null) {
+                    index.add(copy);
                 }
             }
         }
-        return null;
+        return expanded;
+    }
+
+    private synchronized VariableLoader loader() {
+        if (loader == null) {
+            loader = new VariableLoader();
+        }
+        return loader;
     }
 
     /**
-     * Updates the package references for all dependencies.
+     * Adds packages before the instance is initialized.
+     * 
+     * @param list
+     *            Packages to add.
      */
-    public final void resolveDependencies() {
+    final synchronized void addUninitialized(final List<DebPackage> list) {
+        final List<DebPackage> all = new ArrayList<>();
+        if (packages != null) {
+            all.addAll(packages);
+        }
+        all.addAll(list);
+        packages = all;
+        index = null;
+    }
+
+    /**
+     * Adds the configured variables of this scope and of all packages to a
+     * list.
+     * 
+     * @param all
+     *            List to add the variables to.
+     */
+    final synchronized void collectConfiguredVariables(final List<Variable> all) {
+        if (getConfiguredVariables() != null) {
+            all.addAll(getConfiguredVariables());
+        }
         if (packages != null) {
             for (final DebPackage pkg : packages) {
-                pkg.resolveDependencies(this);
+                if (pkg.getConfiguredVariables() != null) {
+                    all.addAll(pkg.getConfiguredVariables());
+                }
             }
         }
     }
@@ -150,13 +292,18 @@ public final class DebPackages extends AbstractPackage implements
      * @param parent
      *            Current parent.
      */
-    public final void init(@Nullable final DebConfig parent) {
-        addNonExistingVariables(parent);
+    public final synchronized void init(@Nullable final DebConfig parent) {
         initAbstractPackage(parent);
         if (packages != null) {
+            final List<DebPackage> expanded = new ArrayList<>();
+            for (final DebPackage pkg : packages) {
+                expanded.addAll(pkg.expandArchs());
+            }
+            packages = expanded;
             for (final DebPackage pkg : packages) {
                 pkg.init(this);
             }
+            index = null;
         }
     }
 
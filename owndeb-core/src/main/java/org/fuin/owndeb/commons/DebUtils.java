@@ -21,20 +21,28 @@ import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.LineNumberReader;
+import java.io.OutputStreamWriter;
 import java.io.StringReader;
+import java.io.Writer;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.StringTokenizer;
+import java.util.concurrent.Semaphore;
 
 import javax.validation.constraints.NotNull;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
@@ -48,9 +56,14 @@ import org.apache.http.client.fluent.Request;
 import org.fuin.objects4j.common.Contract;
 import org.fuin.objects4j.common.Nullable;
 import org.fuin.utils4j.Utils4J;
-import org.fuin.utils4j.VariableResolver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.vafer.jdeb.Console;
+import org.vafer.jdeb.DataConsumer;
+import org.vafer.jdeb.DataProducer;
+import org.vafer.jdeb.DebMaker;
+import org.vafer.jdeb.PackagingException;
+import org.vafer.jdeb.ant.Data;
 import org.vafer.jdeb.shaded.compress.io.IOUtils;
 
 /**
@@ -61,6 +74,12 @@ public final class DebUtils {
 
     private static final Logger LOG = LoggerFactory.getLogger(DebUtils.class);
 
+    /** Extension of the file that lists the paths inside a Debian package. */
+    public static final String CONTENTS_EXTENSION = ".contents";
+
+    /** Locks by URL to avoid parallel downloads of the same file. */
+    private static final Map<String, DownloadLock> DOWNLOAD_LOCKS = new HashMap<>();
+
     private DebUtils() {
         throw new UnsupportedOperationException(
                 "Cannot create an instance of a utility class");
@@ -70,7 +89,10 @@ public final class DebUtils {
      * Downloads content from a source URL to a target file. If the target file
      * already exists, nothing happens. The file is first downloaded to the
      * 'temp' directory. If it already exists in that directory, only a local
-     * copy is done.
+     * copy is done. Both files are placed in a sub directory named by the hash
+     * of the URL (see {@link #cachedFile(URL, File)}), so URLs with the same
+     * file name never share a file. Concurrent calls for the same URL are
+     * executed one after the other, so a file is only downloaded once.
      * 
      * @param url
      *            URL to load.
@@ -83,13 +105,108 @@ public final class DebUtils {
      */
     public static File cachedDownload(@NotNull final URL url,
             @NotNull final File dir, final String... cookies) {
+        return cachedDownload(url, dir, null, cookies);
+    }
+
+    /**
+     * Downloads content from a source URL to a target file like
+     * {@link #cachedDownload(URL, File, String...)} within the download limit
+     * of a build.
+     * 
+     * @param url
+     *            URL to load.
+     * @param dir
+     *            Target directory
+     * @param limits
+     *            Limits of the build or <code>null</code> if the download is
+     *            not limited.
+     * @param cookies
+     *            Cookies for the request (Format: "name=value").
+     * 
+     * @return Downloaded file.
+     */
+    public static File cachedDownload(@NotNull final URL url,
+            @NotNull final File dir, @Nullable final StageLimits limits,
+            final String... cookies) {
         Contract.requireArgNotNull("url", url);
         Contract.requireArgNotNull("dir", dir);
 
         LOG.info("cachedDownload: {}", url);
 
-        final File targetFile = new File(dir, FilenameUtils.getName(url
-                .getFile()));
+        final String key = downloadKey(url);
+        final File targetFile = cachedFile(url, dir);
+        final DownloadLock lock = acquireDownloadLock(key);
+        try {
+            synchronized (lock) {
+                copyOrDownload(url, key, targetFile, limits, cookies);
+            }
+        } finally {
+            releaseDownloadLock(key, lock);
+        }
+        return targetFile;
+
+    }
+
+    /**
+     * Returns the file a URL is downloaded to by
+     * {@link #cachedDownload(URL, File, String...)}.
+     * 
+     * @param url
+     *            URL to load.
+     * @param dir
+     *            Target directory.
+     * 
+     * @return File with the name of the URL inside a sub directory named by
+     *         the hash of the URL.
+     */
+    public static File cachedFile(@NotNull final URL url,
+            @NotNull final File dir) {
+        Contract.requireArgNotNull("url", url);
+        Contract.requireArgNotNull("dir", dir);
+        return new File(new File(dir, downloadKey(url)),
+                FilenameUtils.getName(url.getFile()));
+    }
+
+    private static String downloadKey(final URL url) {
+        return DigestUtils.sha1Hex(url.toExternalForm());
+    }
+
+    private static DownloadLock acquireDownloadLock(final String key) {
+        synchronized (DOWNLOAD_LOCKS) {
+            DownloadLock lock = DOWNLOAD_LOCKS.get(key);
+            if (lock == null) {
+                lock = new DownloadLock();
+                DOWNLOAD_LOCKS.put(key, lock);
+            }
+            lock.users++;
+            return lock;
+        }
+    }
+
+    private static void releaseDownloadLock(final String key,
+            final DownloadLock lock) {
+        synchronized (DOWNLOAD_LOCKS) {
+            lock.users--;
+            if (lock.users == 0) {
+                DOWNLOAD_LOCKS.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of URLs that are currently downloaded or waited for.
+     * 
+     * @return Number of download locks.
+     */
+    static int downloadLockCount() {
+        synchronized (DOWNLOAD_LOCKS) {
+            return DOWNLOAD_LOCKS.size();
+        }
+    }
+
+    private static void copyOrDownload(final URL url, final String key,
+            final File targetFile, final StageLimits limits,
+            final String... cookies) {
         try {
             if (targetFile.exists()) {
                 LOG.info("File already exists in target directory: {}",
@@ -97,10 +214,17 @@ public final class DebUtils {
             } else {
                 LOG.info("Downloading: {}", url);
                 // Cache the file locally in the temporary directory
-                final File tmpFile = new File(Utils4J.getTempDir(),
-                        targetFile.getName());
+                final File tmpDir = new File(Utils4J.getTempDir(), key);
+                final File tmpFile = new File(tmpDir, targetFile.getName());
                 if (!tmpFile.exists()) {
-                    download(url, Utils4J.getTempDir(), cookies);
+                    mkdirs(tmpDir);
+                    final Semaphore permit = StageLimits.enter(limits,
+                            Stage.DOWNLOAD);
+                    try {
+                        download(url, tmpDir, cookies);
+                    } finally {
+                        StageLimits.exit(permit);
+                    }
                     LOG.info("Downloaded to: {}", tmpFile);
                 }
                 FileUtils.copyFile(tmpFile, targetFile);
@@ -109,8 +233,6 @@ public final class DebUtils {
         } catch (final IOException ex) {
             throw new RuntimeException("Error downloading: " + url, ex);
         }
-        return targetFile;
-
     }
 
     /**
@@ -194,6 +316,22 @@ public final class DebUtils {
      */
     public static final void unTarGz(@NotNull final File tarFile) {
         Contract.requireArgNotNull("tarFile", tarFile);
+        unTarGz(tarFile, tarFile.getParentFile());
+    }
+
+    /**
+     * Untars a given 'tar.gz' file on a linux system using the 'tar' command in
+     * the given directory.
+     * 
+     * @param tarFile
+     *            File to unpack.
+     * @param dir
+     *            Directory to unpack the file into.
+     */
+    public static final void unTarGz(@NotNull final File tarFile,
+            @NotNull final File dir) {
+        Contract.requireArgNotNull("tarFile", tarFile);
+        Contract.requireArgNotNull("dir", dir);
 
         final String tarFilePath = Utils4J.getCanonicalPath(tarFile);
         LOG.info("unTarGz: {}", tarFilePath);
@@ -202,7 +340,7 @@ public final class DebUtils {
         cmdLine.addArgument("-zvxf");
         cmdLine.addArgument(tarFilePath);
 
-        execute(cmdLine, tarFile.getParentFile(), "unTarGz: " + tarFilePath);
+        execute(cmdLine, dir, "unTarGz: " + tarFilePath);
 
     }
 
@@ -218,6 +356,25 @@ public final class DebUtils {
      */
     public static final File tarGz(@NotNull final File parentDir,
             final String dirName) {
+        return tarGz(parentDir, dirName, null);
+    }
+
+    /**
+     * Creates a tar.gz file on a linux system using the 'tar' command within
+     * the compression limit of a build.
+     * 
+     * @param parentDir
+     *            Working directory.
+     * @param dirName
+     *            Directory inside the working directory that will be archived.
+     * @param limits
+     *            Limits of the build or <code>null</code> if the compression
+     *            is not limited.
+     * 
+     * @return Tar file.
+     */
+    public static final File tarGz(@NotNull final File parentDir,
+            final String dirName, @Nullable final StageLimits limits) {
 
         Contract.requireArgNotNull("parentDir", parentDir);
         Contract.requireArgNotNull("dirName", dirName);
@@ -231,7 +388,12 @@ public final class DebUtils {
         cmdLine.addArgument(tarFileNameAndPath);
         cmdLine.addArgument(dirName);
 
-        execute(cmdLine, parentDir, "tar file: " + tarFileNameAndPath);
+        final Semaphore permit = StageLimits.enter(limits, Stage.COMPRESSION);
+        try {
+            execute(cmdLine, parentDir, "tar file: " + tarFileNameAndPath);
+        } finally {
+            StageLimits.exit(permit);
+        }
 
         return tarFile;
     }
@@ -255,27 +417,34 @@ public final class DebUtils {
 
         LOG.info("Write replaced resource '{}' to directory: {}", resource,
                 outDir);
+        Template.get(clasz, resource).write(vars,
+                new File(outDir, FilenameUtils.getName(resource)));
+
+    }
+
+    /**
+     * Reads a resource and writes it with the variables of a scope replaced
+     * into a file with the same name. The resource is parsed only once per
+     * class and name.
+     * 
+     * @param clasz
+     *            Class to use for reading the resource.
+     * @param resource
+     *            Full path to the resource.
+     * @param outDir
+     *            Output directory to create a file inside.
+     * @param vars
+     *            Variables to replace.
+     */
+    public static void writeReplacedResource(final Class<?> clasz,
+            final String resource, final File outDir,
+            final VariableGraph vars) {
+
+        LOG.info("Write replaced resource '{}' to directory: {}", resource,
+                outDir);
+        Template.get(clasz, resource).write(vars,
+                new File(outDir, FilenameUtils.getName(resource)));
 
-        final File outFile = new File(outDir, FilenameUtils.getName(resource));
-        try {
-            final InputStream inStream = clasz.getResourceAsStream(resource);
-            if (inStream == null) {
-                throw new IllegalArgumentException(
-                        "Unable to locate resource: " + resource);
-            }
-            try {
-                final String inStr = IOUtils.toString(inStream);
-                final String outStr = Utils4J.replaceVars(inStr, vars);
-                LOG.debug("Write resource {}\n{}", outFile, outStr);
-                FileUtils.writeStringToFile(outFile, outStr);
-            } finally {
-                inStream.close();
-            }
-        } catch (IOException ex) {
-            throw new RuntimeException(
-                    "Error replacing and writing resource file '" + resource
-                            + "' to: " + outFile, ex);
-        }
     }
 
     /**
@@ -331,6 +500,26 @@ public final class DebUtils {
         }
     }
 
+    /**
+     * Splits a comma or space separated list of names.
+     * 
+     * @param value
+     *            Names to split or <code>null</code>.
+     * 
+     * @return List of names - Never <code>null</code>.
+     */
+    @NotNull
+    public static List<String> names(@Nullable final String value) {
+        final List<String> list = new ArrayList<>();
+        if (value != null) {
+            final StringTokenizer tok = new StringTokenizer(value, ", ");
+            while (tok.hasMoreTokens()) {
+                list.add(tok.nextToken());
+            }
+        }
+        return list;
+    }
+
     private static void logError(final List<String> messages) {
         if (LOG.isErrorEnabled()) {
             for (final String message : messages) {
@@ -339,8 +528,23 @@ public final class DebUtils {
         }
     }
 
-    private static void execute(final CommandLine cmdLine,
-            final File workingDir, final String errorMsg) {
+    /**
+     * Executes a command and waits until it has finished. The output is
+     * logged if the command fails.
+     * 
+     * @param cmdLine
+     *            Command to execute.
+     * @param workingDir
+     *            Working directory.
+     * @param errorMsg
+     *            Message used for the exception in case of an error.
+     * 
+     * @throws RuntimeException
+     *             The command could not be executed or returned a non-zero
+     *             exit value.
+     */
+    public static void execute(@NotNull final CommandLine cmdLine,
+            @NotNull final File workingDir, @NotNull final String errorMsg) {
 
         LOG.debug("Execute: " + cmdLine.toString());
 
@@ -373,7 +577,7 @@ public final class DebUtils {
     public static void mkdirs(final File dir) {
         if (!dir.exists()) {
             final boolean ok = dir.mkdirs();
-            if (!ok) {
+            if (!ok && !dir.isDirectory()) {
                 throw new RuntimeException("Couldn't create directory: " + dir);
             }
             LOG.debug("Created directory: {}", dir);
@@ -408,10 +612,16 @@ public final class DebUtils {
      *            Variable list to resolve variable references.
      * 
      * @return Reoslved variables.
+     * 
+     * @throws IllegalStateException
+     *             A variable references itself directly or indirectly.
      */
     public static List<Variable> resolve(final List<Variable> vars) {
-        final Map<String, String> varMap = new VariableResolver(asMap(vars))
-                .getResolved();
+        final VariableGraph graph = new VariableGraph(null);
+        for (final Variable var : vars) {
+            graph.put(var);
+        }
+        final Map<String, String> varMap = graph.getResolved();
         final List<Variable> variables = new ArrayList<>();
         final Iterator<String> it = varMap.keySet().iterator();
         while (it.hasNext()) {
@@ -423,4 +633,243 @@ public final class DebUtils {
         return variables;
     }
 
+    /**
+     * Creates a binary Debian package. All files and links that are streamed
+     * into the data member of the package are recorded and written to a file
+     * with the same name as the package, but with the extension
+     * {@link #CONTENTS_EXTENSION}.
+     * 
+     * @param debFile
+     *            Debian package to create.
+     * @param controlDir
+     *            Directory with the control files.
+     * @param data
+     *            Data to add to the package.
+     */
+    public static void createDeb(@NotNull final File debFile,
+            @NotNull final File controlDir, final Data... data) {
+        createDeb(debFile, controlDir, null, null, null, null, data);
+    }
+
+    /**
+     * Creates a binary Debian package. All files and links that are streamed
+     * into the data member of the package are recorded and written to a file
+     * with the same name as the package, but with the extension
+     * {@link #CONTENTS_EXTENSION}. If a registry is given, every path is
+     * registered before it is added to the package.
+     * 
+     * @param debFile
+     *            Debian package to create.
+     * @param controlDir
+     *            Directory with the control files.
+     * @param registry
+     *            Registry for detecting paths installed by more than one
+     *            package or <code>null</code>.
+     * @param limits
+     *            Limits of the build or <code>null</code> if the compression
+     *            is not limited.
+     * @param arch
+     *            Architecture of the package. Mandatory if a registry is
+     *            given.
+     * @param owner
+     *            Name of the package. Mandatory if a registry is given.
+     * @param data
+     *            Data to add to the package.
+     */
+    public static void createDeb(@NotNull final File debFile,
+            @NotNull final File controlDir,
+            @Nullable final PathRegistry registry,
+            @Nullable final StageLimits limits, @Nullable final String arch,
+            @Nullable final String owner, final Data... data) {
+        Contract.requireArgNotNull("debFile", debFile);
+        Contract.requireArgNotNull("controlDir", controlDir);
+        if (registry != null) {
+            Contract.requireArgNotEmpty("arch", arch);
+            Contract.requireArgNotEmpty("owner", owner);
+        }
+
+        final List<String> paths = new ArrayList<>();
+        final List<DataProducer> producers = new ArrayList<>();
+        if (data != null) {
+            for (final Data producer : data) {
+                producers.add(new RecordingDataProducer(producer, paths,
+                        registry, arch, owner));
+            }
+        }
+        final DebMaker maker = new DebMaker(new Console() {
+            @Override
+            public void debug(final String message) {
+                LOG.debug(message);
+            }
+
+            @Override
+            public void info(final String message) {
+                LOG.debug(message);
+            }
+
+            @Override
+            public void warn(final String message) {
+                LOG.warn(message);
+            }
+        }, producers, Collections.<DataProducer> emptyList());
+        maker.setDeb(debFile);
+        maker.setControl(controlDir);
+        maker.setCompression("gzip");
+        final Semaphore permit = StageLimits.enter(limits, Stage.COMPRESSION);
+        try {
+            maker.validate();
+            maker.makeDeb();
+        } catch (final PackagingException ex) {
+            throw new RuntimeException("Error creating package: " + debFile,
+                    ex);
+        } finally {
+            StageLimits.exit(permit);
+        }
+        writeContents(contentsFile(debFile), paths);
+    }
+
+    /**
+     * Returns the file that lists the paths inside a Debian package.
+     * 
+     * @param debFile
+     *            Debian package.
+     * 
+     * @return File in the same directory with the extension
+     *         {@link #CONTENTS_EXTENSION} instead of ".deb".
+     */
+    public static File contentsFile(@NotNull final File debFile) {
+        Contract.requireArgNotNull("debFile", debFile);
+        return new File(debFile.getParentFile(), FilenameUtils.getBaseName(debFile
+                .getName()) + CONTENTS_EXTENSION);
+    }
+
+    /**
+     * Reads the paths inside a Debian package written by
+     * {@link #createDeb(File, File, Data...)}.
+     * 
+     * @param debFile
+     *            Debian package.
+     * 
+     * @return Paths or <code>null</code> if there is no contents file for the
+     *         package.
+     */
+    @Nullable
+    public static List<String> readContents(@NotNull final File debFile) {
+        final File file = contentsFile(debFile);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            return FileUtils.readLines(file, "utf-8");
+        } catch (final IOException ex) {
+            throw new RuntimeException("Error reading: " + file, ex);
+        }
+    }
+
+    private static void writeContents(final File file, final List<String> paths) {
+        final String[] sorted = paths.toArray(new String[paths.size()]);
+        Arrays.sort(sorted);
+        try {
+            final Writer writer = new OutputStreamWriter(
+                    new FileOutputStream(file), "utf-8");
+            try {
+                for (final String path : sorted) {
+                    writer.write(path);
+                    writer.write('\n');
+                }
+            } finally {
+                writer.close();
+            }
+        } catch (final IOException ex) {
+            throw new RuntimeException("Error writing: " + file, ex);
+        }
+    }
+
+    /**
+     * Lock for the download of one URL with the number of threads using it.
+     */
+    private static final class DownloadLock {
+
+        private int users;
+
+    }
+
+    /**
+     * Passes all entries to the real consumer and records the path of all
+     * files and links.
+     */
+    private static final class RecordingDataProducer implements DataProducer {
+
+        private final DataProducer delegate;
+
+        private final List<String> paths;
+
+        private final PathRegistry registry;
+
+        private final String arch;
+
+        private final String owner;
+
+        public RecordingDataProducer(final DataProducer delegate,
+                final List<String> paths, final PathRegistry registry,
+                final String arch, final String owner) {
+            super();
+            this.delegate = delegate;
+            this.paths = paths;
+            this.registry = registry;
+            this.arch = arch;
+            this.owner = owner;
+        }
+
+        private void record(final String name) {
+            final String path = normalizePath(name);
+            if (registry != null) {
+                registry.register(arch, path, owner);
+            }
+            paths.add(path);
+        }
+
+        @Override
+        public final void produce(final DataConsumer receiver)
+                throws IOException {
+            delegate.produce(new DataConsumer() {
+                @Override
+                public void onEachDir(final String dirname,
+                        final String linkname, final String user,
+                        final int uid, final String group, final int gid,
+                        final int mode, final long size) throws IOException {
+                    receiver.onEachDir(dirname, linkname, user, uid, group,
+                            gid, mode, size);
+                }
+
+                @Override
+                public void onEachFile(final InputStream input,
+                        final org.vafer.jdeb.shaded.compress.compress.archivers.tar.TarArchiveEntry entry)
+                        throws IOException {
+                    record(entry.getName());
+                    receiver.onEachFile(input, entry);
+                }
+
+                @Override
+                public void onEachLink(
+                        final org.vafer.jdeb.shaded.compress.compress.archivers.tar.TarArchiveEntry entry)
+                        throws IOException {
+                    record(entry.getName());
+                    receiver.onEachLink(entry);
+                }
+            });
+        }
+
+        private static String normalizePath(final String name) {
+            if (name.startsWith("./")) {
+                return name.substring(2);
+            }
+            if (name.startsWith("/")) {
+                return name.substring(1);
+            }
+            return name;
+        }
+
+    }
+
 }
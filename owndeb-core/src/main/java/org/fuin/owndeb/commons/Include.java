@@ -0,0 +1,178 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.owndeb.commons;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.validation.constraints.NotNull;
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import org.fuin.objects4j.common.Contract;
+import org.fuin.objects4j.common.NotEmpty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * References one or more files with additional packages. The file name may be
+ * a glob pattern like "packages/*.xml" or "teams/**&#47;packages.xml".
+ * Relative names are relative to the directory of the including file.
+ */
+@XmlRootElement(name = "include")
+@XmlAccessorType(XmlAccessType.FIELD)
+public final class Include implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger LOG = LoggerFactory.getLogger(Include.class);
+
+    private static final String GLOB_CHARS = "*?[{";
+
+    @XmlAttribute(name = "file")
+    private String file;
+
+    /**
+     * Default constructor for JAXB.
+     */
+    protected Include() {
+        super();
+    }
+
+    /**
+     * Constructor with file.
+     * 
+     * @param file
+     *            Name of a file or glob pattern.
+     */
+    public Include(@NotEmpty final String file) {
+        super();
+        Contract.requireArgNotEmpty("file", file);
+        this.file = file;
+    }
+
+    /**
+     * Returns the name of the file or glob pattern.
+     * 
+     * @return File.
+     */
+    @NotNull
+    public final String getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the files referenced by this include in alphabetical order.
+     * 
+     * @param baseDir
+     *            Directory relative names are resolved against.
+     * 
+     * @return Files - May be empty if a pattern does not match any file.
+     * 
+     * @throws IllegalArgumentException
+     *             The file without pattern does not exist.
+     */
+    @NotNull
+    public final List<File> resolve(@NotNull final File baseDir) {
+        Contract.requireArgNotNull("baseDir", baseDir);
+        final String name = file.replace('\\', '/');
+        int globPos = -1;
+        for (int i = 0; i < name.length() && globPos == -1; i++) {
+            if (GLOB_CHARS.indexOf(name.charAt(i)) > -1) {
+                globPos = i;
+            }
+        }
+        if (globPos == -1) {
+            final File result = absolute(baseDir, name);
+            if (!result.isFile()) {
+                throw new IllegalArgumentException(
+                        "Included file does not exist: " + result);
+            }
+            return Collections.singletonList(result);
+        }
+        final int dirEnd = name.lastIndexOf('/', globPos);
+        final File dir;
+        final String pattern;
+        if (dirEnd == -1) {
+            dir = baseDir;
+            pattern = name;
+        } else {
+            dir = absolute(baseDir, name.substring(0, dirEnd + 1));
+            pattern = name.substring(dirEnd + 1);
+        }
+        final List<File> files = match(dir.toPath(), pattern);
+        if (files.isEmpty()) {
+            LOG.warn("No file matches include '{}' in: {}", file, dir);
+        }
+        return files;
+    }
+
+    private static File absolute(final File baseDir, final String name) {
+        final File result = new File(name);
+        if (result.isAbsolute()) {
+            return result;
+        }
+        return new File(baseDir, name);
+    }
+
+    private static List<File> match(final Path dir, final String pattern) {
+        final List<File> files = new ArrayList<>();
+        if (!Files.isDirectory(dir)) {
+            return files;
+        }
+        final PathMatcher matcher = FileSystems.getDefault().getPathMatcher(
+                "glob:" + pattern);
+        try {
+            Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(final Path path,
+                        final BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile()
+                            && matcher.matches(dir.relativize(path))) {
+                        files.add(path.toFile());
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (final IOException ex) {
+            throw new RuntimeException("Error searching included files in: "
+                    + dir, ex);
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    @Override
+    public final String toString() {
+        return file;
+    }
+
+}
@@ -0,0 +1,198 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.owndeb.commons;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.validation.constraints.NotNull;
+
+import org.fuin.objects4j.common.Contract;
+import org.fuin.objects4j.common.Nullable;
+
+/**
+ * Locates packages by name using a hash index. Besides the names of the
+ * Debian packages it creates, a package can be found by it's aliases and the
+ * virtual packages it provides.
+ * Real names take precedence over aliases and virtual names. If several
+ * packages have the same name (copies for different architectures or several
+ * providers of a virtual package), the one with the requested architecture is
+ * preferred - Otherwise the first one added wins.
+ */
+public final class PackageIndex implements DebPackageResolver {
+
+    private final Map<String, List<DebPackage>> names;
+
+    private final Map<String, List<DebPackage>> virtualNames;
+
+    /**
+     * Default constructor.
+     */
+    public PackageIndex() {
+        super();
+        this.names = new HashMap<>();
+        this.virtualNames = new HashMap<>();
+    }
+
+    /**
+     * Constructor with initial packages.
+     * 
+     * @param packages
+     *            Initialized packages to add.
+     */
+    public PackageIndex(@NotNull final Collection<DebPackage> packages) {
+        this();
+        Contract.requireArgNotNull("packages", packages);
+        for (final DebPackage pkg : packages) {
+            add(pkg);
+        }
+    }
+
+    /**
+     * Adds an initialized package to the index.
+     * 
+     * @param pkg
+     *            Package to add.
+     * 
+     * @throws IllegalStateException
+     *             Another package with the same name was already added for
+     *             the same architecture.
+     */
+    public final void add(@NotNull final DebPackage pkg) {
+        Contract.requireArgNotNull("pkg", pkg);
+        final List<String> debNames = pkg.getDebNames();
+        for (final String name : debNames) {
+            for (final DebPackage other : get(names, name)) {
+                if (equal(other.getArch(), pkg.getArch())) {
+                    throw new IllegalStateException("Duplicate package '"
+                            + name + "' for architecture '" + pkg.getArch()
+                            + "'");
+                }
+            }
+        }
+        for (final String name : debNames) {
+            get(names, name).add(pkg);
+        }
+        for (final String alias : pkg.getAliases()) {
+            get(virtualNames, alias).add(pkg);
+        }
+        for (final String virtualName : pkg.getDebProvides()) {
+            get(virtualNames, virtualName).add(pkg);
+        }
+    }
+
+    @Override
+    public final DebPackage findDebPackage(final String packageName) {
+        return findDebPackage(packageName, null);
+    }
+
+    @Override
+    public final DebPackage findDebPackage(final String packageName,
+            final String arch) {
+        Contract.requireArgNotNull("packageName", packageName);
+        List<DebPackage> list = names.get(packageName);
+        if (list == null) {
+            list = virtualNames.get(packageName);
+            if (list == null) {
+                return null;
+            }
+        }
+        if (arch != null) {
+            for (final DebPackage pkg : list) {
+                if (arch.equals(pkg.getArch())) {
+                    return pkg;
+                }
+            }
+        }
+        return list.get(0);
+    }
+
+    /**
+     * Verifies that the resolved dependencies of the packages don't form a
+     * cycle. Every package and every dependency is visited only once.
+     * 
+     * @param packages
+     *            Packages with resolved dependencies.
+     * 
+     * @throws IllegalStateException
+     *             A package depends directly or indirectly on itself.
+     */
+    public static void checkCycles(@NotNull final Collection<DebPackage> packages) {
+        Contract.requireArgNotNull("packages", packages);
+        final Map<DebPackage, Boolean> done = new IdentityHashMap<>();
+        for (final DebPackage pkg : packages) {
+            visit(pkg, done, new ArrayList<DebPackage>());
+        }
+    }
+
+    /**
+     * Depth first search. A package is mapped to FALSE while it's
+     * dependencies are visited and to TRUE when they are all done.
+     */
+    private static void visit(final DebPackage pkg,
+            final Map<DebPackage, Boolean> done, final List<DebPackage> path) {
+        final Boolean state = done.get(pkg);
+        if (state == Boolean.TRUE) {
+            return;
+        }
+        if (state == Boolean.FALSE) {
+            final StringBuilder sb = new StringBuilder();
+            for (int i = path.indexOf(pkg); i < path.size(); i++) {
+                sb.append(path.get(i).getName()).append(" -> ");
+            }
+            sb.append(pkg.getName());
+            throw new IllegalStateException("Cycle in package dependencies: "
+                    + sb);
+        }
+        done.put(pkg, Boolean.FALSE);
+        path.add(pkg);
+        final List<DebDependency> dependencies = pkg.getDependencies();
+        if (dependencies != null) {
+            for (final DebDependency dependency : dependencies) {
+                final DebPackage resolved = dependency.getResolvedDependency();
+                if (resolved != null) {
+                    visit(resolved, done, path);
+                }
+            }
+        }
+        path.remove(path.size() - 1);
+        done.put(pkg, Boolean.TRUE);
+    }
+
+    private static List<DebPackage> get(final Map<String, List<DebPackage>> map,
+            final String name) {
+        List<DebPackage> list = map.get(name);
+        if (list == null) {
+            list = new ArrayList<>();
+            map.put(name, list);
+        }
+        return list;
+    }
+
+    private static boolean equal(final String a, final String b) {
+        if (a == null) {
+            return b == null;
+        }
+        return a.equals(b);
+    }
+
+}
@@ -0,0 +1,383 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.owndeb.commons;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.validation.constraints.NotNull;
+
+import org.fuin.objects4j.common.Contract;
+
+/**
+ * Immutable index from file paths to the names of the packages that contain
+ * them. The paths are stored sorted and front coded: Inside a block of
+ * {@link #BLOCK_SIZE} entries each path only stores the bytes that differ from
+ * the previous path. A lookup does a binary search on the first path of each
+ * block and decodes only a single block.
+ */
+public final class PathIndex {
+
+    /** Number of entries in a front coded block. */
+    public static final int BLOCK_SIZE = 16;
+
+    private static final Charset UTF8 = Charset.forName("utf-8");
+
+    private final String[] packages;
+
+    private final byte[] data;
+
+    private final int[] blocks;
+
+    private final int size;
+
+    private PathIndex(final String[] packages, final byte[] data,
+            final int[] blocks, final int size) {
+        super();
+        this.packages = packages;
+        this.data = data;
+        this.blocks = blocks;
+        this.size = size;
+    }
+
+    /**
+     * Returns the number of different paths.
+     *
+     * @return Number of paths.
+     */
+    public final int size() {
+        return size;
+    }
+
+    /**
+     * Returns the size of the encoded paths.
+     *
+     * @return Number of bytes used for the front coded paths.
+     */
+    public final int getEncodedSize() {
+        return data.length;
+    }
+
+    /**
+     * Returns the packages that contain a path.
+     *
+     * @param path
+     *            Path without leading slash like "opt/jdk8/bin/java".
+     *
+     * @return Package names in the order they were added or an empty list if
+     *         no package contains the path.
+     */
+    @NotNull
+    public final List<String> find(@NotNull final String path) {
+        Contract.requireArgNotNull("path", path);
+        final byte[] key = path.getBytes(UTF8);
+        final int block = findBlock(key);
+        if (block < 0) {
+            return Collections.emptyList();
+        }
+        final Decoder decoder = new Decoder(blocks[block]);
+        final int end = Math.min(size, (block + 1) * BLOCK_SIZE);
+        for (int i = block * BLOCK_SIZE; i < end; i++) {
+            decoder.next();
+            final int cmp = compare(decoder.path, decoder.length, key);
+            if (cmp == 0) {
+                return decoder.packageNames();
+            }
+            if (cmp > 0) {
+                break;
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Writes the index in the format of a Debian 'Contents' file: One line
+     * per path with the comma separated package names.
+     *
+     * @param writer
+     *            Writer to use. Will not be closed.
+     *
+     * @throws IOException
+     *             Error writing.
+     */
+    public final void writeContents(@NotNull final Writer writer)
+            throws IOException {
+        Contract.requireArgNotNull("writer", writer);
+        final Decoder decoder = new Decoder(0);
+        for (int i = 0; i < size; i++) {
+            decoder.next();
+            writer.write(new String(decoder.path, 0, decoder.length, UTF8));
+            writer.write("    ");
+            final List<String> names = decoder.packageNames();
+            for (int j = 0; j < names.size(); j++) {
+                if (j > 0) {
+                    writer.write(',');
+                }
+                writer.write(names.get(j));
+            }
+            writer.write('\n');
+        }
+    }
+
+    private int findBlock(final byte[] key) {
+        int low = 0;
+        int high = blocks.length - 1;
+        int result = -1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final Decoder decoder = new Decoder(blocks[mid]);
+            decoder.next();
+            final int cmp = compare(decoder.path, decoder.length, key);
+            if (cmp == 0) {
+                return mid;
+            }
+            if (cmp < 0) {
+                result = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return result;
+    }
+
+    private static int compare(final byte[] a, final int length, final byte[] b) {
+        final int n = Math.min(length, b.length);
+        for (int i = 0; i < n; i++) {
+            final int cmp = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return length - b.length;
+    }
+
+    /**
+     * Sequential reader for the encoded entries starting at a block.
+     */
+    private final class Decoder {
+
+        private int pos;
+
+        private byte[] path = new byte[64];
+
+        private int length;
+
+        private int[] ids = new int[4];
+
+        private int idCount;
+
+        public Decoder(final int pos) {
+            super();
+            this.pos = pos;
+        }
+
+        public final void next() {
+            final int prefix = readInt();
+            final int suffix = readInt();
+            length = prefix + suffix;
+            if (path.length < length) {
+                path = Arrays.copyOf(path, Math.max(length, path.length * 2));
+            }
+            System.arraycopy(data, pos, path, prefix, suffix);
+            pos = pos + suffix;
+            idCount = readInt();
+            if (ids.length < idCount) {
+                ids = new int[idCount];
+            }
+            for (int i = 0; i < idCount; i++) {
+                ids[i] = readInt();
+            }
+        }
+
+        public final List<String> packageNames() {
+            final List<String> names = new ArrayList<>(idCount);
+            for (int i = 0; i < idCount; i++) {
+                names.add(packages[ids[i]]);
+            }
+            return names;
+        }
+
+        private int readInt() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[pos++];
+                value = value | ((b & 0x7F) << shift);
+                shift = shift + 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+    }
+
+    /**
+     * Collects paths and creates an immutable index. Not thread safe.
+     */
+    public static final class Builder {
+
+        private final List<String> packageNames = new ArrayList<>();
+
+        private final Map<String, Integer> packageIds = new HashMap<>();
+
+        private final List<Entry> entries = new ArrayList<>();
+
+        /**
+         * Adds a path of a package.
+         *
+         * @param path
+         *            Path like "opt/jdk8/bin/java". A leading "./" or "/"
+         *            will be removed.
+         * @param packageName
+         *            Name of the package like "devel/jdk8".
+         *
+         * @return This builder.
+         */
+        public final Builder add(@NotNull final String path,
+                @NotNull final String packageName) {
+            Contract.requireArgNotNull("path", path);
+            Contract.requireArgNotNull("packageName", packageName);
+            Integer id = packageIds.get(packageName);
+            if (id == null) {
+                id = packageNames.size();
+                packageNames.add(packageName);
+                packageIds.put(packageName, id);
+            }
+            entries.add(new Entry(normalize(path).getBytes(UTF8), id));
+            return this;
+        }
+
+        /**
+         * Creates the index from all added paths.
+         *
+         * @return New index.
+         */
+        public final PathIndex build() {
+            Collections.sort(entries, new Comparator<Entry>() {
+                @Override
+                public int compare(final Entry a, final Entry b) {
+                    final int cmp = PathIndex.compare(a.path, a.path.length,
+                            b.path);
+                    if (cmp != 0) {
+                        return cmp;
+                    }
+                    return a.packageId - b.packageId;
+                }
+            });
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final List<Integer> blockList = new ArrayList<>();
+            byte[] previous = null;
+            int count = 0;
+            int i = 0;
+            while (i < entries.size()) {
+                final byte[] path = entries.get(i).path;
+                int j = i;
+                final List<Integer> ids = new ArrayList<>();
+                while (j < entries.size()
+                        && Arrays.equals(path, entries.get(j).path)) {
+                    final int id = entries.get(j).packageId;
+                    if (!ids.contains(id)) {
+                        ids.add(id);
+                    }
+                    j++;
+                }
+                final int prefix;
+                if (count % BLOCK_SIZE == 0) {
+                    blockList.add(out.size());
+                    prefix = 0;
+                } else {
+                    prefix = commonPrefix(previous, path);
+                }
+                writeInt(out, prefix);
+                writeInt(out, path.length - prefix);
+                out.write(path, prefix, path.length - prefix);
+                writeInt(out, ids.size());
+                for (final int id : ids) {
+                    writeInt(out, id);
+                }
+                previous = path;
+                count++;
+                i = j;
+            }
+            final int[] blocks = new int[blockList.size()];
+            for (int k = 0; k < blocks.length; k++) {
+                blocks[k] = blockList.get(k);
+            }
+            return new PathIndex(packageNames.toArray(new String[packageNames
+                    .size()]), out.toByteArray(), blocks, count);
+        }
+
+        private static String normalize(final String path) {
+            if (path.startsWith("./")) {
+                return path.substring(2);
+            }
+            if (path.startsWith("/")) {
+                return path.substring(1);
+            }
+            return path;
+        }
+
+        private static int commonPrefix(final byte[] a, final byte[] b) {
+            final int n = Math.min(a.length, b.length);
+            int i = 0;
+            while (i < n && a[i] == b[i]) {
+                i++;
+            }
+            return i;
+        }
+
+        private static void writeInt(final ByteArrayOutputStream out,
+                final int value) {
+            int v = value;
+            while ((v & ~0x7F) != 0) {
+                out.write((v & 0x7F) | 0x80);
+                v = v >>> 7;
+            }
+            out.write(v);
+        }
+
+    }
+
+    /**
+     * Path with package before sorting.
+     */
+    private static final class Entry {
+
+        private final byte[] path;
+
+        private final int packageId;
+
+        public Entry(final byte[] path, final int packageId) {
+            super();
+            this.path = path;
+            this.packageId = packageId;
+        }
+
+    }
+
+}
@@ -0,0 +1,348 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.owndeb.commons;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.validation.constraints.NotNull;
+
+import org.fuin.objects4j.common.Contract;
+import org.fuin.objects4j.common.NotEmpty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Thread safe registry of the files and links installed by the packages of a
+ * build. Registering a path that is already owned by another package of the
+ * same architecture is a conflict. Depending on the mode, a conflict either
+ * fails immediately with an {@link IllegalStateException} or is only
+ * recorded.<br>
+ * <br>
+ * The registry is divided into lock stripes, so packages created in parallel
+ * rarely wait for each other. To save memory, a path is only stored as a 64
+ * bit fingerprint together with the number of the owning package.
+ */
+public final class PathRegistry {
+
+    private static final Logger LOG = LoggerFactory
+            .getLogger(PathRegistry.class);
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final boolean failFast;
+
+    private final Stripe[] stripes;
+
+    private final ConcurrentMap<String, Integer> ownerIds;
+
+    private final List<String> owners;
+
+    private final List<Conflict> conflicts;
+
+    /**
+     * Constructor with mode. The number of stripes depends on the number of
+     * available processors.
+     *
+     * @param failFast
+     *            TRUE if a conflict throws an exception or FALSE if conflicts
+     *            are only recorded.
+     */
+    public PathRegistry(final boolean failFast) {
+        this(failFast, 4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor with all data.
+     *
+     * @param failFast
+     *            TRUE if a conflict throws an exception or FALSE if conflicts
+     *            are only recorded.
+     * @param minStripes
+     *            Minimal number of lock stripes. Will be rounded up to the next
+     *            power of two.
+     */
+    public PathRegistry(final boolean failFast, final int minStripes) {
+        super();
+        this.failFast = failFast;
+        int count = 1;
+        while (count < minStripes) {
+            count = count * 2;
+        }
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.ownerIds = new ConcurrentHashMap<>();
+        this.owners = new ArrayList<>();
+        this.conflicts = new ArrayList<>();
+    }
+
+    /**
+     * Registers a path for a package.
+     *
+     * @param arch
+     *            Architecture of the package.
+     * @param path
+     *            Installed path like "opt/jdk8/bin/java".
+     * @param owner
+     *            Name of the package.
+     *
+     * @throws IllegalStateException
+     *             The path is already owned by another package and the
+     *             registry is in 'fail fast' mode.
+     */
+    public final void register(@NotEmpty final String arch,
+            @NotNull final String path, @NotEmpty final String owner) {
+        Contract.requireArgNotEmpty("arch", arch);
+        Contract.requireArgNotNull("path", path);
+        Contract.requireArgNotEmpty("owner", owner);
+
+        final long fingerprint = fingerprint(arch, path);
+        final Stripe stripe = stripes[(int) (fingerprint >>> 32)
+                & (stripes.length - 1)];
+        final int ownerId = ownerId(owner);
+        final int existing;
+        synchronized (stripe) {
+            existing = stripe.putIfAbsent(fingerprint, ownerId);
+        }
+        if (existing < 0 || existing == ownerId) {
+            return;
+        }
+        final Conflict conflict = new Conflict(arch, path, owner(existing),
+                owner);
+        if (failFast) {
+            throw new IllegalStateException(conflict.toString());
+        }
+        LOG.warn(conflict.toString());
+        synchronized (conflicts) {
+            conflicts.add(conflict);
+        }
+    }
+
+    /**
+     * Returns the recorded conflicts.
+     *
+     * @return Immutable list of conflicts found so far.
+     */
+    public final List<Conflict> getConflicts() {
+        synchronized (conflicts) {
+            return Collections.unmodifiableList(new ArrayList<>(conflicts));
+        }
+    }
+
+    /**
+     * Returns the number of registered paths.
+     *
+     * @return Number of paths.
+     */
+    public final int size() {
+        int size = 0;
+        for (final Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size = size + stripe.size;
+            }
+        }
+        return size;
+    }
+
+    private int ownerId(final String owner) {
+        final Integer id = ownerIds.get(owner);
+        if (id != null) {
+            return id;
+        }
+        synchronized (owners) {
+            Integer newId = ownerIds.get(owner);
+            if (newId == null) {
+                newId = owners.size();
+                owners.add(owner);
+                ownerIds.put(owner, newId);
+            }
+            return newId;
+        }
+    }
+
+    private String owner(final int id) {
+        synchronized (owners) {
+            return owners.get(id);
+        }
+    }
+
+    private static long fingerprint(final String arch, final String path) {
+        long hash = FNV_OFFSET;
+        hash = hash(hash, arch);
+        // Separator between architecture and path
+        hash = (hash ^ 0xFF) * FNV_PRIME;
+        hash = hash(hash, path);
+        // Avoid the zero that marks a free slot
+        if (hash == 0) {
+            return 1;
+        }
+        return hash;
+    }
+
+    private static long hash(final long start, final String str) {
+        long hash = start;
+        for (int i = 0; i < str.length(); i++) {
+            final char ch = str.charAt(i);
+            hash = (hash ^ (ch & 0xFF)) * FNV_PRIME;
+            hash = (hash ^ (ch >>> 8)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * Open addressing hash table from fingerprint to owner. Not thread safe.
+     */
+    private static final class Stripe {
+
+        private long[] keys = new long[16];
+
+        private int[] values = new int[16];
+
+        private int size;
+
+        /**
+         * Adds the owner if the fingerprint is unknown.
+         *
+         * @return Existing owner or -1 if the fingerprint was added.
+         */
+        public final int putIfAbsent(final long key, final int value) {
+            int idx = index(key, keys.length);
+            while (keys[idx] != 0) {
+                if (keys[idx] == key) {
+                    return values[idx];
+                }
+                idx = (idx + 1) & (keys.length - 1);
+            }
+            keys[idx] = key;
+            values[idx] = value;
+            size++;
+            if (size * 2 > keys.length) {
+                grow();
+            }
+            return -1;
+        }
+
+        private void grow() {
+            final long[] oldKeys = keys;
+            final int[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new int[oldValues.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int idx = index(oldKeys[i], keys.length);
+                    while (keys[idx] != 0) {
+                        idx = (idx + 1) & (keys.length - 1);
+                    }
+                    keys[idx] = oldKeys[i];
+                    values[idx] = oldValues[i];
+                }
+            }
+        }
+
+        private static int index(final long key, final int length) {
+            return (int) (key ^ (key >>> 29)) & (length - 1);
+        }
+
+    }
+
+    /**
+     * Path that is installed by two packages.
+     */
+    public static final class Conflict {
+
+        private final String arch;
+
+        private final String path;
+
+        private final String firstOwner;
+
+        private final String secondOwner;
+
+        /**
+         * Constructor with all data.
+         *
+         * @param arch
+         *            Architecture.
+         * @param path
+         *            Path installed by both packages.
+         * @param firstOwner
+         *            Package that registered the path first.
+         * @param secondOwner
+         *            Package that registered the path second.
+         */
+        public Conflict(final String arch, final String path,
+                final String firstOwner, final String secondOwner) {
+            super();
+            this.arch = arch;
+            this.path = path;
+            this.firstOwner = firstOwner;
+            this.secondOwner = secondOwner;
+        }
+
+        /**
+         * Returns the architecture.
+         *
+         * @return Architecture.
+         */
+        public final String getArch() {
+            return arch;
+        }
+
+        /**
+         * Returns the path.
+         *
+         * @return Path installed by both packages.
+         */
+        public final String getPath() {
+            return path;
+        }
+
+        /**
+         * Returns the package that registered the path first.
+         *
+         * @return Package name.
+         */
+        public final String getFirstOwner() {
+            return firstOwner;
+        }
+
+        /**
+         * Returns the package that registered the path second.
+         *
+         * @return Package name.
+         */
+        public final String getSecondOwner() {
+            return secondOwner;
+        }
+
+        @Override
+        public final String toString() {
+            return "Path '" + path + "' (" + arch + ") is installed by '"
+                    + firstOwner + "' and '" + secondOwner + "'";
+        }
+
+    }
+
+}
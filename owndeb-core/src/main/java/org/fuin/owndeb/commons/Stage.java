@@ -0,0 +1,35 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.owndeb.commons;
+
+/**
+ * Steps of creating a package that limit their concurrency independently of
+ * the number of packages created in parallel. Downloads are bound by the
+ * network and compression by the CPU, so it may be useful to allow many
+ * parallel downloads but only a few parallel compressions. The limits are set
+ * per build with {@link StageLimits}.
+ */
+public enum Stage {
+
+    /** Downloading archives and repository content. */
+    DOWNLOAD,
+
+    /** Creating compressed archives and Debian packages. */
+    COMPRESSION;
+
+}
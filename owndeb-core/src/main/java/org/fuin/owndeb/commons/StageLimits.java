@@ -0,0 +1,126 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.owndeb.commons;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+import javax.validation.constraints.NotNull;
+
+import org.fuin.objects4j.common.Contract;
+import org.fuin.objects4j.common.Nullable;
+
+/**
+ * Maximum number of parallel executions per {@link Stage} for one build. The
+ * limits are shared by all packages of the build, but independent of other
+ * builds in the same process.
+ */
+public final class StageLimits {
+
+    private final Map<Stage, Integer> max;
+
+    private final Map<Stage, Semaphore> permits;
+
+    /**
+     * Constructor with all limits.
+     * 
+     * @param maxDownloads
+     *            Maximum number of parallel downloads or a value less than one
+     *            for no limit.
+     * @param maxCompressions
+     *            Maximum number of parallel compressions or a value less than
+     *            one for no limit.
+     */
+    public StageLimits(final int maxDownloads, final int maxCompressions) {
+        super();
+        this.max = new EnumMap<>(Stage.class);
+        this.permits = new EnumMap<>(Stage.class);
+        limit(Stage.DOWNLOAD, maxDownloads);
+        limit(Stage.COMPRESSION, maxCompressions);
+    }
+
+    private void limit(final Stage stage, final int maxParallel) {
+        if (maxParallel > 0) {
+            max.put(stage, maxParallel);
+            permits.put(stage, new Semaphore(maxParallel, true));
+        }
+    }
+
+    /**
+     * Returns the maximum number of parallel executions of a stage.
+     * 
+     * @param stage
+     *            Stage.
+     * 
+     * @return Maximum number or zero if the stage is not limited.
+     */
+    public final int getMaxParallel(@NotNull final Stage stage) {
+        Contract.requireArgNotNull("stage", stage);
+        final Integer value = max.get(stage);
+        if (value == null) {
+            return 0;
+        }
+        return value;
+    }
+
+    /**
+     * Waits until a stage may be executed. The returned permit must be passed
+     * to {@link #exit(Semaphore)} after the stage is finished.
+     * 
+     * @param limits
+     *            Limits of the build or <code>null</code> if no stage is
+     *            limited.
+     * @param stage
+     *            Stage to execute.
+     * 
+     * @return Permit or <code>null</code> if the stage is not limited.
+     */
+    @Nullable
+    public static Semaphore enter(@Nullable final StageLimits limits,
+            @NotNull final Stage stage) {
+        Contract.requireArgNotNull("stage", stage);
+        if (limits == null) {
+            return null;
+        }
+        final Semaphore permit = limits.permits.get(stage);
+        if (permit != null) {
+            try {
+                permit.acquire();
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for stage: "
+                        + stage, ex);
+            }
+        }
+        return permit;
+    }
+
+    /**
+     * Finishes an execution of a stage.
+     * 
+     * @param permit
+     *            Permit returned by {@link #enter(StageLimits, Stage)}.
+     */
+    public static void exit(@Nullable final Semaphore permit) {
+        if (permit != null) {
+            permit.release();
+        }
+    }
+
+}
@@ -0,0 +1,553 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.owndeb.commons;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringTokenizer;
+import java.util.concurrent.Semaphore;
+
+import javax.validation.constraints.NotNull;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.apache.commons.compress.utils.IOUtils;
+import org.apache.tools.ant.types.selectors.SelectorUtils;
+import org.fuin.objects4j.common.Contract;
+import org.fuin.objects4j.common.NotEmpty;
+import org.fuin.objects4j.common.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads a TAR.GZ file with a single root folder once and routes every entry to
+ * the first target archive with matching include/exclude patterns. The
+ * patterns use the Ant syntax and are matched against the path below the root
+ * folder. Entries that match no target are skipped. The root folder is renamed
+ * to a given name in all target archives and parent directories are only
+ * written to a target if it contains at least one entry below them. Hard links
+ * to a file that is not part of the same target are skipped. The matching
+ * entries can also be extracted directly into a directory.
+ */
+public final class TarGzSplitter {
+
+    private static final Logger LOG = LoggerFactory
+            .getLogger(TarGzSplitter.class);
+
+    private final File archiveFile;
+
+    private final String rootName;
+
+    private final List<Target> targets;
+
+    private final StageLimits limits;
+
+    /**
+     * Constructor with mandatory data.
+     *
+     * @param archiveFile
+     *            Archive to read.
+     * @param rootName
+     *            New name of the root folder inside the target archives.
+     */
+    public TarGzSplitter(@NotNull final File archiveFile,
+            @NotEmpty final String rootName) {
+        this(archiveFile, rootName, null);
+    }
+
+    /**
+     * Constructor with all data.
+     *
+     * @param archiveFile
+     *            Archive to read.
+     * @param rootName
+     *            New name of the root folder inside the target archives.
+     * @param limits
+     *            Limits of the build or <code>null</code> if the compression
+     *            is not limited.
+     */
+    public TarGzSplitter(@NotNull final File archiveFile,
+            @NotEmpty final String rootName, @Nullable final StageLimits limits) {
+        super();
+        Contract.requireArgNotNull("archiveFile", archiveFile);
+        Contract.requireArgNotEmpty("rootName", rootName);
+        this.archiveFile = archiveFile;
+        this.rootName = rootName;
+        this.targets = new ArrayList<>();
+        this.limits = limits;
+    }
+
+    /**
+     * Adds a target archive. Targets are evaluated in the order they were
+     * added.
+     *
+     * @param targetFile
+     *            TAR.GZ file to create.
+     * @param includes
+     *            Comma or space separated list of patterns to include or
+     *            <code>null</code> to include everything.
+     * @param excludes
+     *            Comma or space separated list of patterns to exclude or
+     *            <code>null</code> to exclude nothing.
+     */
+    public final void addTarget(@NotNull final File targetFile,
+            @Nullable final String includes, @Nullable final String excludes) {
+        Contract.requireArgNotNull("targetFile", targetFile);
+        targets.add(new Target(targetFile, patterns(includes),
+                patterns(excludes)));
+    }
+
+    /**
+     * Reads the archive and writes all target archives.
+     */
+    public final void split() {
+        LOG.info("Split '{}' into {} archive(s)", archiveFile, targets.size());
+        final Semaphore permit = StageLimits.enter(limits, Stage.COMPRESSION);
+        try {
+            final TarArchiveInputStream tarIn = new TarArchiveInputStream(
+                    new GzipCompressorInputStream(new BufferedInputStream(
+                            new FileInputStream(archiveFile))));
+            boolean completed = false;
+            try {
+                for (final Target target : targets) {
+                    target.open();
+                }
+                final Map<String, TarArchiveEntry> dirs = new HashMap<>();
+                String root = null;
+                TarArchiveEntry entry;
+                while ((entry = tarIn.getNextTarEntry()) != null) {
+                    final String path = normalize(entry.getName());
+                    root = checkRoot(archiveFile, root, path);
+                    final String relative = relative(path);
+                    entry.setName(targetName(relative, entry.isDirectory()));
+                    String linked = null;
+                    if (entry.isLink()) {
+                        linked = relative(normalize(entry.getLinkName()));
+                        entry.setLinkName(targetName(linked, false));
+                    }
+                    if (entry.isDirectory()) {
+                        dirs.put(relative, entry);
+                    }
+                    if (relative.length() == 0) {
+                        continue;
+                    }
+                    final Target target = findTarget(relative);
+                    if (target == null) {
+                        LOG.debug("Skipped: {}", path);
+                    } else if (linked != null
+                            && findTarget(linked) != target) {
+                        LOG.warn("Skipped hard link '{}' to a file outside"
+                                + " of '{}': {}", path, target.file,
+                                entry.getLinkName());
+                    } else {
+                        target.write(relative, entry, tarIn, dirs);
+                    }
+                }
+                completed = true;
+            } finally {
+                tarIn.close();
+                closeTargets(completed);
+            }
+        } catch (final IOException ex) {
+            throw new RuntimeException("Error splitting archive: "
+                    + archiveFile, ex);
+        } finally {
+            StageLimits.exit(permit);
+        }
+    }
+
+    /**
+     * Extracts all entries of a TAR.GZ file with a single root folder that
+     * match the include/exclude patterns directly into a directory. The
+     * directory replaces the root folder. Parent directories are created as
+     * required, file modes and symbolic links are kept.
+     *
+     * @param archiveFile
+     *            Archive to read.
+     * @param targetDir
+     *            Directory to extract the entries into.
+     * @param includes
+     *            Comma or space separated include patterns or
+     *            <code>null</code> to include everything.
+     * @param excludes
+     *            Comma or space separated exclude patterns or
+     *            <code>null</code> to exclude nothing.
+     */
+    public static void extract(@NotNull final File archiveFile,
+            @NotNull final File targetDir, @Nullable final String includes,
+            @Nullable final String excludes) {
+        extract(archiveFile, targetDir, includes, excludes, null);
+    }
+
+    /**
+     * Extracts the matching entries of a TAR.GZ file like
+     * {@link #extract(File, File, String, String)} within the compression
+     * limit of a build.
+     *
+     * @param archiveFile
+     *            Archive to read.
+     * @param targetDir
+     *            Directory to extract the entries into.
+     * @param includes
+     *            Comma or space separated include patterns or
+     *            <code>null</code> to include everything.
+     * @param excludes
+     *            Comma or space separated exclude patterns or
+     *            <code>null</code> to exclude nothing.
+     * @param limits
+     *            Limits of the build or <code>null</code> if the compression
+     *            is not limited.
+     */
+    public static void extract(@NotNull final File archiveFile,
+            @NotNull final File targetDir, @Nullable final String includes,
+            @Nullable final String excludes,
+            @Nullable final StageLimits limits) {
+        Contract.requireArgNotNull("archiveFile", archiveFile);
+        Contract.requireArgNotNull("targetDir", targetDir);
+        LOG.info("Extract '{}' into: {}", archiveFile, targetDir);
+        final String[] includePatterns = patterns(includes);
+        final String[] excludePatterns = patterns(excludes);
+        final Semaphore permit = StageLimits.enter(limits, Stage.COMPRESSION);
+        try {
+            final String targetPath = targetDir.getCanonicalPath()
+                    + File.separator;
+            DebUtils.mkdirs(targetDir);
+            final TarArchiveInputStream tarIn = new TarArchiveInputStream(
+                    new GzipCompressorInputStream(new BufferedInputStream(
+                            new FileInputStream(archiveFile))));
+            try {
+                String root = null;
+                TarArchiveEntry entry;
+                while ((entry = tarIn.getNextTarEntry()) != null) {
+                    final String path = normalize(entry.getName());
+                    root = checkRoot(archiveFile, root, path);
+                    final String relative = relative(path);
+                    if (relative.length() == 0) {
+                        continue;
+                    }
+                    if (!matches(relative, includePatterns, excludePatterns)) {
+                        LOG.debug("Skipped: {}", path);
+                        continue;
+                    }
+                    final File file = new File(targetDir, relative);
+                    if (!file.getCanonicalPath().startsWith(targetPath)
+                            && !entry.isSymbolicLink()) {
+                        throw new IllegalArgumentException("Entry '" + path
+                                + "' outside of the target directory: "
+                                + archiveFile);
+                    }
+                    if (entry.isDirectory()) {
+                        DebUtils.mkdirs(file);
+                        continue;
+                    }
+                    DebUtils.mkdirs(file.getParentFile());
+                    if (entry.isSymbolicLink()) {
+                        Files.createSymbolicLink(file.toPath(),
+                                Paths.get(entry.getLinkName()));
+                    } else if (entry.isLink()) {
+                        final File linked = new File(targetDir,
+                                relative(normalize(entry.getLinkName())));
+                        if (linked.exists()) {
+                            Files.createLink(file.toPath(), linked.toPath());
+                        } else {
+                            LOG.warn("Skipped hard link '{}' to an excluded"
+                                    + " file: {}", path, entry.getLinkName());
+                        }
+                    } else {
+                        final OutputStream out = new BufferedOutputStream(
+                                new FileOutputStream(file));
+                        try {
+                            IOUtils.copy(tarIn, out);
+                        } finally {
+                            out.close();
+                        }
+                        Files.setPosixFilePermissions(file.toPath(),
+                                permissions(entry.getMode()));
+                        file.setLastModified(entry.getModTime().getTime());
+                    }
+                }
+            } finally {
+                tarIn.close();
+            }
+        } catch (final IOException ex) {
+            throw new RuntimeException("Error extracting archive: "
+                    + archiveFile, ex);
+        } finally {
+            StageLimits.exit(permit);
+        }
+    }
+
+    /**
+     * Closes all target archives. A target is only complete after the gzip
+     * trailer was written by closing it, so an error is propagated if the
+     * archive was read completely. Otherwise the original error is already
+     * on the way and the close error is only logged.
+     */
+    private void closeTargets(final boolean propagate) throws IOException {
+        IOException closeError = null;
+        for (final Target target : targets) {
+            try {
+                target.close();
+            } catch (final IOException ex) {
+                if (closeError == null) {
+                    closeError = ex;
+                }
+                if (!propagate) {
+                    LOG.error("Error closing archive: " + target.file, ex);
+                }
+            }
+        }
+        if (propagate && closeError != null) {
+            throw closeError;
+        }
+    }
+
+    private Target findTarget(final String relative) {
+        for (final Target target : targets) {
+            if (target.matches(relative)) {
+                return target;
+            }
+        }
+        return null;
+    }
+
+    private String targetName(final String relative, final boolean dir) {
+        final StringBuilder sb = new StringBuilder(rootName);
+        if (relative.length() > 0) {
+            sb.append('/');
+            sb.append(relative);
+        }
+        if (dir) {
+            sb.append('/');
+        }
+        return sb.toString();
+    }
+
+    private static String checkRoot(final File archiveFile,
+            final String root, final String path) {
+        final int idx = path.indexOf('/');
+        if (idx < 0) {
+            throw new IllegalArgumentException("Entry outside of a root folder '"
+                    + path + "' in archive: " + archiveFile);
+        }
+        final String entryRoot = path.substring(0, idx);
+        if (root != null && !root.equals(entryRoot)) {
+            throw new IllegalArgumentException("More than one root folder ('"
+                    + root + "', '" + entryRoot + "') in archive: "
+                    + archiveFile);
+        }
+        return entryRoot;
+    }
+
+    private static String relative(final String path) {
+        return stripTrailingSlash(path.substring(path.indexOf('/') + 1));
+    }
+
+    private static Set<PosixFilePermission> permissions(final int mode) {
+        final PosixFilePermission[] all = PosixFilePermission.values();
+        final Set<PosixFilePermission> set = EnumSet
+                .noneOf(PosixFilePermission.class);
+        for (int i = 0; i < all.length; i++) {
+            if ((mode & (1 << (all.length - 1 - i))) != 0) {
+                set.add(all[i]);
+            }
+        }
+        return set;
+    }
+
+    private static String normalize(final String name) {
+        if (name.startsWith("./")) {
+            return name.substring(2);
+        }
+        return name;
+    }
+
+    private static String stripTrailingSlash(final String path) {
+        if (path.endsWith("/")) {
+            return path.substring(0, path.length() - 1);
+        }
+        return path;
+    }
+
+    /**
+     * Splits a comma or space separated list of Ant patterns. A pattern that
+     * ends with a slash matches everything below that directory.
+     *
+     * @param patterns
+     *            Patterns to split or <code>null</code>.
+     *
+     * @return Array of patterns or <code>null</code> if the argument was
+     *         <code>null</code> or empty.
+     */
+    @Nullable
+    public static String[] patterns(@Nullable final String patterns) {
+        if (patterns == null) {
+            return null;
+        }
+        final List<String> list = new ArrayList<>();
+        final StringTokenizer tok = new StringTokenizer(patterns, ", ");
+        while (tok.hasMoreTokens()) {
+            final String pattern = tok.nextToken();
+            if (pattern.endsWith("/")) {
+                list.add(pattern + "**");
+            } else {
+                list.add(pattern);
+            }
+        }
+        if (list.isEmpty()) {
+            return null;
+        }
+        return list.toArray(new String[list.size()]);
+    }
+
+    /**
+     * Determines if a path matches the include and exclude patterns.
+     *
+     * @param path
+     *            Relative path to test.
+     * @param includes
+     *            Include patterns or <code>null</code> to include everything.
+     * @param excludes
+     *            Exclude patterns or <code>null</code> to exclude nothing.
+     *
+     * @return TRUE if the path is included and not excluded.
+     */
+    public static boolean matches(@NotNull final String path,
+            @Nullable final String[] includes, @Nullable final String[] excludes) {
+        if (excludes != null) {
+            for (final String exclude : excludes) {
+                if (SelectorUtils.matchPath(exclude, path)) {
+                    return false;
+                }
+            }
+        }
+        if (includes == null) {
+            return true;
+        }
+        for (final String include : includes) {
+            if (SelectorUtils.matchPath(include, path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Target archive with it's patterns.
+     */
+    private final class Target {
+
+        private final File file;
+
+        private final String[] includes;
+
+        private final String[] excludes;
+
+        private final Set<String> writtenDirs;
+
+        private TarArchiveOutputStream tarOut;
+
+        public Target(final File file, final String[] includes,
+                final String[] excludes) {
+            super();
+            this.file = file;
+            this.includes = includes;
+            this.excludes = excludes;
+            this.writtenDirs = new HashSet<>();
+        }
+
+        public final boolean matches(final String relative) {
+            return TarGzSplitter.matches(relative, includes, excludes);
+        }
+
+        public final void open() throws IOException {
+            LOG.debug("Create archive: {}", file);
+            tarOut = new TarArchiveOutputStream(new GzipCompressorOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(file))));
+            tarOut.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+            tarOut.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+        }
+
+        public final void write(final String relative,
+                final TarArchiveEntry entry, final TarArchiveInputStream tarIn,
+                final Map<String, TarArchiveEntry> dirs) throws IOException {
+            writeParentDirs(relative, dirs);
+            if (entry.isDirectory()) {
+                if (!writtenDirs.add(relative)) {
+                    return;
+                }
+                tarOut.putArchiveEntry(entry);
+            } else {
+                tarOut.putArchiveEntry(entry);
+                IOUtils.copy(tarIn, tarOut);
+            }
+            tarOut.closeArchiveEntry();
+        }
+
+        private void writeParentDirs(final String relative,
+                final Map<String, TarArchiveEntry> dirs) throws IOException {
+            int idx = -1;
+            do {
+                final String dir;
+                if (idx < 0) {
+                    dir = "";
+                } else {
+                    dir = relative.substring(0, idx);
+                }
+                if (writtenDirs.add(dir)) {
+                    TarArchiveEntry dirEntry = dirs.get(dir);
+                    if (dirEntry == null) {
+                        // Archive without explicit directory entry
+                        dirEntry = new TarArchiveEntry(targetName(dir, true));
+                    }
+                    tarOut.putArchiveEntry(dirEntry);
+                    tarOut.closeArchiveEntry();
+                }
+                idx = relative.indexOf('/', idx + 1);
+            } while (idx > 0);
+        }
+
+        public final void close() throws IOException {
+            if (tarOut != null) {
+                final TarArchiveOutputStream out = tarOut;
+                tarOut = null;
+                out.close();
+            }
+        }
+
+    }
+
+}
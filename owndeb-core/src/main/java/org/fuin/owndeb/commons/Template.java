@@ -0,0 +1,264 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.owndeb.commons;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.validation.constraints.NotNull;
+
+import org.apache.commons.io.IOUtils;
+import org.fuin.objects4j.common.Contract;
+
+/**
+ * Text with variable references ("${name}") that is parsed only once. Rendering
+ * writes the literal text and the variable values directly to a writer without
+ * creating the result as string first. References to unknown variables are
+ * written unchanged. Templates loaded from resources are cached per class and
+ * resource name.
+ */
+public final class Template {
+
+    private static final Charset UTF8 = Charset.forName("utf-8");
+
+    private static final ConcurrentMap<Key, Template> CACHE = new ConcurrentHashMap<>();
+
+    private final String[] parts;
+
+    /**
+     * Constructor with text.
+     *
+     * @param text
+     *            Text with variable references.
+     */
+    public Template(@NotNull final String text) {
+        super();
+        Contract.requireArgNotNull("text", text);
+        this.parts = VariableGraph.parse(text);
+    }
+
+    /**
+     * Returns the template for a resource. The resource is only loaded and
+     * parsed on first access.
+     *
+     * @param clasz
+     *            Class to use for reading the resource.
+     * @param resource
+     *            Full path to the UTF-8 encoded resource.
+     *
+     * @return Template.
+     *
+     * @throws IllegalArgumentException
+     *             The resource does not exist.
+     */
+    @NotNull
+    public static Template get(@NotNull final Class<?> clasz,
+            @NotNull final String resource) {
+        Contract.requireArgNotNull("clasz", clasz);
+        Contract.requireArgNotNull("resource", resource);
+        final Key key = new Key(clasz, resource);
+        final Template template = CACHE.get(key);
+        if (template != null) {
+            return template;
+        }
+        final Template newTemplate = new Template(load(clasz, resource));
+        final Template existing = CACHE.putIfAbsent(key, newTemplate);
+        if (existing == null) {
+            return newTemplate;
+        }
+        return existing;
+    }
+
+    /**
+     * Renders the template with the variables visible in a scope.
+     *
+     * @param vars
+     *            Variables to use.
+     * @param writer
+     *            Writer to use. Will not be closed.
+     *
+     * @throws IOException
+     *             Error writing.
+     */
+    public final void render(@NotNull final VariableGraph vars,
+            @NotNull final Writer writer) throws IOException {
+        Contract.requireArgNotNull("vars", vars);
+        Contract.requireArgNotNull("writer", writer);
+        for (int i = 0; i < parts.length; i++) {
+            if (i % 2 == 0) {
+                writer.write(parts[i]);
+            } else {
+                writeValue(writer, parts[i], vars.get(parts[i]));
+            }
+        }
+    }
+
+    /**
+     * Renders the template with the variables from a map.
+     *
+     * @param vars
+     *            Variables to use.
+     * @param writer
+     *            Writer to use. Will not be closed.
+     *
+     * @throws IOException
+     *             Error writing.
+     */
+    public final void render(@NotNull final Map<String, String> vars,
+            @NotNull final Writer writer) throws IOException {
+        Contract.requireArgNotNull("vars", vars);
+        Contract.requireArgNotNull("writer", writer);
+        for (int i = 0; i < parts.length; i++) {
+            if (i % 2 == 0) {
+                writer.write(parts[i]);
+            } else {
+                writeValue(writer, parts[i], vars.get(parts[i]));
+            }
+        }
+    }
+
+    /**
+     * Renders the template with the variables visible in a scope into a UTF-8
+     * encoded file.
+     *
+     * @param vars
+     *            Variables to use.
+     * @param file
+     *            File to create or overwrite.
+     */
+    public final void write(@NotNull final VariableGraph vars,
+            @NotNull final File file) {
+        Contract.requireArgNotNull("vars", vars);
+        Contract.requireArgNotNull("file", file);
+        try {
+            final Writer writer = open(file);
+            try {
+                render(vars, writer);
+            } finally {
+                writer.close();
+            }
+        } catch (final IOException ex) {
+            throw new RuntimeException("Error writing template to: " + file,
+                    ex);
+        }
+    }
+
+    /**
+     * Renders the template with the variables from a map into a UTF-8 encoded
+     * file.
+     *
+     * @param vars
+     *            Variables to use.
+     * @param file
+     *            File to create or overwrite.
+     */
+    public final void write(@NotNull final Map<String, String> vars,
+            @NotNull final File file) {
+        Contract.requireArgNotNull("vars", vars);
+        Contract.requireArgNotNull("file", file);
+        try {
+            final Writer writer = open(file);
+            try {
+                render(vars, writer);
+            } finally {
+                writer.close();
+            }
+        } catch (final IOException ex) {
+            throw new RuntimeException("Error writing template to: " + file,
+                    ex);
+        }
+    }
+
+    private static Writer open(final File file) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(
+                file), UTF8));
+    }
+
+    private static void writeValue(final Writer writer, final String name,
+            final String value) throws IOException {
+        if (value == null) {
+            writer.write("${");
+            writer.write(name);
+            writer.write('}');
+        } else {
+            writer.write(value);
+        }
+    }
+
+    private static String load(final Class<?> clasz, final String resource) {
+        final InputStream inStream = clasz.getResourceAsStream(resource);
+        if (inStream == null) {
+            throw new IllegalArgumentException("Unable to locate resource: "
+                    + resource);
+        }
+        try {
+            try {
+                return IOUtils.toString(inStream, UTF8);
+            } finally {
+                inStream.close();
+            }
+        } catch (final IOException ex) {
+            throw new RuntimeException("Error reading resource: " + resource,
+                    ex);
+        }
+    }
+
+    /**
+     * Cache key.
+     */
+    private static final class Key {
+
+        private final Class<?> clasz;
+
+        private final String resource;
+
+        public Key(final Class<?> clasz, final String resource) {
+            super();
+            this.clasz = clasz;
+            this.resource = resource;
+        }
+
+        @Override
+        public final int hashCode() {
+            return 31 * clasz.hashCode() + resource.hashCode();
+        }
+
+        @Override
+        public final boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return clasz == other.clasz && resource.equals(other.resource);
+        }
+
+    }
+
+}
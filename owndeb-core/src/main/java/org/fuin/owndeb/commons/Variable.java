@@ -17,7 +17,6 @@
  */
 package org.fuin.owndeb.commons;
 
-import static org.fuin.utils4j.Utils4J.readAsString;
 import static org.fuin.utils4j.Utils4J.url;
 
 import java.io.Serializable;
@@ -42,11 +41,20 @@ public final class Variable implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
+    /** Default connect and read timeout in milliseconds for loading URLs. */
+    public static final int DEFAULT_TIMEOUT = 30000;
+
+    /**
+     * Default number of seconds a value loaded from a HTTP(S) URL is used
+     * without asking the server again (one hour).
+     */
+    public static final int DEFAULT_TTL = 3600;
+
     @XmlAttribute(name = "name")
     private String name;
 
     @XmlAttribute(name = "value")
-    private String value;
+    private volatile String value;
 
     @XmlAttribute(name = "url")
     private String urlStr;
@@ -54,6 +62,9 @@ public final class Variable implements Serializable {
     @XmlAttribute(name = "encoding")
     private String encoding;
 
+    @XmlAttribute(name = "ttl")
+    private Integer ttl;
+
     private transient URL url;
 
     /**
@@ -106,6 +117,26 @@ public final class Variable implements Serializable {
      *            <code>null</code> but not empty.
      */
     public Variable(final String name, final URL url, final String encoding) {
+        this(name, url, encoding, null);
+    }
+
+    /**
+     * Constructor with URL and time to live.
+     * 
+     * @param name
+     *            Unique name - May not be <code>null</code> or empty.
+     * @param url
+     *            URL that references a text resource - May not be
+     *            <code>null</code>.
+     * @param encoding
+     *            Encoding of the text resource the URL points to - May be
+     *            <code>null</code> but not empty.
+     * @param ttl
+     *            Number of seconds a value loaded from a HTTP(S) URL is used
+     *            without asking the server again - May be <code>null</code>.
+     */
+    public Variable(final String name, final URL url, final String encoding,
+            final Integer ttl) {
         super();
         Utils4J.checkNotNull("name", name);
         Utils4J.checkNotEmpty("name", name);
@@ -116,6 +147,7 @@ public final class Variable implements Serializable {
         this.name = name;
         this.urlStr = url.toString();
         this.encoding = encoding;
+        this.ttl = ttl;
     }
 
     /**
@@ -134,14 +166,76 @@ public final class Variable implements Serializable {
      * @return Value or <code>null</code>.
      */
     public final String getValue() {
-        if ((value == null) && (urlStr != null)) {
-            value = readAsString(getURL(), getEncodingOrDefault(), 1024);
+        return load(DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * Returns the value. If no value but an URL is defined, the value will be
+     * loaded once from the URL. Threads that ask for the value while it's
+     * loaded wait for the result instead of loading it again.
+     * 
+     * @param timeoutMillis
+     *            Connect and read timeout in milliseconds.
+     * 
+     * @return Value or <code>null</code>.
+     */
+    public final String load(final int timeoutMillis) {
+        return load(timeoutMillis, VariableCache.getDefault());
+    }
+
+    /**
+     * Returns the value. If no value but an URL is defined, the value will be
+     * loaded once using a cache.
+     * 
+     * @param timeoutMillis
+     *            Connect and read timeout in milliseconds.
+     * @param cache
+     *            Cache to use.
+     * 
+     * @return Value or <code>null</code>.
+     */
+    final String load(final int timeoutMillis, final VariableCache cache) {
+        final String current = value;
+        if (current != null || urlStr == null) {
+            return current;
+        }
+        synchronized (this) {
             if (value == null) {
-                throw new IllegalStateException(
-                        "Reading the URL returned null: " + urlStr);
+                value = cache.read(this, timeoutMillis);
             }
+            return value;
+        }
+    }
+
+    /**
+     * Returns if the variable is loaded from an URL.
+     * 
+     * @return TRUE if an URL is defined.
+     */
+    public final boolean hasUrl() {
+        return urlStr != null;
+    }
+
+    /**
+     * Returns if the value is available without loading it.
+     * 
+     * @return TRUE if the value is known.
+     */
+    public final boolean isLoaded() {
+        return value != null;
+    }
+
+    /**
+     * Sets the value loaded by another variable with the same URL if the value
+     * is not yet known.
+     * 
+     * @param loaded
+     *            Value loaded from the URL.
+     */
+    final synchronized void setLoadedValue(final String loaded) {
+        if (value == null) {
+            value = loaded;
         }
-        return value;
     }
 
     /**
@@ -170,6 +264,31 @@ public final class Variable implements Serializable {
         return encoding;
     }
 
+    /**
+     * Returns the number of seconds a value loaded from a HTTP(S) URL is used
+     * without asking the server again.
+     * 
+     * @return Time to live or <code>null</code>.
+     */
+    public final Integer getTtl() {
+        return ttl;
+    }
+
+    /**
+     * Returns the number of seconds a value loaded from a HTTP(S) URL is used
+     * without asking the server again. If no time to live is defined this
+     * method returns {@link #DEFAULT_TTL} as default. Use a 'ttl' of 0 to
+     * revalidate the value on every build.
+     * 
+     * @return Time to live.
+     */
+    public final int getTtlOrDefault() {
+        if (ttl == null) {
+            return DEFAULT_TTL;
+        }
+        return ttl;
+    }
+
     /**
      * Returns the encoding to use for reading the value from the URL. If no
      * encoding is defined this method returns 'utf-8' as default.
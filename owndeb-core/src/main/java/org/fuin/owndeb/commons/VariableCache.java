@@ -0,0 +1,282 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.owndeb.commons;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+import javax.validation.constraints.NotNull;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.fuin.objects4j.common.Contract;
+import org.fuin.utils4j.Utils4J;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache for the values of variables loaded from HTTP(S) URLs that survives
+ * the build. A cached value is used without any request until the time to
+ * live of the variable is over. After that, the value is revalidated with a
+ * conditional request ("If-None-Match" / "If-Modified-Since") and only loaded
+ * again if it changed. If the server can't be reached, the last known value
+ * is used. Values of other URLs like "file:" or "classpath:" are always read
+ * directly.<br>
+ * <br>
+ * Every entry consists of a value file and a properties file with the meta
+ * data. Both are replaced atomically, so several builds can share a cache
+ * directory.
+ */
+public final class VariableCache {
+
+    private static final Logger LOG = LoggerFactory
+            .getLogger(VariableCache.class);
+
+    private static final String VALUE_EXTENSION = ".value";
+
+    private static final String META_EXTENSION = ".properties";
+
+    private static final String FETCHED = "fetched";
+
+    private static final String ETAG = "etag";
+
+    private static final String LAST_MODIFIED = "last-modified";
+
+    private static final String URL = "url";
+
+    private static final VariableCache DEFAULT = new VariableCache(new File(
+            Utils4J.getTempDir(), "owndeb-variable-cache"));
+
+    private final File dir;
+
+    /**
+     * Constructor with cache directory.
+     *
+     * @param dir
+     *            Directory for the cached values. Will be created if it does
+     *            not exist.
+     */
+    public VariableCache(@NotNull final File dir) {
+        super();
+        Contract.requireArgNotNull("dir", dir);
+        this.dir = dir;
+    }
+
+    /**
+     * Returns the cache located in the temporary directory.
+     *
+     * @return Default cache.
+     */
+    @NotNull
+    public static VariableCache getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns the value of a variable loaded from an URL. Uses the cached
+     * value if possible.
+     *
+     * @param var
+     *            Variable with an URL.
+     * @param timeoutMillis
+     *            Connect and read timeout in milliseconds.
+     *
+     * @return Value.
+     */
+    @NotNull
+    public final String read(@NotNull final Variable var,
+            final int timeoutMillis) {
+        Contract.requireArgNotNull("var", var);
+        final URL url = var.getURL();
+        final String protocol = url.getProtocol();
+        if (!"http".equals(protocol) && !"https".equals(protocol)) {
+            return readDirect(var, timeoutMillis);
+        }
+
+        final String key = DigestUtils.sha1Hex(url + " "
+                + var.getEncodingOrDefault());
+        final File valueFile = new File(dir, key + VALUE_EXTENSION);
+        final File metaFile = new File(dir, key + META_EXTENSION);
+        final Properties meta = readMeta(metaFile);
+        final String cached = readValue(valueFile, meta,
+                var.getEncodingOrDefault());
+
+        if (cached != null) {
+            final long fetched = Long.parseLong(meta.getProperty(FETCHED, "0"));
+            final long ttlMillis = 1000L * var.getTtlOrDefault();
+            if (System.currentTimeMillis() - fetched < ttlMillis) {
+                LOG.debug("Use cached value of variable '{}'", var.getName());
+                return cached;
+            }
+        }
+
+        try {
+            final HttpURLConnection con = (HttpURLConnection) url
+                    .openConnection();
+            con.setConnectTimeout(timeoutMillis);
+            con.setReadTimeout(timeoutMillis);
+            if (cached != null) {
+                if (meta.getProperty(ETAG) != null) {
+                    con.setRequestProperty("If-None-Match",
+                            meta.getProperty(ETAG));
+                }
+                if (meta.getProperty(LAST_MODIFIED) != null) {
+                    con.setRequestProperty("If-Modified-Since",
+                            meta.getProperty(LAST_MODIFIED));
+                }
+            }
+            try {
+                final int status = con.getResponseCode();
+                if (cached != null
+                        && status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    LOG.debug("Cached value of variable '{}' is up to date",
+                            var.getName());
+                    meta.setProperty(FETCHED,
+                            String.valueOf(System.currentTimeMillis()));
+                    writeMeta(metaFile, meta);
+                    return cached;
+                }
+                if (status != HttpURLConnection.HTTP_OK) {
+                    throw new IOException("HTTP status " + status);
+                }
+                final InputStream in = con.getInputStream();
+                final byte[] data;
+                try {
+                    data = IOUtils.toByteArray(in);
+                } finally {
+                    in.close();
+                }
+                final String value = new String(data,
+                        var.getEncodingOrDefault());
+                final Properties newMeta = new Properties();
+                newMeta.setProperty(URL, url.toString());
+                newMeta.setProperty(FETCHED,
+                        String.valueOf(System.currentTimeMillis()));
+                setIfNotNull(newMeta, ETAG, con.getHeaderField("ETag"));
+                setIfNotNull(newMeta, LAST_MODIFIED,
+                        con.getHeaderField("Last-Modified"));
+                write(valueFile, data);
+                writeMeta(metaFile, newMeta);
+                return value;
+            } finally {
+                con.disconnect();
+            }
+        } catch (final IOException ex) {
+            if (cached != null) {
+                LOG.warn("Failed to revalidate variable '" + var.getName()
+                        + "' - Using last known value from: " + valueFile, ex);
+                return cached;
+            }
+            throw new RuntimeException("Error reading variable '"
+                    + var.getName() + "' from: " + url, ex);
+        }
+    }
+
+    private static String readDirect(final Variable var,
+            final int timeoutMillis) {
+        try {
+            final URLConnection con = var.getURL().openConnection();
+            con.setConnectTimeout(timeoutMillis);
+            con.setReadTimeout(timeoutMillis);
+            final InputStream in = con.getInputStream();
+            try {
+                return IOUtils.toString(in, var.getEncodingOrDefault());
+            } finally {
+                in.close();
+            }
+        } catch (final IOException ex) {
+            throw new RuntimeException("Error reading variable '"
+                    + var.getName() + "' from: " + var.getURL(), ex);
+        }
+    }
+
+    private static String readValue(final File valueFile,
+            final Properties meta, final String encoding) {
+        if (meta.getProperty(FETCHED) == null || !valueFile.exists()) {
+            return null;
+        }
+        try {
+            return FileUtils.readFileToString(valueFile, encoding);
+        } catch (final IOException ex) {
+            LOG.warn("Ignoring unreadable cache file: " + valueFile, ex);
+            return null;
+        }
+    }
+
+    private static Properties readMeta(final File metaFile) {
+        final Properties meta = new Properties();
+        if (metaFile.exists()) {
+            try {
+                final InputStream in = new FileInputStream(metaFile);
+                try {
+                    meta.load(in);
+                } finally {
+                    in.close();
+                }
+            } catch (final IOException ex) {
+                LOG.warn("Ignoring unreadable cache file: " + metaFile, ex);
+                return new Properties();
+            }
+        }
+        return meta;
+    }
+
+    private void writeMeta(final File metaFile, final Properties meta)
+            throws IOException {
+        final File tmpFile = tmpFile(metaFile);
+        final OutputStream out = new FileOutputStream(tmpFile);
+        try {
+            meta.store(out, null);
+        } finally {
+            out.close();
+        }
+        Files.move(tmpFile.toPath(), metaFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void write(final File file, final byte[] data) throws IOException {
+        final File tmpFile = tmpFile(file);
+        FileUtils.writeByteArrayToFile(tmpFile, data);
+        Files.move(tmpFile.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private File tmpFile(final File file) throws IOException {
+        DebUtils.mkdirs(dir);
+        return File.createTempFile(file.getName(), ".tmp", dir);
+    }
+
+    private static void setIfNotNull(final Properties props, final String key,
+            final String value) {
+        if (value != null) {
+            props.setProperty(key, value);
+        }
+    }
+
+}
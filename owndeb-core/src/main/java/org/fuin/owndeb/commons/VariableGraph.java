@@ -0,0 +1,423 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.owndeb.commons;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.validation.constraints.NotNull;
+
+import org.fuin.objects4j.common.Contract;
+import org.fuin.objects4j.common.Nullable;
+
+/**
+ * Thread safe dependency graph of the variables of one scope. The references
+ * ("${name}") of a variable are parsed only once when the variable is added.
+ * Values are resolved lazily in dependency order, so every variable is
+ * resolved at most once until it or one of the variables it references
+ * changes. Replacing a variable only marks the variables that depend on it as
+ * outdated.<br>
+ * <br>
+ * Variables of the parent scope that reference a variable defined in this
+ * scope must be resolved again in the context of this scope (late binding).
+ * Only these are copied into this graph - all others are taken from the parent
+ * unchanged. References to unknown variables are left as they are. Scopes are
+ * expected to be set up from the root to the leaves, so changes of the parent
+ * are not propagated to already resolved values of this graph.<br>
+ * <br>
+ * Lookups use an immutable map with the resolved values of this scope. They
+ * neither lock nor allocate. The map is only created again after a change,
+ * while holding the lock of the graph.
+ */
+public final class VariableGraph {
+
+    private static final String START = "${";
+
+    private static final char END = '}';
+
+    private volatile VariableGraph parent;
+
+    private final Map<String, Node> nodes;
+
+    private final Map<String, Set<String>> dependents;
+
+    private int resolveCount;
+
+    /** Resolved values of this scope or <code>null</code> if outdated. */
+    private volatile Map<String, String> values;
+
+    /**
+     * Constructor with parent.
+     *
+     * @param parent
+     *            Graph of the parent scope or <code>null</code>.
+     */
+    public VariableGraph(@Nullable final VariableGraph parent) {
+        super();
+        this.parent = parent;
+        this.nodes = new HashMap<>();
+        this.dependents = new HashMap<>();
+    }
+
+    /**
+     * Sets the graph of the parent scope. All variables of this scope have to
+     * be resolved again.
+     *
+     * @param parent
+     *            Graph of the parent scope or <code>null</code>.
+     */
+    public final synchronized void setParent(
+            @Nullable final VariableGraph parent) {
+        this.parent = parent;
+        final List<Node> copied = new ArrayList<>();
+        for (final Node node : nodes.values()) {
+            if (node.inherited) {
+                copied.add(node);
+            }
+        }
+        for (final Node node : copied) {
+            removeNode(node.name);
+        }
+        for (final String name : new ArrayList<>(nodes.keySet())) {
+            addAffected(name);
+        }
+        for (final Node node : nodes.values()) {
+            node.resolved = null;
+        }
+        values = null;
+    }
+
+    /**
+     * Adds a variable to this scope or replaces an existing one with the same
+     * name. The variable itself and all variables that reference it will be
+     * resolved again on next access.
+     *
+     * @param var
+     *            Variable to add.
+     */
+    public final synchronized void put(@NotNull final Variable var) {
+        Contract.requireArgNotNull("var", var);
+        removeNode(var.getName());
+        addNode(new Node(var.getName(), var.getValue(), false));
+        for (final String name : addAffected(var.getName())) {
+            nodes.get(name).resolved = null;
+        }
+        values = null;
+    }
+
+    /**
+     * Returns the resolved value of a variable visible in this scope.
+     *
+     * @param name
+     *            Name of the variable.
+     *
+     * @return Value or <code>null</code> if the variable is unknown.
+     *
+     * @throws IllegalStateException
+     *             The variable references itself directly or indirectly.
+     */
+    @Nullable
+    public final String get(@NotNull final String name) {
+        Contract.requireArgNotNull("name", name);
+        Map<String, String> current = values;
+        if (current == null) {
+            current = values();
+        }
+        final String value = current.get(name);
+        if (value != null) {
+            return value;
+        }
+        final VariableGraph currentParent = parent;
+        if (currentParent == null) {
+            return null;
+        }
+        return currentParent.get(name);
+    }
+
+    /**
+     * Resolves all variables of this scope that are not up to date.
+     *
+     * @throws IllegalStateException
+     *             A variable references itself directly or indirectly.
+     */
+    public final void resolve() {
+        if (values == null) {
+            values();
+        }
+    }
+
+    /**
+     * Returns the resolved values of all variables visible in this scope.
+     *
+     * @return Values by name.
+     *
+     * @throws IllegalStateException
+     *             A variable references itself directly or indirectly.
+     */
+    @NotNull
+    public final Map<String, String> getResolved() {
+        Map<String, String> current = values;
+        if (current == null) {
+            current = values();
+        }
+        final VariableGraph currentParent = parent;
+        final Map<String, String> map;
+        if (currentParent == null) {
+            map = new HashMap<>();
+        } else {
+            map = currentParent.getResolved();
+        }
+        map.putAll(current);
+        return map;
+    }
+
+    /**
+     * Creates an independent copy of this graph with the same parent.
+     *
+     * @return New graph.
+     */
+    @NotNull
+    public final synchronized VariableGraph copy() {
+        final VariableGraph copy = new VariableGraph(parent);
+        for (final Node node : nodes.values()) {
+            final Node nodeCopy = new Node(node.name, node.raw, node.inherited);
+            nodeCopy.resolved = node.resolved;
+            copy.addNode(nodeCopy);
+        }
+        return copy;
+    }
+
+    /**
+     * Returns how often a variable of this scope was resolved.
+     *
+     * @return Number of resolved values.
+     */
+    final synchronized int getResolveCount() {
+        return resolveCount;
+    }
+
+    /**
+     * Resolves all outdated variables of this scope and publishes the values.
+     * 
+     * @return Immutable resolved values of this scope.
+     */
+    private synchronized Map<String, String> values() {
+        if (values != null) {
+            return values;
+        }
+        final Map<String, String> map = new HashMap<>();
+        for (final Node node : nodes.values()) {
+            map.put(node.name, resolve(node, new LinkedHashSet<String>()));
+        }
+        values = Collections.unmodifiableMap(map);
+        return values;
+    }
+
+    private String resolve(final Node node, final Set<String> path) {
+        if (node.resolved != null) {
+            return node.resolved;
+        }
+        if (path.contains(node.name)) {
+            final StringBuilder sb = new StringBuilder();
+            boolean inCycle = false;
+            for (final String name : path) {
+                if (name.equals(node.name)) {
+                    inCycle = true;
+                }
+                if (inCycle) {
+                    sb.append(name).append(" -> ");
+                }
+            }
+            sb.append(node.name);
+            throw new IllegalStateException("Cycle in variable references: "
+                    + sb);
+        }
+        path.add(node.name);
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < node.parts.length; i++) {
+            if (i % 2 == 0) {
+                sb.append(node.parts[i]);
+            } else {
+                final String ref = node.parts[i];
+                final Node refNode = nodes.get(ref);
+                final String value;
+                if (refNode != null) {
+                    value = resolve(refNode, path);
+                } else if (parent != null) {
+                    value = parent.get(ref);
+                } else {
+                    value = null;
+                }
+                if (value == null) {
+                    sb.append(START).append(ref).append(END);
+                } else {
+                    sb.append(value);
+                }
+            }
+        }
+        path.remove(node.name);
+        node.resolved = sb.toString();
+        resolveCount++;
+        return node.resolved;
+    }
+
+    /**
+     * Copies all inherited variables that depend on the given one into this
+     * graph.
+     *
+     * @return Names of the variables in this graph that depend on the given
+     *         one.
+     */
+    private Set<String> addAffected(final String name) {
+        final Set<String> affected = new LinkedHashSet<>();
+        final Deque<String> work = new ArrayDeque<>();
+        work.add(name);
+        while (!work.isEmpty()) {
+            for (final String dependent : directDependents(work.removeFirst())) {
+                if (affected.add(dependent)) {
+                    work.add(dependent);
+                }
+            }
+        }
+        for (final String dependent : affected) {
+            if (!nodes.containsKey(dependent)) {
+                addNode(new Node(dependent, parent.findNode(dependent).raw,
+                        true));
+            }
+        }
+        return affected;
+    }
+
+    private synchronized Set<String> directDependents(final String name) {
+        final Set<String> result = new HashSet<>();
+        final Set<String> local = dependents.get(name);
+        if (local != null) {
+            result.addAll(local);
+        }
+        if (parent != null) {
+            for (final String dependent : parent.directDependents(name)) {
+                if (!nodes.containsKey(dependent)) {
+                    result.add(dependent);
+                }
+            }
+        }
+        return result;
+    }
+
+    private synchronized Node findNode(final String name) {
+        final Node node = nodes.get(name);
+        if (node != null || parent == null) {
+            return node;
+        }
+        return parent.findNode(name);
+    }
+
+    private void addNode(final Node node) {
+        nodes.put(node.name, node);
+        for (int i = 1; i < node.parts.length; i = i + 2) {
+            Set<String> set = dependents.get(node.parts[i]);
+            if (set == null) {
+                set = new HashSet<>();
+                dependents.put(node.parts[i], set);
+            }
+            set.add(node.name);
+        }
+    }
+
+    private void removeNode(final String name) {
+        final Node node = nodes.remove(name);
+        if (node == null) {
+            return;
+        }
+        for (int i = 1; i < node.parts.length; i = i + 2) {
+            final Set<String> set = dependents.get(node.parts[i]);
+            if (set != null) {
+                set.remove(name);
+                if (set.isEmpty()) {
+                    dependents.remove(node.parts[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Splits a value into literal text and references.
+     *
+     * @param value
+     *            Value to parse.
+     *
+     * @return Alternating literal text (even index) and names of referenced
+     *         variables (odd index).
+     */
+    static String[] parse(final String value) {
+        final List<String> parts = new ArrayList<>();
+        int pos = 0;
+        int start;
+        while ((start = value.indexOf(START, pos)) > -1) {
+            final int end = value.indexOf(END, start + START.length());
+            if (end == -1) {
+                break;
+            }
+            parts.add(value.substring(pos, start));
+            parts.add(value.substring(start + START.length(), end));
+            pos = end + 1;
+        }
+        parts.add(value.substring(pos));
+        return parts.toArray(new String[parts.size()]);
+    }
+
+    @Override
+    public final synchronized String toString() {
+        return nodes.keySet().toString();
+    }
+
+    /**
+     * Variable with parsed references and cached resolved value.
+     */
+    private static final class Node {
+
+        private final String name;
+
+        private final String raw;
+
+        private final String[] parts;
+
+        private final boolean inherited;
+
+        private String resolved;
+
+        public Node(final String name, final String raw,
+                final boolean inherited) {
+            super();
+            this.name = name;
+            this.raw = raw;
+            this.parts = parse(raw);
+            this.inherited = inherited;
+        }
+
+    }
+
+}
@@ -0,0 +1,211 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.owndeb.commons;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.validation.constraints.NotNull;
+
+import org.fuin.objects4j.common.Contract;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads the values of variables that reference an URL in parallel. Every URL
+ * is read only once, even if several variables reference it. The number of
+ * parallel connections is limited and every connection uses a timeout.
+ */
+public final class VariableLoader {
+
+    /** Default number of URLs loaded in parallel. */
+    public static final int DEFAULT_THREADS = 8;
+
+    private static final Logger LOG = LoggerFactory
+            .getLogger(VariableLoader.class);
+
+    private final int threads;
+
+    private final int timeoutMillis;
+
+    private final VariableCache cache;
+
+    /**
+     * Constructor with default number of threads and timeout.
+     */
+    public VariableLoader() {
+        this(DEFAULT_THREADS, Variable.DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * Constructor with number of threads and timeout that uses the default
+     * cache.
+     *
+     * @param threads
+     *            Maximum number of URLs loaded in parallel.
+     * @param timeoutMillis
+     *            Connect and read timeout in milliseconds.
+     */
+    public VariableLoader(final int threads, final int timeoutMillis) {
+        this(threads, timeoutMillis, VariableCache.getDefault());
+    }
+
+    /**
+     * Constructor with all data.
+     *
+     * @param threads
+     *            Maximum number of URLs loaded in parallel.
+     * @param timeoutMillis
+     *            Connect and read timeout in milliseconds.
+     * @param cache
+     *            Cache for values loaded from HTTP(S) URLs.
+     */
+    public VariableLoader(final int threads, final int timeoutMillis,
+            @NotNull final VariableCache cache) {
+        super();
+        Contract.requireArgMin("threads", threads, 1);
+        Contract.requireArgMin("timeoutMillis", timeoutMillis, 0);
+        Contract.requireArgNotNull("cache", cache);
+        this.threads = threads;
+        this.timeoutMillis = timeoutMillis;
+        this.cache = cache;
+    }
+
+    /**
+     * Loads all variables that have an URL but no value yet. Other variables
+     * are ignored.
+     *
+     * @param vars
+     *            Variables to load.
+     *
+     * @throws RuntimeException
+     *             At least one URL could not be read. The first error is
+     *             used as cause.
+     */
+    public final void load(@NotNull final Collection<Variable> vars) {
+        Contract.requireArgNotNull("vars", vars);
+
+        final Map<String, List<Variable>> byUrl = new LinkedHashMap<>();
+        for (final Variable var : vars) {
+            if (var.hasUrl() && !var.isLoaded()) {
+                final String key = var.getURL() + " "
+                        + var.getEncodingOrDefault();
+                List<Variable> list = byUrl.get(key);
+                if (list == null) {
+                    list = new ArrayList<>();
+                    byUrl.put(key, list);
+                }
+                if (!containsSame(list, var)) {
+                    list.add(var);
+                }
+            }
+        }
+        if (byUrl.isEmpty()) {
+            return;
+        }
+        LOG.info("Load {} URL variable(s) using {} thread(s)", byUrl.size(),
+                Math.min(threads, byUrl.size()));
+        if (byUrl.size() == 1) {
+            // No need for a thread pool
+            final List<Variable> list = byUrl.values().iterator().next();
+            try {
+                loadGroup(list);
+            } catch (final RuntimeException ex) {
+                throw new RuntimeException("Failed to load URL variable(s): "
+                        + names(list), ex);
+            }
+            return;
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(Math
+                .min(threads, byUrl.size()));
+        try {
+            final List<Future<String>> futures = new ArrayList<>();
+            for (final List<Variable> list : byUrl.values()) {
+                futures.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() {
+                        return loadGroup(list);
+                    }
+                }));
+            }
+            final List<String> failed = new ArrayList<>();
+            Throwable firstCause = null;
+            int i = 0;
+            for (final List<Variable> list : byUrl.values()) {
+                try {
+                    futures.get(i).get();
+                } catch (final ExecutionException ex) {
+                    failed.addAll(names(list));
+                    if (firstCause == null) {
+                        firstCause = ex.getCause();
+                    }
+                } catch (final InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(
+                            "Interrupted while loading URL variables", ex);
+                }
+                i++;
+            }
+            if (firstCause != null) {
+                throw new RuntimeException("Failed to load URL variable(s): "
+                        + failed, firstCause);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+    }
+
+    private String loadGroup(final List<Variable> list) {
+        final String value = list.get(0).load(timeoutMillis, cache);
+        for (int i = 1; i < list.size(); i++) {
+            list.get(i).setLoadedValue(value);
+        }
+        return value;
+    }
+
+    private static List<String> names(final List<Variable> list) {
+        final List<String> names = new ArrayList<>();
+        for (final Variable var : list) {
+            if (!names.contains(var.getName())) {
+                names.add(var.getName());
+            }
+        }
+        return names;
+    }
+
+    private static boolean containsSame(final List<Variable> list,
+            final Variable var) {
+        for (final Variable other : list) {
+            if (other == var) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -47,4 +47,12 @@ public interface VariablesContainer {
     @Nullable
     public String variableValue(@NotNull String name);
 
+    /**
+     * Returns the resolver for the variables of this container.
+     * 
+     * @return Variable graph.
+     */
+    @NotNull
+    public VariableGraph getVariableGraph();
+
 }
@@ -32,7 +32,6 @@ import javax.validation.constraints.NotNull;
 import javax.xml.bind.annotation.XmlAttribute;
 
 import org.apache.commons.io.FileUtils;
-import org.apache.tools.ant.Project;
 import org.fuin.objects4j.common.Contract;
 import org.fuin.objects4j.common.NotEmpty;
 import org.fuin.objects4j.common.Nullable;
@@ -40,17 +39,21 @@ import org.fuin.owndeb.commons.DebDependency;
 import org.fuin.owndeb.commons.DebPackage;
 import org.fuin.owndeb.commons.DebPackages;
 import org.fuin.owndeb.commons.DebUtils;
+import org.fuin.owndeb.commons.TarGzSplitter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.vafer.jdeb.ant.Data;
-import org.vafer.jdeb.ant.DebAntTask;
 import org.vafer.jdeb.ant.Mapper;
 
 /**
- * Downloads an archive and creates a binary Debian package from it.
+ * Downloads an archive and creates a binary Debian package from it. If the
+ * package defines include or exclude patterns, only the matching entries of the
+ * archive are unpacked.
  */
 public abstract class AbstractDownloadTarGzPackage extends DebPackage {
 
+    private static final long serialVersionUID = 1L;
+
     private static final String URL = "url";
 
     private static final Logger LOG = LoggerFactory
@@ -147,24 +150,31 @@ public abstract class AbstractDownloadTarGzPackage extends DebPackage {
         LOG.info("Creating package '{}' in: {}", getPackageName(),
                 buildDirectory);
 
-        final File archiveFile = cachedDownload(url(urlStr), buildDirectory);
+        final File archiveFile = cachedDownload(getUrl(), buildDirectory,
+                getStageLimits());
 
-        final File packageDir = new File(buildDirectory, getName());
-        final File controlDir = new File(buildDirectory, getName() + "-control");
+        final File workDir = getWorkDir(buildDirectory);
+        DebUtils.mkdirs(workDir);
+        final File packageDir = new File(workDir, getName());
+        final File controlDir = new File(workDir, getName() + "-control");
 
         LOG.debug("packageDir: {}", packageDir);
         LOG.debug("controlDir: {}", controlDir);
 
-        final File srcDir = rootArchiveFolder(buildDirectory, archiveFile);
-        if (srcDir.exists()) {
-            LOG.debug("Directory already exists: " + srcDir);
-            FileUtils.deleteQuietly(srcDir);
+        if (getIncludes() == null && getExcludes() == null) {
+            final File srcDir = rootArchiveFolder(workDir, archiveFile);
+            if (srcDir.exists()) {
+                LOG.debug("Directory already exists: " + srcDir);
+                FileUtils.deleteQuietly(srcDir);
+            }
+            unTarGz(archiveFile, workDir);
+            renameOriginalToPackageDir(srcDir, packageDir);
+        } else {
+            unTarGzFiltered(archiveFile, packageDir);
         }
-        unTarGz(archiveFile);
-        renameOriginalToPackageDir(srcDir, packageDir);
         applyModifications(packageDir);
 
-        final File tarFile = tarGz(buildDirectory, getName());
+        final File tarFile = tarGz(workDir, getName());
         DebUtils.mkdirs(controlDir);
         copyControlFiles(controlDir);
         createDebianPackage(this, buildDirectory, packageDir, controlDir,
@@ -201,6 +211,42 @@ public abstract class AbstractDownloadTarGzPackage extends DebPackage {
         return url(getUrlStr());
     }
 
+    /**
+     * Returns the patterns of the archive entries to include. The patterns use
+     * the Ant syntax and are matched against the path below the root folder of
+     * the archive. The default implementation includes everything.
+     * 
+     * @return Comma or space separated list of patterns or <code>null</code>
+     *         to include everything.
+     */
+    @Nullable
+    protected String getIncludes() {
+        return null;
+    }
+
+    /**
+     * Returns the patterns of the archive entries to exclude. The patterns use
+     * the Ant syntax and are matched against the path below the root folder of
+     * the archive. The default implementation excludes nothing.
+     * 
+     * @return Comma or space separated list of patterns or <code>null</code>
+     *         to exclude nothing.
+     */
+    @Nullable
+    protected String getExcludes() {
+        return null;
+    }
+
+    private void unTarGzFiltered(final File archiveFile,
+            final File packageDir) {
+        if (packageDir.exists()) {
+            LOG.info("Delete existing package directory: {}", packageDir);
+            FileUtils.deleteQuietly(packageDir);
+        }
+        TarGzSplitter.extract(archiveFile, packageDir, getIncludes(),
+                getExcludes(), getStageLimits());
+    }
+
     private static void renameOriginalToPackageDir(final File srcDir,
             final File packageDir) {
         if (packageDir.exists()) {
@@ -216,14 +262,14 @@ public abstract class AbstractDownloadTarGzPackage extends DebPackage {
         }
     }
 
-    private static File rootArchiveFolder(final File buildDirectory,
+    private static File rootArchiveFolder(final File workDir,
             final File archiveFile) {
         final String folderName = peekFirstTarGzFolderName(archiveFile);
         if (folderName == null) {
             throw new IllegalArgumentException(
                     "Couldn't find directory in archive: " + archiveFile);
         }
-        return new File(buildDirectory, folderName);
+        return new File(workDir, folderName);
     }
 
     private static void createDebianPackage(final DebPackage debPackage,
@@ -239,13 +285,6 @@ public abstract class AbstractDownloadTarGzPackage extends DebPackage {
         LOG.debug("controlDir: {}", controlDir);
         LOG.debug("debName: {}", debName);
 
-        final Project project = new Project();
-
-        final DebAntTask task = new DebAntTask();
-        task.setProject(project);
-        task.setDestfile(debName);
-        task.setControl(controlDir);
-
         final Data data = new Data();
         data.setSrc(tarFile);
         data.setType("archive");
@@ -256,9 +295,9 @@ public abstract class AbstractDownloadTarGzPackage extends DebPackage {
         mapper.setGroup("developer");
         data.addMapper(mapper);
 
-        task.addData(data);
-
-        task.execute();
+        DebUtils.createDeb(debName, controlDir,
+                debPackage.getPathRegistry(), debPackage.getStageLimits(),
+                debPackage.getArch(), debPackage.getName(), data);
 
         LOG.info("Finished creating package " + debPackage.getName());
 
@@ -17,29 +17,83 @@
  */
 package org.fuin.owndeb.pkg.eclipse;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.LineNumberReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.StringTokenizer;
 
 import javax.validation.constraints.NotNull;
 
 import org.fuin.objects4j.common.Contract;
 import org.fuin.objects4j.common.NotEmpty;
+import org.fuin.objects4j.common.Nullable;
 
 /**
- * Modifies an existing original (unmodified) 'eclipse.ini' file.
+ * Modifies an 'eclipse.ini' file. All changes are collected first and then
+ * applied in a single pass over the lines of the file, so the modifier can be
+ * used on any reader/writer or archive entry stream as well as on a file on
+ * disk. The line separator of the original file is kept.<br>
+ * <br>
+ * Launcher options ("--launcher.*") that don't exist yet are inserted before
+ * the "-vm" or "-vmargs" option. System properties ("-D") are replaced inside
+ * the "-vmargs" section or appended to it. An instance is not thread safe.
  */
 public final class EclipseIniModifier {
 
+    private static final Charset UTF8 = Charset.forName("utf-8");
+
+    private static final String VM = "-vm";
+
+    private static final String VMARGS = "-vmargs";
+
+    private static final String LAUNCHER = "--launcher.";
+
+    private static final String DEFAULT_LINE_SEPARATOR = "\n";
+
     private final File file;
 
-    private final List<String> lines;
+    private String vm;
+
+    private List<String> vmargs;
+
+    private final Map<String, String> properties;
+
+    private final Map<String, String> launcherOptions;
+
+    private final List<String> removedVmargs;
+
+    private final List<String> addedVmargs;
+
+    /**
+     * Constructor without file. Changes can only be applied to streams.
+     */
+    public EclipseIniModifier() {
+        super();
+        this.file = null;
+        this.properties = new LinkedHashMap<>();
+        this.launcherOptions = new LinkedHashMap<>();
+        this.removedVmargs = new ArrayList<>();
+        this.addedVmargs = new ArrayList<>();
+    }
 
     /**
      * Constructor with file to modify.
@@ -51,7 +105,10 @@ public final class EclipseIniModifier {
         super();
         Contract.requireArgNotNull("file", file);
         this.file = file;
-        this.lines = readFile(file);
+        this.properties = new LinkedHashMap<>();
+        this.launcherOptions = new LinkedHashMap<>();
+        this.removedVmargs = new ArrayList<>();
+        this.addedVmargs = new ArrayList<>();
     }
 
     /**
@@ -62,30 +119,14 @@ public final class EclipseIniModifier {
      */
     public final void setVm(@NotEmpty final String pathToBinJava) {
         Contract.requireArgNotEmpty("pathToBinJava", pathToBinJava);
-        final int idxVm = lines.indexOf("-vm");
-        if (idxVm < 0) {
-            // No VM defined
-            final int idxVmargs = lines.indexOf("-vmargs");
-            if (idxVmargs < 0) {
-                // Append at the end
-                lines.add("-vm");
-                lines.add(pathToBinJava);
-            } else {
-                lines.add(idxVmargs, "-vm");
-                lines.add(idxVmargs + 1, pathToBinJava);
-            }
-
-        } else {
-            // Replace existing VM definition
-            lines.set(idxVm + 1, pathToBinJava);
-        }
+        this.vm = pathToBinJava;
     }
 
     /**
      * Replaces the existing 'vmargs' settings.
      * 
      * @param options
-     *            New '-vmargs' options.
+     *            New '-vmargs' options separated by spaces.
      */
     public final void setVmargs(@NotEmpty final String options) {
         Contract.requireArgNotEmpty("options", options);
@@ -116,57 +157,388 @@ public final class EclipseIniModifier {
      */
     public final void setVmargs(@NotNull final List<String> options) {
         Contract.requireArgNotNull("options", options);
-        final int idxVm = lines.indexOf("-vmargs");
-        if (idxVm < 0) {
-            // No vmargs defined
-            lines.add("-vmargs");
-            lines.addAll(options);
+        this.vmargs = new ArrayList<>(options);
+    }
+
+    /**
+     * Sets a system property ("-Dkey=value") in the '-vmargs' section. An
+     * existing definition of the same key will be replaced.
+     * 
+     * @param key
+     *            Name of the property.
+     * @param value
+     *            Value of the property or <code>null</code> for a property
+     *            without value ("-Dkey").
+     */
+    public final void setSystemProperty(@NotEmpty final String key,
+            @Nullable final String value) {
+        Contract.requireArgNotEmpty("key", key);
+        if (value == null) {
+            properties.put(key, "-D" + key);
         } else {
-            // Replace existing vmargs
-            // Assuming that all lines until the end are arguments
-            for (int idx = lines.size() - 1; idx > idxVm; idx--) {
-                lines.remove(idx);
-            }
-            lines.addAll(options);
+            properties.put(key, "-D" + key + "=" + value);
         }
     }
 
     /**
-     * Saves the changes back to disk. This overrides the original file.
+     * Removes a system property from the '-vmargs' section.
+     * 
+     * @param key
+     *            Name of the property.
+     */
+    public final void removeSystemProperty(@NotEmpty final String key) {
+        Contract.requireArgNotEmpty("key", key);
+        properties.put(key, null);
+    }
+
+    /**
+     * Adds an option to the '-vmargs' section if it does not exist yet.
+     * 
+     * @param arg
+     *            Option like "-XX:+UseG1GC".
+     */
+    public final void addVmarg(@NotEmpty final String arg) {
+        Contract.requireArgNotEmpty("arg", arg);
+        if (!addedVmargs.contains(arg)) {
+            addedVmargs.add(arg);
+        }
+    }
+
+    /**
+     * Removes all options from the '-vmargs' section that start with a given
+     * prefix. Options added with {@link #addVmarg(String)} are not removed.
+     * 
+     * @param prefix
+     *            Prefix like "-Xmx".
+     */
+    public final void removeVmargs(@NotEmpty final String prefix) {
+        Contract.requireArgNotEmpty("prefix", prefix);
+        removedVmargs.add(prefix);
+    }
+
+    /**
+     * Sets a launcher option. The value of an existing option with the same
+     * name will be replaced.
+     * 
+     * @param name
+     *            Name of the option including the "--launcher." prefix.
+     * @param value
+     *            Value of the option or <code>null</code> for an option
+     *            without value like "--launcher.appendVmargs".
+     */
+    public final void setLauncherOption(@NotEmpty final String name,
+            @Nullable final String value) {
+        Contract.requireArgNotEmpty("name", name);
+        if (!name.startsWith(LAUNCHER)) {
+            throw new IllegalArgumentException("Launcher option must start with '"
+                    + LAUNCHER + "', but was: " + name);
+        }
+        launcherOptions.put(name, value);
+    }
+
+    /**
+     * Applies the changes to the file given in the constructor. The file is
+     * replaced atomically.
      */
     public final void save() {
+        if (file == null) {
+            throw new IllegalStateException(
+                    "No file was given in the constructor");
+        }
+        apply(file);
+    }
+
+    /**
+     * Applies the changes to a file. The file is replaced atomically.
+     * 
+     * @param iniFile
+     *            File to modify.
+     */
+    public final void apply(@NotNull final File iniFile) {
+        Contract.requireArgNotNull("iniFile", iniFile);
+        final File tmpFile = new File(iniFile.getPath() + ".tmp");
         try {
-            final FileWriter fw = new FileWriter(file);
+            final InputStream in = new FileInputStream(iniFile);
             try {
-                for (final String line : lines) {
-                    fw.write(line);
-                    fw.write(System.getProperty("line.separator"));
+                final OutputStream out = new FileOutputStream(tmpFile);
+                try {
+                    apply(in, out);
+                } finally {
+                    out.close();
                 }
             } finally {
-                fw.close();
+                in.close();
             }
+            Files.move(tmpFile.toPath(), iniFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
         } catch (final IOException ex) {
-            throw new RuntimeException("Error writing file: " + file, ex);
+            tmpFile.delete();
+            throw new RuntimeException("Error modifying file: " + iniFile, ex);
         }
     }
 
-    private static List<String> readFile(final File file) {
-        try {
-            final List<String> lines = new ArrayList<>();
-            final LineNumberReader reader = new LineNumberReader(
-                    new FileReader(file));
-            try {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    lines.add(line);
+    /**
+     * Applies the changes to a UTF-8 encoded stream. The streams are not
+     * closed, so they can be entries of an archive.
+     * 
+     * @param in
+     *            Original content.
+     * @param out
+     *            Modified content.
+     * 
+     * @throws IOException
+     *             Error reading or writing.
+     */
+    public final void apply(@NotNull final InputStream in,
+            @NotNull final OutputStream out) throws IOException {
+        Contract.requireArgNotNull("in", in);
+        Contract.requireArgNotNull("out", out);
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(out,
+                UTF8));
+        apply(new InputStreamReader(in, UTF8), writer);
+        writer.flush();
+    }
+
+    /**
+     * Applies the changes while copying the lines from a reader to a writer.
+     * The reader and the writer are not closed.
+     * 
+     * @param reader
+     *            Original content.
+     * @param writer
+     *            Modified content.
+     * 
+     * @throws IOException
+     *             Error reading or writing.
+     */
+    public final void apply(@NotNull final Reader reader,
+            @NotNull final Writer writer) throws IOException {
+        Contract.requireArgNotNull("reader", reader);
+        Contract.requireArgNotNull("writer", writer);
+        new Pass(new BufferedReader(reader), writer).run();
+    }
+
+    /**
+     * State of a single pass over the lines.
+     */
+    private final class Pass {
+
+        private final BufferedReader reader;
+
+        private final Writer writer;
+
+        private final Set<String> doneOptions;
+
+        private final Set<String> insertedOptions;
+
+        private final Set<String> doneVmargs;
+
+        private final Set<String> doneProperties;
+
+        private String lineSeparator;
+
+        private String next;
+
+        private boolean vmDone;
+
+        private boolean inVmargs;
+
+        public Pass(final BufferedReader reader, final Writer writer) {
+            super();
+            this.reader = reader;
+            this.writer = writer;
+            this.doneOptions = new HashSet<>();
+            this.insertedOptions = new HashSet<>();
+            this.doneVmargs = new HashSet<>();
+            this.doneProperties = new HashSet<>();
+        }
+
+        public void run() throws IOException {
+            next = readLine();
+            while (next != null) {
+                final String line = next;
+                next = readLine();
+                if (inVmargs) {
+                    if (vmargs == null) {
+                        vmarg(line);
+                    }
+                } else if (line.equals(VM)) {
+                    insertLauncherOptions();
+                    write(line);
+                    if (vm != null) {
+                        skipValue();
+                        write(vm);
+                    }
+                    vmDone = true;
+                } else if (line.equals(VMARGS)) {
+                    insertLauncherOptions();
+                    insertVm();
+                    write(line);
+                    inVmargs = true;
+                } else if (insertedOptions.contains(line)) {
+                    // Already inserted before "-vm" or "-vmargs"
+                    skipValue();
+                } else if (launcherOptions.containsKey(line)) {
+                    skipValue();
+                    launcherOption(line);
+                } else {
+                    write(line);
                 }
-            } finally {
-                reader.close();
             }
-            return lines;
-        } catch (final IOException ex) {
-            throw new RuntimeException("Error reading file: " + file, ex);
+            if (!inVmargs) {
+                insertLauncherOptions();
+                insertVm();
+                if (vmargs != null || hasProperties()
+                        || !addedVmargs.isEmpty()) {
+                    write(VMARGS);
+                }
+            }
+            if (vmargs != null) {
+                for (final String arg : vmargs) {
+                    vmarg(arg);
+                }
+            }
+            for (final Map.Entry<String, String> entry : properties.entrySet()) {
+                if (entry.getValue() != null
+                        && !doneProperties.contains(entry.getKey())) {
+                    write(entry.getValue());
+                }
+            }
+            for (final String arg : addedVmargs) {
+                if (!doneVmargs.contains(arg)) {
+                    write(arg);
+                }
+            }
+        }
+
+        private void vmarg(final String arg) throws IOException {
+            if (addedVmargs.contains(arg)) {
+                if (doneVmargs.add(arg)) {
+                    write(arg);
+                }
+                return;
+            }
+            for (final String prefix : removedVmargs) {
+                if (arg.startsWith(prefix)) {
+                    return;
+                }
+            }
+            final String key = propertyKey(arg);
+            if (key == null || !properties.containsKey(key)) {
+                write(arg);
+            } else if (doneProperties.add(key)) {
+                final String replacement = properties.get(key);
+                if (replacement != null) {
+                    write(replacement);
+                }
+            }
+        }
+
+        private void launcherOption(final String name) throws IOException {
+            write(name);
+            final String value = launcherOptions.get(name);
+            if (value != null) {
+                write(value);
+            }
+            doneOptions.add(name);
+        }
+
+        private void insertLauncherOptions() throws IOException {
+            for (final String name : launcherOptions.keySet()) {
+                if (!doneOptions.contains(name)) {
+                    launcherOption(name);
+                    insertedOptions.add(name);
+                }
+            }
+        }
+
+        private void insertVm() throws IOException {
+            if (!vmDone && vm != null) {
+                write(VM);
+                write(vm);
+                vmDone = true;
+            }
+        }
+
+        private boolean hasProperties() {
+            for (final String value : properties.values()) {
+                if (value != null) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Skips the next line if it is the value of the current option.
+         */
+        private void skipValue() throws IOException {
+            if (next != null && !next.startsWith("-")) {
+                next = readLine();
+            }
+        }
+
+        private void write(final String line) throws IOException {
+            writer.write(line);
+            if (lineSeparator == null) {
+                writer.write(DEFAULT_LINE_SEPARATOR);
+            } else {
+                writer.write(lineSeparator);
+            }
+        }
+
+        /**
+         * Reads a line and remembers the line separator of the first line.
+         */
+        private String readLine() throws IOException {
+            final StringBuilder sb = new StringBuilder();
+            int c;
+            while ((c = reader.read()) != -1) {
+                if (c == '\n') {
+                    if (lineSeparator == null) {
+                        lineSeparator = DEFAULT_LINE_SEPARATOR;
+                    }
+                    return sb.toString();
+                }
+                if (c == '\r') {
+                    reader.mark(1);
+                    final boolean crlf = reader.read() == '\n';
+                    if (!crlf) {
+                        reader.reset();
+                    }
+                    if (lineSeparator == null) {
+                        lineSeparator = crlf ? "\r\n" : "\r";
+                    }
+                    return sb.toString();
+                }
+                sb.append((char) c);
+            }
+            if (sb.length() == 0) {
+                return null;
+            }
+            return sb.toString();
+        }
+
+    }
+
+    /**
+     * Returns the key of a system property argument.
+     * 
+     * @param arg
+     *            Argument like "-Dkey=value" or "-Dkey".
+     * 
+     * @return Key or <code>null</code> if the argument is not a system
+     *         property.
+     */
+    static String propertyKey(final String arg) {
+        if (!arg.startsWith("-D") || arg.length() < 3) {
+            return null;
+        }
+        final int idx = arg.indexOf('=');
+        if (idx < 0) {
+            return arg.substring(2);
         }
+        return arg.substring(2, idx);
     }
 
 }
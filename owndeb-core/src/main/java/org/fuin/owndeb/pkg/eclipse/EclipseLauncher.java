@@ -0,0 +1,134 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.owndeb.pkg.eclipse;
+
+import java.io.File;
+
+import javax.validation.constraints.NotNull;
+
+import org.apache.commons.exec.CommandLine;
+import org.fuin.objects4j.common.Contract;
+import org.fuin.owndeb.commons.DebUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Starts an unpacked Eclipse installation at build time. Eclipse is started
+ * directly with the Equinox launcher JAR and the Java VM that runs the build,
+ * so no native launcher, display or 'eclipse.ini' settings for the target
+ * machine are required.
+ */
+public final class EclipseLauncher {
+
+    private static final String LAUNCHER_PREFIX = "org.eclipse.equinox.launcher_";
+
+    private static final Logger LOG = LoggerFactory
+            .getLogger(EclipseLauncher.class);
+
+    private final File eclipseDir;
+
+    /**
+     * Constructor with Eclipse installation.
+     * 
+     * @param eclipseDir
+     *            Directory that contains the unpacked Eclipse.
+     */
+    public EclipseLauncher(@NotNull final File eclipseDir) {
+        super();
+        Contract.requireArgNotNull("eclipseDir", eclipseDir);
+        this.eclipseDir = eclipseDir;
+    }
+
+    /**
+     * Returns the Eclipse installation.
+     * 
+     * @return Eclipse directory.
+     */
+    @NotNull
+    public final File getEclipseDir() {
+        return eclipseDir;
+    }
+
+    /**
+     * Locates the Equinox launcher JAR. If there is more than one version,
+     * the last one in alphabetical order is used.
+     * 
+     * @return Launcher JAR.
+     * 
+     * @throws IllegalStateException
+     *             The Eclipse installation has no launcher JAR.
+     */
+    @NotNull
+    public final File findLauncherJar() {
+        final File[] files = new File(eclipseDir, "plugins").listFiles();
+        File launcher = null;
+        if (files != null) {
+            for (final File file : files) {
+                final String name = file.getName();
+                if (file.isFile() && name.startsWith(LAUNCHER_PREFIX)
+                        && name.endsWith(".jar")
+                        && (launcher == null
+                                || name.compareTo(launcher.getName()) > 0)) {
+                    launcher = file;
+                }
+            }
+        }
+        if (launcher == null) {
+            throw new IllegalStateException(
+                    "Couldn't find Equinox launcher in: " + eclipseDir);
+        }
+        return launcher;
+    }
+
+    /**
+     * Creates the command line that starts Eclipse.
+     * 
+     * @param args
+     *            Eclipse arguments like "-nosplash".
+     * 
+     * @return Command line.
+     */
+    @NotNull
+    public final CommandLine createCommand(@NotNull final String... args) {
+        Contract.requireArgNotNull("args", args);
+        final CommandLine cmdLine = new CommandLine(new File(
+                System.getProperty("java.home"), "bin/java"));
+        cmdLine.addArgument("-jar");
+        cmdLine.addArgument(findLauncherJar().getAbsolutePath(), false);
+        for (final String arg : args) {
+            cmdLine.addArgument(arg, false);
+        }
+        return cmdLine;
+    }
+
+    /**
+     * Starts Eclipse and waits until it has finished.
+     * 
+     * @param description
+     *            Description of the task used for logging and errors.
+     * @param args
+     *            Eclipse arguments like "-nosplash".
+     */
+    public final void execute(@NotNull final String description,
+            @NotNull final String... args) {
+        Contract.requireArgNotNull("description", description);
+        LOG.info("{}: {}", description, eclipseDir);
+        DebUtils.execute(createCommand(args), eclipseDir, description);
+    }
+
+}
@@ -20,30 +20,52 @@ package org.fuin.owndeb.pkg.eclipse;
 import static org.fuin.owndeb.commons.DebUtils.writeReplacedResource;
 
 import java.io.File;
+import java.io.FilenameFilter;
 import java.util.List;
-import java.util.Map;
 
 import javax.validation.constraints.NotNull;
 import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlRootElement;
 
+import org.apache.commons.io.FileUtils;
 import org.fuin.objects4j.common.NotEmpty;
 import org.fuin.objects4j.common.Nullable;
 import org.fuin.owndeb.commons.DebDependency;
 import org.fuin.owndeb.commons.DebPackages;
-import org.fuin.owndeb.commons.DebUtils;
+import org.fuin.owndeb.commons.VariableGraph;
 import org.fuin.owndeb.pkg.base.AbstractDownloadTarGzPackage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
- * Downloads Eclipse and creates a binary Debian package from it.
+ * Downloads Eclipse and creates a binary Debian package from it. The 'vm' and
+ * 'vmargs' attributes and the tuning profiles listed in the 'tuning'
+ * attribute are applied to the 'eclipse.ini' of the package. If 'initialize'
+ * is set, the OSGi configuration is created at build time.
  */
 @XmlRootElement(name = "eclipse-package")
 public final class EclipsePackage extends AbstractDownloadTarGzPackage {
 
+    private static final long serialVersionUID = 1L;
+
     private static final String VMARGS = "vmargs";
 
     private static final String VM = "vm";
 
+    private static final String TUNING = "tuning";
+
+    private static final String HEAP_PERCENT = "heap-percent";
+
+    private static final String INITIALIZE = "initialize";
+
+    private static final String DEFAULT_HEAP_PERCENT = "25";
+
+    /** Name of the launcher script created for the 'relative-heap' profile. */
+    public static final String TUNED_LAUNCHER = "eclipse-tuned";
+
+    private static final Logger LOG = LoggerFactory
+            .getLogger(EclipsePackage.class);
+
     /** Name of the package. */
     public static final String NAME = "eclipse-package";
 
@@ -53,6 +75,15 @@ public final class EclipsePackage extends AbstractDownloadTarGzPackage {
     @XmlAttribute(name = VMARGS)
     private String vmArgs;
 
+    @XmlAttribute(name = TUNING)
+    private String tuning;
+
+    @XmlAttribute(name = HEAP_PERCENT)
+    private String heapPercent;
+
+    @XmlAttribute(name = INITIALIZE)
+    private Boolean initialize;
+
     /**
      * Default constructor for JAXB.
      */
@@ -155,9 +186,99 @@ public final class EclipsePackage extends AbstractDownloadTarGzPackage {
         return variableValue(VMARGS);
     }
 
+    /**
+     * Returns the tuning profiles.
+     * 
+     * @return Profiles in the order they are applied.
+     */
+    @NotNull
+    public final List<TuningProfile> getTuningProfiles() {
+        return TuningProfile.parse(variableValue(TUNING));
+    }
+
+    /**
+     * Returns the percentage of the host's memory used as maximum heap by the
+     * 'relative-heap' tuning profile.
+     * 
+     * @return Percentage.
+     */
+    public final int getHeapPercent() {
+        return Integer.parseInt(variableValue(HEAP_PERCENT));
+    }
+
+    /**
+     * Returns if the OSGi configuration is initialized at build time.
+     * 
+     * @return TRUE if Eclipse is started once with '-initialize' when the
+     *         package is built, so the bundle cache is part of the package.
+     */
+    public final boolean isInitialize() {
+        return initialize != null && initialize;
+    }
+
     @Override
     protected final void applyModifications(final File packageDir) {
 
+        final File iniFile = new File(packageDir, "eclipse.ini");
+        if (!iniFile.exists()) {
+            LOG.warn("No 'eclipse.ini' found in: {}", packageDir);
+            return;
+        }
+        final List<TuningProfile> profiles = getTuningProfiles();
+        final EclipseIniModifier modifier = new EclipseIniModifier(iniFile);
+        if (getVm() != null) {
+            modifier.setVm(getVm());
+        }
+        if (getVmArgs() != null) {
+            modifier.setVmargs(getVmArgs());
+        }
+        for (final TuningProfile profile : profiles) {
+            LOG.info("Apply tuning profile '{}' to: {}", profile.getId(),
+                    iniFile);
+            profile.apply(modifier);
+        }
+        modifier.save();
+
+        if (profiles.contains(TuningProfile.RELATIVE_HEAP)) {
+            writeReplacedResource(EclipsePackage.class, "/" + getPackageName()
+                    + "/" + TUNED_LAUNCHER, packageDir, getVariableGraph());
+            final File launcher = new File(packageDir, TUNED_LAUNCHER);
+            if (!launcher.setExecutable(true, false)) {
+                throw new RuntimeException("Couldn't make executable: "
+                        + launcher);
+            }
+        }
+
+        if (isInitialize()) {
+            initializeConfiguration(packageDir);
+        }
+
+    }
+
+    /**
+     * Starts Eclipse headless with '-initialize' to create the bundle cache
+     * and resolve the plugins inside the shared configuration area of the
+     * package. Log files of the run are removed afterwards.
+     * 
+     * @param packageDir
+     *            Directory that contains the unpacked Eclipse.
+     */
+    static void initializeConfiguration(@NotNull final File packageDir) {
+        new EclipseLauncher(packageDir).execute("Initialize configuration",
+                "-nosplash", "-initialize");
+        final File[] logs = new File(packageDir, "configuration")
+                .listFiles(new FilenameFilter() {
+                    @Override
+                    public boolean accept(final File dir, final String name) {
+                        return name.endsWith(".log");
+                    }
+                });
+        if (logs != null) {
+            for (final File log : logs) {
+                LOG.debug("Remove log file: {}", log);
+                FileUtils.deleteQuietly(log);
+            }
+        }
     }
 
     /**
@@ -167,20 +288,29 @@ public final class EclipsePackage extends AbstractDownloadTarGzPackage {
      *            Current parent.
      */
     public final void init(@Nullable final DebPackages parent) {
-        addNonExistingVariables(parent);
         initDownloadTarGzPackage(parent);
         addOrReplaceVariable(VM, vm);
         addOrReplaceVariable(VMARGS, vmArgs);
+        addOrReplaceVariable(TUNING, tuning);
+        if (heapPercent == null) {
+            addOrReplaceVariable(HEAP_PERCENT, DEFAULT_HEAP_PERCENT);
+        } else {
+            addOrReplaceVariable(HEAP_PERCENT, heapPercent);
+        }
         resolveVariables();
+        // Fail early on unknown profiles
+        getTuningProfiles();
     }
 
     @Override
     protected final void copyControlFiles(final File controlDir) {
-        final Map<String, String> vars = DebUtils.asMap(getVariables());
+        final VariableGraph vars = getVariableGraph();
         writeReplacedResource(EclipsePackage.class, "/" + getPackageName()
                 + "/control", controlDir, vars);
         writeReplacedResource(EclipsePackage.class, "/" + getPackageName()
                 + "/postinst", controlDir, vars);
+        writeReplacedResource(EclipsePackage.class, "/" + getPackageName()
+                + "/triggers", controlDir, vars);
     }
 
     @Override
@@ -0,0 +1,157 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.owndeb.pkg.eclipse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringTokenizer;
+
+import javax.validation.constraints.NotNull;
+
+import org.fuin.objects4j.common.Contract;
+import org.fuin.objects4j.common.Nullable;
+
+/**
+ * Named set of JVM settings for the Eclipse IDE that is applied to the
+ * 'eclipse.ini' file when the package is built.
+ */
+public enum TuningProfile {
+
+    /** Garbage first collector with string deduplication. */
+    G1("g1") {
+        @Override
+        public void apply(final EclipseIniModifier modifier) {
+            removeGarbageCollectors(modifier);
+            modifier.addVmarg("-XX:+UseG1GC");
+            modifier.addVmarg("-XX:+UseStringDeduplication");
+        }
+    },
+
+    /** Parallel collector for the highest throughput. */
+    PARALLEL("parallel") {
+        @Override
+        public void apply(final EclipseIniModifier modifier) {
+            removeGarbageCollectors(modifier);
+            modifier.addVmarg("-XX:+UseParallelGC");
+        }
+    },
+
+    /**
+     * Class data sharing: Uses the shared archive of the JVM if it is
+     * available to start faster.
+     */
+    CDS("cds") {
+        @Override
+        public void apply(final EclipseIniModifier modifier) {
+            modifier.removeVmargs("-Xshare:");
+            modifier.addVmarg("-Xshare:auto");
+        }
+    },
+
+    /**
+     * Maximum heap relative to the memory of the host. The heap is calculated
+     * by a launcher script on each start and passed to Eclipse in addition to
+     * the options of the 'eclipse.ini'.
+     */
+    RELATIVE_HEAP("relative-heap") {
+        @Override
+        public void apply(final EclipseIniModifier modifier) {
+            modifier.setLauncherOption("--launcher.appendVmargs", null);
+        }
+    };
+
+    private static final String[] GARBAGE_COLLECTORS = new String[] {
+            "-XX:+UseSerialGC", "-XX:+UseParallelGC",
+            "-XX:+UseParallelOldGC", "-XX:+UseConcMarkSweepGC",
+            "-XX:+UseG1GC" };
+
+    private final String id;
+
+    private TuningProfile(final String id) {
+        this.id = id;
+    }
+
+    /**
+     * Returns the name used in the configuration.
+     * 
+     * @return Profile name like "g1".
+     */
+    @NotNull
+    public final String getId() {
+        return id;
+    }
+
+    /**
+     * Applies the profile.
+     * 
+     * @param modifier
+     *            Modifier for the 'eclipse.ini' to add the changes to.
+     */
+    public abstract void apply(@NotNull EclipseIniModifier modifier);
+
+    private static void removeGarbageCollectors(
+            final EclipseIniModifier modifier) {
+        for (final String gc : GARBAGE_COLLECTORS) {
+            modifier.removeVmargs(gc);
+        }
+    }
+
+    /**
+     * Returns the profile with a given name.
+     * 
+     * @param id
+     *            Profile name like "g1".
+     * 
+     * @return Profile.
+     * 
+     * @throws IllegalArgumentException
+     *             Unknown profile.
+     */
+    @NotNull
+    public static TuningProfile forId(@NotNull final String id) {
+        Contract.requireArgNotNull("id", id);
+        for (final TuningProfile profile : values()) {
+            if (profile.id.equals(id)) {
+                return profile;
+            }
+        }
+        throw new IllegalArgumentException("Unknown tuning profile: '" + id
+                + "'");
+    }
+
+    /**
+     * Returns the profiles of a comma separated list.
+     * 
+     * @param ids
+     *            Profile names like "g1, cds" or <code>null</code>.
+     * 
+     * @return Profiles in the order of the list.
+     */
+    @NotNull
+    public static List<TuningProfile> parse(@Nullable final String ids) {
+        final List<TuningProfile> profiles = new ArrayList<>();
+        if (ids != null) {
+            final StringTokenizer tok = new StringTokenizer(ids, ", ");
+            while (tok.hasMoreTokens()) {
+                profiles.add(forId(tok.nextToken()));
+            }
+        }
+        return profiles;
+    }
+
+}
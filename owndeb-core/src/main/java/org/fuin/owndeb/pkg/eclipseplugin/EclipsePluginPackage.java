@@ -17,18 +17,21 @@
  */
 package org.fuin.owndeb.pkg.eclipseplugin;
 
+import static org.fuin.owndeb.commons.DebUtils.cachedDownload;
+import static org.fuin.owndeb.commons.DebUtils.peekFirstTarGzFolderName;
+import static org.fuin.owndeb.commons.DebUtils.tarGz;
+import static org.fuin.owndeb.commons.DebUtils.unTarGz;
 import static org.fuin.owndeb.commons.DebUtils.writeReplacedResource;
 
 import java.io.File;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
 import javax.validation.constraints.NotNull;
 import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlRootElement;
 
-import org.apache.tools.ant.Project;
+import org.apache.commons.io.FileUtils;
 import org.fuin.objects4j.common.Contract;
 import org.fuin.objects4j.common.NotEmpty;
 import org.fuin.objects4j.common.Nullable;
@@ -36,22 +39,39 @@ import org.fuin.owndeb.commons.DebDependency;
 import org.fuin.owndeb.commons.DebPackage;
 import org.fuin.owndeb.commons.DebPackages;
 import org.fuin.owndeb.commons.DebUtils;
+import org.fuin.owndeb.commons.VariableGraph;
+import org.fuin.owndeb.pkg.eclipse.EclipsePackage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.vafer.jdeb.ant.DebAntTask;
+import org.vafer.jdeb.ant.Data;
+import org.vafer.jdeb.ant.Mapper;
 
 /**
- * Creates a binary Debian package for an Eclipse plugin.
+ * Creates a binary Debian package for an Eclipse plugin. By default the
+ * package contains only control files. The 'postinst' script registers the
+ * units with the Eclipse package and activates a trigger of it, so the P2
+ * director runs only once for all plugins installed or removed together. If
+ * 'prebake' is set, the director runs once at build time against a staged
+ * copy of the Eclipse package and only the new plugins and features are
+ * packaged into a 'dropins' folder of the Eclipse installation.
  */
 @XmlRootElement(name = "eclipse-plugin-package")
 public class EclipsePluginPackage extends DebPackage {
 
+    private static final long serialVersionUID = 1L;
+
     private static final String REPOSITORY = "repository";
 
     private static final String INSTALLIUS = "installIUs";
 
     private static final String ECLIPSE_PACKAGE = "eclipse-package";
 
+    private static final String ECLIPSE_PATH = "eclipsePath";
+
+    private static final String PREBAKE = "prebake";
+
+    private static final String DROPINS = "dropins";
+
     /** Name of the package. */
     public static final String NAME = "eclipse-plugin-package";
 
@@ -67,6 +87,9 @@ public class EclipsePluginPackage extends DebPackage {
     @XmlAttribute(name = ECLIPSE_PACKAGE)
     private String eclipsePackage;
 
+    @XmlAttribute(name = PREBAKE)
+    private Boolean prebake;
+
     /**
      * Default constructor for JAXB.
      */
@@ -192,6 +215,31 @@ public class EclipsePluginPackage extends DebPackage {
         return variableValue(ECLIPSE_PACKAGE);
     }
 
+    /**
+     * Returns if the plugin is installed at build time.
+     * 
+     * @return TRUE if the new plugins and features are part of the package,
+     *         FALSE if the P2 director runs on installation.
+     */
+    public final boolean isPrebake() {
+        return prebake != null && prebake;
+    }
+
+    /**
+     * Replaces the repository with the local mirror of it. The repository is
+     * mirrored if necessary.
+     * 
+     * @param mirror
+     *            Mirror to use.
+     */
+    public final void useMirror(@NotNull final P2Mirror mirror) {
+        Contract.requireArgNotNull("mirror", mirror);
+        final String local = mirror.mirrorAll(getRepository());
+        LOG.info("Use mirror for package '{}': {}", getName(), local);
+        addOrReplaceVariable(REPOSITORY, local);
+        resolveVariables();
+    }
+
     @Override
     public final String getPackageName() {
         return NAME;
@@ -203,22 +251,102 @@ public class EclipsePluginPackage extends DebPackage {
         Contract.requireArgNotNull("buildDirectory", buildDirectory);
         LOG.info("Creating package in: {}", buildDirectory);
 
-        final File controlDir = new File(buildDirectory, getName() + "-control");
+        final File controlDir = new File(getWorkDir(buildDirectory), getName()
+                + "-control");
 
         LOG.debug("controlDir: {}", controlDir);
 
-        copyControlFiles(this, getPackageName(), controlDir);
-        createDebianPackage(this, buildDirectory, controlDir);
+        if (isPrebake()) {
+            createPrebaked(buildDirectory, controlDir);
+        } else {
+            copyControlFiles(this, getPackageName(), controlDir);
+            createDebianPackage(this, buildDirectory, controlDir);
+        }
+
+    }
+
+    private void createPrebaked(final File buildDirectory,
+            final File controlDir) {
+
+        final EclipsePackage eclipse = findEclipse();
+        final File archiveFile = cachedDownload(eclipse.getUrl(),
+                buildDirectory, getStageLimits());
+
+        final File workDir = getWorkDir(buildDirectory);
+        final File stagingDir = new File(workDir, "eclipse-staging");
+        final File dropinsDir = new File(workDir, DROPINS);
+        FileUtils.deleteQuietly(stagingDir);
+        FileUtils.deleteQuietly(dropinsDir);
+        DebUtils.mkdirs(stagingDir);
+
+        final String folderName = peekFirstTarGzFolderName(archiveFile);
+        if (folderName == null) {
+            throw new IllegalArgumentException(
+                    "Couldn't find directory in archive: " + archiveFile);
+        }
+        unTarGz(archiveFile, stagingDir);
+
+        final P2Director director = new P2Director(new File(stagingDir,
+                folderName));
+        final List<String> before = director.listUnits();
+        director.install(getRepository(), getInstallIUs());
+        final List<String> units = director.moveNewUnits(before, new File(
+                dropinsDir, getName()));
+        if (units.isEmpty()) {
+            throw new IllegalStateException("P2 director installed nothing: "
+                    + getInstallIUs());
+        }
+        FileUtils.deleteQuietly(stagingDir);
+
+        final File tarFile = tarGz(workDir, DROPINS);
+        DebUtils.mkdirs(controlDir);
+        writeReplacedResource(EclipsePluginPackage.class, "/"
+                + getPackageName() + "/control", controlDir,
+                getVariableGraph());
+
+        LOG.info("Start creating prebaked package " + getName());
+
+        final Data data = new Data();
+        data.setSrc(tarFile);
+        data.setType("archive");
+        final Mapper mapper = new Mapper();
+        mapper.setType("perm");
+        mapper.setPrefix(eclipse.getFullInstallationPath());
+        mapper.setUser("root");
+        mapper.setGroup("developer");
+        data.addMapper(mapper);
 
+        DebUtils.createDeb(new File(buildDirectory, getDebFilename()),
+                controlDir, getPathRegistry(), getStageLimits(), getArch(),
+                getName(), data);
+
+        LOG.info("Finished creating prebaked package " + getName());
+
+    }
+
+    private EclipsePackage findEclipse() {
+        final DebPackage pkg;
+        if (getParent() instanceof DebPackages) {
+            pkg = ((DebPackages) getParent()).findDebPackage(
+                    getEclipsePackage(), getArch());
+        } else {
+            pkg = null;
+        }
+        if (!(pkg instanceof EclipsePackage)) {
+            throw new IllegalStateException("Couldn't find Eclipse package '"
+                    + getEclipsePackage() + "' of: " + getName());
+        }
+        return (EclipsePackage) pkg;
     }
 
     @Override
     public final void init(@Nullable final DebPackages parent) {
-        addNonExistingVariables(parent);
         initPackage(parent);
         addOrReplaceVariable(REPOSITORY, repository);
         addOrReplaceVariable(INSTALLIUS, installIUs);
         addOrReplaceVariable(ECLIPSE_PACKAGE, eclipsePackage);
+        addOrReplaceVariable(ECLIPSE_PATH, "${installation-path}/${"
+                + ECLIPSE_PACKAGE + "}");
         resolveVariables();
     }
 
@@ -226,14 +354,15 @@ public class EclipsePluginPackage extends DebPackage {
             final String packageName, final File controlDir) {
 
         DebUtils.mkdirs(controlDir);
-        final Map<String, String> vars = DebUtils.asMap(debPackage
-                .getVariables());
+        final VariableGraph vars = debPackage.getVariableGraph();
         writeReplacedResource(EclipsePluginPackage.class, "/" + packageName
                 + "/control", controlDir, vars);
         writeReplacedResource(EclipsePluginPackage.class, "/" + packageName
                 + "/postinst", controlDir, vars);
         writeReplacedResource(EclipsePluginPackage.class, "/" + packageName
                 + "/postrm", controlDir, vars);
+        writeReplacedResource(EclipsePluginPackage.class, "/" + packageName
+                + "/triggers", controlDir, vars);
 
     }
 
@@ -247,14 +376,8 @@ public class EclipsePluginPackage extends DebPackage {
 
         LOG.debug("controlDir: {}", controlDir);
 
-        final Project project = new Project();
-
-        final DebAntTask task = new DebAntTask();
-        task.setProject(project);
-        task.setDestfile(debName);
-        task.setControl(controlDir);
-
-        task.execute();
+        DebUtils.createDeb(debName, controlDir, null,
+                debPackage.getStageLimits(), null, null);
 
         LOG.info("Finished creating package " + debPackage.getName());
 
@@ -0,0 +1,190 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.owndeb.pkg.eclipseplugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.validation.constraints.NotNull;
+
+import org.apache.commons.exec.CommandLine;
+import org.apache.commons.io.FileUtils;
+import org.fuin.objects4j.common.Contract;
+import org.fuin.objects4j.common.NotEmpty;
+import org.fuin.owndeb.commons.DebUtils;
+import org.fuin.owndeb.pkg.eclipse.EclipseLauncher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the Eclipse P2 director application against an unpacked Eclipse
+ * installation using an {@link EclipseLauncher}.
+ */
+public final class P2Director {
+
+    /** Name of the director application. */
+    public static final String APPLICATION = "org.eclipse.equinox.p2.director";
+
+    /** Directories of an Eclipse installation that contain installed units. */
+    public static final List<String> UNIT_DIRS = Collections
+            .unmodifiableList(Arrays.asList("plugins", "features"));
+
+    private static final Logger LOG = LoggerFactory.getLogger(P2Director.class);
+
+    private final File eclipseDir;
+
+    private final EclipseLauncher launcher;
+
+    /**
+     * Constructor with Eclipse installation.
+     * 
+     * @param eclipseDir
+     *            Directory that contains the unpacked Eclipse.
+     */
+    public P2Director(@NotNull final File eclipseDir) {
+        super();
+        Contract.requireArgNotNull("eclipseDir", eclipseDir);
+        this.eclipseDir = eclipseDir;
+        this.launcher = new EclipseLauncher(eclipseDir);
+    }
+
+    /**
+     * Returns the Eclipse installation.
+     * 
+     * @return Eclipse directory.
+     */
+    @NotNull
+    public final File getEclipseDir() {
+        return eclipseDir;
+    }
+
+    /**
+     * Locates the Equinox launcher JAR.
+     * 
+     * @return Launcher JAR.
+     * 
+     * @throws IllegalStateException
+     *             The Eclipse installation has no launcher JAR.
+     */
+    @NotNull
+    public final File findLauncher() {
+        return launcher.findLauncherJar();
+    }
+
+    /**
+     * Creates the command line that installs units into the Eclipse
+     * installation.
+     * 
+     * @param repository
+     *            Comma separated list of P2 repository URLs.
+     * @param installIUs
+     *            Comma separated list of units to install.
+     * 
+     * @return Command line.
+     */
+    @NotNull
+    public final CommandLine createInstallCommand(
+            @NotEmpty final String repository,
+            @NotEmpty final String installIUs) {
+        Contract.requireArgNotEmpty("repository", repository);
+        Contract.requireArgNotEmpty("installIUs", installIUs);
+        return launcher.createCommand(installArgs(repository, installIUs));
+    }
+
+    /**
+     * Installs units into the Eclipse installation.
+     * 
+     * @param repository
+     *            Comma separated list of P2 repository URLs.
+     * @param installIUs
+     *            Comma separated list of units to install.
+     */
+    public final void install(@NotEmpty final String repository,
+            @NotEmpty final String installIUs) {
+        Contract.requireArgNotEmpty("repository", repository);
+        Contract.requireArgNotEmpty("installIUs", installIUs);
+        LOG.info("Install '{}' from: {}", installIUs, repository);
+        launcher.execute("P2 director install: " + installIUs, installArgs(
+                repository, installIUs));
+    }
+
+    private static String[] installArgs(final String repository,
+            final String installIUs) {
+        return new String[] { "-nosplash", "-application", APPLICATION,
+                "-repository", repository, "-installIU", installIUs };
+    }
+
+    /**
+     * Returns the names of all entries in the unit directories.
+     * 
+     * @return Paths like "plugins/a_1.0.0.jar" relative to the Eclipse
+     *         directory.
+     */
+    @NotNull
+    public final List<String> listUnits() {
+        final List<String> units = new ArrayList<>();
+        for (final String dirName : UNIT_DIRS) {
+            final String[] names = new File(eclipseDir, dirName).list();
+            if (names != null) {
+                for (final String name : names) {
+                    units.add(dirName + "/" + name);
+                }
+            }
+        }
+        Collections.sort(units);
+        return units;
+    }
+
+    /**
+     * Moves all units that are not contained in a previous snapshot into
+     * another directory. The "plugins" and "features" structure is kept.
+     * 
+     * @param before
+     *            Result of {@link #listUnits()} before the installation.
+     * @param targetDir
+     *            Directory to move the new units into.
+     * 
+     * @return Paths of the moved units relative to the target directory.
+     */
+    @NotNull
+    public final List<String> moveNewUnits(@NotNull final List<String> before,
+            @NotNull final File targetDir) {
+        Contract.requireArgNotNull("before", before);
+        Contract.requireArgNotNull("targetDir", targetDir);
+        final List<String> moved = new ArrayList<>(listUnits());
+        moved.removeAll(before);
+        for (final String unit : moved) {
+            final File src = new File(eclipseDir, unit);
+            final File dest = new File(targetDir, unit);
+            DebUtils.mkdirs(dest.getParentFile());
+            try {
+                FileUtils.moveToDirectory(src, dest.getParentFile(), true);
+            } catch (final IOException ex) {
+                throw new RuntimeException("Error moving " + src + " to: "
+                        + dest, ex);
+            }
+        }
+        LOG.info("Moved {} new unit(s) to: {}", moved.size(), targetDir);
+        return moved;
+    }
+
+}
@@ -0,0 +1,586 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.owndeb.pkg.eclipseplugin;
+
+import static org.fuin.utils4j.Utils4J.url;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringTokenizer;
+import java.util.concurrent.Semaphore;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import javax.validation.constraints.NotNull;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+import org.fuin.objects4j.common.Contract;
+import org.fuin.objects4j.common.NotEmpty;
+import org.fuin.objects4j.common.Nullable;
+import org.fuin.owndeb.commons.DebUtils;
+import org.fuin.owndeb.commons.Stage;
+import org.fuin.owndeb.commons.StageLimits;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Local mirror of Eclipse P2 repositories. The content of all files is stored
+ * only once in a content addressed store ("objects/&lt;sha-256&gt;"). Every
+ * mirrored repository is a directory ("repos/&lt;sha-1 of the URL&gt;") that
+ * contains hard links to the store, so artifacts shared by several
+ * repositories take disk space only once. Artifacts with a known SHA-256
+ * checksum that are already in the store are not downloaded again.<br>
+ * <br>
+ * Simple repositories ("artifacts.jar/xml" and "content.jar/xml") are
+ * mirrored completely using the mapping rules of the artifact repository.
+ * Packed artifacts are skipped. The children of composite repositories are
+ * mirrored as separate repositories. Files are replaced atomically, so
+ * several builds can share a mirror directory.
+ */
+public final class P2Mirror {
+
+    private static final Logger LOG = LoggerFactory.getLogger(P2Mirror.class);
+
+    private static final String ARTIFACTS = "artifacts";
+
+    private static final String CONTENT = "content";
+
+    private static final String COMPOSITE_ARTIFACTS = "compositeArtifacts";
+
+    private static final String COMPOSITE_CONTENT = "compositeContent";
+
+    private static final String SHA256 = "download.checksum.sha-256";
+
+    private static final String FORMAT = "format";
+
+    private static final String REPO_URL = "${repoUrl}/";
+
+    private final File dir;
+
+    private final StageLimits limits;
+
+    /**
+     * Constructor with mirror directory.
+     * 
+     * @param dir
+     *            Directory for the mirrored repositories. Will be created if
+     *            it does not exist.
+     */
+    public P2Mirror(@NotNull final File dir) {
+        this(dir, null);
+    }
+
+    /**
+     * Constructor with all data.
+     * 
+     * @param dir
+     *            Directory for the mirrored repositories. Will be created if
+     *            it does not exist.
+     * @param limits
+     *            Limits of the build or <code>null</code> if downloads are
+     *            not limited.
+     */
+    public P2Mirror(@NotNull final File dir, @Nullable final StageLimits limits) {
+        super();
+        Contract.requireArgNotNull("dir", dir);
+        this.dir = dir;
+        this.limits = limits;
+    }
+
+    /**
+     * Returns the mirror directory.
+     * 
+     * @return Directory.
+     */
+    @NotNull
+    public final File getDir() {
+        return dir;
+    }
+
+    /**
+     * Mirrors a comma separated list of repositories and returns the local
+     * replacement.
+     * 
+     * @param repositories
+     *            Comma separated list of P2 repository URLs.
+     * 
+     * @return Comma separated list of "file:" URLs of the mirrored
+     *         repositories.
+     */
+    @NotNull
+    public final String mirrorAll(@NotEmpty final String repositories) {
+        Contract.requireArgNotEmpty("repositories", repositories);
+        final StringBuilder sb = new StringBuilder();
+        final StringTokenizer tok = new StringTokenizer(repositories, ",");
+        while (tok.hasMoreTokens()) {
+            for (final URL url : mirror(url(tok.nextToken().trim()))) {
+                if (sb.length() > 0) {
+                    sb.append(",");
+                }
+                sb.append(url);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Mirrors a repository.
+     * 
+     * @param repository
+     *            P2 repository URL.
+     * 
+     * @return "file:" URLs of the mirrored simple repositories. A simple
+     *         repository results in exactly one URL, a composite repository
+     *         in one URL per simple child repository.
+     */
+    @NotNull
+    public final List<URL> mirror(@NotNull final URL repository) {
+        Contract.requireArgNotNull("repository", repository);
+        final String base = withoutSlash(repository.toString());
+        final List<URL> result = new ArrayList<>();
+        final byte[] composite = readIndex(base, COMPOSITE_ARTIFACTS);
+        if (composite != null) {
+            LOG.info("Mirror composite repository: {}", base);
+            for (final String child : parseChildren(composite, base)) {
+                result.addAll(mirror(url(child)));
+            }
+            return result;
+        }
+        result.add(mirrorSimple(base));
+        return result;
+    }
+
+    /**
+     * Returns the directory of a mirrored repository.
+     * 
+     * @param repository
+     *            P2 repository URL.
+     * 
+     * @return Directory (may not exist yet).
+     */
+    @NotNull
+    public final File getRepositoryDir(@NotNull final String repository) {
+        Contract.requireArgNotNull("repository", repository);
+        return new File(new File(dir, "repos"),
+                DigestUtils.sha1Hex(withoutSlash(repository)));
+    }
+
+    /**
+     * Returns the file for a content in the store.
+     * 
+     * @param sha256
+     *            SHA-256 checksum of the content.
+     * 
+     * @return File (may not exist yet).
+     */
+    @NotNull
+    public final File getObjectFile(@NotEmpty final String sha256) {
+        Contract.requireArgNotEmpty("sha256", sha256);
+        return new File(new File(dir, "objects"), sha256);
+    }
+
+    private URL mirrorSimple(final String base) {
+
+        LOG.info("Mirror repository: {}", base);
+        final File repoDir = getRepositoryDir(base);
+
+        final String artifactsName = findIndex(base, ARTIFACTS);
+        final String contentName = findIndex(base, CONTENT);
+        if (artifactsName == null || contentName == null) {
+            throw new IllegalStateException(
+                    "Couldn't find P2 repository index files at: " + base);
+        }
+        final byte[] artifactsXml = readXml(mirrorFile(base, artifactsName,
+                null, repoDir), artifactsName);
+        mirrorFile(base, contentName, null, repoDir);
+
+        int count = 0;
+        for (final Artifact artifact : parseArtifacts(artifactsXml, base)) {
+            mirrorFile(base, artifact.path, artifact.sha256, repoDir);
+            count++;
+        }
+        LOG.info("Mirrored {} artifact(s) of '{}' into: {}", count, base,
+                repoDir);
+
+        try {
+            return repoDir.getAbsoluteFile().toURI().toURL();
+        } catch (final MalformedURLException ex) {
+            throw new RuntimeException("Error creating URL for: " + repoDir,
+                    ex);
+        }
+
+    }
+
+    /**
+     * Copies a file of the remote repository into the store and links it
+     * into the repository directory.
+     * 
+     * @return Linked file.
+     */
+    private File mirrorFile(final String base, final String path,
+            final String sha256, final File repoDir) {
+        final File target = new File(repoDir, path);
+        File object = null;
+        if (sha256 != null) {
+            object = getObjectFile(sha256);
+        }
+        if (object == null || !object.exists()) {
+            object = download(base + "/" + path);
+        } else {
+            LOG.debug("Use cached artifact: {}", path);
+        }
+        link(object, target);
+        return target;
+    }
+
+    private File download(final String urlStr) {
+        final File objectsDir = new File(dir, "objects");
+        DebUtils.mkdirs(objectsDir);
+        final Semaphore permit = StageLimits.enter(limits, Stage.DOWNLOAD);
+        try {
+            final File tmpFile = File.createTempFile("download", ".tmp",
+                    objectsDir);
+            final MessageDigest md = MessageDigest.getInstance("SHA-256");
+            final InputStream in = url(urlStr).openStream();
+            try {
+                final OutputStream out = new FileOutputStream(tmpFile);
+                try {
+                    final byte[] buf = new byte[8192];
+                    int len;
+                    while ((len = in.read(buf)) > -1) {
+                        md.update(buf, 0, len);
+                        out.write(buf, 0, len);
+                    }
+                } finally {
+                    out.close();
+                }
+            } finally {
+                in.close();
+            }
+            final File object = getObjectFile(Hex.encodeHexString(md
+                    .digest()));
+            Files.move(tmpFile.toPath(), object.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+            return object;
+        } catch (final IOException | NoSuchAlgorithmException ex) {
+            throw new RuntimeException("Error downloading: " + urlStr, ex);
+        } finally {
+            StageLimits.exit(permit);
+        }
+    }
+
+    private static void link(final File object, final File target) {
+        DebUtils.mkdirs(target.getParentFile());
+        try {
+            final File tmpFile = new File(target.getParentFile(),
+                    target.getName() + "." + Thread.currentThread().getId()
+                            + ".tmp");
+            Files.deleteIfExists(tmpFile.toPath());
+            try {
+                Files.createLink(tmpFile.toPath(), object.toPath());
+            } catch (final IOException | UnsupportedOperationException ex) {
+                LOG.debug("Couldn't create link - Copy file instead: {}",
+                        target);
+                Files.copy(object.toPath(), tmpFile.toPath());
+            }
+            Files.move(tmpFile.toPath(), target.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (final IOException ex) {
+            throw new RuntimeException("Error linking " + object + " to: "
+                    + target, ex);
+        }
+    }
+
+    private static String findIndex(final String base, final String name) {
+        if (exists(base + "/" + name + ".jar")) {
+            return name + ".jar";
+        }
+        if (exists(base + "/" + name + ".xml")) {
+            return name + ".xml";
+        }
+        return null;
+    }
+
+    private static byte[] readIndex(final String base, final String name) {
+        final String fileName = findIndex(base, name);
+        if (fileName == null) {
+            return null;
+        }
+        try {
+            final InputStream in = url(base + "/" + fileName)
+                    .openStream();
+            try {
+                return unpack(in, fileName);
+            } finally {
+                in.close();
+            }
+        } catch (final IOException ex) {
+            throw new RuntimeException("Error reading: " + base + "/"
+                    + fileName, ex);
+        }
+    }
+
+    private static byte[] readXml(final File file, final String fileName) {
+        try {
+            final InputStream in = Files.newInputStream(file.toPath());
+            try {
+                return unpack(in, fileName);
+            } finally {
+                in.close();
+            }
+        } catch (final IOException ex) {
+            throw new RuntimeException("Error reading: " + file, ex);
+        }
+    }
+
+    private static byte[] unpack(final InputStream in, final String fileName)
+            throws IOException {
+        if (!fileName.endsWith(".jar")) {
+            return IOUtils.toByteArray(in);
+        }
+        final String xmlName = fileName.substring(0, fileName.length() - 4)
+                + ".xml";
+        final ZipInputStream zin = new ZipInputStream(in);
+        ZipEntry entry;
+        while ((entry = zin.getNextEntry()) != null) {
+            if (entry.getName().equals(xmlName)) {
+                return IOUtils.toByteArray(zin);
+            }
+        }
+        throw new IOException("Couldn't find '" + xmlName + "' in: "
+                + fileName);
+    }
+
+    private static boolean exists(final String urlStr) {
+        try {
+            final InputStream in = url(urlStr).openStream();
+            in.close();
+            return true;
+        } catch (final IOException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the absolute locations of the children of a composite
+     * repository.
+     */
+    static List<String> parseChildren(final byte[] xml, final String base) {
+        final List<String> children = new ArrayList<>();
+        try {
+            final XMLStreamReader reader = createReader(xml);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT
+                            && "child".equals(reader.getLocalName())) {
+                        final String location = reader.getAttributeValue(null,
+                                "location");
+                        children.add(withoutSlash(URI.create(base + "/")
+                                .resolve(location).toString()));
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (final XMLStreamException ex) {
+            throw new RuntimeException("Error parsing composite repository: "
+                    + base, ex);
+        }
+        return children;
+    }
+
+    /**
+     * Returns the canonical artifacts of a simple repository with their
+     * location relative to the repository.
+     */
+    static List<Artifact> parseArtifacts(final byte[] xml, final String base) {
+        final List<Rule> rules = new ArrayList<>();
+        final List<Artifact> artifacts = new ArrayList<>();
+        try {
+            final XMLStreamReader reader = createReader(xml);
+            try {
+                String classifier = null;
+                String id = null;
+                String version = null;
+                String sha256 = null;
+                String format = null;
+                while (reader.hasNext()) {
+                    final int event = reader.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        final String name = reader.getLocalName();
+                        if ("rule".equals(name)) {
+                            rules.add(new Rule(reader.getAttributeValue(null,
+                                    "filter"), reader.getAttributeValue(null,
+                                    "output")));
+                        } else if ("artifact".equals(name)) {
+                            classifier = reader.getAttributeValue(null,
+                                    "classifier");
+                            id = reader.getAttributeValue(null, "id");
+                            version = reader.getAttributeValue(null,
+                                    "version");
+                            sha256 = null;
+                            format = null;
+                        } else if ("property".equals(name) && id != null) {
+                            final String key = reader.getAttributeValue(null,
+                                    "name");
+                            final String value = reader.getAttributeValue(
+                                    null, "value");
+                            if (SHA256.equals(key)) {
+                                sha256 = value;
+                            } else if (FORMAT.equals(key)) {
+                                format = value;
+                            }
+                        }
+                    } else if (event == XMLStreamConstants.END_ELEMENT
+                            && "artifact".equals(reader.getLocalName())) {
+                        if (format == null) {
+                            artifacts.add(new Artifact(path(rules, classifier,
+                                    id, version, base), sha256));
+                        }
+                        id = null;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (final XMLStreamException ex) {
+            throw new RuntimeException("Error parsing artifacts of: " + base,
+                    ex);
+        }
+        return artifacts;
+    }
+
+    private static String path(final List<Rule> rules,
+            final String classifier, final String id, final String version,
+            final String base) {
+        for (final Rule rule : rules) {
+            if (rule.matches(classifier)) {
+                String path = rule.output.replace("${classifier}", classifier)
+                        .replace("${id}", id).replace("${version}", version);
+                if (!path.startsWith(REPO_URL)) {
+                    throw new IllegalStateException(
+                            "Artifact outside of the repository '" + base
+                                    + "': " + path);
+                }
+                path = path.substring(REPO_URL.length());
+                return path;
+            }
+        }
+        throw new IllegalStateException("No mapping rule for artifact '"
+                + classifier + "/" + id + "/" + version + "' in: " + base);
+    }
+
+    private static XMLStreamReader createReader(final byte[] xml)
+            throws XMLStreamException {
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        return factory.createXMLStreamReader(new ByteArrayInputStream(xml));
+    }
+
+    private static String withoutSlash(final String str) {
+        if (str.endsWith("/")) {
+            return str.substring(0, str.length() - 1);
+        }
+        return str;
+    }
+
+    /**
+     * Canonical artifact of a simple repository.
+     */
+    static final class Artifact {
+
+        private final String path;
+
+        private final String sha256;
+
+        public Artifact(final String path, final String sha256) {
+            super();
+            this.path = path;
+            this.sha256 = sha256;
+        }
+
+        /**
+         * Returns the location relative to the repository.
+         * 
+         * @return Path like "plugins/a_1.0.0.jar".
+         */
+        public final String getPath() {
+            return path;
+        }
+
+        /**
+         * Returns the SHA-256 checksum from the repository.
+         * 
+         * @return Checksum or <code>null</code> if unknown.
+         */
+        public final String getSha256() {
+            return sha256;
+        }
+
+    }
+
+    /**
+     * Mapping rule of an artifact repository. Only filters like
+     * "(&amp; (classifier=x))" are supported, rules for other formats like
+     * "packed" are ignored.
+     */
+    private static final class Rule {
+
+        private final String classifier;
+
+        private final String output;
+
+        public Rule(final String filter, final String output) {
+            super();
+            final int start = filter.indexOf("classifier=");
+            if (start == -1 || filter.contains("format=")) {
+                this.classifier = null;
+            } else {
+                final int end = filter.indexOf(')', start);
+                this.classifier = filter.substring(
+                        start + "classifier=".length(), end).trim();
+            }
+            this.output = output;
+        }
+
+        public boolean matches(final String artifactClassifier) {
+            return classifier != null && classifier.equals(artifactClassifier);
+        }
+
+    }
+
+}
@@ -21,11 +21,9 @@ import static org.fuin.owndeb.commons.DebUtils.writeReplacedResource;
 
 import java.io.File;
 import java.util.List;
-import java.util.Map;
 
 import javax.xml.bind.annotation.XmlRootElement;
 
-import org.apache.tools.ant.Project;
 import org.fuin.objects4j.common.Contract;
 import org.fuin.objects4j.common.NotEmpty;
 import org.fuin.objects4j.common.Nullable;
@@ -33,10 +31,10 @@ import org.fuin.owndeb.commons.DebDependency;
 import org.fuin.owndeb.commons.DebPackage;
 import org.fuin.owndeb.commons.DebPackages;
 import org.fuin.owndeb.commons.DebUtils;
+import org.fuin.owndeb.commons.VariableGraph;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.vafer.jdeb.ant.Data;
-import org.vafer.jdeb.ant.DebAntTask;
 import org.vafer.jdeb.ant.Mapper;
 
 /**
@@ -46,6 +44,8 @@ import org.vafer.jdeb.ant.Mapper;
 @XmlRootElement(name = "example-package")
 public class ExamplePackage extends DebPackage {
 
+    private static final long serialVersionUID = 1L;
+
     private static final Logger LOG = LoggerFactory
             .getLogger(ExamplePackage.class);
 
@@ -131,8 +131,9 @@ public class ExamplePackage extends DebPackage {
         Contract.requireArgNotNull("buildDirectory", buildDirectory);
         LOG.info("Creating package in: {}", buildDirectory);
 
-        final File packageDir = new File(buildDirectory, getName());
-        final File controlDir = new File(buildDirectory, getName() + "-control");
+        final File workDir = getWorkDir(buildDirectory);
+        final File packageDir = new File(workDir, getName());
+        final File controlDir = new File(workDir, getName() + "-control");
         final File helloFile = new File(packageDir, "hello.txt");
         DebUtils.copyResourceToFile(this.getClass(), "/" + getPackageName()
                 + "/hello.txt", helloFile);
@@ -147,7 +148,6 @@ public class ExamplePackage extends DebPackage {
 
     @Override
     public final void init(@Nullable final DebPackages parent) {
-        addNonExistingVariables(parent);
         initPackage(parent);
         resolveVariables();
     }
@@ -156,8 +156,7 @@ public class ExamplePackage extends DebPackage {
             final String packageName, final File controlDir) {
 
         DebUtils.mkdirs(controlDir);
-        final Map<String, String> vars = DebUtils.asMap(debPackage
-                .getVariables());
+        final VariableGraph vars = debPackage.getVariableGraph();
         writeReplacedResource(ExamplePackage.class, "/" + packageName
                 + "/control", controlDir, vars);
 
@@ -176,13 +175,6 @@ public class ExamplePackage extends DebPackage {
         LOG.debug("controlDir: {}", controlDir);
         LOG.debug("debName: {}", debName);
 
-        final Project project = new Project();
-
-        final DebAntTask task = new DebAntTask();
-        task.setProject(project);
-        task.setDestfile(debName);
-        task.setControl(controlDir);
-
         final Data data = new Data();
         data.setSrc(packageDir);
         data.setType("directory");
@@ -194,9 +186,9 @@ public class ExamplePackage extends DebPackage {
         mapper.setGroup("developer");
         data.addMapper(mapper);
 
-        task.addData(data);
-
-        task.execute();
+        DebUtils.createDeb(debName, controlDir,
+                debPackage.getPathRegistry(), debPackage.getStageLimits(),
+                debPackage.getArch(), debPackage.getName(), data);
 
         LOG.info("Finished creating Debian package");
 
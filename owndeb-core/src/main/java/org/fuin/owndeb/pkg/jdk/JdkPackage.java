@@ -20,29 +20,77 @@ package org.fuin.owndeb.pkg.jdk;
 import static org.fuin.owndeb.commons.DebUtils.writeReplacedResource;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
+import java.util.StringTokenizer;
 
 import javax.validation.constraints.NotNull;
+import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlRootElement;
 
+import org.apache.commons.exec.CommandLine;
+import org.apache.commons.io.FileUtils;
+
 import org.fuin.objects4j.common.NotEmpty;
 import org.fuin.objects4j.common.Nullable;
 import org.fuin.owndeb.commons.DebDependency;
 import org.fuin.owndeb.commons.DebPackage;
 import org.fuin.owndeb.commons.DebPackages;
 import org.fuin.owndeb.commons.DebUtils;
+import org.fuin.owndeb.commons.VariableGraph;
 import org.fuin.owndeb.pkg.base.AbstractDownloadTarGzPackage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
- * Downloads and Oracle JDK and creates a binary Debian package from it.
+ * Downloads and Oracle JDK and creates a binary Debian package from it. The
+ * content can be reduced with 'includes' and 'excludes' patterns that are
+ * applied while the archive is read. If 'jlink-modules' is set, the package
+ * contains a runtime image with the given modules created by the JDK's 'jlink'
+ * instead of the full JDK. If 'cds' is set, the staged JDK creates it's default class data sharing
+ * archive at build time. An additional application class data sharing
+ * archive is created if a class list is given with 'cds-class-list'.
  */
 @XmlRootElement(name = "jdk-package")
 public final class JdkPackage extends AbstractDownloadTarGzPackage {
 
+    private static final long serialVersionUID = 1L;
+
     /** Name of the package. */
     public static final String NAME = "jdk-package";
 
+    /** Path of the application CDS archive relative to the JDK directory. */
+    public static final String APP_CDS_ARCHIVE = "lib/owndeb-app.jsa";
+
+    private static final String CDS = "cds";
+
+    private static final String CDS_CLASS_LIST = "cds-class-list";
+
+    private static final String INCLUDES = "includes";
+
+    private static final String EXCLUDES = "excludes";
+
+    private static final String JLINK_MODULES = "jlink-modules";
+
+    private static final Logger LOG = LoggerFactory.getLogger(JdkPackage.class);
+
+    @XmlAttribute(name = CDS)
+    private String cds;
+
+    @XmlAttribute(name = CDS_CLASS_LIST)
+    private String cdsClassList;
+
+    @XmlAttribute(name = INCLUDES)
+    private String includes;
+
+    @XmlAttribute(name = EXCLUDES)
+    private String excludes;
+
+    @XmlAttribute(name = JLINK_MODULES)
+    private String jlinkModules;
+
     /**
      * Default constructor for JAXB.
      */
@@ -125,22 +173,271 @@ public final class JdkPackage extends AbstractDownloadTarGzPackage {
         return NAME;
     }
 
+    /**
+     * Returns if class data sharing archives are created at build time.
+     * 
+     * @return TRUE if the package contains CDS archives.
+     */
+    public final boolean isCds() {
+        return Boolean.parseBoolean(variableValue(CDS));
+    }
+
+    /**
+     * Returns the class list for the application CDS archive.
+     * 
+     * @return Class list file or <code>null</code> if only the default
+     *         archive is created.
+     */
+    @Nullable
+    public final File getCdsClassList() {
+        final String path = variableValue(CDS_CLASS_LIST);
+        if (path == null) {
+            return null;
+        }
+        return new File(path);
+    }
+
+    @Override
+    @Nullable
+    protected final String getIncludes() {
+        return variableValue(INCLUDES);
+    }
+
+    @Override
+    @Nullable
+    protected final String getExcludes() {
+        return variableValue(EXCLUDES);
+    }
+
+    /**
+     * Returns the modules of the runtime image.
+     * 
+     * @return Comma separated list of modules or <code>null</code> if the
+     *         package contains the full JDK.
+     */
+    @Nullable
+    public final String getJlinkModules() {
+        return variableValue(JLINK_MODULES);
+    }
+
     @Override
     public final void init(@Nullable final DebPackages parent) {
-        addNonExistingVariables(parent);
         initDownloadTarGzPackage(parent);
+        addOrReplaceVariable(CDS, cds);
+        addOrReplaceVariable(CDS_CLASS_LIST, cdsClassList);
+        addOrReplaceVariable(INCLUDES, includes);
+        addOrReplaceVariable(EXCLUDES, excludes);
+        addOrReplaceVariable(JLINK_MODULES, jlinkModules);
         resolveVariables();
     }
 
     @Override
     protected final void applyModifications(final File packageDir) {
-        // No modifications
+        final String modules = getJlinkModules();
+        if (modules != null) {
+            final File imageDir = new File(packageDir.getParentFile(),
+                    packageDir.getName() + "-image");
+            jlink(packageDir, modules, imageDir);
+            FileUtils.deleteQuietly(packageDir);
+            try {
+                FileUtils.moveDirectory(imageDir, packageDir);
+            } catch (final IOException ex) {
+                throw new RuntimeException("Error moving " + imageDir
+                        + " to: " + packageDir, ex);
+            }
+        }
+        if (isCds()) {
+            dumpCds(packageDir, getCdsClassList());
+        }
+    }
+
+    /**
+     * Runs the JDK's 'jlink' to create a runtime image that only contains the
+     * given modules and their dependencies. Debug information, header files
+     * and man pages are not copied into the image. The JDK must be executable
+     * on the build machine and must contain the 'jmods' directory.
+     * 
+     * @param jdkDir
+     *            Directory with the unpacked JDK.
+     * @param modules
+     *            Comma or space separated list of root modules.
+     * @param imageDir
+     *            Directory to create. Will be deleted first if it exists.
+     */
+    static void jlink(@NotNull final File jdkDir,
+            @NotEmpty final String modules, @NotNull final File imageDir) {
+
+        final StringBuilder sb = new StringBuilder();
+        final StringTokenizer tok = new StringTokenizer(modules, ", \t\r\n");
+        while (tok.hasMoreTokens()) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(tok.nextToken());
+        }
+        final String moduleList = sb.toString();
+        if (moduleList.length() == 0) {
+            throw new IllegalArgumentException("No modules in: '" + modules
+                    + "'");
+        }
+        final File jmodsDir = new File(jdkDir, "jmods");
+        if (!jmodsDir.isDirectory()) {
+            throw new IllegalArgumentException(
+                    "JDK has no 'jmods' directory: " + jdkDir);
+        }
+        FileUtils.deleteQuietly(imageDir);
+
+        final CommandLine cmdLine = new CommandLine(new File(jdkDir,
+                "bin/jlink"));
+        cmdLine.addArgument("--module-path");
+        cmdLine.addArgument(jmodsDir.getAbsolutePath(), false);
+        cmdLine.addArgument("--add-modules");
+        cmdLine.addArgument(moduleList, false);
+        cmdLine.addArgument("--strip-debug");
+        cmdLine.addArgument("--no-header-files");
+        cmdLine.addArgument("--no-man-pages");
+        cmdLine.addArgument("--output");
+        cmdLine.addArgument(imageDir.getAbsolutePath(), false);
+        DebUtils.execute(cmdLine, jdkDir, "Create runtime image");
+
+        if (!new File(imageDir, "bin/java").isFile()) {
+            throw new IllegalStateException(
+                    "Runtime image was not created: " + imageDir);
+        }
+        LOG.info("Created runtime image with module(s) {}: {}", moduleList,
+                imageDir);
+
+    }
+
+    /**
+     * Runs the JDK to create the default class data sharing archive and an
+     * optional application archive. The JDK must be executable on the build
+     * machine, so the architecture has to match. Application archives require
+     * an Oracle JDK 8u40 or later for Java 8 and 9, where the commercial
+     * feature is unlocked.
+     * 
+     * @param jdkDir
+     *            Directory with the unpacked JDK.
+     * @param classList
+     *            Class list for the application archive ("lib/owndeb-app.jsa")
+     *            or <code>null</code>.
+     * 
+     * @return All archives inside the JDK directory.
+     */
+    static Collection<File> dumpCds(@NotNull final File jdkDir,
+            @Nullable final File classList) {
+
+        final File java = new File(jdkDir, "bin/java");
+        final CommandLine cmdLine = new CommandLine(java);
+        cmdLine.addArgument("-Xshare:dump");
+        DebUtils.execute(cmdLine, jdkDir, "Create default CDS archive");
+
+        if (classList != null) {
+            if (!classList.isFile()) {
+                throw new IllegalArgumentException(
+                        "CDS class list does not exist: " + classList);
+            }
+            final File archive = new File(jdkDir, APP_CDS_ARCHIVE);
+            final CommandLine appCmdLine = new CommandLine(java);
+            for (final String option : appCdsOptions(javaVersion(jdkDir))) {
+                appCmdLine.addArgument(option);
+            }
+            appCmdLine.addArgument("-Xshare:dump");
+            appCmdLine.addArgument("-XX:SharedClassListFile="
+                    + classList.getAbsolutePath(), false);
+            appCmdLine.addArgument("-XX:SharedArchiveFile="
+                    + archive.getAbsolutePath(), false);
+            DebUtils.execute(appCmdLine, jdkDir,
+                    "Create application CDS archive");
+            if (!archive.isFile()) {
+                throw new IllegalStateException(
+                        "Application CDS archive was not created: " + archive);
+            }
+        }
+
+        final Collection<File> archives = new ArrayList<>(FileUtils.listFiles(
+                jdkDir, new String[] { "jsa" }, true));
+        if (archives.isEmpty()) {
+            throw new IllegalStateException("No CDS archive created in: "
+                    + jdkDir);
+        }
+        LOG.info("Created CDS archive(s): {}", archives);
+        return archives;
+
+    }
+
+    /**
+     * Returns the options that enable application class data sharing for a
+     * Java version. Java 8 and 9 need the commercial features unlocked and
+     * Java 8 to 10 need 'UseAppCDS'. Later versions enable it by default.
+     * 
+     * @param javaVersion
+     *            Version like "1.8.0_60" or "11.0.2" or <code>null</code> if
+     *            unknown.
+     * 
+     * @return Options to add before '-Xshare:dump'.
+     */
+    static List<String> appCdsOptions(@Nullable final String javaVersion) {
+        final List<String> options = new ArrayList<>();
+        final int feature = featureVersion(javaVersion);
+        if (feature > 0 && feature <= 9) {
+            options.add("-XX:+UnlockCommercialFeatures");
+        }
+        if (feature > 0 && feature <= 10) {
+            options.add("-XX:+UseAppCDS");
+        }
+        return options;
+    }
+
+    private static int featureVersion(final String javaVersion) {
+        if (javaVersion == null) {
+            return 0;
+        }
+        String version = javaVersion;
+        if (version.startsWith("1.")) {
+            version = version.substring(2);
+        }
+        int end = 0;
+        while (end < version.length()
+                && Character.isDigit(version.charAt(end))) {
+            end++;
+        }
+        if (end == 0) {
+            return 0;
+        }
+        return Integer.parseInt(version.substring(0, end));
+    }
+
+    /**
+     * Reads the version from the 'release' file of a JDK.
+     * 
+     * @param jdkDir
+     *            Directory with the unpacked JDK.
+     * 
+     * @return Value of 'JAVA_VERSION' or <code>null</code> if unknown.
+     */
+    @Nullable
+    private static String javaVersion(final File jdkDir) {
+        final File release = new File(jdkDir, "release");
+        if (!release.isFile()) {
+            return null;
+        }
+        try {
+            for (final String line : FileUtils.readLines(release, "utf-8")) {
+                if (line.startsWith("JAVA_VERSION=")) {
+                    return line.substring(line.indexOf('=') + 1).replace(
+                            "\"", "").trim();
+                }
+            }
+        } catch (final IOException ex) {
+            throw new RuntimeException("Error reading: " + release, ex);
+        }
+        return null;
     }
 
     @Override
     protected final void copyControlFiles(final File controlDir) {
-        final Map<String, String> vars = DebUtils.asMap(getParent()
-                .getVariables());
+        final VariableGraph vars = getVariableGraph();
         writeReplacedResource(JdkPackage.class, "/" + getPackageName()
                 + "/control", controlDir, vars);
         writeReplacedResource(JdkPackage.class, "/" + getPackageName()
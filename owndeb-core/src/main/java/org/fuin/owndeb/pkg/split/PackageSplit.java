@@ -0,0 +1,234 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.owndeb.pkg.split;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+
+import javax.validation.constraints.NotNull;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import org.fuin.objects4j.common.Contract;
+import org.fuin.objects4j.common.NotEmpty;
+import org.fuin.objects4j.common.Nullable;
+import org.fuin.owndeb.commons.DebUtils;
+import org.fuin.utils4j.Utils4J;
+
+/**
+ * Part of a {@link SplitPackage} that becomes a Debian package of it's own.
+ * The name of the package is the name of the parent package plus the suffix.
+ */
+@XmlRootElement(name = "split")
+public final class PackageSplit implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @XmlAttribute(name = "suffix")
+    private String suffix;
+
+    @XmlAttribute(name = "description")
+    private String description;
+
+    @XmlAttribute(name = "includes")
+    private String includes;
+
+    @XmlAttribute(name = "excludes")
+    private String excludes;
+
+    @XmlAttribute(name = "provides")
+    private String provides;
+
+    private transient SplitPackage parent;
+
+    /**
+     * Default constructor for JAXB.
+     */
+    protected PackageSplit() {
+        super();
+    }
+
+    /**
+     * Constructor with all data.
+     *
+     * @param suffix
+     *            Suffix to append to the name of the parent package.
+     * @param description
+     *            Package description or <code>null</code> to use the
+     *            description of the parent.
+     * @param includes
+     *            Comma or space separated list of Ant patterns to include or
+     *            <code>null</code> to include everything.
+     * @param excludes
+     *            Comma or space separated list of Ant patterns to exclude or
+     *            <code>null</code> to exclude nothing.
+     */
+    public PackageSplit(@NotEmpty final String suffix,
+            @Nullable final String description,
+            @Nullable final String includes, @Nullable final String excludes) {
+        this(suffix, description, includes, excludes, null);
+    }
+
+    /**
+     * Constructor with all data including the virtual packages.
+     *
+     * @param suffix
+     *            Suffix to append to the name of the parent package.
+     * @param description
+     *            Package description or <code>null</code> to use the
+     *            description of the parent.
+     * @param includes
+     *            Comma or space separated list of Ant patterns to include or
+     *            <code>null</code> to include everything.
+     * @param excludes
+     *            Comma or space separated list of Ant patterns to exclude or
+     *            <code>null</code> to exclude nothing.
+     * @param provides
+     *            Comma or space separated list of virtual packages provided by
+     *            the split or <code>null</code>.
+     */
+    public PackageSplit(@NotEmpty final String suffix,
+            @Nullable final String description,
+            @Nullable final String includes, @Nullable final String excludes,
+            @Nullable final String provides) {
+        super();
+        Contract.requireArgNotEmpty("suffix", suffix);
+        this.suffix = suffix;
+        this.description = description;
+        this.includes = includes;
+        this.excludes = excludes;
+        this.provides = provides;
+    }
+
+    /**
+     * Returns the suffix to append to the name of the parent package.
+     *
+     * @return Suffix like "-src".
+     */
+    public final String getSuffix() {
+        return suffix;
+    }
+
+    /**
+     * Returns the package name.
+     *
+     * @return Name of the parent plus suffix.
+     */
+    public final String getName() {
+        return parent.getName() + suffix;
+    }
+
+    /**
+     * Returns the package description.
+     *
+     * @return Description or the description of the parent if none was
+     *         defined.
+     */
+    public final String getDescription() {
+        if (description == null) {
+            return parent.getDescription();
+        }
+        return description;
+    }
+
+    /**
+     * Returns the include patterns.
+     *
+     * @return Comma or space separated patterns or <code>null</code>.
+     */
+    @Nullable
+    public final String getIncludes() {
+        return includes;
+    }
+
+    /**
+     * Returns the exclude patterns.
+     *
+     * @return Comma or space separated patterns or <code>null</code>.
+     */
+    @Nullable
+    public final String getExcludes() {
+        return excludes;
+    }
+
+    /**
+     * Returns the virtual packages provided by the split ("Provides" field).
+     * The virtual packages of the parent are not inherited, as only one of
+     * the splits can provide them.
+     *
+     * @return Virtual package names - Never <code>null</code>.
+     */
+    @NotNull
+    public final List<String> getProvides() {
+        return DebUtils.names(provides);
+    }
+
+    /**
+     * Returns the Debian filename.
+     *
+     * @return Filename of the package.
+     */
+    public final String getDebFilename() {
+        return getName() + "_" + parent.getVersion() + "_" + parent.getArch()
+                + ".deb";
+    }
+
+    /**
+     * Returns the parent.
+     *
+     * @return Current parent.
+     */
+    public final SplitPackage getParent() {
+        return parent;
+    }
+
+    /**
+     * Returns an uninitialized copy of this instance.
+     *
+     * @return New instance with the same suffix, description and patterns.
+     */
+    final PackageSplit copy() {
+        return new PackageSplit(suffix, description, includes, excludes,
+                provides);
+    }
+
+    /**
+     * Initializes the instance.
+     *
+     * @param parent
+     *            Current parent.
+     */
+    public final void init(@NotNull final SplitPackage parent) {
+        Contract.requireArgNotNull("parent", parent);
+        this.parent = parent;
+        final Map<String, String> vars = DebUtils.asMap(parent
+                .getVariables());
+        this.suffix = Utils4J.replaceVars(suffix, vars);
+        this.description = Utils4J.replaceVars(description, vars);
+        this.includes = Utils4J.replaceVars(includes, vars);
+        this.excludes = Utils4J.replaceVars(excludes, vars);
+        this.provides = Utils4J.replaceVars(provides, vars);
+    }
+
+    @Override
+    public final String toString() {
+        return "PackageSplit [suffix=" + suffix + "]";
+    }
+
+}
@@ -0,0 +1,348 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.owndeb.pkg.split;
+
+import static org.fuin.owndeb.commons.DebUtils.cachedDownload;
+import static org.fuin.owndeb.commons.DebUtils.writeReplacedResource;
+import static org.fuin.utils4j.Utils4J.url;
+
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.validation.constraints.NotNull;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import org.fuin.objects4j.common.Contract;
+import org.fuin.objects4j.common.ContractViolationException;
+import org.fuin.objects4j.common.NotEmpty;
+import org.fuin.objects4j.common.Nullable;
+import org.fuin.owndeb.commons.DebDependency;
+import org.fuin.owndeb.commons.DebPackage;
+import org.fuin.owndeb.commons.DebPackages;
+import org.fuin.owndeb.commons.DebUtils;
+import org.fuin.owndeb.commons.TarGzSplitter;
+import org.fuin.owndeb.commons.Variable;
+import org.fuin.owndeb.commons.VariableGraph;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vafer.jdeb.ant.Data;
+import org.vafer.jdeb.ant.Mapper;
+
+/**
+ * Downloads an archive and creates several binary Debian packages from it.
+ * Each entry of the archive is assigned to the first split with matching
+ * patterns. The archive is only read once, regardless of the number of splits.
+ */
+@XmlRootElement(name = "split-package")
+public final class SplitPackage extends DebPackage {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String URL = "url";
+
+    /** Name of the package. */
+    public static final String NAME = "split-package";
+
+    private static final Logger LOG = LoggerFactory
+            .getLogger(SplitPackage.class);
+
+    @XmlAttribute(name = URL)
+    private String urlStr;
+
+    @XmlElement(name = "split")
+    private List<PackageSplit> splits;
+
+    /**
+     * Default constructor for JAXB.
+     */
+    protected SplitPackage() {
+        super();
+    }
+
+    /**
+     * Constructor with dependency array.
+     *
+     * @param name
+     *            Unique package name.
+     * @param version
+     *            Package version.
+     * @param description
+     *            Package description.
+     * @param maintainer
+     *            Maintainer of the package.
+     * @param arch
+     *            Architecture identifier like "amd64".
+     * @param installationPath
+     *            Installation path like "/opt".
+     * @param section
+     *            Section like "devel".
+     * @param priority
+     *            Priority like "low".
+     * @param url
+     *            URL with "tar.gz" file.
+     * @param splits
+     *            Splits in the order they are evaluated.
+     * @param dependencies
+     *            Array of dependencies.
+     */
+    public SplitPackage(@NotEmpty final String name,
+            @Nullable final String version, @Nullable final String description,
+            @Nullable final String maintainer, @Nullable final String arch,
+            @Nullable final String installationPath,
+            @Nullable final String section, @Nullable final String priority,
+            @NotNull final String url, @NotNull final List<PackageSplit> splits,
+            @Nullable final DebDependency... dependencies) {
+        this(name, version, description, maintainer, arch, installationPath,
+                section, priority, url, splits, dependencies == null ? null
+                        : Arrays.asList(dependencies));
+    }
+
+    /**
+     * Constructor with dependency list.
+     *
+     * @param name
+     *            Unique package name.
+     * @param version
+     *            Package version.
+     * @param description
+     *            Package description.
+     * @param maintainer
+     *            Maintainer of the package.
+     * @param arch
+     *            Architecture identifier like "amd64".
+     * @param installationPath
+     *            Installation path like "/opt".
+     * @param section
+     *            Section like "devel".
+     * @param priority
+     *            Priority like "low".
+     * @param url
+     *            URL with "tar.gz" file.
+     * @param splits
+     *            Splits in the order they are evaluated.
+     * @param dependencies
+     *            List of dependencies.
+     */
+    public SplitPackage(@NotEmpty final String name,
+            @Nullable final String version, @Nullable final String description,
+            @Nullable final String maintainer, @Nullable final String arch,
+            @Nullable final String installationPath,
+            @Nullable final String section, @Nullable final String priority,
+            @NotNull final String url, @NotNull final List<PackageSplit> splits,
+            @Nullable final List<DebDependency> dependencies) {
+        super(name, version, description, maintainer, arch, installationPath,
+                section, priority, dependencies);
+        Contract.requireArgNotNull(URL, url);
+        Contract.requireArgNotNull("splits", splits);
+        if (splits.isEmpty()) {
+            throw new ContractViolationException(
+                    "The list 'splits' cannot be empty");
+        }
+        this.urlStr = url;
+        this.splits = splits;
+    }
+
+    @Override
+    public final String getPackageName() {
+        return NAME;
+    }
+
+    /**
+     * Returns the URL.
+     *
+     * @return URL.
+     */
+    public final String getUrlStr() {
+        return variableValue(URL);
+    }
+
+    /**
+     * Returns the URL.
+     *
+     * @return URL.
+     */
+    public final URL getUrl() {
+        return url(getUrlStr());
+    }
+
+    /**
+     * Returns the list of splits.
+     *
+     * @return Immutable list in the order the splits are evaluated.
+     */
+    public final List<PackageSplit> getSplits() {
+        if (splits == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(splits);
+    }
+
+    /**
+     * Returns the names of the splits. The name of the split package itself
+     * is not a Debian package, so nothing can depend on it.
+     * 
+     * @return Names of the split packages.
+     */
+    @Override
+    public final List<String> getDebNames() {
+        final List<String> list = new ArrayList<>();
+        for (final PackageSplit split : getSplits()) {
+            list.add(split.getName());
+        }
+        return list;
+    }
+
+    /**
+     * Returns the virtual packages provided by all splits.
+     * 
+     * @return Virtual package names - Never <code>null</code>.
+     */
+    @Override
+    public final List<String> getDebProvides() {
+        final List<String> list = new ArrayList<>();
+        for (final PackageSplit split : getSplits()) {
+            list.addAll(split.getProvides());
+        }
+        return list;
+    }
+
+    @Override
+    public final List<String> getDebFilenames() {
+        final List<String> list = new ArrayList<>();
+        for (final PackageSplit split : getSplits()) {
+            list.add(split.getDebFilename());
+        }
+        return list;
+    }
+
+    @Override
+    public final void create(final File buildDirectory) {
+
+        Contract.requireArgNotNull("buildDirectory", buildDirectory);
+        LOG.info("Creating package '{}' in: {}", getPackageName(),
+                buildDirectory);
+
+        final File archiveFile = cachedDownload(getUrl(), buildDirectory,
+                getStageLimits());
+
+        final File workDir = getWorkDir(buildDirectory);
+        DebUtils.mkdirs(workDir);
+        final TarGzSplitter splitter = new TarGzSplitter(archiveFile,
+                getName(), getStageLimits());
+        for (final PackageSplit split : getSplits()) {
+            splitter.addTarget(tarFile(workDir, split),
+                    split.getIncludes(), split.getExcludes());
+        }
+        splitter.split();
+
+        for (final PackageSplit split : getSplits()) {
+            final File controlDir = new File(workDir, split.getName()
+                    + "-control");
+            LOG.debug("controlDir: {}", controlDir);
+            copyControlFiles(split, controlDir);
+            createDebianPackage(split, buildDirectory, controlDir,
+                    tarFile(workDir, split));
+        }
+
+    }
+
+    @Override
+    protected final void afterArchCopy() {
+        if (splits != null) {
+            final List<PackageSplit> copy = new ArrayList<>();
+            for (final PackageSplit split : splits) {
+                copy.add(split.copy());
+            }
+            splits = copy;
+        }
+    }
+
+    @Override
+    public final void init(@Nullable final DebPackages parent) {
+        initPackage(parent);
+        addOrReplaceVariable(URL, urlStr);
+        resolveVariables();
+        if (!getAliases().isEmpty() || !getProvides().isEmpty()) {
+            // Would be written as the name of the split package
+            throw new IllegalArgumentException("The split package '"
+                    + getName() + "' can't have 'aliases' or 'provides'"
+                    + " - Use 'provides' of the splits instead");
+        }
+        for (final PackageSplit split : getSplits()) {
+            split.init(this);
+        }
+    }
+
+    private static File tarFile(final File workDir, final PackageSplit split) {
+        return new File(workDir, split.getName() + ".tar.gz");
+    }
+
+    private void copyControlFiles(final PackageSplit split,
+            final File controlDir) {
+        DebUtils.mkdirs(controlDir);
+        final VariableGraph vars = new VariableGraph(getVariableGraph());
+        vars.put(new Variable("name", split.getName()));
+        vars.put(new Variable("description", split.getDescription()));
+        vars.put(new Variable("provides", String.join(", ",
+                split.getProvides())));
+        writeReplacedResource(SplitPackage.class, "/" + getPackageName()
+                + "/control", controlDir, vars);
+        writeReplacedResource(SplitPackage.class, "/" + getPackageName()
+                + "/postinst", controlDir, vars);
+    }
+
+    private void createDebianPackage(final PackageSplit split,
+            final File buildDirectory, final File controlDir,
+            final File tarFile) {
+
+        LOG.info("Start creating package " + split.getName());
+
+        final File debName = new File(buildDirectory, split.getDebFilename());
+
+        LOG.debug("controlDir: {}", controlDir);
+        LOG.debug("debName: {}", debName);
+
+        final Data data = new Data();
+        data.setSrc(tarFile);
+        data.setType("archive");
+        final Mapper mapper = new Mapper();
+        mapper.setType("perm");
+        mapper.setPrefix(getInstallationPath());
+        mapper.setUser("root");
+        mapper.setGroup("developer");
+        data.addMapper(mapper);
+
+        DebUtils.createDeb(debName, controlDir, getPathRegistry(),
+                getStageLimits(), getArch(), split.getName(), data);
+
+        LOG.info("Finished creating package " + split.getName());
+
+    }
+
+    @Override
+    public final String toString() {
+        return getPackageName();
+    }
+
+}
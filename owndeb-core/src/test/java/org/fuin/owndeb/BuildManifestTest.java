@@ -0,0 +1,112 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.owndeb;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.fuin.owndeb.commons.DebPackage;
+import org.fuin.owndeb.commons.DebPackageResolver;
+import org.fuin.owndeb.commons.DebUtils;
+import org.fuin.owndeb.commons.Variable;
+import org.fuin.owndeb.pkg.example.ExamplePackage;
+import org.junit.Test;
+
+/**
+ * Tests the {@link BuildManifest} class.
+ */
+// CHECKSTYLE:OFF for tests
+public final class BuildManifestTest {
+
+    @Test
+    public final void testFingerprint() throws IOException {
+
+        // PREPARE
+        final File dir = new File("./target/build-manifest-test/fingerprint");
+        FileUtils.deleteQuietly(dir);
+        final File listFile = new File(dir, "list.txt");
+        FileUtils.write(listFile, "a", "utf-8");
+        final BuildManifest testee = new BuildManifest(dir);
+
+        // TEST
+        final String fp1 = testee.fingerprint(createPackage("1.0.0", listFile));
+        final String fp2 = testee.fingerprint(createPackage("1.0.0", listFile));
+        final String fp3 = testee.fingerprint(createPackage("1.0.1", listFile));
+        FileUtils.write(listFile, "b", "utf-8");
+        final String fp4 = testee.fingerprint(createPackage("1.0.0", listFile));
+
+        // VERIFY
+        assertThat(fp1).hasSize(64);
+        assertThat(fp2).isEqualTo(fp1);
+        assertThat(fp3).isNotEqualTo(fp1);
+        assertThat(fp4).isNotEqualTo(fp1);
+
+    }
+
+    @Test
+    public final void testUpToDate() throws IOException {
+
+        // PREPARE
+        final File dir = new File("./target/build-manifest-test/up-to-date");
+        FileUtils.deleteQuietly(dir);
+        final File listFile = new File(dir, "list.txt");
+        FileUtils.write(listFile, "a", "utf-8");
+        final DebPackage pkg = createPackage("1.0.0", listFile);
+        final BuildManifest testee = new BuildManifest(dir);
+        final String fingerprint = testee.fingerprint(pkg);
+        assertThat(testee.isUpToDate(pkg, fingerprint)).isFalse();
+
+        // TEST
+        testee.put(pkg, fingerprint);
+        testee.write();
+
+        // VERIFY
+        final BuildManifest loaded = new BuildManifest(dir);
+        assertThat(new File(dir, BuildManifest.FILENAME)).exists();
+        // Debian file is missing
+        assertThat(loaded.isUpToDate(pkg, fingerprint)).isFalse();
+        final File debFile = new File(dir, pkg.getDebFilename());
+        FileUtils.write(debFile, "deb", "utf-8");
+        assertThat(loaded.isUpToDate(pkg, fingerprint)).isFalse();
+        FileUtils.write(DebUtils.contentsFile(debFile), "opt/a", "utf-8");
+        assertThat(loaded.isUpToDate(pkg, fingerprint)).isTrue();
+        assertThat(loaded.isUpToDate(pkg, "other")).isFalse();
+
+    }
+
+    private static DebPackage createPackage(final String version,
+            final File listFile) {
+        final ExamplePackage pkg = new ExamplePackage("abc", version,
+                "Example", "me@example.com", "amd64", "/opt", "devel", "low");
+        pkg.addConfiguredVariable(new Variable("list", listFile.getPath()));
+        pkg.init(null);
+        pkg.resolveDependencies(new DebPackageResolver() {
+            @Override
+            public DebPackage findDebPackage(final String packageName) {
+                // Nothing to resolve in this test
+                return null;
+            }
+        });
+        return pkg;
+    }
+
+}
+// CHECKSTYLE:ON
@@ -0,0 +1,174 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.owndeb;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.fuin.owndeb.commons.DebConfig;
+import org.fuin.owndeb.commons.DebPackage;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link ConfigSnapshot} class.
+ */
+// CHECKSTYLE:OFF for tests
+public final class ConfigSnapshotTest {
+
+    private static final File DIR = new File("./target/config-snapshot-test");
+
+    private static final File SNAPSHOT_DIR = new File(DIR, "snapshots");
+
+    private File configFile;
+
+    @Before
+    public void setup() throws IOException {
+        FileUtils.deleteDirectory(DIR);
+        configFile = new File(DIR, "owndeb-config.xml");
+        FileUtils.write(configFile, "<owndeb-config>\n" + "  <variables>\n"
+                + "    <variable name=\"prefix\" value=\"fuin-\" />\n"
+                + "  </variables>\n"
+                + "  <packages maintainer=\"a@b.c\" arch=\"amd64\""
+                + " installation-path=\"/opt\" version=\"1.0\">\n"
+                + "    <example-package name=\"${prefix}main\" />\n"
+                + "  </packages>\n"
+                + "  <include file=\"teams/*.xml\" />\n"
+                + "</owndeb-config>\n");
+        writeTeam("a");
+    }
+
+    private static void writeTeam(final String name) throws IOException {
+        FileUtils.write(new File(DIR, "teams/" + name + ".xml"),
+                "<packages>\n" + "  <example-package name=\"${prefix}"
+                        + name + "\">\n"
+                        + "    <dependency name=\"${prefix}main\" />\n"
+                        + "  </example-package>\n" + "</packages>\n");
+    }
+
+    private static String names(final DebConfig config) {
+        final StringBuilder sb = new StringBuilder();
+        for (final DebPackage pkg : config.getPackages().getPackages()) {
+            if (sb.length() > 0) {
+                sb.append(",");
+            }
+            sb.append(pkg.getName());
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public final void testLoadWritesAndReadsSnapshot() {
+
+        // PREPARE
+        final ConfigSnapshot testee = new ConfigSnapshot(SNAPSHOT_DIR);
+        final File snapshotFile = testee.snapshotFile(configFile);
+
+        // TEST
+        final DebConfig first = testee.load(configFile);
+        final long modified = snapshotFile.lastModified();
+        final DebConfig second = testee.load(configFile);
+
+        // VERIFY
+        assertThat(snapshotFile).exists();
+        assertThat(snapshotFile.lastModified()).isEqualTo(modified);
+        assertThat(second).isNotSameAs(first);
+        assertThat(names(second)).isEqualTo("fuin-main,fuin-a");
+        final List<DebPackage> packages = second.getPackages().getPackages();
+        assertThat(packages.get(1).getMaintainer()).isEqualTo("a@b.c");
+        assertThat(packages.get(1).getParent()).isSameAs(
+                second.getPackages());
+        assertThat(
+                packages.get(1).getDependencies().get(0)
+                        .getResolvedDependency()).isSameAs(packages.get(0));
+
+    }
+
+    @Test
+    public final void testLoadChangedInclude() throws IOException {
+
+        // PREPARE
+        final ConfigSnapshot testee = new ConfigSnapshot(SNAPSHOT_DIR);
+        testee.load(configFile);
+        writeTeam("b");
+
+        // TEST
+        final DebConfig config = testee.load(configFile);
+
+        // VERIFY
+        assertThat(names(config)).isEqualTo("fuin-main,fuin-a,fuin-b");
+
+    }
+
+    @Test
+    public final void testLoadCorruptSnapshot() throws IOException {
+
+        // PREPARE
+        final ConfigSnapshot testee = new ConfigSnapshot(SNAPSHOT_DIR);
+        FileUtils.write(testee.snapshotFile(configFile), "garbage");
+
+        // TEST
+        final DebConfig config = testee.load(configFile);
+
+        // VERIFY
+        assertThat(names(config)).isEqualTo("fuin-main,fuin-a");
+
+    }
+
+    @Test
+    public final void testSnapshotFileIgnoresClassOrder() {
+
+        // PREPARE
+        final ConfigSnapshot testee = new ConfigSnapshot(SNAPSHOT_DIR);
+
+        // TEST
+        final File file1 = testee.snapshotFile(configFile, String.class,
+                Integer.class);
+        final File file2 = testee.snapshotFile(configFile, Integer.class,
+                String.class);
+
+        // VERIFY
+        assertThat(file1).isEqualTo(file2);
+
+    }
+
+    @Test
+    public final void testSchema() {
+
+        // TEST
+        final String schema = ConfigSnapshot.schema();
+
+        // VERIFY
+        assertThat(ConfigSnapshot.schema()).isEqualTo(schema);
+        assertThat(ConfigSnapshot.schema(Model.class)).isNotEqualTo(schema);
+
+    }
+
+    private static final class Model {
+
+        @SuppressWarnings("unused")
+        private String field;
+
+    }
+
+}
+// CHECKSTYLE:ON
@@ -0,0 +1,169 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.owndeb;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.fuin.owndeb.commons.DebConfig;
+import org.fuin.owndeb.commons.DebPackage;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link IncludeLoader} class.
+ */
+// CHECKSTYLE:OFF for tests
+public final class IncludeLoaderTest {
+
+    private static final File DIR = new File("./target/include-loader-test");
+
+    @Before
+    public void setup() throws IOException {
+        FileUtils.deleteDirectory(DIR);
+        FileUtils.write(new File(DIR, "owndeb-config.xml"),
+                "<owndeb-config>\n" + "  <variables>\n"
+                        + "    <variable name=\"prefix\" value=\"fuin-\" />\n"
+                        + "  </variables>\n"
+                        + "  <packages maintainer=\"a@b.c\" arch=\"amd64\""
+                        + " installation-path=\"/opt\" version=\"1.0\">\n"
+                        + "    <example-package name=\"${prefix}main\" />\n"
+                        + "  </packages>\n"
+                        + "  <include file=\"teams/*.xml\" />\n"
+                        + "</owndeb-config>\n");
+        FileUtils.write(new File(DIR, "teams/a.xml"), "<packages>\n"
+                + "  <example-package name=\"${prefix}a\">\n"
+                + "    <dependency name=\"${prefix}main\" />\n"
+                + "  </example-package>\n" + "</packages>\n");
+        FileUtils.write(new File(DIR, "teams/b.xml"), "<packages>\n"
+                + "  <example-package name=\"${prefix}b\" archs=\"amd64,i386\">\n"
+                + "    <dependency name=\"${prefix}a\" />\n"
+                + "  </example-package>\n" + "</packages>\n");
+    }
+
+    private static DebConfig load() {
+        final DebConfig config = JaxbCache.unmarshal(new File(DIR,
+                "owndeb-config.xml"));
+        new IncludeLoader(2).load(config, DIR);
+        return config;
+    }
+
+    @Test
+    public final void testLoad() {
+
+        // TEST
+        final DebConfig config = load();
+
+        // VERIFY
+        final List<DebPackage> packages = config.getPackages().getPackages();
+        assertThat(packages).hasSize(4);
+        assertThat(packages.get(0).getName()).isEqualTo("fuin-main");
+        assertThat(packages.get(1).getName()).isEqualTo("fuin-a");
+        assertThat(packages.get(1).getMaintainer()).isEqualTo("a@b.c");
+        assertThat(packages.get(2).getName()).isEqualTo("fuin-b");
+        assertThat(packages.get(2).getArch()).isEqualTo("amd64");
+        assertThat(packages.get(3).getArch()).isEqualTo("i386");
+        assertThat(
+                packages.get(3).getDependencies().get(0)
+                        .getResolvedDependency()).isSameAs(packages.get(1));
+
+    }
+
+    @Test
+    public final void testLoadTwiceUsesIndependentCopies() throws IOException {
+
+        // PREPARE
+        final DebConfig first = load();
+
+        // TEST
+        final DebConfig second = load();
+
+        // VERIFY
+        final DebPackage a1 = first.getPackages().getPackages().get(1);
+        final DebPackage a2 = second.getPackages().getPackages().get(1);
+        assertThat(a1).isNotSameAs(a2);
+        assertThat(a1.getParent()).isSameAs(first.getPackages());
+        assertThat(a2.getParent()).isSameAs(second.getPackages());
+
+    }
+
+    @Test
+    public final void testLoadChangedFile() throws IOException {
+
+        // PREPARE
+        load();
+        FileUtils.write(new File(DIR, "teams/b.xml"), "<packages>\n"
+                + "  <example-package name=\"${prefix}c\" />\n"
+                + "</packages>\n");
+
+        // TEST
+        final DebConfig config = load();
+
+        // VERIFY
+        assertThat(config.getPackages().getPackages().get(2).getName())
+                .isEqualTo("fuin-c");
+
+    }
+
+    @Test
+    public final void testLoadWrongRoot() throws IOException {
+
+        // PREPARE
+        FileUtils.write(new File(DIR, "teams/b.xml"),
+                "<owndeb-config><packages /></owndeb-config>");
+
+        // TEST
+        try {
+            load();
+            fail();
+        } catch (final IllegalStateException ex) {
+            // VERIFY
+            assertThat(ex.getMessage()).startsWith(
+                    "Root element of an included file must be 'packages'");
+        }
+
+    }
+
+    @Test
+    public final void testCacheIsBounded() throws IOException {
+
+        // PREPARE
+        for (int i = 0; i <= IncludeLoader.MAX_CACHED; i++) {
+            FileUtils.write(new File(DIR, "teams/many" + i + ".xml"),
+                    "<packages>\n" + "  <example-package name=\"many" + i
+                            + "\" />\n" + "</packages>\n");
+        }
+
+        // TEST
+        final DebConfig config = load();
+
+        // VERIFY
+        assertThat(config.getPackages().getPackages()).hasSize(
+                IncludeLoader.MAX_CACHED + 5);
+        assertThat(IncludeLoader.cacheSize()).isEqualTo(
+                IncludeLoader.MAX_CACHED);
+
+    }
+
+}
+// CHECKSTYLE:ON
@@ -0,0 +1,96 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.owndeb;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.File;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+import org.fuin.owndeb.commons.DebConfig;
+import org.fuin.owndeb.pkg.jdk.JdkPackage;
+import org.junit.Test;
+
+/**
+ * Tests the {@link JaxbCache} class.
+ */
+// CHECKSTYLE:OFF for tests
+public final class JaxbCacheTest {
+
+    @Test
+    public final void testGetContextBuiltIn() {
+
+        // TEST
+        final Object ctx1 = JaxbCache.getContext(DebConfig.class);
+        final Object ctx2 = JaxbCache.getContext(JdkPackage.class,
+                DebConfig.class);
+        final Object ctx3 = JaxbCache.getContext();
+
+        // VERIFY
+        assertThat(ctx1).isSameAs(ctx2);
+        assertThat(ctx1).isSameAs(ctx3);
+
+    }
+
+    @Test
+    public final void testGetContextCustom() {
+
+        // PREPARE
+        final Object builtIn = JaxbCache.getContext();
+
+        // TEST
+        final Object ctx1 = JaxbCache.getContext(DebConfig.class,
+                CustomElement.class);
+        final Object ctx2 = JaxbCache.getContext(CustomElement.class);
+        final int size = JaxbCache.size();
+        JaxbCache.getContext(CustomElement.class, JdkPackage.class);
+
+        // VERIFY
+        assertThat(ctx1).isSameAs(ctx2);
+        assertThat(ctx1).isNotSameAs(builtIn);
+        assertThat(JaxbCache.size()).isEqualTo(size);
+
+    }
+
+    @Test
+    public final void testUnmarshal() {
+
+        // PREPARE
+        final File file = new File("./src/test/resources/owndeb-config.xml");
+
+        // TEST
+        final DebConfig config1 = JaxbCache.unmarshal(file, DebConfig.class);
+        final DebConfig config2 = JaxbCache.unmarshal(file, DebConfig.class);
+
+        // VERIFY
+        assertThat(config1).isNotSameAs(config2);
+        assertThat(config1.getPackages().getPackages()).hasSize(
+                config2.getPackages().getPackages().size());
+
+    }
+
+    /**
+     * Custom element that is not built-in.
+     */
+    @XmlRootElement(name = "custom-element")
+    public static final class CustomElement {
+    }
+
+}
+// CHECKSTYLE:ON
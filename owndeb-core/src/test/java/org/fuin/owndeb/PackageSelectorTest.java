@@ -0,0 +1,141 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.owndeb;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.fuin.owndeb.commons.DebDependency;
+import org.fuin.owndeb.commons.DebPackage;
+import org.fuin.owndeb.commons.DebPackageResolver;
+import org.fuin.owndeb.pkg.example.ExamplePackage;
+import org.junit.Test;
+
+/**
+ * Tests the {@link PackageSelector} class.
+ */
+// CHECKSTYLE:OFF for tests
+public final class PackageSelectorTest {
+
+    @Test
+    public final void testMatches() {
+
+        // PREPARE
+        final PackageSelector testee = new PackageSelector("jdk*, eclipse",
+                "jdk7");
+
+        // TEST & VERIFY
+        assertThat(testee.matches("jdk8")).isTrue();
+        assertThat(testee.matches("eclipse")).isTrue();
+        assertThat(testee.matches("jdk7")).isFalse();
+        assertThat(testee.matches("eclipse-plugin")).isFalse();
+        assertThat(new PackageSelector(null, null).matches("any")).isTrue();
+
+    }
+
+    @Test
+    public final void testSelectWithDependencies() {
+
+        // PREPARE
+        final List<DebPackage> packages = createPackages();
+        final PackageSelector testee = new PackageSelector("plugin", "eclipse");
+
+        // TEST
+        final List<DebPackage> selected = testee.select(packages);
+
+        // VERIFY
+        assertThat(names(selected)).containsExactly("jdk", "eclipse", "plugin");
+
+    }
+
+    @Test
+    public final void testSelectExcludes() {
+
+        // PREPARE
+        final List<DebPackage> packages = createPackages();
+        final PackageSelector testee = new PackageSelector(null, "plugin");
+
+        // TEST
+        final List<DebPackage> selected = testee.select(packages);
+
+        // VERIFY
+        assertThat(names(selected)).containsExactly("jdk", "eclipse", "other");
+
+    }
+
+    @Test
+    public final void testSelectNoMatch() {
+
+        // PREPARE
+        final PackageSelector testee = new PackageSelector("unknown", null);
+
+        // TEST
+        try {
+            testee.select(createPackages());
+            fail();
+        } catch (final IllegalArgumentException ex) {
+            // VERIFY
+            assertThat(ex.getMessage()).isEqualTo(
+                    "No package matches: [unknown]");
+        }
+
+    }
+
+    private static List<DebPackage> createPackages() {
+        final List<DebPackage> packages = new ArrayList<>();
+        packages.add(create("jdk"));
+        packages.add(create("eclipse", new DebDependency("jdk")));
+        packages.add(create("plugin", new DebDependency("eclipse")));
+        packages.add(create("other"));
+        final Map<String, DebPackage> byName = new HashMap<>();
+        for (final DebPackage pkg : packages) {
+            pkg.init(null);
+            byName.put(pkg.getName(), pkg);
+        }
+        for (final DebPackage pkg : packages) {
+            pkg.resolveDependencies(new DebPackageResolver() {
+                @Override
+                public DebPackage findDebPackage(final String packageName) {
+                    return byName.get(packageName);
+                }
+            });
+        }
+        return packages;
+    }
+
+    private static DebPackage create(final String name,
+            final DebDependency... dependencies) {
+        return new ExamplePackage(name, "1.0.0", "Example", "me@example.com",
+                "amd64", "/opt", "devel", "low", dependencies);
+    }
+
+    private static List<String> names(final List<DebPackage> packages) {
+        final List<String> names = new ArrayList<>();
+        for (final DebPackage pkg : packages) {
+            names.add(pkg.getName());
+        }
+        return names;
+    }
+
+}
+// CHECKSTYLE:ON
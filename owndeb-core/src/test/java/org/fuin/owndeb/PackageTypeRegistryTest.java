@@ -0,0 +1,98 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.owndeb;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+
+import javax.xml.stream.XMLStreamReader;
+
+import org.fuin.owndeb.commons.DebDependency;
+import org.fuin.owndeb.commons.DebPackage;
+import org.fuin.owndeb.pkg.example.ExamplePackage;
+import org.junit.Test;
+
+/**
+ * Tests the {@link PackageTypeRegistry} class.
+ */
+// CHECKSTYLE:OFF for tests
+public final class PackageTypeRegistryTest {
+
+    @Test
+    public final void testBuiltIn() {
+
+        // TEST
+        final PackageTypeRegistry testee = new PackageTypeRegistry();
+
+        // VERIFY
+        assertThat(testee.get("jdk-package")).isNotNull();
+        assertThat(testee.get("eclipse-package")).isNotNull();
+        assertThat(testee.get("eclipse-plugin-package")).isNotNull();
+        assertThat(testee.get("split-package")).isNotNull();
+        assertThat(testee.get("example-package")).isNotNull();
+        assertThat(testee.get("unknown")).isNull();
+
+    }
+
+    @Test
+    public final void testRegisterFactory() {
+
+        // PREPARE
+        final PackageTypeRegistry testee = new PackageTypeRegistry();
+        final PackageFactory factory = new PackageFactory() {
+            @Override
+            public DebPackage create(final XMLStreamReader reader) {
+                return new ExamplePackage("a", null, null, null, null, null,
+                        null, null, (List<DebDependency>) null);
+            }
+        };
+
+        // TEST
+        testee.register("jdk-package", factory);
+
+        // VERIFY
+        assertThat(testee.get("jdk-package")).isSameAs(factory);
+
+    }
+
+    @Test
+    public final void testRegisterClassWithoutRootElement() {
+
+        // PREPARE
+        final PackageTypeRegistry testee = new PackageTypeRegistry();
+
+        // TEST
+        try {
+            testee.register(NoRootElement.class);
+            fail();
+        } catch (final IllegalArgumentException ex) {
+            // VERIFY
+            assertThat(ex.getMessage()).isEqualTo(
+                    "Class has no @XmlRootElement annotation: "
+                            + NoRootElement.class.getName());
+        }
+
+    }
+
+    public static abstract class NoRootElement extends DebPackage {
+    }
+
+}
+// CHECKSTYLE:ON
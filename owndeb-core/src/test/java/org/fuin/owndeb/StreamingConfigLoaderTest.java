@@ -0,0 +1,171 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.owndeb;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.fuin.owndeb.commons.DebConfig;
+import org.fuin.owndeb.commons.DebPackage;
+import org.junit.Test;
+
+/**
+ * Tests the {@link StreamingConfigLoader} class.
+ */
+// CHECKSTYLE:OFF for tests
+public final class StreamingConfigLoaderTest {
+
+    private static File write(final String name, final String packages)
+            throws IOException {
+        final File file = new File("./target/" + name);
+        FileUtils.writeStringToFile(file,
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                        + "<owndeb-config>\n" + "  <variables>\n"
+                        + "    <variable name=\"prefix\" value=\"fuin-\" />\n"
+                        + "  </variables>\n"
+                        + "  <packages maintainer=\"a@b.c\" arch=\"amd64\""
+                        + " installation-path=\"/opt\" version=\"1.0\">\n"
+                        + packages + "  </packages>\n"
+                        + "</owndeb-config>\n", "utf-8");
+        return file;
+    }
+
+    @Test
+    public final void testLoadInDependencyOrder() throws IOException {
+
+        // PREPARE
+        final File file = write(
+                "streaming-order.xml",
+                "    <variable name=\"suffix\" value=\"-x\" />\n"
+                        + "    <example-package name=\"${prefix}b${suffix}\">\n"
+                        + "      <dependency name=\"${prefix}a${suffix}\" />\n"
+                        + "    </example-package>\n"
+                        + "    <example-package name=\"${prefix}a${suffix}\""
+                        + " archs=\"amd64, i386\" />\n"
+                        + "    <example-package name=\"${prefix}c\" />\n");
+        final List<String> names = new ArrayList<>();
+        final StreamingConfigLoader testee = new StreamingConfigLoader();
+
+        // TEST
+        final DebConfig config = testee.load(file,
+                new StreamingConfigLoader.Listener() {
+                    @Override
+                    public void onPackage(final DebPackage pkg) {
+                        names.add(pkg.getName() + "/" + pkg.getArch());
+                    }
+                });
+
+        // VERIFY
+        assertThat(names).containsExactly("fuin-a-x/amd64", "fuin-a-x/i386",
+                "fuin-b-x/amd64", "fuin-c/amd64");
+        assertThat(config.getPackages().getPackages()).hasSize(4);
+        final DebPackage b = config.getPackages().getPackages().get(0);
+        assertThat(b.getDependencies().get(0).getResolvedDependency()
+                .getName()).isEqualTo("fuin-a-x");
+        assertThat(b.getMaintainer()).isEqualTo("a@b.c");
+
+    }
+
+    @Test
+    public final void testLoadUnresolvedDependency() throws IOException {
+
+        // PREPARE
+        final File file = write("streaming-unresolved.xml",
+                "    <example-package name=\"b\">\n"
+                        + "      <dependency name=\"a\" />\n"
+                        + "    </example-package>\n");
+        final StreamingConfigLoader testee = new StreamingConfigLoader();
+
+        // TEST
+        try {
+            testee.load(file, new StreamingConfigLoader.Listener() {
+                @Override
+                public void onPackage(final DebPackage pkg) {
+                    fail("Package should not be ready: " + pkg.getName());
+                }
+            });
+            fail();
+        } catch (final IllegalStateException ex) {
+            // VERIFY
+            assertThat(ex.getMessage()).isEqualTo(
+                    "Unresolved dependency from package 'b' to 'a'");
+        }
+
+    }
+
+    @Test
+    public final void testLoadUnknownType() throws IOException {
+
+        // PREPARE
+        final File file = write("streaming-unknown.xml",
+                "    <unknown-package name=\"a\" />\n");
+        final StreamingConfigLoader testee = new StreamingConfigLoader(
+                new PackageTypeRegistry());
+
+        // TEST
+        try {
+            testee.load(file, new StreamingConfigLoader.Listener() {
+                @Override
+                public void onPackage(final DebPackage pkg) {
+                    // Not called
+                }
+            });
+            fail();
+        } catch (final IllegalStateException ex) {
+            // VERIFY
+            assertThat(ex.getMessage()).isEqualTo(
+                    "Unknown package type: 'unknown-package'");
+        }
+
+    }
+
+    @Test
+    public final void testLoadVariableAfterPackage() throws IOException {
+
+        // PREPARE
+        final File file = write("streaming-variable.xml",
+                "    <example-package name=\"a\" />\n"
+                        + "    <variable name=\"x\" value=\"y\" />\n");
+        final StreamingConfigLoader testee = new StreamingConfigLoader();
+
+        // TEST
+        try {
+            testee.load(file, new StreamingConfigLoader.Listener() {
+                @Override
+                public void onPackage(final DebPackage pkg) {
+                    // Ignore
+                }
+            });
+            fail();
+        } catch (final IllegalStateException ex) {
+            // VERIFY
+            assertThat(ex.getMessage()).isEqualTo(
+                    "Element 'variable' inside 'packages' must be defined"
+                            + " before the first package");
+        }
+
+    }
+
+}
+// CHECKSTYLE:ON
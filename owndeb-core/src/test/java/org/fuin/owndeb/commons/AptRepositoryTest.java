@@ -0,0 +1,242 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.owndeb.commons;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.fuin.owndeb.pkg.example.ExamplePackage;
+import org.junit.Test;
+
+/**
+ * Tests the {@link AptRepository} class.
+ */
+// CHECKSTYLE:OFF for tests
+public final class AptRepositoryTest {
+
+    @Test
+    public final void testAddAndWrite() throws Exception {
+
+        // PREPARE
+        final File repoDir = new File("./target/apt-repository-test");
+        FileUtils.deleteQuietly(repoDir);
+        DebUtils.mkdirs(repoDir);
+        final File debFile = createExample(repoDir, "apt1");
+
+        // TEST
+        final AptRepository testee = new AptRepository(repoDir);
+        testee.add(debFile);
+        testee.write();
+
+        // VERIFY
+        final String packages = FileUtils.readFileToString(new File(repoDir,
+                AptRepository.PACKAGES), "utf-8");
+        final List<Map<String, String>> stanzas = AptRepository
+                .parse(packages);
+        assertThat(stanzas).hasSize(1);
+        final Map<String, String> stanza = stanzas.get(0);
+        assertThat(stanza.get("Package")).isEqualTo("apt1");
+        assertThat(stanza.get("Version")).isEqualTo("1.0.0");
+        assertThat(stanza.get("Architecture")).isEqualTo("amd64");
+        assertThat(stanza.get("Filename")).isEqualTo(debFile.getName());
+        assertThat(stanza.get("Size")).isEqualTo(
+                String.valueOf(debFile.length()));
+        final byte[] deb = FileUtils.readFileToByteArray(debFile);
+        assertThat(stanza.get("MD5sum")).isEqualTo(DigestUtils.md5Hex(deb));
+        assertThat(stanza.get("SHA1")).isEqualTo(DigestUtils.sha1Hex(deb));
+        assertThat(stanza.get("SHA256"))
+                .isEqualTo(DigestUtils.sha256Hex(deb));
+
+        final InputStream gzIn = new GzipCompressorInputStream(
+                new FileInputStream(new File(repoDir,
+                        AptRepository.PACKAGES_GZ)));
+        try {
+            assertThat(IOUtils.toString(gzIn, "utf-8")).isEqualTo(packages);
+        } finally {
+            gzIn.close();
+        }
+
+        final String release = FileUtils.readFileToString(new File(repoDir,
+                AptRepository.RELEASE), "utf-8");
+        final Map<String, String> releaseStanza = AptRepository.parse(release)
+                .get(0);
+        assertThat(releaseStanza.get("Architectures")).isEqualTo("amd64");
+        assertThat(releaseStanza.get("SHA256")).contains(
+                DigestUtils.sha256Hex(packages.getBytes("utf-8")) + " "
+                        + packages.getBytes("utf-8").length + " Packages");
+        assertThat(releaseStanza.get("SHA256")).contains(" Contents-amd64.gz");
+
+    }
+
+    @Test
+    public final void testContents() throws Exception {
+
+        // PREPARE
+        final File repoDir = new File("./target/apt-repository-contents");
+        FileUtils.deleteQuietly(repoDir);
+        DebUtils.mkdirs(repoDir);
+        final File debFile = createExample(repoDir, "apt1");
+
+        // TEST
+        final AptRepository testee = new AptRepository(repoDir);
+        testee.add(debFile);
+        testee.write();
+
+        // VERIFY
+        final PathIndex index = testee.getPathIndex("amd64");
+        assertThat(index.find("opt/apt1/hello.txt")).containsExactly(
+                "devel/apt1");
+        assertThat(testee.getPathIndex("i386")).isNull();
+        final InputStream gzIn = new GzipCompressorInputStream(
+                new FileInputStream(new File(repoDir, "Contents-amd64.gz")));
+        try {
+            assertThat(IOUtils.toString(gzIn, "utf-8")).isEqualTo(
+                    "opt/apt1/hello.txt    devel/apt1\n");
+        } finally {
+            gzIn.close();
+        }
+
+    }
+
+    @Test
+    public final void testIncremental() throws Exception {
+
+        // PREPARE
+        final File repoDir = new File("./target/apt-repository-incremental");
+        FileUtils.deleteQuietly(repoDir);
+        DebUtils.mkdirs(repoDir);
+        final File debFile1 = createExample(repoDir, "apt1");
+        final File debFile2 = createExample(repoDir, "apt2");
+        final AptRepository first = new AptRepository(repoDir);
+        first.add(debFile1);
+        first.add(debFile2);
+        first.write();
+        final File debFile3 = createExample(repoDir, "apt3");
+        FileUtils.forceDelete(debFile1);
+
+        // TEST
+        final AptRepository testee = new AptRepository(repoDir);
+        testee.add(debFile3);
+        testee.write();
+
+        // VERIFY
+        assertThat(testee.getFilenames()).containsOnly(debFile2.getName(),
+                debFile3.getName());
+        assertThat(testee.getStanza(debFile2.getName())).isEqualTo(
+                first.getStanza(debFile2.getName()));
+        assertThat(
+                AptRepository.parse(
+                        FileUtils.readFileToString(new File(repoDir,
+                                AptRepository.PACKAGES), "utf-8"))).hasSize(2);
+
+    }
+
+    @Test
+    public final void testWriteOnlyChangedArchitectures() throws Exception {
+
+        // PREPARE
+        final File repoDir = new File("./target/apt-repository-archs");
+        FileUtils.deleteQuietly(repoDir);
+        DebUtils.mkdirs(repoDir);
+        final File debFile1 = createExample(repoDir, "apt1", "amd64");
+        final File debFile2 = createExample(repoDir, "apt2", "i386");
+        final AptRepository testee = new AptRepository(repoDir);
+        testee.add(debFile1);
+        testee.write();
+        final File contentsFile = new File(repoDir, "Contents-amd64.gz");
+        final byte[] contents = FileUtils.readFileToByteArray(contentsFile);
+        // Would drop the paths of 'apt1' if read again
+        FileUtils.forceDelete(DebUtils.contentsFile(debFile1));
+
+        // TEST
+        testee.add(debFile2);
+        testee.write();
+
+        // VERIFY
+        assertThat(testee.getPathIndex("amd64").find("opt/apt1/hello.txt"))
+                .containsExactly("devel/apt1");
+        assertThat(testee.getPathIndex("i386").find("opt/apt2/hello.txt"))
+                .containsExactly("devel/apt2");
+        assertThat(FileUtils.readFileToByteArray(contentsFile)).isEqualTo(
+                contents);
+        final String release = FileUtils.readFileToString(new File(repoDir,
+                AptRepository.RELEASE), "utf-8");
+        final Map<String, String> releaseStanza = AptRepository.parse(release)
+                .get(0);
+        assertThat(releaseStanza.get("Architectures")).isEqualTo("amd64 i386");
+        assertThat(releaseStanza.get("SHA256")).contains(
+                DigestUtils.sha256Hex(contents) + " " + contents.length
+                        + " Contents-amd64.gz");
+        assertThat(releaseStanza.get("SHA256")).contains(" Contents-i386.gz");
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public final void testAddOutsideRepository() {
+        final File repoDir = new File("./target/apt-repository-outside");
+        DebUtils.mkdirs(repoDir);
+        new AptRepository(repoDir).add(new File("./target/whatever.deb"));
+    }
+
+    @Test
+    public final void testParseContinuationLines() {
+
+        // TEST
+        final List<Map<String, String>> stanzas = AptRepository
+                .parse("Package: a\nDescription: Short\n Long line 1\n"
+                        + " .\n\nPackage: b\n");
+
+        // VERIFY
+        assertThat(stanzas).hasSize(2);
+        assertThat(stanzas.get(0).get("Description")).isEqualTo(
+                "Short\nLong line 1\n.");
+        assertThat(stanzas.get(1).get("Package")).isEqualTo("b");
+
+    }
+
+    private static File createExample(final File dir, final String name) {
+        return createExample(dir, name, "amd64");
+    }
+
+    private static File createExample(final File dir, final String name,
+            final String arch) {
+        final ExamplePackage pkg = new ExamplePackage(name, "1.0.0",
+                "Example " + name, "michael@fuin.org", arch, "/opt",
+                "devel", "low");
+        pkg.init(null);
+        pkg.resolveDependencies(new DebPackageResolver() {
+            @Override
+            public DebPackage findDebPackage(final String packageName) {
+                return null;
+            }
+        });
+        pkg.create(dir);
+        return new File(dir, pkg.getDebFilename());
+    }
+
+}
+// CHECKSTYLE:ON
@@ -18,6 +18,7 @@
 package org.fuin.owndeb.commons;
 
 import static org.fest.assertions.Assertions.assertThat;
+import static org.fest.assertions.MapAssert.entry;
 import static org.fuin.utils4j.JaxbUtils.XML_PREFIX;
 import static org.fuin.utils4j.JaxbUtils.marshal;
 import static org.fuin.utils4j.JaxbUtils.unmarshal;
@@ -178,6 +179,82 @@ public class DebConfigTest {
 
     }
 
+    @Test
+    public final void testUnmarshalArchs() {
+
+        // PREPARE
+        final String xml = XML_PREFIX
+                + "<owndeb-config>"
+                + "<packages version=\"1.2.3\" arch=\"amd64\" installation-path=\"/opt\">"
+                + "<jdk-package name=\"jdk8\" archs=\"amd64, i386\" "
+                + "url=\"http://www.fuin.org/jdk-${arch}.tar.gz\" />"
+                + "</packages>" + "</owndeb-config>";
+
+        // TEST
+        final DebConfig config = unmarshal(xml, createXmlAdapter(),
+                DebConfig.class, JdkPackage.class);
+
+        // VERIFY
+        assertThat(config.getPackages().getPackages()).hasSize(2);
+        final JdkPackage amd64 = (JdkPackage) config.getPackages()
+                .getPackages().get(0);
+        final JdkPackage i386 = (JdkPackage) config.getPackages()
+                .getPackages().get(1);
+        assertThat(amd64).isNotSameAs(i386);
+        assertThat(amd64.getArchs()).isNull();
+        assertThat(amd64.getArch()).isEqualTo("amd64");
+        assertThat(amd64.getUrlStr()).isEqualTo(
+                "http://www.fuin.org/jdk-amd64.tar.gz");
+        assertThat(amd64.getDebFilename()).isEqualTo("jdk8_1.2.3_amd64.deb");
+        assertThat(i386.getArch()).isEqualTo("i386");
+        assertThat(i386.getUrlStr()).isEqualTo(
+                "http://www.fuin.org/jdk-i386.tar.gz");
+        assertThat(i386.getDebFilename()).isEqualTo("jdk8_1.2.3_i386.deb");
+        assertThat(i386.getWorkDir(new File("/tmp"))).isEqualTo(
+                new File("/tmp/jdk8_1.2.3_i386"));
+
+    }
+
+    @Test
+    public final void testVariableScopes() {
+
+        // PREPARE
+        final String xml = XML_PREFIX
+                + "<owndeb-config>"
+                + "<variables>"
+                + "<variable name=\"prefix\" value=\"fuin-\" />"
+                + "<variable name=\"home\" value=\"${installation-path}/${name}\" />"
+                + "</variables>"
+                + "<packages version=\"1.2.3\" arch=\"amd64\" installation-path=\"/opt\">"
+                + "<jdk-package name=\"${prefix}jdk8\" url=\"http://www.fuin.org/jdk.tar.gz\" />"
+                + "<jdk-package name=\"${prefix}jdk9\" url=\"http://www.fuin.org/jdk.tar.gz\" "
+                + "installation-path=\"/usr/lib\">"
+                + "<variable name=\"prefix\" value=\"other-\" />"
+                + "</jdk-package>" + "</packages>" + "</owndeb-config>";
+
+        // TEST
+        final DebConfig config = unmarshal(xml, createXmlAdapter(),
+                DebConfig.class, JdkPackage.class);
+
+        // VERIFY
+        final DebPackage jdk8 = config.getPackages().getPackages().get(0);
+        final DebPackage jdk9 = config.getPackages().getPackages().get(1);
+        assertThat(config.variableValue("prefix")).isEqualTo("fuin-");
+        assertThat(config.getPackages().variableValue("prefix")).isEqualTo(
+                "fuin-");
+        assertThat(jdk8.getName()).isEqualTo("fuin-jdk8");
+        assertThat(jdk8.variableValue("prefix")).isEqualTo("fuin-");
+        assertThat(jdk8.variableValue("home")).isEqualTo("/opt/fuin-jdk8");
+        assertThat(jdk9.getName()).isEqualTo("other-jdk9");
+        assertThat(jdk9.variableValue("prefix")).isEqualTo("other-");
+        assertThat(jdk9.variableValue("home")).isEqualTo("/usr/lib/other-jdk9");
+        assertThat(jdk9.variableValue("unknown")).isNull();
+        assertThat(DebUtils.asMap(jdk9.getVariables())).includes(
+                entry("prefix", "other-"), entry("version", "1.2.3"),
+                entry("arch", "amd64"));
+
+    }
+
     private XmlAdapter<?, ?>[] createXmlAdapter() {
         // Not necessary now - Add XML adapter if needed later on...
         return new XmlAdapter[] {};
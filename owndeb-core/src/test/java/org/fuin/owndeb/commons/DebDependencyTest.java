@@ -57,6 +57,8 @@ public class DebDependencyTest {
     @Test
     public void testEqualsHashCode() {
         EqualsVerifier.forClass(DebDependency.class)
+                .withPrefabValues(VariableGraph.class,
+                        new VariableGraph(null), new VariableGraph(null))
                 .suppress(Warning.NONFINAL_FIELDS, Warning.NULL_FIELDS)
                 .verify();
     }
@@ -30,11 +30,46 @@ import javax.xml.bind.annotation.adapters.XmlAdapter;
 
 import org.custommonkey.xmlunit.XMLAssert;
 import org.custommonkey.xmlunit.XMLUnit;
+import org.fuin.owndeb.pkg.example.ExamplePackage;
 import org.junit.Test;
 
 //CHECKSTYLE:OFF for tests
 public class DebPackagesTest {
 
+    @Test
+    public final void testAddPackageWhileLookingUp() throws Exception {
+
+        // PREPARE
+        final DebPackages testee = new DebPackages("1.0", "Test",
+                "me@example.com", "amd64", "/opt", "devel", "low");
+        testee.init(null);
+        final int count = 200;
+        final Thread adder = new Thread() {
+            @Override
+            public void run() {
+                for (int i = 0; i < count; i++) {
+                    testee.addPackage(new ExamplePackage("p" + i, null, null,
+                            null, null, null, null, null));
+                }
+            }
+        };
+
+        // TEST
+        adder.start();
+        while (adder.isAlive()) {
+            testee.findDebPackage("p" + (count - 1));
+            testee.getPackages();
+        }
+        adder.join();
+
+        // VERIFY
+        assertThat(testee.getPackages()).hasSize(count);
+        for (int i = 0; i < count; i++) {
+            assertThat(testee.findDebPackage("p" + i)).isNotNull();
+        }
+
+    }
+
     @Test
     public final void testMarshalUnmarshalXML() throws Exception {
 
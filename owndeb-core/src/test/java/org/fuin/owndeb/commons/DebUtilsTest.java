@@ -28,9 +28,14 @@ import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.io.FileUtils;
 import org.fuin.utils4j.Utils4J;
@@ -54,7 +59,8 @@ public class DebUtilsTest {
 
         // PREPARE
         final File targetDir = new File("./target").getCanonicalFile();
-        final File targetFile = new File(targetDir, "smiley.gif");
+        final File targetFile = DebUtils.cachedFile(new URL(
+                "http://www.fuin.org/images/smiley.gif"), targetDir);
         DebUtils.copyResourceToFile(getClass(), "/smiley.gif", targetFile);
 
         // TEST
@@ -87,13 +93,73 @@ public class DebUtilsTest {
 
     }
 
+    @Test
+    public void testCachedDownloadReleasesLocks() throws Exception {
+
+        // PREPARE
+        final File targetDir = new File("./target").getCanonicalFile();
+        final URL url = new URL("http://www.fuin.org/images/smiley.gif");
+        DebUtils.copyResourceToFile(getClass(), "/smiley.gif",
+                DebUtils.cachedFile(url, targetDir));
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final List<Future<File>> futures = new ArrayList<>();
+
+        // TEST
+        try {
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(new Callable<File>() {
+                    @Override
+                    public File call() {
+                        return DebUtils.cachedDownload(url, targetDir);
+                    }
+                }));
+            }
+            for (final Future<File> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // VERIFY
+        assertThat(DebUtils.downloadLockCount(), is(0));
+
+    }
+
+    @Test
+    public void testCachedDownloadSameFileName() throws IOException {
+
+        // PREPARE
+        final File targetDir = new File("./target/same-file-name")
+                .getCanonicalFile();
+        FileUtils.deleteQuietly(targetDir);
+        final URL amd64 = new URL("http://www.fuin.org/amd64/jdk.tar.gz");
+        final URL i386 = new URL("http://www.fuin.org/i386/jdk.tar.gz");
+        FileUtils.write(DebUtils.cachedFile(amd64, Utils4J.getTempDir()),
+                "amd64", "utf-8");
+        FileUtils.write(DebUtils.cachedFile(i386, Utils4J.getTempDir()),
+                "i386", "utf-8");
+
+        // TEST
+        final File amd64File = DebUtils.cachedDownload(amd64, targetDir);
+        final File i386File = DebUtils.cachedDownload(i386, targetDir);
+
+        // VERIFY
+        assertThat(amd64File.getName(), is("jdk.tar.gz"));
+        assertThat(i386File.getName(), is("jdk.tar.gz"));
+        assertThat(FileUtils.readFileToString(amd64File, "utf-8"), is("amd64"));
+        assertThat(FileUtils.readFileToString(i386File, "utf-8"), is("i386"));
+
+    }
+
     @Test
     public void testCachedDownloadAlreadyExistsInTemp() throws IOException {
 
         // PREPARE
         final File targetDir = new File("./target").getCanonicalFile();
-        final File targetFile = new File(targetDir, "smiley.gif");
-        final File tempFile = new File(Utils4J.getTempDir(), "smiley.gif");
+        final URL url = new URL("http://www.fuin.org/images/smiley.gif");
+        final File targetFile = DebUtils.cachedFile(url, targetDir);
+        final File tempFile = DebUtils.cachedFile(url, Utils4J.getTempDir());
         DebUtils.copyResourceToFile(getClass(), "/smiley.gif", tempFile);
         FileUtils.deleteQuietly(targetFile);
 
@@ -103,8 +169,7 @@ public class DebUtilsTest {
                 .getLogger(Logger.ROOT_LOGGER_NAME);
         logger.addAppender(mockAppender);
         try {
-            DebUtils.cachedDownload(new URL(
-                    "http://www.fuin.org/images/smiley.gif"), targetDir);
+            DebUtils.cachedDownload(url, targetDir);
         } finally {
             logger.detachAppender(mockAppender);
         }
@@ -125,7 +190,7 @@ public class DebUtilsTest {
 
         assertThat(events.get(2).getLevel(), is(Level.INFO));
         assertThat(events.get(2).getFormattedMessage(),
-                is("Copied from '/tmp/smiley.gif' to: " + targetFile));
+                is("Copied from '" + tempFile + "' to: " + targetFile));
 
     }
 
@@ -134,8 +199,9 @@ public class DebUtilsTest {
 
         // PREPARE
         final File targetDir = new File("./target").getCanonicalFile();
-        final File targetFile = new File(targetDir, "smiley.gif");
-        final File tempFile = new File(Utils4J.getTempDir(), "smiley.gif");
+        final URL url = new URL("http://www.fuin.org/images/smiley.gif");
+        final File targetFile = DebUtils.cachedFile(url, targetDir);
+        final File tempFile = DebUtils.cachedFile(url, Utils4J.getTempDir());
         FileUtils.deleteQuietly(targetFile);
         FileUtils.deleteQuietly(tempFile);
 
@@ -145,8 +211,7 @@ public class DebUtilsTest {
                 .getLogger(Logger.ROOT_LOGGER_NAME);
         logger.addAppender(mockAppender);
         try {
-            DebUtils.cachedDownload(new URL(
-                    "http://www.fuin.org/images/smiley.gif"), targetDir);
+            DebUtils.cachedDownload(url, targetDir);
         } finally {
             logger.detachAppender(mockAppender);
         }
@@ -171,11 +236,11 @@ public class DebUtilsTest {
 
         assertThat(events.get(3).getLevel(), is(Level.INFO));
         assertThat(events.get(3).getFormattedMessage(),
-                is("Downloaded to: /tmp/smiley.gif"));
+                is("Downloaded to: " + tempFile));
 
         assertThat(events.get(4).getLevel(), is(Level.INFO));
         assertThat(events.get(4).getFormattedMessage(),
-                is("Copied from '/tmp/smiley.gif' to: " + targetFile));
+                is("Copied from '" + tempFile + "' to: " + targetFile));
 
     }
 
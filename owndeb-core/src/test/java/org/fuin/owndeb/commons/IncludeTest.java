@@ -0,0 +1,108 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.owndeb.commons;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the {@link Include} class.
+ */
+// CHECKSTYLE:OFF for tests
+public final class IncludeTest {
+
+    private static final File DIR = new File("./target/include-test");
+
+    @BeforeClass
+    public static void beforeClass() throws IOException {
+        FileUtils.deleteDirectory(DIR);
+        FileUtils.write(new File(DIR, "a.xml"), "a");
+        FileUtils.write(new File(DIR, "b.xml"), "b");
+        FileUtils.write(new File(DIR, "c.txt"), "c");
+        FileUtils.write(new File(DIR, "sub/d.xml"), "d");
+        FileUtils.write(new File(DIR, "sub/deeper/e.xml"), "e");
+    }
+
+    @Test
+    public final void testResolveFile() {
+
+        // TEST
+        final List<File> files = new Include("sub/d.xml").resolve(DIR);
+
+        // VERIFY
+        assertThat(files).containsExactly(new File(DIR, "sub/d.xml"));
+
+    }
+
+    @Test
+    public final void testResolveMissingFile() {
+        try {
+            new Include("missing.xml").resolve(DIR);
+            fail();
+        } catch (final IllegalArgumentException ex) {
+            assertThat(ex.getMessage()).isEqualTo(
+                    "Included file does not exist: "
+                            + new File(DIR, "missing.xml"));
+        }
+    }
+
+    @Test
+    public final void testResolvePattern() {
+
+        // TEST
+        final List<File> files = new Include("*.xml").resolve(DIR);
+
+        // VERIFY
+        assertThat(files).containsExactly(new File(DIR, "a.xml"),
+                new File(DIR, "b.xml"));
+
+    }
+
+    @Test
+    public final void testResolveRecursivePattern() {
+
+        // TEST
+        final List<File> files = new Include("sub/**.xml").resolve(DIR);
+
+        // VERIFY
+        assertThat(files).containsExactly(new File(DIR, "sub/d.xml"),
+                new File(DIR, "sub/deeper/e.xml"));
+
+    }
+
+    @Test
+    public final void testResolveNoMatch() {
+
+        // TEST
+        final List<File> files = new Include("none/*.xml").resolve(DIR);
+
+        // VERIFY
+        assertThat(files).isEmpty();
+
+    }
+
+}
+// CHECKSTYLE:ON
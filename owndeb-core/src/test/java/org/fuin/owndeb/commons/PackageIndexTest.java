@@ -0,0 +1,230 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.owndeb.commons;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+
+import org.fuin.owndeb.pkg.example.ExamplePackage;
+import org.fuin.owndeb.pkg.split.SplitPackage;
+import org.fuin.utils4j.JaxbUtils;
+import org.junit.Test;
+
+/**
+ * Tests the {@link PackageIndex} class.
+ */
+// CHECKSTYLE:OFF for tests
+public final class PackageIndexTest {
+
+    private static DebConfig load(final String packages) {
+        return JaxbUtils.unmarshal("<owndeb-config>\n"
+                + "  <variables>\n"
+                + "    <variable name=\"prefix\" value=\"fuin-\" />\n"
+                + "  </variables>\n"
+                + "  <packages maintainer=\"a@b.c\" arch=\"amd64\""
+                + " installation-path=\"/opt\" version=\"1.0\">\n" + packages
+                + "  </packages>\n" + "</owndeb-config>\n", DebConfig.class,
+                ExamplePackage.class, SplitPackage.class);
+    }
+
+    @Test
+    public final void testFindByNameAliasAndProvides() {
+
+        // PREPARE
+        final DebConfig config = load("    <example-package name=\"${prefix}jdk8\""
+                + " aliases=\"jdk\" provides=\"java8-runtime, java-runtime\" />\n"
+                + "    <example-package name=\"${prefix}jdk7\""
+                + " provides=\"java-runtime\" />\n");
+        final List<DebPackage> packages = config.getPackages().getPackages();
+
+        // TEST
+        final PackageIndex testee = new PackageIndex(packages);
+
+        // VERIFY
+        assertThat(testee.findDebPackage("fuin-jdk8")).isSameAs(
+                packages.get(0));
+        assertThat(testee.findDebPackage("fuin-jdk7")).isSameAs(
+                packages.get(1));
+        assertThat(testee.findDebPackage("jdk")).isSameAs(packages.get(0));
+        assertThat(testee.findDebPackage("java8-runtime")).isSameAs(
+                packages.get(0));
+        assertThat(testee.findDebPackage("java-runtime")).isSameAs(
+                packages.get(0));
+        assertThat(testee.findDebPackage("unknown")).isNull();
+        assertThat(packages.get(0).getProvides()).containsExactly(
+                "java8-runtime", "java-runtime");
+
+    }
+
+    @Test
+    public final void testFindPrefersSameArch() {
+
+        // PREPARE
+        final DebConfig config = load("    <example-package name=\"a\""
+                + " archs=\"amd64, i386\" />\n"
+                + "    <example-package name=\"b\" archs=\"amd64, i386\">\n"
+                + "      <dependency name=\"a\" />\n"
+                + "    </example-package>\n"
+                + "    <example-package name=\"c\" arch=\"armhf\">\n"
+                + "      <dependency name=\"a\" />\n"
+                + "    </example-package>\n");
+        final List<DebPackage> packages = config.getPackages().getPackages();
+        final DebPackage aAmd64 = packages.get(0);
+        final DebPackage aI386 = packages.get(1);
+
+        // TEST
+        final PackageIndex testee = new PackageIndex(packages);
+
+        // VERIFY
+        assertThat(testee.findDebPackage("a", "i386")).isSameAs(aI386);
+        assertThat(testee.findDebPackage("a", "armhf")).isSameAs(aAmd64);
+        assertThat(
+                packages.get(2).getDependencies().get(0)
+                        .getResolvedDependency()).isSameAs(aAmd64);
+        assertThat(
+                packages.get(3).getDependencies().get(0)
+                        .getResolvedDependency()).isSameAs(aI386);
+        assertThat(
+                packages.get(4).getDependencies().get(0)
+                        .getResolvedDependency()).isSameAs(aAmd64);
+
+    }
+
+    @Test
+    public final void testDependsKeepsVirtualNames() {
+
+        // PREPARE
+        final DebConfig config = load("    <example-package name=\"${prefix}jdk8\""
+                + " aliases=\"jdk\" provides=\"java-runtime\" />\n"
+                + "    <example-package name=\"app\">\n"
+                + "      <dependency name=\"java-runtime\" />\n"
+                + "      <dependency name=\"jdk\" />\n"
+                + "      <dependency name=\"fuin-jdk8\" />\n"
+                + "    </example-package>\n");
+        final List<DebPackage> packages = config.getPackages().getPackages();
+
+        // TEST
+        final String depends = packages.get(1).getDependenciesAsControlString();
+
+        // VERIFY
+        assertThat(depends).isEqualTo("java-runtime, fuin-jdk8, fuin-jdk8");
+        assertThat(
+                packages.get(1).getDependencies().get(0)
+                        .getResolvedDependency()).isSameAs(packages.get(0));
+
+    }
+
+    @Test
+    public final void testFindSplits() {
+
+        // PREPARE
+        final DebConfig config = load("    <split-package name=\"jdk8\""
+                + " url=\"http://www.fuin.org/jdk8.tar.gz\">\n"
+                + "      <split suffix=\"-runtime\" includes=\"jre/\""
+                + " provides=\"java-runtime\" />\n"
+                + "      <split suffix=\"-devel\" />\n"
+                + "    </split-package>\n"
+                + "    <example-package name=\"app\">\n"
+                + "      <dependency name=\"jdk8-runtime\" />\n"
+                + "      <dependency name=\"java-runtime\" />\n"
+                + "    </example-package>\n");
+        final List<DebPackage> packages = config.getPackages().getPackages();
+
+        // TEST
+        final PackageIndex testee = new PackageIndex(packages);
+
+        // VERIFY
+        assertThat(testee.findDebPackage("jdk8-runtime")).isSameAs(
+                packages.get(0));
+        assertThat(testee.findDebPackage("jdk8-devel")).isSameAs(
+                packages.get(0));
+        assertThat(testee.findDebPackage("java-runtime")).isSameAs(
+                packages.get(0));
+        assertThat(testee.findDebPackage("jdk8")).isNull();
+        assertThat(packages.get(1).getDependenciesAsControlString())
+                .isEqualTo("jdk8-runtime, java-runtime");
+
+    }
+
+    @Test
+    public final void testSplitPackageNameUnresolved() {
+        try {
+            load("    <split-package name=\"jdk8\""
+                    + " url=\"http://www.fuin.org/jdk8.tar.gz\">\n"
+                    + "      <split suffix=\"-runtime\" />\n"
+                    + "    </split-package>\n"
+                    + "    <example-package name=\"app\">\n"
+                    + "      <dependency name=\"jdk8\" />\n"
+                    + "    </example-package>\n");
+            fail();
+        } catch (final RuntimeException ex) {
+            Throwable cause = ex;
+            while (cause.getCause() != null
+                    && !(cause instanceof IllegalStateException)) {
+                cause = cause.getCause();
+            }
+            assertThat(cause.getMessage()).isEqualTo(
+                    "Unresolved dependency from package 'app' to 'jdk8'");
+        }
+    }
+
+    @Test
+    public final void testDuplicate() {
+        try {
+            load("    <example-package name=\"a\" />\n"
+                    + "    <example-package name=\"a\" />\n");
+            fail();
+        } catch (final RuntimeException ex) {
+            Throwable cause = ex;
+            while (cause.getCause() != null
+                    && !(cause instanceof IllegalStateException)) {
+                cause = cause.getCause();
+            }
+            assertThat(cause.getMessage()).isEqualTo(
+                    "Duplicate package 'a' for architecture 'amd64'");
+        }
+    }
+
+    @Test
+    public final void testCycle() {
+        try {
+            load("    <example-package name=\"a\">\n"
+                    + "      <dependency name=\"c\" />\n"
+                    + "    </example-package>\n"
+                    + "    <example-package name=\"b\">\n"
+                    + "      <dependency name=\"a\" />\n"
+                    + "    </example-package>\n"
+                    + "    <example-package name=\"c\">\n"
+                    + "      <dependency name=\"b\" />\n"
+                    + "    </example-package>\n");
+            fail();
+        } catch (final RuntimeException ex) {
+            Throwable cause = ex;
+            while (cause.getCause() != null
+                    && !(cause instanceof IllegalStateException)) {
+                cause = cause.getCause();
+            }
+            assertThat(cause.getMessage()).isEqualTo(
+                    "Cycle in package dependencies: a -> c -> b -> a");
+        }
+    }
+
+}
+// CHECKSTYLE:ON
@@ -0,0 +1,96 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.owndeb.commons;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@link PathIndex} class.
+ */
+// CHECKSTYLE:OFF for tests
+public final class PathIndexTest {
+
+    @Test
+    public final void testFind() {
+
+        // PREPARE
+        final PathIndex.Builder builder = new PathIndex.Builder();
+        for (int i = 0; i < 1000; i++) {
+            builder.add("./opt/jdk8/lib/file" + i + ".jar", "devel/jdk8");
+        }
+        builder.add("/opt/jdk8/bin/java", "devel/jdk8");
+        builder.add("opt/shared/äöü.txt", "devel/jdk8");
+        builder.add("opt/shared/äöü.txt", "devel/eclipse");
+        builder.add("opt/shared/äöü.txt", "devel/jdk8");
+
+        // TEST
+        final PathIndex testee = builder.build();
+
+        // VERIFY
+        assertThat(testee.size()).isEqualTo(1002);
+        assertThat(testee.find("opt/jdk8/bin/java")).containsExactly(
+                "devel/jdk8");
+        assertThat(testee.find("opt/jdk8/lib/file0.jar")).containsExactly(
+                "devel/jdk8");
+        assertThat(testee.find("opt/jdk8/lib/file999.jar")).containsExactly(
+                "devel/jdk8");
+        assertThat(testee.find("opt/shared/äöü.txt"))
+                .containsExactly("devel/jdk8", "devel/eclipse");
+        assertThat(testee.find("opt/jdk8/lib/file1000.jar")).isEmpty();
+        assertThat(testee.find("a")).isEmpty();
+        assertThat(testee.find("z")).isEmpty();
+        assertThat(testee.getEncodedSize()).isLessThan(1000 * 20);
+
+    }
+
+    @Test
+    public final void testEmpty() {
+
+        // TEST
+        final PathIndex testee = new PathIndex.Builder().build();
+
+        // VERIFY
+        assertThat(testee.size()).isEqualTo(0);
+        assertThat(testee.find("opt/jdk8/bin/java")).isEmpty();
+
+    }
+
+    @Test
+    public final void testWriteContents() throws Exception {
+
+        // PREPARE
+        final PathIndex testee = new PathIndex.Builder()
+                .add("opt/b", "devel/p1").add("opt/a", "devel/p1")
+                .add("opt/a", "devel/p2").build();
+        final StringWriter writer = new StringWriter();
+
+        // TEST
+        testee.writeContents(writer);
+
+        // VERIFY
+        assertThat(writer.toString()).isEqualTo(
+                "opt/a    devel/p1,devel/p2\nopt/b    devel/p1\n");
+
+    }
+
+}
+// CHECKSTYLE:ON
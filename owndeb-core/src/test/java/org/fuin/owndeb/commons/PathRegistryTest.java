@@ -0,0 +1,112 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.owndeb.commons;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@link PathRegistry} class.
+ */
+// CHECKSTYLE:OFF for tests
+public final class PathRegistryTest {
+
+    @Test
+    public final void testFailFast() {
+
+        // PREPARE
+        final PathRegistry testee = new PathRegistry(true);
+        testee.register("amd64", "opt/a/bin/a", "a");
+
+        // TEST
+        try {
+            testee.register("amd64", "opt/a/bin/a", "b");
+            fail();
+        } catch (final IllegalStateException ex) {
+            // VERIFY
+            assertThat(ex.getMessage()).isEqualTo(
+                    "Path 'opt/a/bin/a' (amd64) is installed by 'a' and 'b'");
+        }
+
+    }
+
+    @Test
+    public final void testReport() {
+
+        // PREPARE
+        final PathRegistry testee = new PathRegistry(false);
+        testee.register("amd64", "opt/a/bin/a", "a");
+
+        // TEST
+        testee.register("amd64", "opt/a/bin/a", "b");
+        testee.register("amd64", "opt/a/bin/a", "a");
+        testee.register("i386", "opt/a/bin/a", "b");
+
+        // VERIFY
+        assertThat(testee.size()).isEqualTo(2);
+        assertThat(testee.getConflicts()).hasSize(1);
+        final PathRegistry.Conflict conflict = testee.getConflicts().get(0);
+        assertThat(conflict.getArch()).isEqualTo("amd64");
+        assertThat(conflict.getPath()).isEqualTo("opt/a/bin/a");
+        assertThat(conflict.getFirstOwner()).isEqualTo("a");
+        assertThat(conflict.getSecondOwner()).isEqualTo("b");
+
+    }
+
+    @Test
+    public final void testConcurrent() throws Exception {
+
+        // PREPARE
+        final PathRegistry testee = new PathRegistry(true, 4);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final List<Future<?>> futures = new ArrayList<>();
+
+        // TEST
+        for (int i = 0; i < 4; i++) {
+            final String owner = "pkg" + i;
+            futures.add(executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 10000; j++) {
+                        testee.register("amd64", "opt/" + owner + "/file" + j,
+                                owner);
+                    }
+                }
+            }));
+        }
+        for (final Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        // VERIFY
+        assertThat(testee.size()).isEqualTo(40000);
+        assertThat(testee.getConflicts()).isEmpty();
+
+    }
+
+}
+// CHECKSTYLE:ON
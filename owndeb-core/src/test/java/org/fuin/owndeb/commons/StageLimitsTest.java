@@ -0,0 +1,91 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.owndeb.commons;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.util.concurrent.Semaphore;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@link StageLimits} class.
+ */
+// CHECKSTYLE:OFF for tests
+public final class StageLimitsTest {
+
+    @Test
+    public final void testUnlimited() {
+
+        // PREPARE
+        final StageLimits testee = new StageLimits(0, 0);
+
+        // TEST
+        final Semaphore permit = StageLimits.enter(testee, Stage.DOWNLOAD);
+        StageLimits.exit(permit);
+
+        // VERIFY
+        assertThat(permit).isNull();
+        assertThat(testee.getMaxParallel(Stage.DOWNLOAD)).isEqualTo(0);
+        assertThat(StageLimits.enter(null, Stage.COMPRESSION)).isNull();
+
+    }
+
+    @Test
+    public final void testLimited() {
+
+        // PREPARE
+        final StageLimits testee = new StageLimits(2, 0);
+
+        // TEST
+        final Semaphore permit1 = StageLimits.enter(testee, Stage.DOWNLOAD);
+        final Semaphore permit2 = StageLimits.enter(testee, Stage.DOWNLOAD);
+
+        // VERIFY
+        assertThat(testee.getMaxParallel(Stage.DOWNLOAD)).isEqualTo(2);
+        assertThat(testee.getMaxParallel(Stage.COMPRESSION)).isEqualTo(0);
+        assertThat(permit1).isSameAs(permit2);
+        assertThat(permit1.availablePermits()).isEqualTo(0);
+        StageLimits.exit(permit1);
+        StageLimits.exit(permit2);
+        assertThat(permit1.availablePermits()).isEqualTo(2);
+
+    }
+
+    @Test
+    public final void testIndependentInstances() {
+
+        // PREPARE
+        final StageLimits limits1 = new StageLimits(1, 1);
+        final StageLimits limits2 = new StageLimits(1, 1);
+
+        // TEST
+        final Semaphore permit1 = StageLimits.enter(limits1, Stage.COMPRESSION);
+        final Semaphore permit2 = StageLimits.enter(limits2, Stage.COMPRESSION);
+
+        // VERIFY
+        assertThat(permit1).isNotSameAs(permit2);
+        assertThat(permit1.availablePermits()).isEqualTo(0);
+        assertThat(permit2.availablePermits()).isEqualTo(0);
+        StageLimits.exit(permit1);
+        StageLimits.exit(permit2);
+
+    }
+
+}
+// CHECKSTYLE:ON
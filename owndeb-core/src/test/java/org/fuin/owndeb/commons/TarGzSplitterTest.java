@@ -0,0 +1,200 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.owndeb.commons;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.tar.TarConstants;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.apache.commons.io.FileUtils;
+import org.fuin.utils4j.Utils4J;
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * Tests the {@link TarGzSplitter} class.
+ */
+// CHECKSTYLE:OFF for tests
+public class TarGzSplitterTest {
+
+    @Test
+    public void testSplit() throws IOException {
+
+        // PREPARE
+        final File archiveFile = new File(Utils4J.getTempDir(),
+                "test-dir.tar.gz");
+        DebUtils.copyResourceToFile(getClass(), "/test-dir.tar.gz",
+                archiveFile);
+        final File abcFile = new File(Utils4J.getTempDir(), "split-abc.tar.gz");
+        final File restFile = new File(Utils4J.getTempDir(),
+                "split-rest.tar.gz");
+        final TarGzSplitter testee = new TarGzSplitter(archiveFile, "pkg");
+        testee.addTarget(abcFile, "abc/", null);
+        testee.addTarget(restFile, null, null);
+
+        // TEST
+        testee.split();
+
+        // VERIFY
+        assertThat(entries(abcFile)).containsExactly("pkg/", "pkg/abc/",
+                "pkg/abc/hello.txt");
+        assertThat(entries(restFile)).containsExactly("pkg/", "pkg/hello.txt");
+
+    }
+
+    @Test
+    public void testSplitFailsIfArchiveCannotBeCompleted() {
+
+        // PREPARE
+        final File full = new File("/dev/full");
+        Assume.assumeTrue(full.exists());
+        final File archiveFile = new File(Utils4J.getTempDir(),
+                "test-dir.tar.gz");
+        DebUtils.copyResourceToFile(getClass(), "/test-dir.tar.gz",
+                archiveFile);
+        final TarGzSplitter testee = new TarGzSplitter(archiveFile, "pkg");
+        testee.addTarget(full, null, null);
+
+        // TEST
+        try {
+            testee.split();
+            fail();
+        } catch (final RuntimeException ex) {
+            // VERIFY
+            assertThat(ex.getMessage()).startsWith("Error splitting archive: ");
+            assertThat(ex.getCause()).isInstanceOf(IOException.class);
+        }
+
+    }
+
+    @Test
+    public void testSplitSkipsHardLinksToOtherTargets() throws IOException {
+
+        // PREPARE
+        final File archiveFile = new File(Utils4J.getTempDir(),
+                "hard-links.tar.gz");
+        final TarArchiveOutputStream tarOut = new TarArchiveOutputStream(
+                new GzipCompressorOutputStream(new FileOutputStream(
+                        archiveFile)));
+        try {
+            final byte[] data = "Hello".getBytes("UTF-8");
+            final TarArchiveEntry file = new TarArchiveEntry(
+                    "root/abc/hello.txt");
+            file.setSize(data.length);
+            tarOut.putArchiveEntry(file);
+            tarOut.write(data);
+            tarOut.closeArchiveEntry();
+            for (final String name : new String[] { "root/abc/same.txt",
+                    "root/other.txt" }) {
+                final TarArchiveEntry link = new TarArchiveEntry(name,
+                        TarConstants.LF_LINK);
+                link.setLinkName("root/abc/hello.txt");
+                tarOut.putArchiveEntry(link);
+                tarOut.closeArchiveEntry();
+            }
+        } finally {
+            tarOut.close();
+        }
+        final File abcFile = new File(Utils4J.getTempDir(),
+                "hard-links-abc.tar.gz");
+        final File restFile = new File(Utils4J.getTempDir(),
+                "hard-links-rest.tar.gz");
+        final TarGzSplitter testee = new TarGzSplitter(archiveFile, "pkg");
+        testee.addTarget(abcFile, "abc/", null);
+        testee.addTarget(restFile, null, null);
+
+        // TEST
+        testee.split();
+
+        // VERIFY
+        assertThat(entries(abcFile)).containsExactly("pkg/", "pkg/abc/",
+                "pkg/abc/hello.txt", "pkg/abc/same.txt");
+        assertThat(entries(restFile)).isEmpty();
+
+    }
+
+    @Test
+    public void testExtract() throws IOException {
+
+        // PREPARE
+        final File archiveFile = new File(Utils4J.getTempDir(),
+                "test-dir.tar.gz");
+        DebUtils.copyResourceToFile(getClass(), "/test-dir.tar.gz",
+                archiveFile);
+        final File targetDir = new File(Utils4J.getTempDir(), "extract-abc");
+        FileUtils.deleteQuietly(targetDir);
+
+        // TEST
+        TarGzSplitter.extract(archiveFile, targetDir, "abc/", null);
+
+        // VERIFY
+        assertThat(new File(targetDir, "abc/hello.txt")).exists();
+        assertThat(new File(targetDir, "hello.txt")).doesNotExist();
+        assertThat(targetDir.listFiles()).hasSize(1);
+
+    }
+
+    @Test
+    public void testMatches() {
+
+        final String[] includes = TarGzSplitter.patterns("man/, **/*.zip");
+        final String[] excludes = TarGzSplitter.patterns("**/ja/**");
+
+        assertThat(TarGzSplitter.matches("src.zip", includes, excludes))
+                .isTrue();
+        assertThat(TarGzSplitter.matches("man/man1/java.1", includes,
+                excludes)).isTrue();
+        assertThat(TarGzSplitter.matches("man/ja/man1/java.1", includes,
+                excludes)).isFalse();
+        assertThat(TarGzSplitter.matches("bin/java", includes, excludes))
+                .isFalse();
+        assertThat(TarGzSplitter.matches("bin/java", null, null)).isTrue();
+
+    }
+
+    private static List<String> entries(final File file) throws IOException {
+        final List<String> names = new ArrayList<>();
+        final TarArchiveInputStream tarIn = new TarArchiveInputStream(
+                new GzipCompressorInputStream(new BufferedInputStream(
+                        new FileInputStream(file))));
+        try {
+            TarArchiveEntry entry;
+            while ((entry = tarIn.getNextTarEntry()) != null) {
+                names.add(entry.getName());
+            }
+        } finally {
+            tarIn.close();
+        }
+        return names;
+    }
+
+}
+// CHECKSTYLE:ON
@@ -0,0 +1,104 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.owndeb.commons;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+/**
+ * Tests the {@link Template} class.
+ */
+// CHECKSTYLE:OFF for tests
+public final class TemplateTest {
+
+    @Test
+    public final void testRenderScope() throws Exception {
+
+        // PREPARE
+        final VariableGraph parent = new VariableGraph(null);
+        parent.put(new Variable("home", "/opt/${name}"));
+        final VariableGraph vars = new VariableGraph(parent);
+        vars.put(new Variable("name", "jdk8"));
+        final Template testee = new Template(
+                "Package: ${name}\nHome: ${home}\nOther: ${other}\n");
+        final StringWriter writer = new StringWriter();
+
+        // TEST
+        testee.render(vars, writer);
+
+        // VERIFY
+        assertThat(writer.toString()).isEqualTo(
+                "Package: jdk8\nHome: /opt/jdk8\nOther: ${other}\n");
+
+    }
+
+    @Test
+    public final void testRenderMap() throws Exception {
+
+        // PREPARE
+        final Map<String, String> vars = new HashMap<>();
+        vars.put("a", "Abc");
+        final Template testee = new Template("${a}-${b}-${a");
+        final StringWriter writer = new StringWriter();
+
+        // TEST
+        testee.render(vars, writer);
+
+        // VERIFY
+        assertThat(writer.toString()).isEqualTo("Abc-${b}-${a");
+
+    }
+
+    @Test
+    public final void testGetCached() throws Exception {
+
+        // PREPARE
+        final File file = new File("./target/template-test.txt");
+        final Map<String, String> vars = new HashMap<>();
+        vars.put("a", "Abc");
+        vars.put("b", "Def");
+
+        // TEST
+        final Template testee = Template.get(getClass(),
+                "/write-replaced-resource.txt");
+        testee.write(vars, file);
+
+        // VERIFY
+        assertThat(Template.get(getClass(), "/write-replaced-resource.txt"))
+                .isSameAs(testee);
+        assertThat(FileUtils.readFileToString(file, "utf-8")).isEqualTo(
+                FileUtils.readFileToString(new File(
+                        "./src/test/resources/write-replaced-resource-expected.txt"),
+                        "utf-8"));
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public final void testGetUnknownResource() {
+        Template.get(getClass(), "/does-not-exist.txt");
+    }
+
+}
+// CHECKSTYLE:ON
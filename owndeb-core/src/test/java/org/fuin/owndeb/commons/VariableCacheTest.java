@@ -0,0 +1,197 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.owndeb.commons;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests the {@link VariableCache} class.
+ */
+// CHECKSTYLE:OFF for tests
+public final class VariableCacheTest {
+
+    private static final String ETAG = "\"v1\"";
+
+    private HttpServer server;
+
+    private AtomicInteger requests;
+
+    private AtomicInteger notModified;
+
+    private File dir;
+
+    @Before
+    public void setup() throws IOException {
+        requests = new AtomicInteger();
+        notModified = new AtomicInteger();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/version.txt", new HttpHandler() {
+            @Override
+            public void handle(final HttpExchange exchange) throws IOException {
+                requests.incrementAndGet();
+                if (ETAG.equals(exchange.getRequestHeaders().getFirst(
+                        "If-None-Match"))) {
+                    notModified.incrementAndGet();
+                    exchange.sendResponseHeaders(304, -1);
+                } else {
+                    final byte[] data = "1.2.3".getBytes("utf-8");
+                    exchange.getResponseHeaders().add("ETag", ETAG);
+                    exchange.sendResponseHeaders(200, data.length);
+                    final OutputStream out = exchange.getResponseBody();
+                    out.write(data);
+                    out.close();
+                }
+                exchange.close();
+            }
+        });
+        server.start();
+        dir = new File("./target/variable-cache-test");
+        FileUtils.deleteQuietly(dir);
+    }
+
+    @After
+    public void teardown() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public final void testTtl() throws Exception {
+
+        // PREPARE
+        final VariableCache testee = new VariableCache(dir);
+        final URL url = url();
+
+        // TEST
+        final String first = testee.read(new Variable("v", url, null, 3600),
+                1000);
+        final String second = testee.read(new Variable("v", url, null, 3600),
+                1000);
+
+        // VERIFY
+        assertThat(first).isEqualTo("1.2.3");
+        assertThat(second).isEqualTo("1.2.3");
+        assertThat(requests.get()).isEqualTo(1);
+
+    }
+
+    @Test
+    public final void testRevalidate() throws Exception {
+
+        // PREPARE
+        final VariableCache testee = new VariableCache(dir);
+        final URL url = url();
+        testee.read(new Variable("v", url, null, 0), 1000);
+
+        // TEST
+        final String value = testee.read(new Variable("v", url, null, 0),
+                1000);
+
+        // VERIFY
+        assertThat(value).isEqualTo("1.2.3");
+        assertThat(requests.get()).isEqualTo(2);
+        assertThat(notModified.get()).isEqualTo(1);
+
+    }
+
+    @Test
+    public final void testOffline() throws Exception {
+
+        // PREPARE
+        final VariableCache testee = new VariableCache(dir);
+        final URL url = url();
+        testee.read(new Variable("v", url, null, 0), 1000);
+        server.stop(0);
+        server = null;
+
+        // TEST
+        final String value = testee.read(new Variable("v", url, null, 0),
+                1000);
+
+        // VERIFY
+        assertThat(value).isEqualTo("1.2.3");
+
+    }
+
+    @Test
+    public final void testDefaultTtl() throws Exception {
+
+        // PREPARE
+        final VariableCache testee = new VariableCache(dir);
+        final URL url = url();
+        testee.read(new Variable("v", url), 1000);
+
+        // TEST
+        final String value = testee.read(new Variable("v", url), 1000);
+
+        // VERIFY
+        assertThat(value).isEqualTo("1.2.3");
+        assertThat(requests.get()).isEqualTo(1);
+
+    }
+
+    @Test(expected = RuntimeException.class)
+    public final void testOfflineWithoutCache() throws Exception {
+        final URL url = url();
+        server.stop(0);
+        server = null;
+        new VariableCache(dir).read(new Variable("v", url), 1000);
+    }
+
+    @Test
+    public final void testFileNotCached() throws Exception {
+
+        // PREPARE
+        final File file = new File("./target/variable-cache-file.txt");
+        FileUtils.writeStringToFile(file, "abc", "utf-8");
+        final VariableCache testee = new VariableCache(dir);
+
+        // TEST
+        final String value = testee.read(new Variable("v", file.toURI()
+                .toURL()), 1000);
+
+        // VERIFY
+        assertThat(value).isEqualTo("abc");
+        assertThat(dir).doesNotExist();
+
+    }
+
+    private URL url() throws IOException {
+        return new URL("http://localhost:" + server.getAddress().getPort()
+                + "/version.txt");
+    }
+
+}
+// CHECKSTYLE:ON
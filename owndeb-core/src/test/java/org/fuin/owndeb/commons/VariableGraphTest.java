@@ -0,0 +1,154 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.owndeb.commons;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.fest.assertions.MapAssert.entry;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@link VariableGraph} class.
+ */
+// CHECKSTYLE:OFF for tests
+public final class VariableGraphTest {
+
+    @Test
+    public final void testResolve() {
+
+        // PREPARE
+        final VariableGraph testee = new VariableGraph(null);
+        testee.put(new Variable("c", "${b}/c"));
+        testee.put(new Variable("b", "${a}/b"));
+        testee.put(new Variable("a", "a"));
+        testee.put(new Variable("x", "${unknown}${a"));
+
+        // TEST
+        testee.resolve();
+
+        // VERIFY
+        assertThat(testee.get("c")).isEqualTo("a/b/c");
+        assertThat(testee.get("x")).isEqualTo("${unknown}${a");
+        assertThat(testee.get("unknown")).isNull();
+        assertThat(testee.getResolveCount()).isEqualTo(4);
+
+    }
+
+    @Test
+    public final void testIncremental() {
+
+        // PREPARE
+        final VariableGraph testee = new VariableGraph(null);
+        testee.put(new Variable("a", "a"));
+        testee.put(new Variable("b", "${a}/b"));
+        testee.put(new Variable("c", "${b}/c"));
+        testee.put(new Variable("other", "other"));
+        testee.resolve();
+
+        // TEST
+        testee.put(new Variable("b", "${a}/B"));
+        testee.resolve();
+        testee.resolve();
+
+        // VERIFY
+        assertThat(testee.get("c")).isEqualTo("a/B/c");
+        assertThat(testee.getResolveCount()).isEqualTo(6);
+
+    }
+
+    @Test
+    public final void testCycle() {
+
+        // PREPARE
+        final VariableGraph testee = new VariableGraph(null);
+        testee.put(new Variable("a", "${b}"));
+        testee.put(new Variable("b", "${c}"));
+        testee.put(new Variable("c", "x${a}"));
+        testee.put(new Variable("d", "${a}"));
+
+        // TEST
+        try {
+            testee.get("d");
+            fail();
+        } catch (final IllegalStateException ex) {
+            // VERIFY
+            assertThat(ex.getMessage()).isEqualTo(
+                    "Cycle in variable references: a -> b -> c -> a");
+        }
+
+    }
+
+    @Test
+    public final void testLateBinding() {
+
+        // PREPARE
+        final VariableGraph config = new VariableGraph(null);
+        config.put(new Variable("home", "${installation-path}/${name}"));
+        config.put(new Variable("prefix", "fuin-"));
+        final VariableGraph packages = new VariableGraph(config);
+        packages.put(new Variable("installation-path", "/opt"));
+        final VariableGraph pkg = new VariableGraph(null);
+        pkg.put(new Variable("name", "${prefix}jdk8"));
+
+        // TEST
+        pkg.setParent(packages);
+
+        // VERIFY
+        assertThat(config.get("home")).isEqualTo(
+                "${installation-path}/${name}");
+        assertThat(packages.get("home")).isEqualTo("/opt/${name}");
+        assertThat(pkg.get("home")).isEqualTo("/opt/fuin-jdk8");
+        assertThat(pkg.getResolved()).includes(entry("prefix", "fuin-"),
+                entry("installation-path", "/opt"),
+                entry("name", "fuin-jdk8"));
+        assertThat(pkg.toString()).contains("home");
+        assertThat(pkg.toString()).excludes("prefix");
+
+    }
+
+    @Test
+    public final void testCopy() {
+
+        // PREPARE
+        final VariableGraph parent = new VariableGraph(null);
+        parent.put(new Variable("path", "/opt/${arch}"));
+        final VariableGraph original = new VariableGraph(parent);
+        original.put(new Variable("arch", "amd64"));
+
+        // TEST
+        final VariableGraph copy = original.copy();
+        copy.put(new Variable("arch", "i386"));
+
+        // VERIFY
+        assertThat(original.get("path")).isEqualTo("/opt/amd64");
+        assertThat(copy.get("path")).isEqualTo("/opt/i386");
+
+    }
+
+    @Test
+    public final void testParse() {
+        assertThat(VariableGraph.parse("")).containsOnly("");
+        assertThat(VariableGraph.parse("${a}")).isEqualTo(
+                new String[] { "", "a", "" });
+        assertThat(VariableGraph.parse("x${a}y${b}")).isEqualTo(
+                new String[] { "x", "a", "y", "b", "" });
+    }
+
+}
+// CHECKSTYLE:ON
@@ -0,0 +1,155 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.owndeb.commons;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+/**
+ * Tests the {@link VariableLoader} class.
+ */
+// CHECKSTYLE:OFF for tests
+public final class VariableLoaderTest {
+
+    @Test
+    public final void testLoad() throws Exception {
+
+        // PREPARE
+        final File dir = new File("./target/variable-loader-test");
+        DebUtils.mkdirs(dir);
+        final List<Variable> vars = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            final File file = new File(dir, "file" + i + ".txt");
+            FileUtils.writeStringToFile(file, "value" + i, "utf-8");
+            vars.add(new Variable("var" + i, file.toURI().toURL()));
+        }
+        final Variable same = new Variable("same", new File(dir,
+                "file0.txt").toURI().toURL());
+        vars.add(same);
+        vars.add(new Variable("plain", "abc"));
+
+        // TEST
+        new VariableLoader(4, 1000).load(vars);
+
+        // VERIFY
+        for (int i = 0; i < 20; i++) {
+            assertThat(vars.get(i).isLoaded()).isTrue();
+            assertThat(vars.get(i).getValue()).isEqualTo("value" + i);
+        }
+        assertThat(same.isLoaded()).isTrue();
+        assertThat(same.getValue()).isEqualTo("value0");
+
+    }
+
+    @Test
+    public final void testLoadFailure() throws Exception {
+
+        // PREPARE
+        final Variable missing = new Variable("missing", new File(
+                "./target/variable-loader-does-not-exist.txt").toURI()
+                .toURL());
+
+        // TEST
+        try {
+            new VariableLoader().load(Arrays.asList(missing,
+                    new Variable("plain", "abc")));
+            fail();
+        } catch (final RuntimeException ex) {
+            // VERIFY
+            assertThat(ex.getMessage()).isEqualTo(
+                    "Failed to load URL variable(s): [missing]");
+            assertThat(missing.isLoaded()).isFalse();
+        }
+
+    }
+
+    @Test
+    public final void testLoadFailureNamesGroup() throws Exception {
+
+        // PREPARE
+        final URL url = new File("./target/variable-loader-does-not-exist.txt")
+                .toURI().toURL();
+        final URL otherUrl = new File(
+                "./target/variable-loader-does-not-exist-2.txt").toURI()
+                .toURL();
+
+        // TEST
+        try {
+            new VariableLoader().load(Arrays.asList(new Variable("a", url),
+                    new Variable("b", url)));
+            fail();
+        } catch (final RuntimeException ex) {
+            // VERIFY
+            assertThat(ex.getMessage()).isEqualTo(
+                    "Failed to load URL variable(s): [a, b]");
+        }
+        try {
+            new VariableLoader().load(Arrays.asList(new Variable("a", url),
+                    new Variable("b", url), new Variable("c", otherUrl)));
+            fail();
+        } catch (final RuntimeException ex) {
+            // VERIFY
+            assertThat(ex.getMessage()).isEqualTo(
+                    "Failed to load URL variable(s): [a, b, c]");
+        }
+
+    }
+
+    @Test
+    public final void testConcurrentGetValue() throws Exception {
+
+        // PREPARE
+        final File file = new File("./target/variable-loader-concurrent.txt");
+        FileUtils.writeStringToFile(file, "concurrent", "utf-8");
+        final Variable testee = new Variable("var", file.toURI().toURL());
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        final List<Future<String>> futures = new ArrayList<>();
+
+        // TEST
+        for (int i = 0; i < 8; i++) {
+            futures.add(executor.submit(new Callable<String>() {
+                @Override
+                public String call() {
+                    return testee.getValue();
+                }
+            }));
+        }
+
+        // VERIFY
+        for (final Future<String> future : futures) {
+            assertThat(future.get()).isEqualTo("concurrent");
+        }
+        executor.shutdown();
+
+    }
+
+}
+// CHECKSTYLE:ON
@@ -19,8 +19,12 @@ package org.fuin.owndeb.pkg.eclipse;
 
 import static org.fest.assertions.Assertions.assertThat;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
 
 import org.apache.commons.io.FilenameUtils;
 import org.fuin.owndeb.commons.DebUtils;
@@ -69,6 +73,73 @@ public class EclipseIniModifierTest {
 
     }
 
+    @Test
+    public void testApplyBatchToStream() throws IOException {
+
+        // PREPARE
+        final String ini = "-startup\r\n"
+                + "plugins/launcher.jar\r\n"
+                + "--launcher.XXMaxPermSize\r\n"
+                + "256m\r\n"
+                + "--launcher.appendVmargs\r\n"
+                + "-vmargs\r\n"
+                + "-Dosgi.requiredJavaVersion=1.6\r\n"
+                + "-Dremove.me\r\n"
+                + "-Xmx512m\r\n";
+        final EclipseIniModifier testee = new EclipseIniModifier();
+        testee.setVm("/opt/jdk/bin/java");
+        testee.setLauncherOption("--launcher.XXMaxPermSize", "512m");
+        testee.setLauncherOption("--launcher.defaultAction", "openFile");
+        testee.setSystemProperty("osgi.requiredJavaVersion", "1.8");
+        testee.setSystemProperty("file.encoding", "UTF-8");
+        testee.removeSystemProperty("remove.me");
+        final StringWriter writer = new StringWriter();
+
+        // TEST
+        testee.apply(new StringReader(ini), writer);
+
+        // VERIFY
+        assertThat(writer.toString()).isEqualTo("-startup\r\n"
+                + "plugins/launcher.jar\r\n"
+                + "--launcher.XXMaxPermSize\r\n"
+                + "512m\r\n"
+                + "--launcher.appendVmargs\r\n"
+                + "--launcher.defaultAction\r\n"
+                + "openFile\r\n"
+                + "-vm\r\n"
+                + "/opt/jdk/bin/java\r\n"
+                + "-vmargs\r\n"
+                + "-Dosgi.requiredJavaVersion=1.8\r\n"
+                + "-Xmx512m\r\n"
+                + "-Dfile.encoding=UTF-8\r\n");
+
+    }
+
+    @Test
+    public void testApplyWithoutVmargs() throws IOException {
+
+        // PREPARE
+        final EclipseIniModifier testee = new EclipseIniModifier();
+        testee.setSystemProperty("a", null);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // TEST
+        testee.apply(new ByteArrayInputStream("-startup\nx.jar".getBytes("utf-8")), out);
+
+        // VERIFY
+        assertThat(out.toString("utf-8")).isEqualTo(
+                "-startup\nx.jar\n-vmargs\n-Da\n");
+
+    }
+
+    @Test
+    public void testPropertyKey() {
+        assertThat(EclipseIniModifier.propertyKey("-Da=b")).isEqualTo("a");
+        assertThat(EclipseIniModifier.propertyKey("-Da")).isEqualTo("a");
+        assertThat(EclipseIniModifier.propertyKey("-D")).isNull();
+        assertThat(EclipseIniModifier.propertyKey("-Xmx1g")).isNull();
+    }
+
     private File copyResourceToTempFile(final String resource)
             throws IOException {
         final String name = FilenameUtils.getName(resource);
@@ -0,0 +1,143 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.owndeb.pkg.eclipse;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import org.apache.commons.exec.CommandLine;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+/**
+ * Tests the {@link EclipseLauncher} class.
+ */
+// CHECKSTYLE:OFF for tests
+public final class EclipseLauncherTest {
+
+    @Test
+    public final void testFindLauncherJar() throws IOException {
+
+        // PREPARE
+        final File eclipseDir = new File("./target/eclipse-launcher-test/find");
+        FileUtils.deleteQuietly(eclipseDir);
+        FileUtils.touch(new File(eclipseDir, "plugins/org.eclipse.equinox.launcher_1.3.0.jar"));
+        FileUtils.touch(new File(eclipseDir, "plugins/org.eclipse.equinox.launcher_1.3.100.jar"));
+        final EclipseLauncher testee = new EclipseLauncher(eclipseDir);
+
+        // TEST
+        final File jar = testee.findLauncherJar();
+
+        // VERIFY
+        assertThat(jar.getName()).isEqualTo("org.eclipse.equinox.launcher_1.3.100.jar");
+
+    }
+
+    @Test
+    public final void testFindLauncherJarMissing() {
+
+        // PREPARE
+        final EclipseLauncher testee = new EclipseLauncher(new File(
+                "./target/eclipse-launcher-test/missing"));
+
+        // TEST
+        try {
+            testee.findLauncherJar();
+            fail();
+        } catch (final IllegalStateException ex) {
+            // VERIFY
+            assertThat(ex.getMessage()).startsWith("Couldn't find Equinox launcher in: ");
+        }
+
+    }
+
+    @Test
+    public final void testExecute() throws IOException {
+
+        // PREPARE
+        final File eclipseDir = createFakeEclipse("execute");
+        final EclipseLauncher testee = new EclipseLauncher(eclipseDir);
+
+        // TEST
+        testee.execute("Test", "-nosplash", "-initialize");
+
+        // VERIFY
+        final CommandLine cmdLine = testee.createCommand("-nosplash");
+        assertThat(cmdLine.getArguments()[0]).isEqualTo("-jar");
+        assertThat(FileUtils.readFileToString(new File(eclipseDir,
+                "configuration/args.log"), "utf-8")).isEqualTo(
+                "[-nosplash, -initialize]");
+
+    }
+
+    /**
+     * Creates an Eclipse installation with a launcher JAR that starts
+     * {@link FakeMain}.
+     * 
+     * @param name
+     *            Unique name of the installation.
+     * 
+     * @return Eclipse directory.
+     */
+    static File createFakeEclipse(final String name) throws IOException {
+        final File eclipseDir = new File("./target/eclipse-launcher-test/"
+                + name);
+        FileUtils.deleteQuietly(eclipseDir);
+        final File pluginsDir = new File(eclipseDir, "plugins");
+        pluginsDir.mkdirs();
+        final Manifest manifest = new Manifest();
+        final Attributes attributes = manifest.getMainAttributes();
+        attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        attributes.put(Attributes.Name.MAIN_CLASS, FakeMain.class.getName());
+        attributes.put(Attributes.Name.CLASS_PATH, new File(
+                "./target/test-classes").getCanonicalFile().toURI().toString());
+        final JarOutputStream out = new JarOutputStream(new FileOutputStream(
+                new File(pluginsDir,
+                        "org.eclipse.equinox.launcher_1.3.0.v20140415-2008.jar")),
+                manifest);
+        out.close();
+        return eclipseDir;
+    }
+
+    /**
+     * Replacement for the Equinox launcher that writes it's arguments and a
+     * log file into the configuration area of the working directory.
+     */
+    public static final class FakeMain {
+
+        public static void main(final String[] args) throws IOException {
+            // Only JDK classes are on the class path of the launcher JAR
+            final File configDir = new File("configuration");
+            new File(configDir, "org.eclipse.osgi").mkdirs();
+            Files.write(new File(configDir, "args.log").toPath(), Arrays
+                    .asList(args).toString().getBytes("utf-8"));
+        }
+
+    }
+
+}
+// CHECKSTYLE:ON
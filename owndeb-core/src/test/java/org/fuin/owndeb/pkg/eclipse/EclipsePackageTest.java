@@ -18,12 +18,17 @@
 package org.fuin.owndeb.pkg.eclipse;
 
 import static org.fest.assertions.Assertions.assertThat;
+import static org.fuin.utils4j.JaxbUtils.unmarshal;
 
 import java.io.File;
+import java.io.IOException;
 
+import org.apache.commons.io.FileUtils;
+import org.fuin.owndeb.commons.DebConfig;
 import org.fuin.owndeb.commons.DebDependency;
 import org.fuin.owndeb.commons.DebPackage;
 import org.fuin.owndeb.commons.DebPackageResolver;
+import org.fuin.owndeb.commons.DebUtils;
 import org.fuin.owndeb.pkg.eclipse.EclipsePackage;
 import org.fuin.owndeb.pkg.jdk.JdkPackage;
 import org.junit.Ignore;
@@ -70,6 +75,65 @@ public final class EclipsePackageTest {
 
     }
 
+    @Test
+    public final void testApplyModifications() throws IOException {
+
+        // PREPARE
+        final String xml = "<owndeb-config><packages installation-path=\"/opt\">"
+                + "<eclipse-package name=\"eclipse\" url=\"http://localhost/eclipse.tar.gz\" "
+                + "vm=\"/opt/jdk8/bin/java\" vmargs=\"-Dosgi.requiredJavaVersion=1.8 -XX:+UseParallelGC -Xmx1024m\" "
+                + "tuning=\"g1, cds, relative-heap\" heap-percent=\"30\"/>"
+                + "</packages></owndeb-config>";
+        final DebConfig config = unmarshal(xml, DebConfig.class,
+                EclipsePackage.class);
+        final EclipsePackage testee = (EclipsePackage) config.getPackages()
+                .getPackages().get(0);
+        final File packageDir = new File("./target/eclipse-package-test");
+        FileUtils.deleteQuietly(packageDir);
+        final File iniFile = new File(packageDir, "eclipse.ini");
+        DebUtils.copyResourceToFile(this.getClass(),
+                "/eclipse/eclipse-unmodified.ini", iniFile);
+
+        // TEST
+        testee.applyModifications(packageDir);
+
+        // VERIFY
+        assertThat(testee.getTuningProfiles()).containsExactly(
+                TuningProfile.G1, TuningProfile.CDS,
+                TuningProfile.RELATIVE_HEAP);
+        assertThat(testee.getHeapPercent()).isEqualTo(30);
+        final String ini = FileUtils.readFileToString(iniFile, "utf-8");
+        assertThat(ini).endsWith("--launcher.appendVmargs\n"
+                + "-vm\n" + "/opt/jdk8/bin/java\n" + "-vmargs\n"
+                + "-Dosgi.requiredJavaVersion=1.8\n" + "-Xmx1024m\n"
+                + "-XX:+UseG1GC\n" + "-XX:+UseStringDeduplication\n"
+                + "-Xshare:auto\n");
+        final File launcher = new File(packageDir, EclipsePackage.TUNED_LAUNCHER);
+        assertThat(launcher.canExecute()).isTrue();
+        final String script = FileUtils.readFileToString(launcher, "utf-8");
+        assertThat(script).contains("heap_mb=$((mem_kb * 30 / 100 / 1024))");
+        assertThat(script).contains("exec /opt/eclipse/eclipse \"$@\" -vmargs");
+
+    }
+
+    @Test
+    public final void testInitializeConfiguration() throws IOException {
+
+        // PREPARE
+        final File packageDir = EclipseLauncherTest
+                .createFakeEclipse("initialize");
+
+        // TEST
+        EclipsePackage.initializeConfiguration(packageDir);
+
+        // VERIFY
+        assertThat(new File(packageDir, "configuration/org.eclipse.osgi"))
+                .isDirectory();
+        assertThat(new File(packageDir, "configuration/args.log"))
+                .doesNotExist();
+
+    }
+
     private DebDependency createDependencyJdk8() {
         final JdkPackage jdkPackage = new JdkPackage("jdk8", "1.8.0.60",
                 "Java SE Development Kit 8", "michael@fuin.org", "amd64",
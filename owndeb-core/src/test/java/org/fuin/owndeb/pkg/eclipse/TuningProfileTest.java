@@ -0,0 +1,72 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.owndeb.pkg.eclipse;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@link TuningProfile} class.
+ */
+// CHECKSTYLE:OFF for tests
+public final class TuningProfileTest {
+
+    @Test
+    public final void testParse() {
+        assertThat(TuningProfile.parse(null)).isEmpty();
+        assertThat(TuningProfile.parse("parallel,cds")).containsExactly(
+                TuningProfile.PARALLEL, TuningProfile.CDS);
+    }
+
+    @Test
+    public final void testForIdUnknown() {
+        try {
+            TuningProfile.forId("fast");
+            fail();
+        } catch (final IllegalArgumentException ex) {
+            assertThat(ex.getMessage()).isEqualTo(
+                    "Unknown tuning profile: 'fast'");
+        }
+    }
+
+    @Test
+    public final void testApplyReplacesGarbageCollector() throws IOException {
+
+        // PREPARE
+        final EclipseIniModifier modifier = new EclipseIniModifier();
+        final StringWriter writer = new StringWriter();
+
+        // TEST
+        TuningProfile.PARALLEL.apply(modifier);
+        TuningProfile.CDS.apply(modifier);
+        modifier.apply(new StringReader("-vmargs\n-XX:+UseG1GC\n-Xshare:off\n-Xmx1g\n"), writer);
+
+        // VERIFY
+        assertThat(writer.toString()).isEqualTo(
+                "-vmargs\n-Xmx1g\n-XX:+UseParallelGC\n-Xshare:auto\n");
+
+    }
+
+}
+// CHECKSTYLE:ON
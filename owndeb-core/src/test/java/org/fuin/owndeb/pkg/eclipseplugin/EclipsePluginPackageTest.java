@@ -21,10 +21,18 @@ import static org.fest.assertions.Assertions.assertThat;
 import static org.fuin.utils4j.JaxbUtils.unmarshal;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.net.URL;
 
 import javax.xml.bind.annotation.adapters.XmlAdapter;
 
+import org.apache.commons.compress.archivers.ar.ArArchiveEntry;
+import org.apache.commons.compress.archivers.ar.ArArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.io.IOUtils;
 import org.fuin.owndeb.commons.DebConfig;
 import org.fuin.owndeb.pkg.eclipse.EclipsePackage;
 import org.fuin.owndeb.pkg.eclipseplugin.EclipsePluginPackage;
@@ -39,7 +47,7 @@ import org.junit.Test;
 public final class EclipsePluginPackageTest {
 
     @Test
-    public final void testCreate() {
+    public final void testCreate() throws IOException {
 
         // PREPARE
         final URL url = Utils4J.url("classpath:owndeb-config.xml");
@@ -62,9 +70,66 @@ public final class EclipsePluginPackageTest {
                 "fuin-eclipse-jee-luna-plugins-checkstyle_6.5.0_amd64.deb");
         assertThat(changesFileLuna).exists();
         assertThat(debFileLuna).exists();
+        assertThat(readControlFile(debFileLuna, "triggers")).isEqualTo(
+                "activate-noawait owndeb-p2-fuin-eclipse-jee-luna\n");
+        assertThat(readControlFile(debFileLuna, "postinst")).contains(
+                "/opt/fuin-eclipse-jee-luna/owndeb-p2/"
+                        + "fuin-eclipse-jee-luna-plugins-checkstyle.iu");
 
     }
 
+    @Test
+    public final void testPrebake() {
+
+        // PREPARE
+        final String xml = "<owndeb-config><packages installation-path=\"/opt\">"
+                + "<eclipse-plugin-package name=\"p1\" repository=\"http://r\" "
+                + "installIUs=\"x.feature.group\" eclipse-package=\"eclipse\" "
+                + "prebake=\"true\"/>"
+                + "<eclipse-plugin-package name=\"p2\" repository=\"http://r\" "
+                + "installIUs=\"x.feature.group\" eclipse-package=\"eclipse\"/>"
+                + "</packages></owndeb-config>";
+
+        // TEST
+        final DebConfig config = unmarshal(xml, createXmlAdapter(),
+                DebConfig.class, EclipsePluginPackage.class);
+
+        // VERIFY
+        final EclipsePluginPackage prebaked = (EclipsePluginPackage) config
+                .getPackages().getPackages().get(0);
+        final EclipsePluginPackage plain = (EclipsePluginPackage) config
+                .getPackages().getPackages().get(1);
+        assertThat(prebaked.isPrebake()).isTrue();
+        assertThat(plain.isPrebake()).isFalse();
+        assertThat(prebaked.getVariableGraph().get("eclipsePath")).isEqualTo(
+                "/opt/eclipse");
+
+    }
+
+    private static String readControlFile(final File debFile,
+            final String name) throws IOException {
+        final ArArchiveInputStream arIn = new ArArchiveInputStream(
+                new FileInputStream(debFile));
+        try {
+            ArArchiveEntry arEntry;
+            while ((arEntry = arIn.getNextArEntry()) != null) {
+                if (arEntry.getName().startsWith("control.tar")) {
+                    final TarArchiveInputStream tarIn = new TarArchiveInputStream(
+                            new GzipCompressorInputStream(arIn));
+                    TarArchiveEntry tarEntry;
+                    while ((tarEntry = tarIn.getNextTarEntry()) != null) {
+                        if (tarEntry.getName().equals("./" + name)) {
+                            return IOUtils.toString(tarIn, "utf-8");
+                        }
+                    }
+                }
+            }
+            return null;
+        } finally {
+            arIn.close();
+        }
+    }
+
     private XmlAdapter<?, ?>[] createXmlAdapter() {
         // Not necessary now - Add XML adapter if needed later on...
         return new XmlAdapter[] {};
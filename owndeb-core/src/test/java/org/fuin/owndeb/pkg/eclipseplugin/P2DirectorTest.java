@@ -0,0 +1,141 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.owndeb.pkg.eclipseplugin;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.List;
+
+import org.apache.commons.exec.CommandLine;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+/**
+ * Tests the {@link P2Director} class.
+ */
+// CHECKSTYLE:OFF for tests
+public final class P2DirectorTest {
+
+    @Test
+    public final void testFindLauncher() throws Exception {
+
+        // PREPARE
+        final File eclipseDir = createEclipse("launcher");
+        touch(eclipseDir, "plugins/org.eclipse.equinox.launcher_1.3.0.v20140415-2008.jar");
+        touch(eclipseDir, "plugins/org.eclipse.equinox.launcher_1.3.100.v20150511-1540.jar");
+        touch(eclipseDir, "plugins/org.eclipse.equinox.launcher.gtk.linux.x86_64_1.1.300.jar");
+        final P2Director testee = new P2Director(eclipseDir);
+
+        // TEST
+        final File launcher = testee.findLauncher();
+
+        // VERIFY
+        assertThat(launcher.getName()).isEqualTo(
+                "org.eclipse.equinox.launcher_1.3.100.v20150511-1540.jar");
+
+    }
+
+    @Test
+    public final void testFindLauncherMissing() throws Exception {
+
+        // PREPARE
+        final File eclipseDir = createEclipse("nolauncher");
+        final P2Director testee = new P2Director(eclipseDir);
+
+        // TEST
+        try {
+            testee.findLauncher();
+            fail();
+        } catch (final IllegalStateException ex) {
+            // VERIFY
+            assertThat(ex.getMessage()).startsWith(
+                    "Couldn't find Equinox launcher in: ");
+        }
+
+    }
+
+    @Test
+    public final void testCreateInstallCommand() throws Exception {
+
+        // PREPARE
+        final File eclipseDir = createEclipse("command");
+        final File launcher = touch(eclipseDir,
+                "plugins/org.eclipse.equinox.launcher_1.3.0.jar");
+        final P2Director testee = new P2Director(eclipseDir);
+
+        // TEST
+        final CommandLine cmdLine = testee.createInstallCommand(
+                "http://eclipse-cs.sourceforge.net/update/",
+                "net.sf.eclipsecs.feature.group");
+
+        // VERIFY
+        assertThat(cmdLine.getExecutable()).endsWith("java");
+        assertThat(cmdLine.getArguments()).isEqualTo(
+                new String[] { "-jar", launcher.getAbsolutePath(), "-nosplash",
+                        "-application", P2Director.APPLICATION, "-repository",
+                        "http://eclipse-cs.sourceforge.net/update/",
+                        "-installIU", "net.sf.eclipsecs.feature.group" });
+
+    }
+
+    @Test
+    public final void testMoveNewUnits() throws Exception {
+
+        // PREPARE
+        final File eclipseDir = createEclipse("move");
+        touch(eclipseDir, "plugins/a_1.0.0.jar");
+        touch(eclipseDir, "features/fa_1.0.0/feature.xml");
+        final P2Director testee = new P2Director(eclipseDir);
+        final List<String> before = testee.listUnits();
+        touch(eclipseDir, "plugins/b_1.0.0.jar");
+        touch(eclipseDir, "features/fb_1.0.0/feature.xml");
+        final File targetDir = new File("./target/p2-director-test/move-target");
+        FileUtils.deleteQuietly(targetDir);
+
+        // TEST
+        final List<String> moved = testee.moveNewUnits(before, targetDir);
+
+        // VERIFY
+        assertThat(before).containsExactly("features/fa_1.0.0",
+                "plugins/a_1.0.0.jar");
+        assertThat(moved).containsExactly("features/fb_1.0.0",
+                "plugins/b_1.0.0.jar");
+        assertThat(new File(targetDir, "plugins/b_1.0.0.jar")).exists();
+        assertThat(new File(targetDir, "features/fb_1.0.0/feature.xml"))
+                .exists();
+        assertThat(testee.listUnits()).isEqualTo(before);
+
+    }
+
+    private static File createEclipse(final String name) {
+        final File dir = new File("./target/p2-director-test/" + name);
+        FileUtils.deleteQuietly(dir);
+        return dir;
+    }
+
+    private static File touch(final File dir, final String path)
+            throws Exception {
+        final File file = new File(dir, path);
+        FileUtils.touch(file);
+        return file;
+    }
+
+}
+// CHECKSTYLE:ON
@@ -0,0 +1,225 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.owndeb.pkg.eclipseplugin;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.net.URL;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link P2Mirror} class.
+ */
+// CHECKSTYLE:OFF for tests
+public final class P2MirrorTest {
+
+    private static final String UTF8 = "utf-8";
+
+    private static final String RULES = "<mappings size='2'>"
+            + "<rule filter='(&amp; (classifier=osgi.bundle))' output='${repoUrl}/plugins/${id}_${version}.jar'/>"
+            + "<rule filter='(&amp; (classifier=osgi.bundle) (format=packed))' output='${repoUrl}/plugins/${id}_${version}.jar.pack.gz'/>"
+            + "<rule filter='(&amp; (classifier=org.eclipse.update.feature))' output='${repoUrl}/features/${id}_${version}.jar'/>"
+            + "</mappings>";
+
+    private File baseDir;
+
+    private File mirrorDir;
+
+    private File repoA;
+
+    private File repoB;
+
+    private File repoC;
+
+    @Before
+    public final void setup() throws Exception {
+        baseDir = new File("./target/p2-mirror-test");
+        FileUtils.deleteQuietly(baseDir);
+        mirrorDir = new File(baseDir, "mirror");
+
+        // Simple repository with XML index files
+        repoA = new File(baseDir, "a");
+        write(repoA, "plugins/shared_1.0.0.jar", "shared");
+        write(repoA, "plugins/shared_1.0.0.jar.pack.gz", "packed");
+        write(repoA, "features/fa_1.0.0.jar", "feature a");
+        write(repoA, "artifacts.xml", "<?xml version='1.0' encoding='UTF-8'?>"
+                + "<repository name='a' type='org.eclipse.equinox.p2.artifact.repository.simpleRepository' version='1'>"
+                + RULES + "<artifacts size='3'>"
+                + artifact("osgi.bundle", "shared", DigestUtils.sha256Hex("shared"), null)
+                + artifact("osgi.bundle", "shared", null, "packed")
+                + artifact("org.eclipse.update.feature", "fa", null, null)
+                + "</artifacts></repository>");
+        write(repoA, "content.xml", "<repository name='a'/>");
+
+        // Simple repository with JAR index files
+        repoB = new File(baseDir, "b");
+        write(repoB, "plugins/shared_1.0.0.jar", "shared");
+        write(repoB, "plugins/b_1.0.0.jar", "plugin b");
+        writeJar(repoB, "artifacts", "<?xml version='1.0' encoding='UTF-8'?>"
+                + "<repository name='b' type='org.eclipse.equinox.p2.artifact.repository.simpleRepository' version='1'>"
+                + RULES + "<artifacts size='2'>"
+                + artifact("osgi.bundle", "shared", null, null)
+                + artifact("osgi.bundle", "b", null, null)
+                + "</artifacts></repository>");
+        writeJar(repoB, "content", "<repository name='b'/>");
+
+        // Composite repository with a relative and an absolute child
+        repoC = new File(baseDir, "c");
+        write(repoC, "compositeArtifacts.xml", "<?xml version='1.0' encoding='UTF-8'?>"
+                + "<repository name='c' type='org.eclipse.equinox.internal.p2.artifact.repository.CompositeArtifactRepository' version='1'>"
+                + "<children size='2'><child location='../a'/>"
+                + "<child location='" + url(repoB) + "'/></children></repository>");
+        write(repoC, "compositeContent.xml", "<repository name='c'/>");
+    }
+
+    @Test
+    public final void testMirrorSimple() throws Exception {
+
+        // PREPARE
+        final P2Mirror testee = new P2Mirror(mirrorDir);
+
+        // TEST
+        final List<URL> urls = testee.mirror(new URL(url(repoA)));
+
+        // VERIFY
+        final File dir = testee.getRepositoryDir(url(repoA));
+        assertThat(urls).containsExactly(dir.getAbsoluteFile().toURI().toURL());
+        assertThat(read(dir, "plugins/shared_1.0.0.jar")).isEqualTo("shared");
+        assertThat(read(dir, "features/fa_1.0.0.jar")).isEqualTo("feature a");
+        assertThat(new File(dir, "artifacts.xml")).exists();
+        assertThat(new File(dir, "content.xml")).exists();
+        assertThat(new File(dir, "plugins/shared_1.0.0.jar.pack.gz")).doesNotExist();
+
+    }
+
+    @Test
+    public final void testMirrorDeduplicates() throws Exception {
+
+        // PREPARE
+        final P2Mirror testee = new P2Mirror(mirrorDir);
+
+        // TEST
+        testee.mirror(new URL(url(repoA)));
+        testee.mirror(new URL(url(repoB)));
+
+        // VERIFY
+        final File dirB = testee.getRepositoryDir(url(repoB));
+        assertThat(read(dirB, "plugins/shared_1.0.0.jar")).isEqualTo("shared");
+        assertThat(read(dirB, "plugins/b_1.0.0.jar")).isEqualTo("plugin b");
+        assertThat(new File(dirB, "artifacts.jar")).exists();
+        assertThat(new File(dirB, "content.jar")).exists();
+        // a: artifacts.xml, content.xml, shared, fa / b: artifacts.jar, content.jar, b
+        assertThat(new File(mirrorDir, "objects").list()).hasSize(7);
+        assertThat(testee.getObjectFile(DigestUtils.sha256Hex("shared"))).exists();
+
+    }
+
+    @Test
+    public final void testMirrorUsesStoreForKnownChecksum() throws Exception {
+
+        // PREPARE
+        final P2Mirror testee = new P2Mirror(mirrorDir);
+        testee.mirror(new URL(url(repoA)));
+        FileUtils.forceDelete(new File(repoA, "plugins/shared_1.0.0.jar"));
+        FileUtils.deleteQuietly(testee.getRepositoryDir(url(repoA)));
+
+        // TEST
+        testee.mirror(new URL(url(repoA)));
+
+        // VERIFY
+        assertThat(read(testee.getRepositoryDir(url(repoA)),
+                "plugins/shared_1.0.0.jar")).isEqualTo("shared");
+
+    }
+
+    @Test
+    public final void testMirrorAllComposite() throws Exception {
+
+        // PREPARE
+        final P2Mirror testee = new P2Mirror(mirrorDir);
+
+        // TEST
+        final String result = testee.mirrorAll(url(repoC) + "/");
+
+        // VERIFY
+        final File dirA = testee.getRepositoryDir(url(repoA));
+        final File dirB = testee.getRepositoryDir(url(repoB));
+        assertThat(result).isEqualTo(
+                dirA.getAbsoluteFile().toURI().toURL() + ","
+                        + dirB.getAbsoluteFile().toURI().toURL());
+        assertThat(read(dirA, "features/fa_1.0.0.jar")).isEqualTo("feature a");
+        assertThat(read(dirB, "plugins/b_1.0.0.jar")).isEqualTo("plugin b");
+
+    }
+
+    private static String artifact(final String classifier, final String id,
+            final String sha256, final String format) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("<artifact classifier='" + classifier + "' id='" + id
+                + "' version='1.0.0'><properties>");
+        if (sha256 != null) {
+            sb.append("<property name='download.checksum.sha-256' value='"
+                    + sha256 + "'/>");
+        }
+        if (format != null) {
+            sb.append("<property name='format' value='" + format + "'/>");
+        }
+        sb.append("</properties></artifact>");
+        return sb.toString();
+    }
+
+    private static String url(final File dir) throws Exception {
+        final String str = dir.getCanonicalFile().toURI().toURL().toString();
+        return str.substring(0, str.length() - 1);
+    }
+
+    private static void write(final File dir, final String path,
+            final String content) throws Exception {
+        FileUtils.write(new File(dir, path), content, UTF8);
+    }
+
+    private static void writeJar(final File dir, final String name,
+            final String xml) throws Exception {
+        dir.mkdirs();
+        final ZipOutputStream out = new ZipOutputStream(new FileOutputStream(
+                new File(dir, name + ".jar")));
+        try {
+            out.putNextEntry(new ZipEntry(name + ".xml"));
+            out.write(xml.getBytes(UTF8));
+            out.closeEntry();
+        } finally {
+            out.close();
+        }
+    }
+
+    private static String read(final File dir, final String path)
+            throws Exception {
+        return FileUtils.readFileToString(new File(dir, path), UTF8);
+    }
+
+}
+// CHECKSTYLE:ON
@@ -18,9 +18,13 @@
 package org.fuin.owndeb.pkg.jdk;
 
 import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
 
+import org.apache.commons.io.FileUtils;
 import org.fuin.owndeb.commons.DebPackage;
 import org.fuin.owndeb.commons.DebPackageResolver;
 import org.fuin.owndeb.pkg.jdk.JdkPackage;
@@ -72,5 +76,157 @@ public final class JdkPackageTest {
 
     }
 
+    @Test
+    public final void testDumpCds() throws IOException {
+
+        // PREPARE
+        final File jdkDir = new File("./target/jdk-package-test/jdk");
+        FileUtils.deleteQuietly(jdkDir);
+        final File java = new File(jdkDir, "bin/java");
+        // Fake 'java' that creates the archive given as argument
+        FileUtils.write(java, "#!/bin/sh\n"
+                + "f=lib/server/classes.jsa\n"
+                + "for a in \"$@\"; do\n"
+                + "    case \"$a\" in -XX:SharedArchiveFile=*) f=\"${a#*=}\";; esac\n"
+                + "done\n"
+                + "mkdir -p \"$(dirname \"$f\")\"\n"
+                + "echo \"$@\" > \"$f\"\n", "utf-8");
+        java.setExecutable(true);
+        final File classList = new File("./target/jdk-package-test/classlist");
+        FileUtils.write(classList, "java/lang/Object\n", "utf-8");
+
+        // TEST
+        final Collection<File> archives = JdkPackage.dumpCds(jdkDir, classList);
+
+        // VERIFY
+        assertThat(archives).hasSize(2);
+        assertThat(FileUtils.readFileToString(new File(jdkDir,
+                "lib/server/classes.jsa"), "utf-8")).isEqualTo("-Xshare:dump\n");
+        assertThat(FileUtils.readFileToString(new File(jdkDir,
+                JdkPackage.APP_CDS_ARCHIVE), "utf-8")).startsWith(
+                "-Xshare:dump -XX:SharedClassListFile=");
+
+    }
+
+    @Test
+    public final void testDumpCdsJdk8() throws IOException {
+
+        // PREPARE
+        final File jdkDir = new File("./target/jdk-package-test/jdk8");
+        FileUtils.deleteQuietly(jdkDir);
+        final File java = new File(jdkDir, "bin/java");
+        FileUtils.write(java, "#!/bin/sh\n"
+                + "f=jre/lib/amd64/server/classes.jsa\n"
+                + "for a in \"$@\"; do\n"
+                + "    case \"$a\" in -XX:SharedArchiveFile=*) f=\"${a#*=}\";; esac\n"
+                + "done\n"
+                + "mkdir -p \"$(dirname \"$f\")\"\n"
+                + "echo \"$@\" > \"$f\"\n", "utf-8");
+        java.setExecutable(true);
+        FileUtils.write(new File(jdkDir, "release"),
+                "JAVA_VERSION=\"1.8.0_60\"\nOS_NAME=\"Linux\"\n", "utf-8");
+        final File classList = new File("./target/jdk-package-test/classlist");
+        FileUtils.write(classList, "java/lang/Object\n", "utf-8");
+
+        // TEST
+        JdkPackage.dumpCds(jdkDir, classList);
+
+        // VERIFY
+        assertThat(FileUtils.readFileToString(new File(jdkDir,
+                JdkPackage.APP_CDS_ARCHIVE), "utf-8")).startsWith(
+                "-XX:+UnlockCommercialFeatures -XX:+UseAppCDS -Xshare:dump ");
+
+    }
+
+    @Test
+    public final void testAppCdsOptions() {
+
+        assertThat(JdkPackage.appCdsOptions("1.8.0_60")).containsExactly(
+                "-XX:+UnlockCommercialFeatures", "-XX:+UseAppCDS");
+        assertThat(JdkPackage.appCdsOptions("9.0.4")).containsExactly(
+                "-XX:+UnlockCommercialFeatures", "-XX:+UseAppCDS");
+        assertThat(JdkPackage.appCdsOptions("10")).containsExactly(
+                "-XX:+UseAppCDS");
+        assertThat(JdkPackage.appCdsOptions("11.0.2")).isEmpty();
+        assertThat(JdkPackage.appCdsOptions(null)).isEmpty();
+
+    }
+
+    @Test
+    public final void testDumpCdsMissingClassList() throws IOException {
+
+        // PREPARE
+        final File jdkDir = new File("./target/jdk-package-test/jdk2");
+        FileUtils.deleteQuietly(jdkDir);
+        final File java = new File(jdkDir, "bin/java");
+        FileUtils.write(java, "#!/bin/sh\n", "utf-8");
+        java.setExecutable(true);
+
+        // TEST
+        try {
+            JdkPackage.dumpCds(jdkDir, new File(jdkDir, "missing"));
+            fail();
+        } catch (final IllegalArgumentException ex) {
+            // VERIFY
+            assertThat(ex.getMessage()).startsWith(
+                    "CDS class list does not exist: ");
+        }
+
+    }
+
+    @Test
+    public final void testJlink() throws IOException {
+
+        // PREPARE
+        final File jdkDir = new File("./target/jdk-package-test/jdk3");
+        final File imageDir = new File("./target/jdk-package-test/image");
+        FileUtils.deleteQuietly(jdkDir);
+        FileUtils.forceMkdir(new File(jdkDir, "jmods"));
+        final File jlink = new File(jdkDir, "bin/jlink");
+        // Fake 'jlink' that creates the output directory with the arguments
+        FileUtils.write(jlink, "#!/bin/sh\n"
+                + "o=\n"
+                + "for a in \"$@\"; do\n"
+                + "    if [ \"$p\" = \"--output\" ]; then o=\"$a\"; fi\n"
+                + "    p=\"$a\"\n"
+                + "done\n"
+                + "mkdir -p \"$o/bin\"\n"
+                + "echo \"$@\" > \"$o/bin/java\"\n", "utf-8");
+        jlink.setExecutable(true);
+
+        // TEST
+        JdkPackage.jlink(jdkDir, "java.base, java.logging\njava.xml",
+                imageDir);
+
+        // VERIFY
+        final String args = FileUtils.readFileToString(new File(imageDir,
+                "bin/java"), "utf-8");
+        assertThat(args).startsWith("--module-path ");
+        assertThat(args).contains(
+                " --add-modules java.base,java.logging,java.xml --strip-debug"
+                        + " --no-header-files --no-man-pages --output ");
+
+    }
+
+    @Test
+    public final void testJlinkNoJmods() throws IOException {
+
+        // PREPARE
+        final File jdkDir = new File("./target/jdk-package-test/jdk4");
+        FileUtils.deleteQuietly(jdkDir);
+        FileUtils.forceMkdir(jdkDir);
+
+        // TEST
+        try {
+            JdkPackage.jlink(jdkDir, "java.base", new File(jdkDir, "image"));
+            fail();
+        } catch (final IllegalArgumentException ex) {
+            // VERIFY
+            assertThat(ex.getMessage()).startsWith(
+                    "JDK has no 'jmods' directory: ");
+        }
+
+    }
+
 }
 // CHECKSTYLE:ON
@@ -0,0 +1,108 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.owndeb.pkg.split;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.fuin.utils4j.JaxbUtils.XML_PREFIX;
+import static org.fuin.utils4j.JaxbUtils.marshal;
+import static org.fuin.utils4j.JaxbUtils.unmarshal;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+
+import javax.xml.bind.annotation.adapters.XmlAdapter;
+
+import org.custommonkey.xmlunit.XMLAssert;
+import org.custommonkey.xmlunit.XMLUnit;
+import org.fuin.objects4j.common.ContractViolationException;
+import org.junit.Test;
+
+/**
+ * Tests the {@link PackageSplit} class.
+ */
+// CHECKSTYLE:OFF for tests
+public class PackageSplitTest {
+
+    @Test
+    public void testNullSuffix() {
+        try {
+            new PackageSplit(null, null, null, null);
+            fail();
+        } catch (final ContractViolationException ex) {
+            assertThat(ex.getMessage()).isEqualTo(
+                    "The argument 'suffix' cannot be null");
+        }
+    }
+
+    @Test
+    public final void testMarshalUnmarshalXML() throws Exception {
+
+        // PREPARE
+        final PackageSplit original = new PackageSplit("-src", "Sources",
+                "src.zip", "**/*.class");
+
+        // TEST
+        final String xml = marshal(original, createXmlAdapter(),
+                PackageSplit.class);
+
+        // VERIFY
+        XMLUnit.setIgnoreWhitespace(true);
+        XMLAssert.assertXMLEqual(XML_PREFIX
+                + "<split suffix=\"-src\" description=\"Sources\" "
+                + "includes=\"src.zip\" excludes=\"**/*.class\"/>", xml);
+        final PackageSplit copy = unmarshal(xml, createXmlAdapter(),
+                PackageSplit.class);
+        assertThat(copy.getSuffix()).isEqualTo("-src");
+        assertThat(copy.getIncludes()).isEqualTo("src.zip");
+        assertThat(copy.getExcludes()).isEqualTo("**/*.class");
+
+    }
+
+    @Test
+    public final void testInit() {
+
+        // PREPARE
+        final PackageSplit testee = new PackageSplit("-${version}-doc", null,
+                "man/", null, "jdk-doc-${version} jdk-doc");
+        final SplitPackage parent = new SplitPackage("jdk8", "1.8",
+                "Java SE Development Kit 8", "michael@fuin.org", "amd64",
+                "/opt", "devel", "low", "http://www.fuin.org/jdk.tar.gz",
+                Arrays.asList(testee));
+
+        // TEST
+        parent.init(null);
+
+        // VERIFY
+        assertThat(testee.getParent()).isSameAs(parent);
+        assertThat(testee.getName()).isEqualTo("jdk8-1.8-doc");
+        assertThat(testee.getDescription()).isEqualTo(
+                "Java SE Development Kit 8");
+        assertThat(testee.getDebFilename()).isEqualTo(
+                "jdk8-1.8-doc_1.8_amd64.deb");
+        assertThat(testee.getProvides()).containsExactly("jdk-doc-1.8",
+                "jdk-doc");
+
+    }
+
+    private XmlAdapter<?, ?>[] createXmlAdapter() {
+        // Not necessary now - Add XML adapter if needed later on...
+        return new XmlAdapter[] {};
+    }
+
+}
+// CHECKSTYLE:ON
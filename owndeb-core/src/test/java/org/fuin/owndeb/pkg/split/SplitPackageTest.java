@@ -0,0 +1,76 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.owndeb.pkg.split;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Arrays;
+
+import org.fuin.owndeb.commons.DebPackage;
+import org.fuin.owndeb.commons.DebPackageResolver;
+import org.fuin.owndeb.commons.DebUtils;
+import org.junit.Test;
+
+/**
+ * Tests the {@link SplitPackage} class.
+ */
+// CHECKSTYLE:OFF for tests
+public final class SplitPackageTest {
+
+    @Test
+    public final void testCreate() throws MalformedURLException {
+
+        // PREPARE
+        final File buildDir = new File("./target");
+        // Already in the target directory, so no download will happen
+        DebUtils.copyResourceToFile(getClass(), "/test-dir.tar.gz",
+                DebUtils.cachedFile(new URL(
+                        "http://www.fuin.org/test-dir.tar.gz"), buildDir));
+        final SplitPackage testee = new SplitPackage("split1", "1.0.0",
+                "Split Package 1", "michael@fuin.org", "amd64", "/opt",
+                "devel", "low", "http://www.fuin.org/test-dir.tar.gz",
+                Arrays.asList(new PackageSplit("-abc", "ABC only", "abc/",
+                        null), new PackageSplit("-base", null, null, null)));
+        testee.init(null);
+        testee.resolveDependencies(new DebPackageResolver() {
+            @Override
+            public DebPackage findDebPackage(final String packageName) {
+                // Nothing to resolve in this test
+                return null;
+            }
+        });
+
+        // TEST
+        testee.create(buildDir);
+
+        // VERIFY
+        assertThat(new File(buildDir, "split1-abc_1.0.0_amd64.deb")).exists();
+        assertThat(new File(buildDir, "split1-abc_1.0.0_amd64.changes"))
+                .exists();
+        assertThat(new File(buildDir, "split1-base_1.0.0_amd64.deb"))
+                .exists();
+        assertThat(new File(buildDir, "split1-base_1.0.0_amd64.changes"))
+                .exists();
+
+    }
+
+}
+// CHECKSTYLE:ON
@@ -25,8 +25,13 @@ import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
+import org.fuin.owndeb.BuildManifest;
+import org.fuin.owndeb.ConfigSnapshot;
 import org.fuin.owndeb.OwnDeb;
+import org.fuin.owndeb.PackageSelector;
 import org.fuin.owndeb.commons.DebConfig;
+import org.fuin.owndeb.commons.StageLimits;
+import org.fuin.owndeb.pkg.eclipseplugin.P2Mirror;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.impl.StaticLoggerBinder;
@@ -48,6 +53,66 @@ public final class OwnDebMojo extends AbstractMojo {
     @Parameter(name = "target-dir", property = "project.build.directory")
     private File targetDir = new File("./target");
 
+    /**
+     * Directory for binary snapshots of the configuration. If set, an
+     * unchanged configuration is not parsed again.
+     */
+    @Parameter(name = "snapshot-dir")
+    private File snapshotDir;
+
+    /**
+     * Directory for a local mirror of the P2 repositories used by Eclipse
+     * plugin packages. If set, the repositories are mirrored and the packages
+     * use the mirror instead of the original repositories.
+     */
+    @Parameter(name = "p2-mirror-dir")
+    private File p2MirrorDir;
+
+    /**
+     * Only create packages whose inputs changed since the last run. The
+     * fingerprints of the inputs are stored in a manifest inside the target
+     * directory. Disabled by default, so every package is created on each
+     * run unless the check is enabled explicitly.
+     */
+    @Parameter(name = "up-to-date-check", defaultValue = "false")
+    private boolean upToDateCheck;
+
+    /**
+     * Maximum number of packages created in parallel. Values less than one
+     * use the number of available processors.
+     */
+    @Parameter(name = "threads", property = "owndeb.threads", defaultValue = "0")
+    private int threads;
+
+    /**
+     * Maximum number of parallel downloads. Values less than one mean no
+     * limit.
+     */
+    @Parameter(name = "download-threads", property = "owndeb.downloadThreads", defaultValue = "0")
+    private int downloadThreads;
+
+    /**
+     * Maximum number of archives and packages compressed in parallel. Values
+     * less than one mean no limit.
+     */
+    @Parameter(name = "compression-threads", property = "owndeb.compressionThreads", defaultValue = "0")
+    private int compressionThreads;
+
+    /**
+     * Comma separated names of the packages to create. Wildcards ('*', '?')
+     * are allowed. All packages the selected ones depend on are created as
+     * well. If not set, all packages are created.
+     */
+    @Parameter(name = "includes", property = "owndeb.packages")
+    private String includes;
+
+    /**
+     * Comma separated names of the packages not to create. Wildcards ('*',
+     * '?') are allowed. Dependencies of selected packages are created anyway.
+     */
+    @Parameter(name = "excludes", property = "owndeb.excludes")
+    private String excludes;
+
     /** A list of package classes to be bound to the JAXB context. */
     @Parameter(name = "package-classes")
     private String[] packageClasses;
@@ -128,6 +193,166 @@ public final class OwnDebMojo extends AbstractMojo {
         this.targetDir = targetDir;
     }
 
+    /**
+     * Returns the directory for snapshots of the configuration.
+     * 
+     * @return Snapshot directory or <code>null</code> if no snapshots are
+     *         used.
+     */
+    public final File getSnapshotDir() {
+        return snapshotDir;
+    }
+
+    /**
+     * Sets the directory for snapshots of the configuration.
+     * 
+     * @param snapshotDir
+     *            Snapshot directory or <code>null</code> if no snapshots
+     *            should be used.
+     */
+    public final void setSnapshotDir(final File snapshotDir) {
+        this.snapshotDir = snapshotDir;
+    }
+
+    /**
+     * Returns the directory for the local mirror of P2 repositories.
+     * 
+     * @return Mirror directory or <code>null</code> if no mirror is used.
+     */
+    public final File getP2MirrorDir() {
+        return p2MirrorDir;
+    }
+
+    /**
+     * Sets the directory for the local mirror of P2 repositories.
+     * 
+     * @param p2MirrorDir
+     *            Mirror directory or <code>null</code> if no mirror should be
+     *            used.
+     */
+    public final void setP2MirrorDir(final File p2MirrorDir) {
+        this.p2MirrorDir = p2MirrorDir;
+    }
+
+    /**
+     * Returns if only packages with changed inputs are created.
+     * 
+     * @return TRUE if packages that are up to date are skipped.
+     */
+    public final boolean isUpToDateCheck() {
+        return upToDateCheck;
+    }
+
+    /**
+     * Sets if only packages with changed inputs are created.
+     * 
+     * @param upToDateCheck
+     *            TRUE if packages that are up to date should be skipped or
+     *            FALSE if all packages should always be created.
+     */
+    public final void setUpToDateCheck(final boolean upToDateCheck) {
+        this.upToDateCheck = upToDateCheck;
+    }
+
+    /**
+     * Returns the maximum number of packages created in parallel.
+     * 
+     * @return Number of threads or a value less than one for the number of
+     *         available processors.
+     */
+    public final int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Sets the maximum number of packages created in parallel.
+     * 
+     * @param threads
+     *            Number of threads or a value less than one for the number
+     *            of available processors.
+     */
+    public final void setThreads(final int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Returns the maximum number of parallel downloads.
+     * 
+     * @return Number of downloads or a value less than one for no limit.
+     */
+    public final int getDownloadThreads() {
+        return downloadThreads;
+    }
+
+    /**
+     * Sets the maximum number of parallel downloads.
+     * 
+     * @param downloadThreads
+     *            Number of downloads or a value less than one for no limit.
+     */
+    public final void setDownloadThreads(final int downloadThreads) {
+        this.downloadThreads = downloadThreads;
+    }
+
+    /**
+     * Returns the maximum number of parallel compressions.
+     * 
+     * @return Number of compressions or a value less than one for no limit.
+     */
+    public final int getCompressionThreads() {
+        return compressionThreads;
+    }
+
+    /**
+     * Sets the maximum number of parallel compressions.
+     * 
+     * @param compressionThreads
+     *            Number of compressions or a value less than one for no
+     *            limit.
+     */
+    public final void setCompressionThreads(final int compressionThreads) {
+        this.compressionThreads = compressionThreads;
+    }
+
+    /**
+     * Returns the names of the packages to create.
+     * 
+     * @return Comma separated names or <code>null</code> for all packages.
+     */
+    public final String getIncludes() {
+        return includes;
+    }
+
+    /**
+     * Sets the names of the packages to create.
+     * 
+     * @param includes
+     *            Comma separated names or <code>null</code> for all
+     *            packages.
+     */
+    public final void setIncludes(final String includes) {
+        this.includes = includes;
+    }
+
+    /**
+     * Returns the names of the packages not to create.
+     * 
+     * @return Comma separated names or <code>null</code>.
+     */
+    public final String getExcludes() {
+        return excludes;
+    }
+
+    /**
+     * Sets the names of the packages not to create.
+     * 
+     * @param excludes
+     *            Comma separated names or <code>null</code>.
+     */
+    public final void setExcludes(final String excludes) {
+        this.excludes = excludes;
+    }
+
     @Override
     public final void execute() throws MojoExecutionException {
         StaticLoggerBinder.getSingleton().setMavenLog(getLog());
@@ -138,8 +363,41 @@ public final class OwnDebMojo extends AbstractMojo {
         checkNotNull("config-file", configFile);
         checkNotNull("target-dir", targetDir);
 
-        new OwnDeb(configFile, targetDir, getJaxbContextClasses(this.getClass()
-                .getClassLoader())).execute();
+        final Class<?>[] jaxbClasses = getJaxbContextClasses(this.getClass()
+                .getClassLoader());
+        final DebConfig config;
+        if (snapshotDir == null) {
+            config = OwnDeb.unmarshal(configFile, jaxbClasses);
+        } else {
+            LOG.debug("snapshot-dir={}", snapshotDir);
+            config = new ConfigSnapshot(snapshotDir).load(configFile,
+                    jaxbClasses);
+        }
+        final int packageThreads;
+        if (threads < 1) {
+            packageThreads = Runtime.getRuntime().availableProcessors();
+        } else {
+            packageThreads = threads;
+        }
+        LOG.info("threads={}, download-threads={}, compression-threads={}",
+                packageThreads, downloadThreads, compressionThreads);
+        final StageLimits stageLimits = new StageLimits(downloadThreads,
+                compressionThreads);
+        final OwnDeb ownDeb = new OwnDeb(config, targetDir, packageThreads);
+        ownDeb.setStageLimits(stageLimits);
+        if (includes != null || excludes != null) {
+            LOG.info("includes={}, excludes={}", includes, excludes);
+            ownDeb.setSelector(new PackageSelector(includes, excludes));
+        }
+        if (p2MirrorDir != null) {
+            LOG.debug("p2-mirror-dir={}", p2MirrorDir);
+            ownDeb.setP2Mirror(new P2Mirror(p2MirrorDir, stageLimits));
+        }
+        LOG.debug("up-to-date-check={}", upToDateCheck);
+        if (upToDateCheck) {
+            ownDeb.setManifest(new BuildManifest(targetDir));
+        }
+        ownDeb.execute();
     }
 
     private Class<?>[] getJaxbContextClasses(final ClassLoader classLoader)
@@ -21,7 +21,9 @@ import static org.assertj.core.api.StrictAssertions.assertThat;
 
 import java.io.File;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.maven.plugin.MojoExecutionException;
+import org.fuin.owndeb.BuildManifest;
 import org.fuin.owndeb.pkg.example.ExamplePackage;
 import org.junit.Test;
 
@@ -63,6 +65,59 @@ public class OwnDebMojoTest {
 
     }
 
+    @Test
+    public void testExecuteUpToDate() throws MojoExecutionException {
+
+        // PREPARE
+        final File buildDir = new File("./target/up-to-date");
+        File file = new File(this.getClass().getResource("/test-config.xml")
+                .getFile());
+        final OwnDebMojo testee = new OwnDebMojo();
+        testee.setConfigFile(file);
+        testee.setTargetDir(buildDir);
+        testee.setPackageClasses(new String[] { ExamplePackage.class.getName() });
+        testee.setUpToDateCheck(true);
+        testee.execute();
+        final File debFile1 = new File(buildDir, "abc-p1_1.2.3_amd64.deb");
+        final File debFile2 = new File(buildDir, "abc-p2_1.2.3_amd64.deb");
+        debFile1.setLastModified(1000L);
+        debFile2.delete();
+
+        // TEST
+        testee.execute();
+
+        // VERIFY
+        assertThat(new File(buildDir, BuildManifest.FILENAME)).exists();
+        assertThat(debFile1.lastModified()).isEqualTo(1000L);
+        assertThat(debFile2).exists();
+
+    }
+
+    @Test
+    public void testExecuteSelected() throws MojoExecutionException {
+
+        // PREPARE
+        final File buildDir = new File("./target/selected");
+        FileUtils.deleteQuietly(buildDir);
+        File file = new File(this.getClass().getResource("/test-config.xml")
+                .getFile());
+        final OwnDebMojo testee = new OwnDebMojo();
+        testee.setConfigFile(file);
+        testee.setTargetDir(buildDir);
+        testee.setPackageClasses(new String[] { ExamplePackage.class.getName() });
+        testee.setThreads(1);
+        testee.setCompressionThreads(1);
+        testee.setIncludes("abc-p2");
+
+        // TEST
+        testee.execute();
+
+        // VERIFY
+        assertThat(new File(buildDir, "abc-p1_1.2.3_amd64.deb")).doesNotExist();
+        assertThat(new File(buildDir, "abc-p2_1.2.3_amd64.deb")).exists();
+
+    }
+
     // CHECKSTYLE:ON
 
 }